@@ -0,0 +1,45 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.config;
+
+import java.util.function.Function;
+
+/**
+ * Sets the fields of a config builder by name, with values as they are found in a config payload.
+ * Generated builders hold an instance of this in a private static field, so payloads may be applied
+ * to them without reflective method lookups.
+ *
+ * The builders given to the methods of this must be of the builder class which holds it.
+ */
+public interface FieldSetter {
+
+    /** Returns whether the field with the given name is a map */
+    boolean isMap(String name);
+
+    /**
+     * Sets the given leaf field to the given value, or adds the value if the field is an array.
+     * Values of path and url fields are resolved with the given functions first.
+     *
+     * @return false if there is no leaf field with the given name
+     */
+    boolean setValue(ConfigBuilder builder, String name, String value,
+                     Function<String, FileReference> paths, Function<String, UrlReference> urls);
+
+    /**
+     * Puts the given value for the given key in the given leaf map field.
+     * Values of path and url fields are resolved with the given functions first.
+     *
+     * @return false if there is no leaf map field with the given name
+     */
+    boolean putValue(ConfigBuilder builder, String name, String key, String value,
+                     Function<String, FileReference> paths, Function<String, UrlReference> urls);
+
+    /** Returns a new builder for the given struct field, struct array or struct map, or null if there is none */
+    ConfigBuilder newStruct(String name);
+
+    /** Sets the given struct field to the given struct builder, or adds the builder if the field is an array */
+    void setStruct(ConfigBuilder builder, String name, ConfigBuilder struct);
+
+    /** Puts the given struct builder for the given key in the given struct map field */
+    void putStruct(ConfigBuilder builder, String name, String key, ConfigBuilder struct);
+
+}
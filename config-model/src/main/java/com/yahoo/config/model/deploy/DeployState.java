@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.config.model.deploy;
 
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModelCache;
 import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModels;
 import ai.vespa.rankingexpression.importer.configmodelview.MlModelImporter;
 import com.yahoo.component.Version;
@@ -22,14 +23,19 @@ import com.yahoo.config.model.provision.SingleNodeProvisioner;
 import com.yahoo.config.model.test.MockApplicationPackage;
 import com.yahoo.config.provision.Rotation;
 import com.yahoo.config.provision.Zone;
+import com.yahoo.io.IOUtils;
 import com.yahoo.io.reader.NamedReader;
+import com.yahoo.search.query.profile.types.FieldDescription;
+import com.yahoo.search.query.profile.types.QueryProfileType;
 import com.yahoo.searchdefinition.RankProfileRegistry;
 import com.yahoo.searchdefinition.SearchBuilder;
+import com.yahoo.searchdefinition.derived.DerivedConfigurationCache;
 import com.yahoo.searchdefinition.parser.ParseException;
 import com.yahoo.vespa.config.ConfigDefinition;
 import com.yahoo.vespa.config.ConfigDefinitionBuilder;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.documentmodel.DocumentModel;
+import com.yahoo.vespa.model.VespaModel;
 import com.yahoo.vespa.model.container.search.QueryProfiles;
 import com.yahoo.vespa.model.container.search.QueryProfilesBuilder;
 import com.yahoo.vespa.model.container.search.SemanticRuleBuilder;
@@ -39,15 +45,20 @@ import com.yahoo.vespa.model.search.SearchDefinition;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Contains various state during deploy that should be available in all builders of a {@link com.yahoo.config.model.ConfigModel}
@@ -75,6 +86,7 @@ public class DeployState implements ConfigDefinitionStore {
     private final Version wantedNodeVespaVersion;
     private final Instant now;
     private final HostProvisioner provisioner;
+    private final DerivedConfigurationCache derivedConfigurations;
 
     public static DeployState createTestState() {
         return new Builder().build();
@@ -86,6 +98,7 @@ public class DeployState implements ConfigDefinitionStore {
 
     private DeployState(ApplicationPackage applicationPackage,
                         SearchDocumentModel searchDocumentModel,
+                        DerivedConfigurationCache derivedConfigurations,
                         RankProfileRegistry rankProfileRegistry,
                         FileRegistry fileRegistry,
                         DeployLogger deployLogger,
@@ -97,6 +110,7 @@ public class DeployState implements ConfigDefinitionStore {
                         java.util.Optional<Model> previousModel,
                         Set<Rotation> rotations,
                         Collection<MlModelImporter> modelImporters,
+                        Optional<ImportedMlModelCache> modelImportCache,
                         Zone zone,
                         QueryProfiles queryProfiles,
                         SemanticRules semanticRules,
@@ -112,6 +126,7 @@ public class DeployState implements ConfigDefinitionStore {
         this.provisioner = hostProvisioner.orElse(getDefaultModelHostProvisioner(applicationPackage));
         this.searchDefinitions = searchDocumentModel.getSearchDefinitions();
         this.documentModel = searchDocumentModel.getDocumentModel();
+        this.derivedConfigurations = derivedConfigurations;
         this.permanentApplicationPackage = permanentApplicationPackage;
         this.configDefinitionRepo = configDefinitionRepo;
         this.rotations = rotations;
@@ -119,7 +134,8 @@ public class DeployState implements ConfigDefinitionStore {
         this.queryProfiles = queryProfiles; // TODO: Remove this by seeing how pagetemplates are propagated
         this.semanticRules = semanticRules; // TODO: Remove this by seeing how pagetemplates are propagated
         this.importedModels = new ImportedMlModels(applicationPackage.getFileReference(ApplicationPackage.MODELS_DIR),
-                                                   modelImporters);
+                                                   modelImporters,
+                                                   modelImportCache);
 
         this.validationOverrides =
                 zone.environment().isManuallyDeployed()
@@ -205,6 +221,11 @@ public class DeployState implements ConfigDefinitionStore {
         return documentModel;
     }
 
+    /** Returns the derived configurations of the searches of this, which reuses those of the previous model if possible */
+    public DerivedConfigurationCache getDerivedConfigurations() {
+        return derivedConfigurations;
+    }
+
     public DeployLogger getDeployLogger() {
         return logger;
     }
@@ -260,6 +281,7 @@ public class DeployState implements ConfigDefinitionStore {
         private Optional<Model> previousModel = Optional.empty();
         private Set<Rotation> rotations = new HashSet<>();
         private Collection<MlModelImporter> modelImporters = Collections.emptyList();
+        private Optional<ImportedMlModelCache> modelImportCache = Optional.empty();
         private Zone zone = Zone.defaultZone();
         private Instant now = Instant.now();
         private Version wantedNodeVespaVersion = Vtag.currentVersion;
@@ -319,6 +341,12 @@ public class DeployState implements ConfigDefinitionStore {
             return this;
         }
 
+        /** Sets a cache of imported models, which is used to avoid importing unchanged models again */
+        public Builder modelImportCache(ImportedMlModelCache modelImportCache) {
+            this.modelImportCache = Optional.of(modelImportCache);
+            return this;
+        }
+
         public Builder zone(Zone zone) {
             this.zone = zone;
             return this;
@@ -342,9 +370,11 @@ public class DeployState implements ConfigDefinitionStore {
             RankProfileRegistry rankProfileRegistry = new RankProfileRegistry();
             QueryProfiles queryProfiles = new QueryProfilesBuilder().build(applicationPackage);
             SemanticRules semanticRules = new SemanticRuleBuilder().build(applicationPackage);
-            SearchDocumentModel searchDocumentModel = createSearchDocumentModel(rankProfileRegistry, logger, queryProfiles, validationParameters);
+            Map<String, String> searchDefinitions = new HashMap<>();
+            SearchDocumentModel searchDocumentModel = createSearchDocumentModel(rankProfileRegistry, logger, queryProfiles, validationParameters, searchDefinitions);
             return new DeployState(applicationPackage,
                                    searchDocumentModel,
+                                   createDerivedConfigurationCache(searchDocumentModel, searchDefinitions, queryProfiles),
                                    rankProfileRegistry,
                                    fileRegistry,
                                    logger,
@@ -356,6 +386,7 @@ public class DeployState implements ConfigDefinitionStore {
                                    previousModel,
                                    rotations,
                                    modelImporters,
+                                   modelImportCache,
                                    zone,
                                    queryProfiles,
                                    semanticRules,
@@ -366,14 +397,18 @@ public class DeployState implements ConfigDefinitionStore {
         private SearchDocumentModel createSearchDocumentModel(RankProfileRegistry rankProfileRegistry,
                                                               DeployLogger logger,
                                                               QueryProfiles queryProfiles,
-                                                              ValidationParameters validationParameters) {
+                                                              ValidationParameters validationParameters,
+                                                              Map<String, String> searchDefinitions) {
             Collection<NamedReader> readers = applicationPackage.getSearchDefinitions();
             Map<String, String> names = new LinkedHashMap<>();
             SearchBuilder builder = new SearchBuilder(applicationPackage, rankProfileRegistry, queryProfiles.getRegistry());
             for (NamedReader reader : readers) {
                 try {
                     String readerName = reader.getName();
-                    String searchName = builder.importReader(reader, readerName, logger);
+                    String searchDefinition = IOUtils.readAll(reader.getReader());
+                    String searchName = builder.importReader(new NamedReader(readerName, new StringReader(searchDefinition)),
+                                                             readerName, logger);
+                    searchDefinitions.put(searchName, searchDefinition);
                     String sdName = stripSuffix(readerName, ApplicationPackage.SD_NAME_SUFFIX);
                     names.put(searchName, sdName);
                     if (!sdName.equals(searchName)) {
@@ -393,6 +428,42 @@ public class DeployState implements ConfigDefinitionStore {
             return SearchDocumentModel.fromBuilderAndNames(builder, names);
         }
 
+        /**
+         * Returns a cache of derived search configuration, which is keyed by the search definitions each search depends
+         * on, and all other files and query profile types which any search depends on
+         */
+        private DerivedConfigurationCache createDerivedConfigurationCache(SearchDocumentModel searchDocumentModel,
+                                                                          Map<String, String> searchDefinitions,
+                                                                          QueryProfiles queryProfiles) {
+            StringBuilder otherInput = new StringBuilder();
+            List<NamedReader> expressions = new ArrayList<>(applicationPackage.getFiles(ApplicationPackage.SEARCH_DEFINITIONS_DIR,
+                                                                                        ApplicationPackage.RANKEXPRESSION_NAME_SUFFIX));
+            expressions.sort(Comparator.comparing(NamedReader::getName));
+            for (NamedReader expression : expressions) {
+                try {
+                    otherInput.append(expression.getName()).append('\n').append(IOUtils.readAll(expression.getReader())).append('\n');
+                } catch (IOException e) { // reported if the file is used by a search; just don't reuse anything
+                    return DerivedConfigurationCache.empty();
+                } finally {
+                    closeIgnoreException(expression.getReader());
+                }
+            }
+            List<QueryProfileType> types = new ArrayList<>(queryProfiles.getRegistry().getTypeRegistry().allComponents());
+            types.sort(Comparator.comparing(type -> type.getId().toString()));
+            for (QueryProfileType type : types) {
+                otherInput.append(type.getId()).append('\n');
+                for (FieldDescription field : new TreeMap<>(type.fields()).values())
+                    otherInput.append(field.getName()).append(':').append(field.getType().stringValue()).append('\n');
+            }
+
+            DerivedConfigurationCache previous = previousModel.filter(model -> model instanceof VespaModel)
+                                                              .map(model -> ((VespaModel) model).derivedConfigurations())
+                                                              .orElse(DerivedConfigurationCache.empty());
+            List<com.yahoo.searchdefinition.Search> searches = new ArrayList<>();
+            searchDocumentModel.getSearchDefinitions().forEach(definition -> searches.add(definition.getSearch()));
+            return DerivedConfigurationCache.create(searches, searchDefinitions, otherInput.toString(), previous);
+        }
+
         private String getSearchDefinitionRelativePath(String name) {
             return ApplicationPackage.SEARCH_DEFINITIONS_DIR + File.separator + name;
         }
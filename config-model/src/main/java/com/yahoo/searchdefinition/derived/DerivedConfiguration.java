@@ -89,6 +89,31 @@ public class DerivedConfiguration {
         Validation.validate(this, search);
     }
 
+    private DerivedConfiguration(DerivedConfiguration other, Search search) {
+        this.search = search;
+        this.summaries = other.summaries;
+        this.summaryMap = other.summaryMap;
+        this.juniperrc = other.juniperrc;
+        this.attributeFields = other.attributeFields;
+        this.rankProfileList = other.rankProfileList == null ? null
+                                                             : other.rankProfileList.withRankingConstants(search.rankingConstants());
+        this.indexingScript = other.indexingScript;
+        this.indexInfo = other.indexInfo;
+        this.streamingFields = other.streamingFields;
+        this.streamingSummary = other.streamingSummary;
+        this.indexSchema = other.indexSchema;
+        this.importedFields = other.importedFields;
+    }
+
+    /**
+     * Returns a copy of this for the given search, which must be built from the same input as the search this
+     * was derived from. The derived snapshots are shared, while the ranking constants are those of the given search,
+     * such that they are distributed with it.
+     */
+    public DerivedConfiguration reusedFor(Search search) {
+        return new DerivedConfiguration(this, search);
+    }
+
     /**
      * Exports a complete set of configuration-server format config files.
      *
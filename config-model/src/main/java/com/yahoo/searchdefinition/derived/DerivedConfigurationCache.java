@@ -0,0 +1,185 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchdefinition.derived;
+
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModels;
+import com.yahoo.config.application.api.DeployLogger;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.searchdefinition.DocumentReference;
+import com.yahoo.searchdefinition.RankProfileRegistry;
+import com.yahoo.searchdefinition.Search;
+import com.yahoo.searchdefinition.document.SDDocumentType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The derived configurations of the searches of a model, keyed by a fingerprint of all the input their derivation
+ * depends on. Derived configurations of the previous model of the same application are reused when their
+ * fingerprint is unchanged, such that only searches which have changed are derived again on redeployment.
+ *
+ * Searches are not reused when the application has machine-learned models, as deriving those adds ranking
+ * constants to the search and generates files in the application package.
+ */
+public class DerivedConfigurationCache {
+
+    /** The fingerprint of each search, by name */
+    private final Map<String, String> fingerprints;
+
+    /** The derived configurations of the model this is building */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** The derived configurations of the previous model, which is forgotten when this model is built */
+    private Map<String, Entry> previousEntries;
+
+    private DerivedConfigurationCache(Map<String, String> fingerprints, Map<String, Entry> previousEntries) {
+        this.fingerprints = fingerprints;
+        this.previousEntries = previousEntries;
+    }
+
+    /** Returns a cache which never reuses derived configurations */
+    public static DerivedConfigurationCache empty() {
+        return new DerivedConfigurationCache(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Creates a cache for the given searches.
+     *
+     * @param searches the searches of the model to build
+     * @param searchDefinitions the content of the search definition file of each search, by search name
+     * @param otherInput all other input which the derivation of every search depends on
+     * @param previous the cache of the previous model of this application, if any
+     */
+    public static DerivedConfigurationCache create(Collection<Search> searches,
+                                                   Map<String, String> searchDefinitions,
+                                                   String otherInput,
+                                                   DerivedConfigurationCache previous) {
+        Map<String, String> searchByDocument = new HashMap<>();
+        for (Search search : searches)
+            if (search.getDocument() != null)
+                searchByDocument.put(search.getDocument().getName(), search.getName());
+
+        Map<String, String> fingerprints = new HashMap<>();
+        for (Search search : searches) {
+            MessageDigest digest = sha256();
+            digest.update(otherInput.getBytes(StandardCharsets.UTF_8));
+            for (String name : dependencies(search, searches, searchByDocument)) {
+                String searchDefinition = searchDefinitions.get(name);
+                if (searchDefinition == null) continue;
+                digest.update(("\n" + name + "\n" + searchDefinition).getBytes(StandardCharsets.UTF_8));
+            }
+            if (searchDefinitions.containsKey(search.getName()))
+                fingerprints.put(search.getName(), toHex(digest.digest()));
+        }
+        synchronized (previous) {
+            return new DerivedConfigurationCache(fingerprints, new HashMap<>(previous.entries));
+        }
+    }
+
+    /**
+     * Returns the derived configuration of the given search, which is reused if it was derived from the same
+     * input before, and derived otherwise.
+     */
+    public synchronized DerivedConfiguration derive(Search search,
+                                                    DeployLogger deployLogger,
+                                                    RankProfileRegistry rankProfileRegistry,
+                                                    QueryProfileRegistry queryProfiles,
+                                                    ImportedMlModels importedModels) {
+        String fingerprint = fingerprints.get(search.getName());
+        if (fingerprint == null || ! importedModels.all().isEmpty())
+            return new DerivedConfiguration(search, deployLogger, rankProfileRegistry, queryProfiles, importedModels);
+
+        Entry entry = entries.get(search.getName());
+        if (entry != null && entry.fingerprint.equals(fingerprint) && entry.derived.getSearch() == search)
+            return entry.derived;
+
+        Entry previousEntry = previousEntries.get(search.getName());
+        if (previousEntry != null && previousEntry.fingerprint.equals(fingerprint)
+            && previousEntry.rankingConstants.equals(search.rankingConstants().asMap().keySet())) {
+            DerivedConfiguration reused = previousEntry.derived.reusedFor(search);
+            entries.put(search.getName(), new Entry(fingerprint, reused, previousEntry.rankingConstants));
+            return reused;
+        }
+
+        Set<String> rankingConstants = new HashSet<>(search.rankingConstants().asMap().keySet());
+        DerivedConfiguration derived = new DerivedConfiguration(search, deployLogger, rankProfileRegistry,
+                                                                queryProfiles, importedModels);
+        if (rankingConstants.equals(search.rankingConstants().asMap().keySet())) // derivation did not add constants
+            entries.put(search.getName(), new Entry(fingerprint, derived, rankingConstants));
+        return derived;
+    }
+
+    /** Drops the references to the derived configurations of the previous model, once the model using this is built */
+    public synchronized void forgetPrevious() {
+        previousEntries = Collections.emptyMap();
+    }
+
+    /** Returns the name of the given search and all searches it depends on, in sorted order */
+    private static Set<String> dependencies(Search search, Collection<Search> searches, Map<String, String> searchByDocument) {
+        Map<String, Search> searchByName = new HashMap<>();
+        searches.forEach(s -> searchByName.put(s.getName(), s));
+
+        Set<String> dependencies = new TreeSet<>();
+        Deque<Search> remaining = new ArrayDeque<>();
+        remaining.add(search);
+        while ( ! remaining.isEmpty()) {
+            Search current = remaining.remove();
+            if ( ! dependencies.add(current.getName())) continue;
+            SDDocumentType document = current.getDocument();
+            if (document == null) continue;
+
+            for (SDDocumentType inherited : document.getInheritedTypes()) {
+                Search inheritedSearch = searchByName.get(searchByDocument.get(inherited.getName()));
+                if (inheritedSearch != null)
+                    remaining.add(inheritedSearch);
+            }
+            document.getDocumentReferences().ifPresent(references -> {
+                for (DocumentReference reference : references.referenceMap().values())
+                    remaining.add(reference.targetSearch());
+            });
+        }
+        return dependencies;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder b = new StringBuilder();
+        for (byte value : bytes)
+            b.append(String.format("%02x", value));
+        return b.toString();
+    }
+
+    private static class Entry {
+
+        final String fingerprint;
+        final DerivedConfiguration derived;
+
+        /** The names of the ranking constants of the search when it was derived */
+        final Set<String> rankingConstants;
+
+        Entry(String fingerprint, DerivedConfiguration derived, Set<String> rankingConstants) {
+            this.fingerprint = fingerprint;
+            this.derived = derived;
+            this.rankingConstants = rankingConstants;
+        }
+
+    }
+
+}
@@ -51,6 +51,17 @@ public class RankProfileList extends Derived implements RankProfilesConfig.Produ
         deriveRankProfiles(rankProfileRegistry, queryProfiles, importedModels, search, attributeFields);
     }
 
+    private RankProfileList(RankProfileList other, RankingConstants rankingConstants) {
+        setName(other.getName());
+        this.rankingConstants = rankingConstants;
+        rankProfiles.putAll(other.rankProfiles);
+    }
+
+    /** Returns a copy of this which has the given ranking constants, which must be equal to those of this */
+    public RankProfileList withRankingConstants(RankingConstants rankingConstants) {
+        return new RankProfileList(this, rankingConstants);
+    }
+
     private void deriveRankProfiles(RankProfileRegistry rankProfileRegistry,
                                     QueryProfileRegistry queryProfiles,
                                     ImportedMlModels importedModels,
@@ -31,6 +31,7 @@ import com.yahoo.searchdefinition.RankProfile;
 import com.yahoo.searchdefinition.RankProfileRegistry;
 import com.yahoo.searchdefinition.RankingConstants;
 import com.yahoo.searchdefinition.derived.AttributeFields;
+import com.yahoo.searchdefinition.derived.DerivedConfigurationCache;
 import com.yahoo.searchdefinition.derived.RankProfileList;
 import com.yahoo.searchdefinition.processing.Processing;
 import com.yahoo.vespa.model.container.ApplicationContainerCluster;
@@ -118,6 +119,9 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Seri
 
     private final FileDistributor fileDistributor;
 
+    /** The derived search configurations of this, which are reused by the next model of this application if unchanged */
+    private final DerivedConfigurationCache derivedConfigurations;
+
     /** Creates a Vespa Model from internal model types only */
     public VespaModel(ApplicationPackage app) throws IOException, SAXException {
         this(app, new NullConfigModelRegistry());
@@ -157,6 +161,7 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Seri
         configModelRegistry = new VespaConfigModelRegistry(configModelRegistry);
         VespaModelBuilder builder = new VespaDomBuilder();
         this.applicationPackage = deployState.getApplicationPackage();
+        this.derivedConfigurations = deployState.getDerivedConfigurations();
         root = builder.getRoot(VespaModel.ROOT_CONFIGID, deployState, this);
 
         HostSystem hostSystem = root.getHostSystem();
@@ -189,11 +194,15 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Seri
             this.fileDistributor = fileDistributor;
             this.rankProfileList = RankProfileList.empty;
         }
+        derivedConfigurations.forgetPrevious();
     }
 
     /** Returns the application package owning this */
     public ApplicationPackage applicationPackage() { return applicationPackage; }
 
+    /** Returns the derived search configurations of this, by the fingerprint of the input they were derived from */
+    public DerivedConfigurationCache derivedConfigurations() { return derivedConfigurations; }
+
     /** Returns the global ranking constants of this */
     public RankingConstants rankingConstants() { return rankingConstants; }
 
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.model;
 
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModelCache;
 import ai.vespa.rankingexpression.importer.configmodelview.MlModelImporter;
 import com.google.inject.Inject;
 import com.yahoo.component.Version;
@@ -22,15 +23,18 @@ import com.yahoo.config.model.builder.xml.ConfigModelBuilder;
 import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.config.provision.Zone;
 import com.yahoo.vespa.config.VespaVersion;
+import com.yahoo.vespa.defaults.Defaults;
 import com.yahoo.vespa.model.application.validation.Validation;
 import org.xml.sax.SAXException;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 /**
@@ -41,8 +45,13 @@ import java.util.logging.Logger;
 public class VespaModelFactory implements ModelFactory {
 
     private static final Logger log = Logger.getLogger(VespaModelFactory.class.getName());
+
+    /** The directory of the cache of imported models, which is shared by all config model versions */
+    private static final String modelImportCacheDirectory = "var/db/vespa/config_server/model-import-cache";
+
     private final ConfigModelRegistry configModelRegistry;
     private final Collection<MlModelImporter> modelImporters;
+    private final Optional<ImportedMlModelCache> modelImportCache;
     private final Zone zone;
     private final Clock clock;
     private final Version version;
@@ -61,6 +70,8 @@ public class VespaModelFactory implements ModelFactory {
         }
         this.configModelRegistry = new MapConfigModelRegistry(modelBuilders);
         this.modelImporters = modelImporters.allComponents();
+        this.modelImportCache = Optional.of(new ImportedMlModelCache(new File(Defaults.getDefaults().underVespaHome(modelImportCacheDirectory)),
+                                                                     version.toFullString()));
         this.zone = zone;
         this.clock = Clock.systemUTC();
     }
@@ -80,6 +91,7 @@ public class VespaModelFactory implements ModelFactory {
             this.configModelRegistry = configModelRegistry;
         }
         this.modelImporters = Collections.emptyList();
+        this.modelImportCache = Optional.empty();
         this.zone = Zone.defaultZone();
         this.clock = clock;
     }
@@ -143,6 +155,7 @@ public class VespaModelFactory implements ModelFactory {
             .zone(zone)
             .now(clock.instant())
             .wantedNodeVespaVersion(modelContext.wantedNodeVespaVersion());
+        modelImportCache.ifPresent(builder::modelImportCache);
         modelContext.previousModel().ifPresent(builder::previousModel);
         return builder.build(validationParameters);
     }
@@ -303,10 +303,11 @@ public class IndexedSearchCluster extends SearchCluster
             com.yahoo.searchdefinition.Search search = spec.getSearchDefinition().getSearch();
             if ( ! (search instanceof DocumentOnlySearch)) {
                 DocumentDatabase db = new DocumentDatabase(this, search.getName(),
-                                                           new DerivedConfiguration(search, deployState.getDeployLogger(),
-                                                                                    deployState.rankProfileRegistry(),
-                                                                                    deployState.getQueryProfiles().getRegistry(),
-                                                                                    deployState.getImportedModels()));
+                                                           deployState.getDerivedConfigurations().derive(search,
+                                                                                                         deployState.getDeployLogger(),
+                                                                                                         deployState.rankProfileRegistry(),
+                                                                                                         deployState.getQueryProfiles().getRegistry(),
+                                                                                                         deployState.getImportedModels()));
                 // TODO: remove explicit adding of user configs when the complete content model is built using builders.
                 db.mergeUserConfigs(spec.getUserConfigs());
                 documentDbs.add(db);
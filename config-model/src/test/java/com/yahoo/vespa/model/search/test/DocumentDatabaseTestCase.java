@@ -2,17 +2,20 @@
 package com.yahoo.vespa.model.search.test;
 
 import com.google.common.collect.ImmutableMap;
+import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.vespa.config.search.IndexschemaConfig;
 import com.yahoo.vespa.config.search.core.ProtonConfig;
 import com.yahoo.vespa.config.search.RankProfilesConfig;
 import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
 import com.yahoo.search.config.IndexInfoConfig;
+import com.yahoo.searchdefinition.derived.DerivedConfiguration;
 import com.yahoo.searchdefinition.parser.ParseException;
 import com.yahoo.vespa.config.search.AttributesConfig;
 import com.yahoo.vespa.configdefinition.IlscriptsConfig;
 import com.yahoo.vespa.model.VespaModel;
 import com.yahoo.vespa.model.content.ContentSearchCluster;
 import com.yahoo.vespa.model.content.utils.DocType;
+import com.yahoo.vespa.model.search.DocumentDatabase;
 import com.yahoo.vespa.model.search.IndexedSearchCluster;
 import com.yahoo.vespa.model.test.utils.ApplicationPackageUtils;
 import com.yahoo.vespa.model.test.utils.VespaModelCreatorWithMockPkg;
@@ -26,6 +29,8 @@ import java.util.Map;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author geirst
@@ -107,6 +112,37 @@ public class DocumentDatabaseTestCase {
         assertSingleSD("index");
     }
 
+    @Test
+    public void requireThatUnchangedSearchDefinitionsAreNotDerivedAgainOnRedeployment() {
+        String services = createVespaServices(Arrays.asList("type1", "type2"), "index");
+        VespaModel previous = new VespaModelCreatorWithMockPkg(vespaHosts, services,
+                Arrays.asList(ApplicationPackageUtils.generateSearchDefinition("type1", "f1", "f2"),
+                              ApplicationPackageUtils.generateSearchDefinition("type2", "f3", "f4"))).create();
+        VespaModel model = new VespaModelCreatorWithMockPkg(vespaHosts, services,
+                Arrays.asList(ApplicationPackageUtils.generateSearchDefinition("type1", "f1", "f2"),
+                              ApplicationPackageUtils.generateSearchDefinition("type2", "f3", "f5")))
+                .create(new DeployState.Builder().previousModel(previous));
+
+        DerivedConfiguration previousType1 = documentDatabase(previous, "type1").getDerivedConfiguration();
+        DerivedConfiguration type1 = documentDatabase(model, "type1").getDerivedConfiguration();
+        assertSame(previousType1.getAttributeFields(), type1.getAttributeFields());
+        assertSame(previousType1.getRankProfileList().getRankProfile("staticrank"),
+                   type1.getRankProfileList().getRankProfile("staticrank"));
+        assertNotSame(previousType1.getSearch(), type1.getSearch());
+        assertNotSame(documentDatabase(previous, "type2").getDerivedConfiguration().getAttributeFields(),
+                      documentDatabase(model, "type2").getDerivedConfiguration().getAttributeFields());
+
+        AttributesConfig.Builder attributes = new AttributesConfig.Builder();
+        documentDatabase(model, "type2").getConfig(attributes);
+        assertEquals("f5", new AttributesConfig(attributes).attribute(0).name());
+    }
+
+    private DocumentDatabase documentDatabase(VespaModel model, String name) {
+        for (DocumentDatabase db : ((IndexedSearchCluster) model.getSearchClusters().get(0)).getDocumentDbs())
+            if (db.getName().equals(name)) return db;
+        throw new IllegalArgumentException("No document database '" + name + "'");
+    }
+
     private VespaModel createModel(List<DocType> nameAndModes, String xmlTuning) {
         List<String> sds = new ArrayList<>(nameAndModes.size());
         for (DocType nameAndMode : nameAndModes) {
@@ -0,0 +1,279 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.log.LogLevel;
+import com.yahoo.slime.ArrayTraverser;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.ConfigCacheKey;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
+import com.yahoo.vespa.defaults.Defaults;
+import com.yahoo.yolean.Exceptions;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An on-disk snapshot of the configs in a {@link MemoryCache}, which lets a restarted proxy serve the configs
+ * it had before the restart while it fetches them again from the config sources.
+ *
+ * The snapshot is a file of records which are appended as configs are put in the cache. Each record is a config
+ * in slime binary format, preceded by its length and checksum, so a record which was only partially written when
+ * the proxy or host crashed is detected, and ignored together with everything after it. When a config is written
+ * again, its later record replaces the earlier one, and the file is compacted when it is mostly replaced records.
+ *
+ * This is thread safe.
+ */
+class CacheSnapshot {
+
+    private static final Logger log = Logger.getLogger(CacheSnapshot.class.getName());
+
+    static final Path defaultPath = Paths.get(Defaults.getDefaults().underVespaHome("var/vespa/cache/config/proxy-cache.snapshot"));
+
+    private static final int headerSize = 4 + 8; // record length and checksum
+    private static final long minCompactionSize = 1024 * 1024;
+
+    private final Path path;
+    /** The md5 and generation of the config last written or loaded for each key by this, to avoid writing it again */
+    private final Map<ConfigCacheKey, String> written = new HashMap<>();
+    /** The size of the current record of each key in the file */
+    private final Map<ConfigCacheKey, Integer> recordSizes = new HashMap<>();
+    private long liveSize = 0;
+    private FileChannel channel;
+
+    CacheSnapshot(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the configs of this snapshot, where the last record of each config wins,
+     * and opens this for writing. Invalid records at the end of the file are truncated.
+     */
+    synchronized Collection<RawConfig> load() {
+        Map<ConfigCacheKey, RawConfig> configs = new LinkedHashMap<>();
+        long validSize = 0;
+        if (Files.exists(path)) {
+            try (FileChannel file = FileChannel.open(path, READ)) {
+                MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                Optional<RawConfig> config;
+                while ((config = readRecord(buffer)).isPresent()) {
+                    ConfigCacheKey key = cacheKey(config.get());
+                    configs.put(key, config.get());
+                    written.put(key, version(config.get()));
+                    setRecordSize(key, (int) (buffer.position() - validSize));
+                    validSize = buffer.position();
+                }
+                if (validSize < file.size())
+                    log.log(LogLevel.WARNING, "Ignoring " + (file.size() - validSize) + " bytes of invalid or " +
+                                              "partially written configs at the end of " + path);
+            }
+            catch (IOException | RuntimeException e) {
+                log.log(LogLevel.WARNING, "Could not read configs from " + path + ": " + Exceptions.toMessageString(e));
+                configs.clear();
+                written.clear();
+                recordSizes.clear();
+                liveSize = validSize = 0;
+            }
+        }
+        open(validSize);
+        log.log(LogLevel.INFO, "Loaded " + configs.size() + " configs from " + path);
+        return configs.values();
+    }
+
+    /** Appends the given config to this, unless it was already written with the same md5 and generation */
+    synchronized void write(RawConfig config) {
+        if (channel == null) return;
+
+        ConfigCacheKey key = cacheKey(config);
+        String version = version(config);
+        if (version.equals(written.get(key))) return;
+
+        try {
+            ByteBuffer record = toRecord(config);
+            int size = record.remaining();
+            while (record.hasRemaining())
+                channel.write(record);
+            written.put(key, version);
+            setRecordSize(key, size);
+            if (channel.size() > 2 * liveSize + minCompactionSize)
+                compact();
+        }
+        catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not write config to " + path + ", no longer writing configs to it: " +
+                                      Exceptions.toMessageString(e));
+            close();
+        }
+    }
+
+    /** Returns the size of the file of this snapshot */
+    synchronized long size() throws IOException {
+        return channel == null ? 0 : channel.size();
+    }
+
+    synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not close " + path + ": " + Exceptions.toMessageString(e));
+        }
+        channel = null;
+    }
+
+    private void open(long validSize) {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            channel = FileChannel.open(path, CREATE, WRITE);
+            channel.truncate(validSize);
+            channel.position(validSize);
+        }
+        catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not open " + path + ", not writing configs to it: " +
+                                      Exceptions.toMessageString(e));
+            channel = null;
+        }
+    }
+
+    /** Writes the current record of each config to a new file, which then atomically replaces the current one */
+    private void compact() throws IOException {
+        log.log(LogLevel.DEBUG, () -> "Compacting " + path + " to " + liveSize + " bytes");
+        Collection<RawConfig> configs = new ArrayList<>();
+        try (FileChannel file = FileChannel.open(path, READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Map<ConfigCacheKey, RawConfig> current = new LinkedHashMap<>();
+            Optional<RawConfig> config;
+            while ((config = readRecord(buffer)).isPresent())
+                current.put(cacheKey(config.get()), config.get());
+            configs.addAll(current.values());
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        try (FileChannel file = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (RawConfig config : configs) {
+                ByteBuffer record = toRecord(config);
+                while (record.hasRemaining())
+                    file.write(record);
+            }
+            file.force(true);
+        }
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(path, WRITE, APPEND);
+    }
+
+    private void setRecordSize(ConfigCacheKey key, int size) {
+        Integer previous = recordSizes.put(key, size);
+        liveSize += size - (previous == null ? 0 : previous);
+    }
+
+    private static String version(RawConfig config) {
+        return config.getConfigMd5() + ":" + config.getGeneration();
+    }
+
+    private static ConfigCacheKey cacheKey(RawConfig config) {
+        return new ConfigCacheKey(config.getKey(), config.getDefMd5());
+    }
+
+    static ByteBuffer toRecord(RawConfig config) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setString("name", config.getName());
+        root.setString("namespace", config.getNamespace());
+        root.setString("configId", config.getConfigId());
+        root.setString("defMd5", config.getDefMd5());
+        root.setString("configMd5", config.getConfigMd5());
+        root.setLong("generation", config.getGeneration());
+        root.setBool("internalRedeploy", config.isInternalRedeploy());
+        config.getVespaVersion().ifPresent(version -> root.setString("vespaVersion", version.toString()));
+        Cursor defContent = root.setArray("defContent");
+        config.getDefContent().forEach(defContent::addString);
+        Payload payload = config.getPayload();
+        root.setString("compression", payload.getCompressionInfo().getCompressionType().name());
+        root.setLong("uncompressedSize", payload.getCompressionInfo().getUncompressedSize());
+        root.setData("payload", payload.getData().getBytes());
+        byte[] data = BinaryFormat.encode(slime);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+        ByteBuffer record = ByteBuffer.allocate(headerSize + data.length);
+        record.putInt(data.length).putLong(checksum.getValue()).put(data).flip();
+        return record;
+    }
+
+    /** Returns the config of the record at the position of the given buffer, or empty if there is no valid record */
+    static Optional<RawConfig> readRecord(ByteBuffer buffer) {
+        try {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            long expectedChecksum = buffer.getLong();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return Optional.empty();
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            CRC32 checksum = new CRC32();
+            checksum.update(data);
+            if (checksum.getValue() != expectedChecksum) {
+                buffer.position(start);
+                return Optional.empty();
+            }
+            return Optional.of(fromSlime(BinaryFormat.decode(data).get()));
+        }
+        catch (BufferUnderflowException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static RawConfig fromSlime(Inspector root) {
+        List<String> defContent = new ArrayList<>();
+        root.field("defContent").traverse((ArrayTraverser) (index, line) -> defContent.add(line.asString()));
+        CompressionInfo compression = CompressionInfo.create(CompressionType.parse(root.field("compression").asString()),
+                                                             (int) root.field("uncompressedSize").asLong());
+        Optional<VespaVersion> vespaVersion = root.field("vespaVersion").valid()
+                ? Optional.of(VespaVersion.fromString(root.field("vespaVersion").asString()))
+                : Optional.empty();
+        return new RawConfig(new ConfigKey<>(root.field("name").asString(),
+                                             root.field("configId").asString(),
+                                             root.field("namespace").asString()),
+                             root.field("defMd5").asString(),
+                             Payload.from(new Utf8Array(root.field("payload").asData()), compression),
+                             root.field("configMd5").asString(),
+                             root.field("generation").asLong(),
+                             root.field("internalRedeploy").asBool(),
+                             defContent,
+                             vespaVersion);
+    }
+
+}
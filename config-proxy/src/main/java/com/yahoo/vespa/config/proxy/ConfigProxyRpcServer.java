@@ -8,6 +8,7 @@ import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.protocol.JRTConfigRequestFactory;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.PayloadDeltas;
 
 import java.util.Arrays;
 import java.util.Iterator;
@@ -28,6 +29,14 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
     private final Spec spec;
     private final Supervisor supervisor;
     private final ProxyServer proxyServer;
+    /**
+     * The maximum number of bytes of payloads and deltas to remember for clients which accept deltas. This must hold
+     * both the old and the new payload of the largest configs, such as ranking constants of tens of megabytes, while
+     * being a bounded part of the heap of the proxy. Nothing is remembered unless some client accepts deltas.
+     */
+    private static final long maxPayloadDeltasSize = 64L * 1024 * 1024;
+
+    private final PayloadDeltas payloadDeltas = new PayloadDeltas(PayloadDeltas.defaultMinPayloadSize, maxPayloadDeltasSize);
 
     ConfigProxyRpcServer(ProxyServer proxyServer, Supervisor supervisor, Spec spec) {
         this.proxyServer = proxyServer;
@@ -314,7 +323,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
 
     public void returnOkResponse(JRTServerConfigRequest request, RawConfig config) {
         request.getRequestTrace().trace(TRACELEVEL, "Config proxy returnOkResponse()");
-        request.addOkResponse(config.getPayload(), config.getGeneration(), config.isInternalRedeploy(), config.getConfigMd5());
+        request.addOkResponse(config.getPayload(), config.getGeneration(), config.isInternalRedeploy(), config.getConfigMd5(), payloadDeltas);
         log.log(LogLevel.DEBUG, () -> "Return response: " + request.getShortDescription() + ",configMd5=" + config.getConfigMd5() +
                 ",generation=" + config.getGeneration());
         log.log(LogLevel.SPAM, () -> "Config payload in response for " + request.getShortDescription() + ":" + config.getPayload());
@@ -14,6 +14,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
@@ -29,6 +31,26 @@ public class MemoryCache {
     private static final String DEFAULT_DUMP_DIR = Defaults.getDefaults().underVespaHome("var/vespa/cache/config");
 
     private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    /** Keys of configs loaded from the snapshot, which have not yet been put again after fetching them upstream */
+    private final Set<ConfigCacheKey> stale = ConcurrentHashMap.newKeySet();
+    private final Optional<CacheSnapshot> snapshot;
+
+    public MemoryCache() {
+        this.snapshot = Optional.empty();
+    }
+
+    /**
+     * Creates a cache which contains the configs in the given snapshot, and writes configs put in it to the snapshot.
+     * The configs loaded from the snapshot are stale until they are put again.
+     */
+    MemoryCache(CacheSnapshot snapshot) {
+        this.snapshot = Optional.of(snapshot);
+        for (RawConfig config : snapshot.load()) {
+            ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+            cache.put(key, config);
+            stale.add(key);
+        }
+    }
 
     public RawConfig get(ConfigCacheKey key) {
         return cache.get(key);
@@ -43,7 +65,15 @@ public class MemoryCache {
         if (config.isError()) return;
 
         log.log(LogLevel.DEBUG, () -> "Putting '" + config + "' into memory cache");
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+        cache.put(key, config);
+        stale.remove(key);
+        snapshot.ifPresent(snapshot -> snapshot.write(config));
+    }
+
+    /** Returns whether the config with the given key was loaded from the snapshot, and has not been fetched since */
+    boolean isStale(ConfigCacheKey key) {
+        return stale.contains(key);
     }
 
     boolean containsKey(ConfigCacheKey key) {
@@ -58,8 +88,14 @@ public class MemoryCache {
         return cache.size();
     }
 
+    /** Clears this, but not its snapshot, which keeps the configs for the next start of the proxy */
     public void clear() {
         cache.clear();
+        stale.clear();
+    }
+
+    void close() {
+        snapshot.ifPresent(CacheSnapshot::close);
     }
 
     @Override
@@ -9,6 +9,7 @@ import com.yahoo.jrt.Transport;
 import com.yahoo.log.LogLevel;
 import com.yahoo.log.LogSetup;
 import com.yahoo.log.event.Event;
+import com.yahoo.net.HostName;
 import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.TimingValues;
@@ -17,7 +18,9 @@ import com.yahoo.vespa.filedistribution.FileDistributionRpcServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.yolean.system.CatchSignals;
 
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -87,7 +90,9 @@ public class ProxyServer implements Runnable {
         this.rpcServer = createRpcServer(spec);
         clientUpdater = new ClientUpdater(rpcServer, statistics, delayedResponses);
         this.configClient = createClient(clientUpdater, delayedResponses, source, timingValues, memoryCache, configClient);
-        new FileDistributionRpcServer(supervisor, new FileDownloader(new JRTConnectionPool(source)));
+        // Other nodes may download the file references this has from the port it listens on
+        Optional<String> peerSpec = spec == null ? Optional.empty() : Optional.of("tcp/" + HostName.getLocalhost() + ":" + spec.port());
+        new FileDistributionRpcServer(supervisor, new FileDownloader(new JRTConnectionPool(source), peerSpec));
         new UrlDownloadRpcServer(supervisor);
     }
 
@@ -212,8 +217,11 @@ public class ProxyServer implements Runnable {
 
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         DelayedResponses delayedResponses = new DelayedResponses(statistics);
+        MemoryCache memoryCache = properties.cacheSnapshot.isEmpty()
+                ? new MemoryCache()
+                : new MemoryCache(new CacheSnapshot(Paths.get(properties.cacheSnapshot)));
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), delayedResponses, configSources, statistics,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, memoryCache, null);
         // catch termination and interrupt signal
         proxyServer.setupSignalHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -226,16 +234,20 @@ public class ProxyServer implements Runnable {
         // Read system properties
         long eventInterval = Long.getLong("eventinterval", ConfigProxyStatistics.defaultEventInterval);
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(eventInterval, inputConfigSources);
+        // The file to keep a snapshot of the cache in, for serving configs at once after a restart. Empty to disable.
+        String cacheSnapshot = System.getProperty("cachesnapshot", CacheSnapshot.defaultPath.toString());
+        return new Properties(eventInterval, inputConfigSources, cacheSnapshot);
     }
 
     static class Properties {
         final long eventInterval;
         final String[] configSources;
+        final String cacheSnapshot;
 
-        Properties(long eventInterval, String[] configSources) {
+        Properties(long eventInterval, String[] configSources, String cacheSnapshot) {
             this.eventInterval = eventInterval;
             this.configSources = configSources;
+            this.cacheSnapshot = cacheSnapshot;
         }
     }
 
@@ -263,6 +275,7 @@ public class ProxyServer implements Runnable {
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
         flush();
+        memoryCache.close();
         if (statistics != null) {
             statistics.stop();
         }
@@ -132,7 +132,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                     ret = cachedConfig;
                 }
             }
-            if (!cachedConfig.isError()) {
+            // Configs loaded from the snapshot of a previous run are served, but must also be fetched again
+            if (!cachedConfig.isError() && !memoryCache.isStale(configCacheKey)) {
                 needToGetConfig = false;
             }
         }
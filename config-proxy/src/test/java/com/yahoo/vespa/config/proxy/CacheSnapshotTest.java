@@ -0,0 +1,154 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.slime.Slime;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ConfigPayload;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static RawConfig config(String configId, String value, long generation) {
+        Slime slime = new Slime();
+        slime.setObject().setString("value", value);
+        Payload payload = Payload.from(new ConfigPayload(slime)).withCompression(CompressionType.LZ4);
+        return new RawConfig(new ConfigKey<>("foo", configId, "bar"), "defmd5", payload, "md5-" + value, generation,
+                             false, Collections.singletonList("value string"), Optional.of(VespaVersion.fromString("7.1.2")));
+    }
+
+    private static List<RawConfig> load(Path path) {
+        CacheSnapshot snapshot = new CacheSnapshot(path);
+        List<RawConfig> configs = new ArrayList<>(snapshot.load());
+        snapshot.close();
+        return configs;
+    }
+
+    private static void assertConfig(RawConfig expected, RawConfig actual) {
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getDefMd5(), actual.getDefMd5());
+        assertEquals(expected.getConfigMd5(), actual.getConfigMd5());
+        assertEquals(expected.getGeneration(), actual.getGeneration());
+        assertEquals(expected.getDefContent(), actual.getDefContent());
+        assertEquals(expected.getVespaVersion(), actual.getVespaVersion());
+        assertEquals(expected.getPayload().withCompression(CompressionType.UNCOMPRESSED).toString(),
+                     actual.getPayload().withCompression(CompressionType.UNCOMPRESSED).toString());
+    }
+
+    @Test
+    public void configs_are_loaded_as_last_written() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("cache/snapshot");
+        CacheSnapshot snapshot = new CacheSnapshot(path);
+        assertTrue(snapshot.load().isEmpty());
+        RawConfig first = config("first", "a", 1);
+        RawConfig second = config("second", "b", 1);
+        RawConfig updated = config("first", "c", 2);
+        snapshot.write(first);
+        snapshot.write(second);
+        long size = snapshot.size();
+        snapshot.write(second);
+        assertEquals("Unchanged config is not written again", size, snapshot.size());
+        snapshot.write(updated);
+        snapshot.close();
+
+        List<RawConfig> configs = load(path);
+        assertEquals(2, configs.size());
+        assertConfig(updated, configs.get(0));
+        assertConfig(second, configs.get(1));
+    }
+
+    @Test
+    public void loaded_configs_are_not_written_again() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("snapshot");
+        CacheSnapshot snapshot = new CacheSnapshot(path);
+        snapshot.load();
+        snapshot.write(config("first", "a", 1));
+        snapshot.write(config("second", "b", 1));
+        snapshot.close();
+        long size = Files.size(path);
+
+        snapshot = new CacheSnapshot(path);
+        assertEquals(2, snapshot.load().size());
+        snapshot.write(config("first", "a", 1));
+        snapshot.write(config("second", "b", 1));
+        assertEquals("Configs which were loaded are not appended again", size, snapshot.size());
+        snapshot.write(config("second", "c", 2));
+        assertTrue("Changed config is appended", snapshot.size() > size);
+        snapshot.close();
+    }
+
+    @Test
+    public void partially_written_and_corrupt_records_are_ignored() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("snapshot");
+        CacheSnapshot snapshot = new CacheSnapshot(path);
+        snapshot.load();
+        snapshot.write(config("first", "a", 1));
+        long validSize = snapshot.size();
+        snapshot.write(config("second", "b", 1));
+        snapshot.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        List<RawConfig> configs = load(path);
+        assertEquals(1, configs.size());
+        assertConfig(config("first", "a", 1), configs.get(0));
+        assertEquals("Invalid record is truncated", validSize, Files.size(path));
+
+        snapshot = new CacheSnapshot(path);
+        snapshot.load();
+        snapshot.write(config("second", "b", 1));
+        snapshot.close();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(validSize + 20);
+            file.write(file.read() ^ 0xff);
+        }
+        configs = load(path);
+        assertEquals(1, configs.size());
+        assertConfig(config("first", "a", 1), configs.get(0));
+    }
+
+    @Test
+    public void snapshot_is_compacted() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("snapshot");
+        CacheSnapshot snapshot = new CacheSnapshot(path);
+        snapshot.load();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            value.append(i);
+        for (int generation = 1; generation <= 500; generation++) {
+            snapshot.write(config("first", value + "-" + generation, generation));
+            snapshot.write(config("second", value + "+" + generation, generation));
+        }
+        assertTrue("Snapshot of " + snapshot.size() + " bytes is compacted", snapshot.size() < 1024 * 1024);
+        snapshot.write(config("third", "c", 1));
+        snapshot.close();
+
+        List<RawConfig> configs = load(path);
+        assertEquals(3, configs.size());
+        assertConfig(config("first", value + "-500", 500), configs.get(0));
+        assertConfig(config("second", value + "+500", 500), configs.get(1));
+        assertConfig(config("third", "c", 1), configs.get(2));
+    }
+
+}
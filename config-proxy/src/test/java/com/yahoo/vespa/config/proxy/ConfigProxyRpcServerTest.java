@@ -7,14 +7,30 @@ import com.yahoo.jrt.Spec;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.DefContent;
+import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
+import com.yahoo.vespa.config.protocol.JRTClientConfigRequestV3;
+import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.Trace;
+import com.yahoo.vespa.config.util.ConfigUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Optional;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author hmusum
@@ -251,4 +267,58 @@ public class ConfigProxyRpcServerTest {
         assertThat(req.returnValues().get(0).asString(), is("success"));
     }
 
+    @Test
+    public void large_payloads_are_sent_as_deltas() {
+        ConfigKey<?> key = new ConfigKey<>("foo", "id", "bar");
+        Payload first = largePayload(-1);
+        Payload second = largePayload(7);
+        assertTrue(second.getData().getByteLength() > 4 * 1024 * 1024);
+        String firstMd5 = ConfigUtils.getMd5(first.getData());
+        String secondMd5 = ConfigUtils.getMd5(second.getData());
+
+        JRTClientConfigRequest client = createRequest(key, "older", 0, Optional.of(largePayload(3)));
+        rpcServer.returnOkResponse(JRTServerConfigRequestV3.createFromRequest(client.getRequest()),
+                                   rawConfig(key, first.withCompression(CompressionType.LZ4), firstMd5, 1));
+        assertTrue(client.validateResponse());
+
+        JRTClientConfigRequest next = createRequest(key, firstMd5, 1, Optional.of(first));
+        Payload compressed = second.withCompression(CompressionType.LZ4);
+        rpcServer.returnOkResponse(JRTServerConfigRequestV3.createFromRequest(next.getRequest()),
+                                   rawConfig(key, compressed, secondMd5, 2));
+        assertTrue(next.validateResponse());
+        int sentSize = next.getRequest().returnValues().get(1).asData().length;
+        int fullSize = compressed.getData().getByteLength();
+        assertTrue("Sent " + sentSize + " of " + fullSize + " bytes", sentSize * 10 < fullSize);
+        assertThat(next.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData(), is(second.getData()));
+    }
+
+    private static JRTClientConfigRequest createRequest(ConfigKey<?> key, String configMd5, long generation,
+                                                        Optional<Payload> basePayload) {
+        return JRTClientConfigRequestV3.createWithParams(key,
+                                                         DefContent.fromList(Arrays.asList("namespace=bar", "field[] string")),
+                                                         "localhost",
+                                                         configMd5,
+                                                         generation,
+                                                         1000,
+                                                         Trace.createNew(),
+                                                         CompressionType.LZ4,
+                                                         Optional.empty(),
+                                                         true,
+                                                         basePayload);
+    }
+
+    private static RawConfig rawConfig(ConfigKey<?> key, Payload payload, String configMd5, long generation) {
+        return new RawConfig(key, "", payload, configMd5, generation, false,
+                             Arrays.asList("namespace=bar", "field[] string"), Optional.empty());
+    }
+
+    /** Returns a payload of about 6 MiB, where the given element is changed */
+    private static Payload largePayload(int changed) {
+        Slime slime = new Slime();
+        Cursor array = slime.setObject().setArray("field");
+        for (int i = 0; i < 500000; i++)
+            array.addString(i == changed ? "changed" : "value " + i);
+        return Payload.from(new ConfigPayload(slime));
+    }
+
 }
@@ -8,8 +8,12 @@ import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.Payload;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Optional;
 
@@ -21,6 +25,10 @@ import static org.junit.Assert.*;
  * @since 5.1.9
  */
 public class MemoryCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private String defName = "foo";
     private String configId = "id";
     private String namespace = "bar";
@@ -121,4 +129,27 @@ public class MemoryCacheTest {
         cache.clear();
         assertThat(cache.size(), is(0));
     }
+
+    @Test
+    public void configs_in_snapshot_are_stale_until_put_again() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("snapshot");
+        MemoryCache cache = new MemoryCache(new CacheSnapshot(path));
+        assertThat(cache.size(), is(0));
+        cache.put(config);
+        cache.put(config2);
+        assertFalse(cache.isStale(cacheKey));
+        cache.close();
+
+        cache = new MemoryCache(new CacheSnapshot(path));
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get(cacheKey).getPayload().toString(), is(payload.toString()));
+        assertThat(cache.get(cacheKey2).getPayload().toString(), is(payload2.toString()));
+        assertTrue(cache.isStale(cacheKey));
+        assertTrue(cache.isStale(cacheKey2));
+
+        cache.put(config);
+        assertFalse(cache.isStale(cacheKey));
+        assertTrue(cache.isStale(cacheKey2));
+        cache.close();
+    }
 }
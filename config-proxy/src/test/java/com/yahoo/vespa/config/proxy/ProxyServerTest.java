@@ -212,6 +212,7 @@ public class ProxyServerTest {
         assertThat(properties.eventInterval, is(ConfigProxyStatistics.defaultEventInterval));
         assertThat(properties.configSources.length, is(1));
         assertThat(properties.configSources[0], is(ProxyServer.DEFAULT_PROXY_CONFIG_SOURCES));
+        assertThat(properties.cacheSnapshot, is(CacheSnapshot.defaultPath.toString()));
     }
 
     static RawConfig createConfigWithNextConfigGeneration(RawConfig config, int errorCode) {
@@ -44,6 +44,7 @@ public class ConfigSubscriber {
 
     /**
      * Reuse requesters for equal source sets, limit number if many subscriptions.
+     * These are shared with all other subscribers in this process, see {@link JRTConfigRequester#shared}.
      */
     protected Map<ConfigSourceSet, JRTConfigRequester> requesters = new HashMap<>();
 
@@ -334,6 +335,7 @@ public class ConfigSubscriber {
         for (JRTConfigRequester requester : requesters.values()) {
             requester.close();
         }
+        requesters.clear();
     }
 
     @Override
@@ -4,6 +4,8 @@ package com.yahoo.config.subscription.impl;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -22,6 +24,7 @@ import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.ErrorType;
+import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.TimingValues;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
 import com.yahoo.yolean.Exceptions;
@@ -32,7 +35,9 @@ import com.yahoo.vespa.config.protocol.Trace;
  * This class fetches config payload using JRT, and acts as the callback target.
  * It uses the {@link JRTConfigSubscription} and {@link JRTClientConfigRequest}
  * as context, and puts the requests objects on a queue on the subscription,
- * for handling by the user thread.
+ * for handling by the user thread. Subscribers share one requester per set of config sources,
+ * so a process has one connection and one scheduler thread for all its subscriptions to the same sources.
+ * Failures are counted per subscription, so one failing subscription does not delay requests for the others.
  *
  * @author Vegard Havdal
  */
@@ -42,17 +47,22 @@ public class JRTConfigRequester implements RequestWaiter {
     public static final ConfigSourceSet defaultSourceSet = ConfigSourceSet.createDefault();
     private static final int TRACELEVEL = 6;
     private final TimingValues timingValues;
-    private int fatalFailures = 0; // independent of transientFailures
-    private int transientFailures = 0;  // independent of fatalFailures
     private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new JRTSourceThreadFactory());
-    private Instant suspendWarningLogged = Instant.MIN;
-    private Instant noApplicationWarningLogged = Instant.MIN;
+    private volatile Instant suspendWarningLogged = Instant.MIN;
+    private volatile Instant noApplicationWarningLogged = Instant.MIN;
     private static final Duration delayBetweenWarnings = Duration.ofSeconds(60);
     private final ConnectionPool connectionPool;
     static final float randomFraction = 0.2f;
     /* Time to be added to server timeout to create client timeout. This is the time allowed for the server to respond after serverTimeout has elapsed. */
     private static final Double additionalTimeForClientTimeout = 5.0;
 
+    /** The requesters which are shared by all subscribers in this process, by their config sources */
+    private static final Map<ConfigSourceSet, JRTConfigRequester> sharedRequesters = new HashMap<>();
+    /** The sources of this, if it is shared */
+    private final ConfigSourceSet sharedSources;
+    /** The number of subscribers which have not yet closed this, if it is shared. Guarded by sharedRequesters */
+    private int users = 0;
+
     private static final SimpleDateFormat yyyyMMddz;
 
     static {
@@ -70,14 +80,38 @@ public class JRTConfigRequester implements RequestWaiter {
         return new JRTConfigRequester(connectionPool, timingValues);
     }
 
+    /**
+     * Returns the requester for the given config sources which is shared by all subscribers in this process,
+     * so all their subscriptions use one connection and one scheduler thread. Each subscriber which gets
+     * the requester must {@link #close} it, and it is closed when the last of them does.
+     *
+     * @param sources the config sources of the requester
+     * @param timingValues the timing values used for subscriptions which have none of their own
+     * @return the shared requester for the given sources
+     */
+    public static JRTConfigRequester shared(ConfigSourceSet sources, TimingValues timingValues) {
+        synchronized (sharedRequesters) {
+            JRTConfigRequester requester = sharedRequesters.computeIfAbsent(
+                    sources, __ -> new JRTConfigRequester(new JRTConnectionPool(sources), timingValues, sources));
+            requester.users++;
+            return requester;
+        }
+    }
+
     /**
      * New requester
      *  @param connectionPool the connectionPool this requester should use
-     * @param timingValues timeouts and delays used when sending JRT config requests
+     * @param timingValues timeouts and delays used when sending JRT config requests for subscriptions
+     *                     which have none of their own
      */
     JRTConfigRequester(ConnectionPool connectionPool, TimingValues timingValues) {
+        this(connectionPool, timingValues, null);
+    }
+
+    private JRTConfigRequester(ConnectionPool connectionPool, TimingValues timingValues, ConfigSourceSet sharedSources) {
         this.connectionPool = connectionPool;
         this.timingValues = timingValues;
+        this.sharedSources = sharedSources;
     }
 
     /**
@@ -87,7 +121,7 @@ public class JRTConfigRequester implements RequestWaiter {
      */
     public <T extends ConfigInstance> void request(JRTConfigSubscription<T> sub) {
         JRTClientConfigRequest req = JRTConfigRequestFactory.createFromSub(sub);
-        doRequest(sub, req, timingValues.getSubscribeTimeout());
+        doRequest(sub, req, timingValues(sub).getSubscribeTimeout());
     }
 
     private <T extends ConfigInstance> void doRequest(JRTConfigSubscription<T> sub,
@@ -175,7 +209,8 @@ public class JRTConfigRequester implements RequestWaiter {
         }
         final ErrorType errorType = ErrorType.getErrorType(jrtReq.errorCode());
         connectionPool.setError(connection, jrtReq.errorCode());
-        long delay = calculateFailedRequestDelay(errorType, transientFailures, fatalFailures, timingValues, configured);
+        long delay = calculateFailedRequestDelay(errorType, sub.getTransientFailures(), sub.getFatalFailures(),
+                                                 timingValues(sub), configured);
         if (errorType == ErrorType.TRANSIENT) {
             handleTransientlyFailed(jrtReq, sub, delay, connection);
         } else {
@@ -203,17 +238,17 @@ public class JRTConfigRequester implements RequestWaiter {
                                          JRTConfigSubscription<ConfigInstance> sub,
                                          long delay,
                                          Connection connection) {
-        transientFailures++;
+        sub.setTransientFailures(sub.getTransientFailures() + 1);
         if (suspendWarningLogged.isBefore(Instant.now().minus(delayBetweenWarnings))) {
             log.log(LogLevel.INFO, "Connection to " + connection.getAddress() +
                     " failed or timed out, clients will keep existing config, will keep trying.");
             suspendWarningLogged = Instant.now();
         }
         if (sub.getState() != ConfigSubscription.State.OPEN) return;
-        scheduleNextRequest(jrtReq, sub, delay, calculateErrorTimeout());
+        scheduleNextRequest(jrtReq, sub, delay, calculateErrorTimeout(timingValues(sub)));
     }
 
-    private long calculateErrorTimeout() {
+    private long calculateErrorTimeout(TimingValues timingValues) {
         return timingValues.getPlusMinusFractionRandom(timingValues.getErrorTimeout(), randomFraction);
     }
 
@@ -229,22 +264,22 @@ public class JRTConfigRequester implements RequestWaiter {
     private void handleFatallyFailed(JRTClientConfigRequest jrtReq,
                                      JRTConfigSubscription<ConfigInstance> sub, long delay) {
         if (sub.getState() != ConfigSubscription.State.OPEN) return;
-        fatalFailures++;
+        sub.setFatalFailures(sub.getFatalFailures() + 1);
         // The logging depends on whether we are configured or not.
         Level logLevel = sub.getConfigState().getConfig() == null ? LogLevel.DEBUG : LogLevel.INFO;
         String logMessage = "Request for config " + jrtReq.getShortDescription() + "' failed with error code " +
                 jrtReq.errorCode() + " (" + jrtReq.errorMessage() + "), scheduling new connect " +
                 " in " + delay + " ms";
         log.log(logLevel, logMessage);
-        scheduleNextRequest(jrtReq, sub, delay, calculateErrorTimeout());
+        scheduleNextRequest(jrtReq, sub, delay, calculateErrorTimeout(timingValues(sub)));
     }
 
     private void handleOKRequest(JRTClientConfigRequest jrtReq,
                                  JRTConfigSubscription<ConfigInstance> sub,
                                  Connection connection) {
         // Reset counters pertaining to error handling here
-        fatalFailures = 0;
-        transientFailures = 0;
+        sub.setFatalFailures(0);
+        sub.setTransientFailures(0);
         suspendWarningLogged = Instant.MIN;
         noApplicationWarningLogged = Instant.MIN;
         connection.setSuccess();
@@ -258,22 +293,28 @@ public class JRTConfigRequester implements RequestWaiter {
             }
         }
         if (sub.getState() != ConfigSubscription.State.OPEN) return;
-        scheduleNextRequest(jrtReq, sub, calculateSuccessDelay(), calculateSuccessTimeout());
+        TimingValues timingValues = timingValues(sub);
+        scheduleNextRequest(jrtReq, sub, calculateSuccessDelay(timingValues), calculateSuccessTimeout(timingValues));
     }
 
-    private long calculateSuccessTimeout() {
+    private long calculateSuccessTimeout(TimingValues timingValues) {
         return timingValues.getPlusMinusFractionRandom(timingValues.getSuccessTimeout(), randomFraction);
     }
 
-    private long calculateSuccessDelay() {
+    private long calculateSuccessDelay(TimingValues timingValues) {
         return timingValues.getPlusMinusFractionRandom(timingValues.getFixedDelay(), randomFraction);
     }
 
+    /** Returns the timing values of the given subscription, or those of this if it has none */
+    private TimingValues timingValues(JRTConfigSubscription<?> sub) {
+        return sub.timingValues() != null ? sub.timingValues() : timingValues;
+    }
+
     private void scheduleNextRequest(JRTClientConfigRequest jrtReq, JRTConfigSubscription<?> sub, long delay, long timeout) {
         if (delay < 0) delay = 0;
         JRTClientConfigRequest jrtReqNew = jrtReq.nextRequest(timeout);
         if (log.isLoggable(LogLevel.DEBUG)) {
-            log.log(LogLevel.DEBUG, "My timing values: " + timingValues);
+            log.log(LogLevel.DEBUG, "My timing values: " + timingValues(sub));
             log.log(LogLevel.DEBUG, "Scheduling new request " + delay + " millis from now for " + jrtReqNew.getConfigKey());
         }
         scheduler.schedule(new GetConfigTask(jrtReqNew, sub), delay, TimeUnit.MILLISECONDS);
@@ -296,7 +337,15 @@ public class JRTConfigRequester implements RequestWaiter {
         }
     }
 
+    /** Closes this, unless it is shared, and some other subscriber has not yet closed it */
     public void close() {
+        if (sharedSources != null) {
+            synchronized (sharedRequesters) {
+                if (--users > 0) return;
+                sharedRequesters.remove(sharedSources);
+            }
+        }
+
         // Fake that we have logged to avoid printing warnings after this
         suspendWarningLogged = Instant.now();
         noApplicationWarningLogged = Instant.now();
@@ -330,14 +379,6 @@ public class JRTConfigRequester implements RequestWaiter {
         }
     }
 
-    int getTransientFailures() {
-        return transientFailures;
-    }
-
-    int getFatalFailures() {
-        return fatalFailures;
-    }
-
     // TODO: Should be package private, used in integrationtest.rb in system tests
     public ConnectionPool getConnectionPool() {
         return connectionPool;
@@ -12,14 +12,14 @@ import com.yahoo.config.subscription.ConfigSubscriber;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.ConfigPayload;
-import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.TimingValues;
 import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
 import com.yahoo.vespa.config.protocol.Payload;
 
 /**
- * A JRT config subscription uses one {@link JRTConfigRequester} to fetch config using Vespa RPC from a config source, typically proxy or server
+ * A JRT config subscription uses one {@link JRTConfigRequester} to fetch config using Vespa RPC from a config source, typically proxy or server.
+ * The requester is shared with all other subscriptions to the same sources in this process.
  *
  * @author vegardh
  */
@@ -31,6 +31,11 @@ public class JRTConfigSubscription<T extends ConfigInstance> extends ConfigSubsc
     // Last time we got an OK JRT callback for this
     private long lastOK = 0;
 
+    // Failures since the last OK JRT callback for this, used to back off requests for this subscription only.
+    // Updated by the one callback or scheduled request in flight for this at any time.
+    private volatile int fatalFailures = 0; // independent of transientFailures
+    private volatile int transientFailures = 0; // independent of fatalFailures
+
     /**
      * The queue containing either nothing or the one (newest) request that has got callback from JRT,
      * but has not yet been handled.
@@ -153,7 +158,7 @@ public class JRTConfigSubscription<T extends ConfigInstance> extends ConfigSubsc
     private JRTConfigRequester getRequester() {
         JRTConfigRequester requester = subscriber.requesters().get(sources);
         if (requester==null) {
-            requester = new JRTConfigRequester(new JRTConnectionPool(sources), timingValues);
+            requester = JRTConfigRequester.shared(sources, timingValues);
             subscriber.requesters().put(sources, requester);
         }
         return requester;
@@ -194,6 +199,22 @@ public class JRTConfigSubscription<T extends ConfigInstance> extends ConfigSubsc
         this.lastOK = lastCallBackOKTS;
     }
 
+    int getFatalFailures() {
+        return fatalFailures;
+    }
+
+    void setFatalFailures(int fatalFailures) {
+        this.fatalFailures = fatalFailures;
+    }
+
+    int getTransientFailures() {
+        return transientFailures;
+    }
+
+    void setTransientFailures(int transientFailures) {
+        this.transientFailures = transientFailures;
+    }
+
     // For debugging
     @SuppressWarnings("UnusedDeclaration")
     static void printStatus(JRTClientConfigRequest request, String message) {
@@ -3,6 +3,7 @@ package com.yahoo.vespa.config;
 
 import com.yahoo.config.ConfigBuilder;
 import com.yahoo.config.ConfigInstance;
+import com.yahoo.config.FieldSetter;
 import com.yahoo.config.FileReference;
 import com.yahoo.config.UrlReference;
 import com.yahoo.log.LogLevel;
@@ -30,6 +31,9 @@ import java.util.logging.Logger;
 /**
  * A utility class that can be used to apply a payload to a config builder.
  *
+ * Fields are set through the {@link FieldSetter} of generated builders, and through reflection for builders
+ * generated without one.
+ *
  * TODO: This can be refactored a lot, since many of the reflection methods are duplicated
  *
  * @author Ulf Lilleengen, hmusum, Tony Vaagenes
@@ -42,15 +46,22 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
     private final ConfigTransformer.PathAcquirer pathAcquirer;
     private final UrlDownloader urlDownloader;
     private final Stack<NamedBuilder> stack = new Stack<>();
+    private final boolean useFieldSetters;
 
     public ConfigPayloadApplier(T builder) {
         this(builder, new IdentityPathAcquirer(), null);
     }
 
     public ConfigPayloadApplier(T builder, ConfigTransformer.PathAcquirer pathAcquirer, UrlDownloader urlDownloader) {
+        this(builder, pathAcquirer, urlDownloader, true);
+    }
+
+    ConfigPayloadApplier(T builder, ConfigTransformer.PathAcquirer pathAcquirer, UrlDownloader urlDownloader,
+                         boolean useFieldSetters) {
         this.rootBuilder = builder;
         this.pathAcquirer = pathAcquirer;
         this.urlDownloader = urlDownloader;
+        this.useFieldSetters = useFieldSetters;
         debug("rootBuilder=" + rootBuilder);
     }
 
@@ -97,8 +108,10 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
 
     private void handleArrayEntry(int idx, Inspector inspector) {
         try {
-            trace("entry, idx=" + idx);
-            trace("top of stack=" + stack.peek().toString());
+            if (log.isLoggable(LogLevel.SPAM)) {
+                trace("entry, idx=" + idx);
+                trace("top of stack=" + stack.peek().toString());
+            }
             String name = stack.peek().nameStack().peek();
             if (inspector.type().equals(Type.OBJECT)) {
                 NamedBuilder builder = createBuilder(stack.peek(), name);
@@ -133,7 +146,11 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
         if (!stack.empty()) {
             trace("builder= " + builder);
             try {
-                invokeSetter(stack.peek().builder, builder.peekName(), builder.builder);
+                FieldSetter setter = fieldSetter(stack.peek().builder);
+                if (setter != null)
+                    setter.setStruct(stack.peek().builder, builder.peekName(), builder.builder);
+                else
+                    invokeSetter(stack.peek().builder, builder.peekName(), builder.builder);
             } catch (Exception e) {
                 throw new RuntimeException("Could not set '" + builder.peekName() +
                         "' for value '" + builder.builder() + "'", e);
@@ -208,6 +225,16 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
         ConfigBuilder builder = parent.builder();
         String methodName = parent.peekName();
         //trace("class to obtain method from: " + builder.getClass().getName());
+        FieldSetter setter = fieldSetter(builder);
+        if (setter != null && value instanceof ConfigBuilder) {
+            setter.putStruct(builder, methodName, key, (ConfigBuilder) value);
+            return;
+        }
+        if (setter != null && value != null) {
+            if ( ! setter.putValue(builder, methodName, key, (String) value, this::resolvePath, this::resolveUrl))
+                log.log(LogLevel.INFO, "Skipping unknown field " + methodName + " in " + rootBuilder);
+            return;
+        }
         try {
             // Need to convert reference into actual path if 'path' type is used
             if (isPathField(builder, methodName)) {
@@ -231,6 +258,8 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
 
     private boolean isMapField(NamedBuilder parentBuilder, String name) {
         ConfigBuilder builder = parentBuilder.builder();
+        FieldSetter setter = fieldSetter(builder);
+        if (setter != null) return setter.isMap(name);
         try {
             Field f = builder.getClass().getField(name);
             return f.getType().getName().equals("java.util.Map");
@@ -241,8 +270,14 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
 
     NamedBuilder createBuilder(NamedBuilder parentBuilder, String name) {
         Object builder = parentBuilder.builder();
-        Object newBuilder = getBuilderForStruct(name, builder.getClass().getDeclaringClass());
-        if (newBuilder == null) return null;
+        FieldSetter setter = fieldSetter(builder);
+        Object newBuilder = setter != null ? setter.newStruct(name) : getBuilderForStruct(name, builder.getClass().getDeclaringClass());
+        if (newBuilder == null) {
+            if (setter != null)
+                log.info("Could not find struct '" + name + "' in " + builder.getClass().getName() +
+                         ". Ignoring it, assuming it's been added to a newer version of the config.");
+            return null;
+        }
         trace("New builder for " + name + "=" + newBuilder);
         trace("Pushing builder for " + name + "=" + newBuilder + " onto stack");
         return new NamedBuilder((ConfigBuilder) newBuilder, name);
@@ -256,12 +291,20 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
         String name = peek.nameStack().pop();
         printStack();
         ConfigBuilder builder = peek.builder();
-        trace("name=" + name + ",builder=" + builder + ",value=" + value.toString());
+        if (log.isLoggable(LogLevel.SPAM)) {
+            trace("name=" + name + ",builder=" + builder + ",value=" + value.toString());
+        }
         setValueForLeafNode(builder, name, value);
     }
 
     // Sets values for leaf nodes (uses private accessors that take string as argument)
-    private void setValueForLeafNode(Object builder, String methodName, Inspector value) {
+    private void setValueForLeafNode(ConfigBuilder builder, String methodName, Inspector value) {
+        FieldSetter setter = fieldSetter(builder);
+        if (setter != null && value.type() != Type.NIX) {
+            if ( ! setter.setValue(builder, methodName, (String) getValueFromInspector(value), this::resolvePath, this::resolveUrl))
+                log.log(LogLevel.INFO, "Skipping unknown field " + methodName + " in " + builder.getClass());
+            return;
+        }
         try {
             // Need to convert reference into actual path if 'path' type is used
             if (isPathField(builder, methodName)) {
@@ -285,8 +328,8 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
     }
 
     private FileReference resolvePath(String value) {
-        Path path = pathAcquirer.getPath(newFileReference(value));
-        return newFileReference(path.toString());
+        Path path = pathAcquirer.getPath(new FileReference(value));
+        return new FileReference(path.toString());
     }
 
     private UrlReference resolveUrl(String url) {
@@ -297,16 +340,25 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
         return new UrlReference(file.getAbsolutePath());
     }
 
-    private FileReference newFileReference(String fileReference) {
-        try {
-            Constructor<FileReference> constructor = FileReference.class.getDeclaredConstructor(String.class);
-            constructor.setAccessible(true);
-            return constructor.newInstance(fileReference);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed invoking FileReference constructor.", e);
-        }
+    /** Returns the field setter of the given generated builder, or null if it has none, or they are not used */
+    private FieldSetter fieldSetter(Object builder) {
+        return useFieldSetters ? fieldSetters.get(builder.getClass()) : null;
     }
 
+    private static final ClassValue<FieldSetter> fieldSetters = new ClassValue<FieldSetter>() {
+        @Override
+        protected FieldSetter computeValue(Class<?> builderClass) {
+            try {
+                Field field = builderClass.getDeclaredField("__fieldSetter");
+                if ( ! FieldSetter.class.isAssignableFrom(field.getType())) return null;
+                field.setAccessible(true);
+                return (FieldSetter) field.get(null);
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    };
+
     private final Map<String, Method> methodCache = new HashMap<>();
     private static String methodCacheKey(Object builder, String methodName, Object[] params) {
         StringBuilder sb = new StringBuilder();
@@ -492,7 +544,9 @@ public class ConfigPayloadApplier<T extends ConfigInstance.Builder> {
     }
 
     private void printStack() {
-        trace("stack=" + stack.toString());
+        if (log.isLoggable(LogLevel.SPAM)) { // the stack holds a name per array element, so this is costly to build
+            trace("stack=" + stack.toString());
+        }
     }
 
     /**
@@ -3,6 +3,9 @@ package com.yahoo.vespa.config;
 
 import com.yahoo.jrt.Supervisor;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author hmusum
  */
@@ -19,4 +22,10 @@ public interface ConnectionPool {
     int getSize();
 
     Supervisor getSupervisor();
+
+    /** Returns all the connections of this, for spreading requests over them */
+    default List<Connection> getConnections() {
+        Connection current = getCurrent();
+        return current == null ? Collections.emptyList() : Collections.singletonList(current);
+    }
 }
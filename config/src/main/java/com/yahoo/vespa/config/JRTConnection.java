@@ -68,6 +68,12 @@ public class JRTConnection implements Connection {
         return target;
     }
 
+    /** Closes the target of this, if it is connected */
+    public synchronized void close() {
+        if (target != null) target.close();
+        target = null;
+    }
+
     @Override
     public synchronized void setError(int errorCode) {
         lastFailure = System.currentTimeMillis();
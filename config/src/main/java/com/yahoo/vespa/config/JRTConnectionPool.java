@@ -90,6 +90,11 @@ public class JRTConnectionPool implements ConnectionPool {
         return ret;
     }
 
+    @Override
+    public List<Connection> getConnections() {
+        return new ArrayList<>(getSources());
+    }
+
     ConfigSourceSet getSourceSet() {
         return sourceSet;
     }
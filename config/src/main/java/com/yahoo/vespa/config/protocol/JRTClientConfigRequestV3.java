@@ -23,6 +23,14 @@ import java.util.Optional;
  */
 public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
 
+    /** Whether this client accepts payloads as deltas from the payload it has */
+    private final boolean acceptDeltas;
+
+    /** The payload of the config with the md5 of this request, if known and deltas are accepted */
+    private final Optional<Payload> basePayload;
+
+    private Payload newPayload = null;
+
     protected JRTClientConfigRequestV3(ConfigKey<?> key,
                                        String hostname,
                                        DefContent defSchema,
@@ -32,7 +40,24 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                                        Trace trace,
                                        CompressionType compressionType,
                                        Optional<VespaVersion> vespaVersion) {
-        super(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion);
+        this(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion, false, Optional.empty());
+    }
+
+    protected JRTClientConfigRequestV3(ConfigKey<?> key,
+                                       String hostname,
+                                       DefContent defSchema,
+                                       String configMd5,
+                                       long generation,
+                                       long timeout,
+                                       Trace trace,
+                                       CompressionType compressionType,
+                                       Optional<VespaVersion> vespaVersion,
+                                       boolean acceptDeltas,
+                                       Optional<Payload> basePayload) {
+        super(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion,
+              acceptDeltas && basePayload.isPresent());
+        this.acceptDeltas = acceptDeltas;
+        this.basePayload = acceptDeltas ? basePayload : Optional.empty();
     }
 
     @Override
@@ -47,9 +72,32 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
 
     @Override
     public Payload getNewPayload() {
+        if (newPayload == null)
+            newPayload = createNewPayload();
+        return newPayload;
+    }
+
+    private Payload createNewPayload() {
         CompressionInfo compressionInfo = getResponseData().getCompressionInfo();
         Utf8Array payload = new Utf8Array(request.returnValues().get(1).asData());
-        return Payload.from(payload, compressionInfo);
+        String deltaBase = getResponseData().getResponseDeltaBase();
+        if (deltaBase.isEmpty()) return Payload.from(payload, compressionInfo);
+
+        if ( ! basePayload.isPresent() || ! deltaBase.equals(getRequestConfigMd5()))
+            throw new IllegalArgumentException("Got a delta from config with md5 " + deltaBase +
+                                               ", but has the payload of config with md5 " + getRequestConfigMd5());
+        byte[] delta = Payload.from(payload, compressionInfo).withCompression(CompressionType.UNCOMPRESSED).getData().getBytes();
+        byte[] base = basePayload.get().withCompression(CompressionType.UNCOMPRESSED).getData().getBytes();
+        byte[] data = PayloadDelta.apply(base, delta);
+        return Payload.from(new Utf8Array(data), CompressionInfo.create(CompressionType.UNCOMPRESSED, data.length));
+    }
+
+    /** Returns the payload of the config the next request will have, if known */
+    private Optional<Payload> nextBasePayload() {
+        if ( ! acceptDeltas || isError()) return basePayload;
+        if (request.returnValues().size() > 1 && request.returnValues().get(1).asData().length > 0)
+            return Optional.of(getNewPayload());
+        return hasUpdatedConfig() ? Optional.empty() : basePayload;
     }
 
     @Override
@@ -67,13 +115,27 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                 timeout,
                 Trace.createNew(),
                 requestData.getCompressionType(),
-                requestData.getVespaVersion());
+                requestData.getVespaVersion(),
+                acceptDeltas,
+                nextBasePayload());
     }
 
     public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub,
                                                                                   Trace trace,
                                                                                   CompressionType compressionType,
                                                                                   Optional<VespaVersion> vespaVersion) {
+        return createFromSub(sub, trace, compressionType, vespaVersion, false);
+    }
+
+    /**
+     * Creates a request for the config of the given subscription. If deltas are accepted, later requests created by
+     * {@link #nextRequest} will accept payloads as deltas from the payload of the last config received.
+     */
+    public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub,
+                                                                                  Trace trace,
+                                                                                  CompressionType compressionType,
+                                                                                  Optional<VespaVersion> vespaVersion,
+                                                                                  boolean acceptDeltas) {
         String hostname = ConfigUtils.getCanonicalHostName();
         ConfigKey<T> key = sub.getKey();
         ConfigSubscription.ConfigState<T> configState = sub.getConfigState();
@@ -86,7 +148,9 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                 sub.timingValues().getSubscribeTimeout(),
                 trace,
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                acceptDeltas,
+                Optional.empty());
     }
 
 
@@ -95,6 +159,20 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                                                        Trace trace,
                                                        CompressionType compressionType,
                                                        Optional<VespaVersion> vespaVersion) {
+        return createFromRaw(config, serverTimeout, trace, compressionType, vespaVersion, false);
+    }
+
+    /**
+     * Creates a request for the given config. If deltas are accepted, the request accepts a payload which is
+     * a delta from the payload of the given config.
+     */
+    public static JRTClientConfigRequest createFromRaw(RawConfig config,
+                                                       long serverTimeout,
+                                                       Trace trace,
+                                                       CompressionType compressionType,
+                                                       Optional<VespaVersion> vespaVersion,
+                                                       boolean acceptDeltas) {
+        Payload payload = config.getPayload();
         String hostname = ConfigUtils.getCanonicalHostName();
         return createWithParams(config.getKey(),
                 DefContent.fromList(config.getDefContent()),
@@ -104,7 +182,9 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                 serverTimeout,
                 trace,
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                acceptDeltas,
+                payload != null && payload.getData().getByteLength() > 0 ? Optional.of(payload) : Optional.empty());
     }
 
 
@@ -117,6 +197,21 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                                                           Trace trace,
                                                           CompressionType compressionType,
                                                           Optional<VespaVersion> vespaVersion) {
+        return createWithParams(reqKey, defContent, hostname, configMd5, generation, serverTimeout, trace,
+                                compressionType, vespaVersion, false, Optional.empty());
+    }
+
+    public static JRTClientConfigRequest createWithParams(ConfigKey<?> reqKey,
+                                                          DefContent defContent,
+                                                          String hostname,
+                                                          String configMd5,
+                                                          long generation,
+                                                          long serverTimeout,
+                                                          Trace trace,
+                                                          CompressionType compressionType,
+                                                          Optional<VespaVersion> vespaVersion,
+                                                          boolean acceptDeltas,
+                                                          Optional<Payload> basePayload) {
         return new JRTClientConfigRequestV3(reqKey,
                 hostname,
                 defContent,
@@ -125,7 +220,9 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                 serverTimeout,
                 trace,
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                acceptDeltas,
+                basePayload);
     }
 
     @Override
@@ -19,16 +19,18 @@ public class JRTConfigRequestFactory {
     public static final String VESPA_CONFIG_PROTOCOL_VERSION = "VESPA_CONFIG_PROTOCOL_VERSION"; // Unused, but should be used if we add a new version
     private static final CompressionType compressionType = getCompressionType();
     private static final String VESPA_CONFIG_PROTOCOL_COMPRESSION = "VESPA_CONFIG_PROTOCOL_COMPRESSION";
+    private static final String VESPA_CONFIG_PROTOCOL_DELTAS = "VESPA_CONFIG_PROTOCOL_DELTAS";
+    private static final boolean acceptDeltas = getAcceptDeltas();
     public static final String VESPA_VERSION = "VESPA_VERSION";
 
     public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub) {
         // TODO: Get trace from caller
-        return JRTClientConfigRequestV3.createFromSub(sub, Trace.createNew(), compressionType, getVespaVersion());
+        return JRTClientConfigRequestV3.createFromSub(sub, Trace.createNew(), compressionType, getVespaVersion(), acceptDeltas);
     }
 
     public static JRTClientConfigRequest createFromRaw(RawConfig config, long serverTimeout) {
         // TODO: Get trace from caller
-        return JRTClientConfigRequestV3.createFromRaw(config, serverTimeout, Trace.createNew(), compressionType, getVespaVersion());
+        return JRTClientConfigRequestV3.createFromRaw(config, serverTimeout, Trace.createNew(), compressionType, getVespaVersion(), acceptDeltas);
     }
 
     public static String getProtocolVersion() {
@@ -53,6 +55,17 @@ public class JRTConfigRequestFactory {
         return CompressionType.valueOf(ConfigUtils.getEnvValue("LZ4", env, alternateEnv, property));
     }
 
+    /** Returns whether config payloads may be received as deltas from the previous payload, off by default */
+    public static boolean getAcceptDeltas() {
+        return getAcceptDeltas(System.getenv(VESPA_CONFIG_PROTOCOL_DELTAS),
+                               System.getenv("services__config_protocol_deltas"),
+                               System.getProperty(VESPA_CONFIG_PROTOCOL_DELTAS));
+    }
+
+    static boolean getAcceptDeltas(String env, String alternateEnv, String property) {
+        return Boolean.parseBoolean(ConfigUtils.getEnvValue("false", env, alternateEnv, property));
+    }
+
     static Optional<VespaVersion> getVespaVersion() {
         final String envValue = ConfigUtils.getEnvValue("", System.getenv(VESPA_VERSION), System.getProperty(VESPA_VERSION));
         if (envValue != null && !envValue.isEmpty()) {
@@ -38,6 +38,23 @@ public interface JRTServerConfigRequest extends JRTConfigRequest, GetConfigReque
      */
     void addOkResponse(Payload payload, long generation, boolean internalRedeployment, String configMd5);
 
+    /**
+     * Signal that the request was handled and provide return values typically needed by a client. If the client
+     * accepts it, the payload is sent as a delta from the payload the client already has, when that is known
+     * by the given deltas.
+     *
+     * @param payload The config payload that the client should receive.
+     * @param generation The config generation of the given payload.
+     * @param internalRedeployment whether this payload was generated from an internal redeployment not an
+     *                             application package change
+     * @param configMd5 The md5sum of the given payload.
+     * @param deltas the payloads previously sent from this server, and the deltas between them
+     */
+    default void addOkResponse(Payload payload, long generation, boolean internalRedeployment, String configMd5,
+                               PayloadDeltas deltas) {
+        addOkResponse(payload, generation, internalRedeployment, configMd5);
+    }
+
     /**
      * Get the current config md5 of the client config.
      *
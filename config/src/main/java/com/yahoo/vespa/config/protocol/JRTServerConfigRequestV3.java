@@ -5,10 +5,12 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Request;
 import com.yahoo.log.LogLevel;
+import com.yahoo.text.Utf8Array;
 import com.yahoo.vespa.config.util.ConfigUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * The V3 config protocol implemented on the server side. The V3 protocol uses 2 fields JRT
@@ -16,6 +18,8 @@ import java.io.IOException;
  * * A metadata field containing json data describing config generation, md5 and compression info
  * * A data field containing compressed or uncompressed json config payload. This field can be empty if the payload
  *   has not changed since last request, triggering an optimization at the client where the previous payload is used instead.
+ *   If the client accepts a delta, and the server knows the client's current payload, this field may instead contain
+ *   a {@link PayloadDelta} from that payload, which is indicated by the deltaBase field of the metadata.
  *
  * The implementation of addOkResponse is optimized for doing as little copying of payload data as possible, ensuring
  * that we get a lower memory footprint.
@@ -34,10 +38,28 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
 
     @Override
     public void addOkResponse(Payload payload, long generation, boolean internalRedeploy, String configMd5) {
+        addResponse(payload, generation, internalRedeploy, configMd5, Optional.empty());
+    }
+
+    @Override
+    public void addOkResponse(Payload payload, long generation, boolean internalRedeploy, String configMd5,
+                              PayloadDeltas deltas) {
+        boolean changedConfig = !configMd5.equals(getRequestConfigMd5());
+        boolean changedConfigAndNewGeneration = changedConfig && ConfigUtils.isGenerationNewer(generation, getRequestGeneration());
+        // The payload is remembered also when this client does not accept a delta, as it may become the base of others
+        Optional<byte[]> delta = changedConfigAndNewGeneration
+                                 ? deltas.delta(acceptsDelta(), getRequestConfigMd5(), payload, configMd5)
+                                 : Optional.empty();
+        addResponse(payload, generation, internalRedeploy, configMd5, delta);
+    }
+
+    private void addResponse(Payload payload, long generation, boolean internalRedeploy, String configMd5, Optional<byte[]> delta) {
         this.internalRedeploy = internalRedeploy;
         boolean changedConfig = !configMd5.equals(getRequestConfigMd5());
         boolean changedConfigAndNewGeneration = changedConfig && ConfigUtils.isGenerationNewer(generation, getRequestGeneration());
-        Payload responsePayload = payload.withCompression(getCompressionType());
+        Payload responsePayload = delta.map(bytes -> Payload.from(new Utf8Array(bytes), CompressionInfo.create(CompressionType.UNCOMPRESSED, bytes.length)))
+                                       .orElse(payload)
+                                       .withCompression(getCompressionType());
         ByteArrayOutputStream byteArrayOutputStream = new NoCopyByteArrayOutputStream(4096);
         try {
             JsonGenerator jsonGenerator = createJsonGenerator(byteArrayOutputStream);
@@ -46,6 +68,8 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_CONFIG_MD5, configMd5);
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_CONFIG_GENERATION, generation);
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_INTERNAL_REDEPLOY, internalRedeploy);
+            if (delta.isPresent())
+                setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_DELTA_BASE, getRequestConfigMd5());
             jsonGenerator.writeObjectFieldStart(SlimeResponseData.RESPONSE_COMPRESSION_INFO);
             if (responsePayload == null) {
                 throw new RuntimeException("Payload is null for ' " + this + ", not able to create response");
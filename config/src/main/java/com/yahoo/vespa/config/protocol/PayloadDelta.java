@@ -0,0 +1,162 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Creates and applies binary deltas between config payloads, so a client which has the previous payload of a config
+ * may be sent only what changed, instead of the whole payload.
+ *
+ * A delta is the size of the target as a varint, followed by instructions. Each instruction starts with a varint
+ * which is the length of the instruction shifted left once, with the lowest bit set for an insert. An insert is
+ * followed by the bytes to insert, and a copy by the varint offset in the base to copy from.
+ */
+public class PayloadDelta {
+
+    /** The number of bytes which must be equal for a match to be used */
+    private static final int BLOCK_SIZE = 32;
+    private static final int HASH_MULTIPLIER = 31;
+
+    private PayloadDelta() { }
+
+    /** Returns a delta which transforms the given base into the given target when applied to it */
+    public static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream(Math.max(16, target.length / 16));
+        writeVarint(delta, target.length);
+
+        int[] index = index(base);
+        int mask = index.length - 1;
+        int power = power();
+        int pending = 0; // start of bytes not yet written to the delta
+        int position = 0;
+        int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+        while (position + BLOCK_SIZE <= target.length) {
+            int candidate = index[slot(hash, mask)] - 1;
+            if (candidate >= 0 && equal(base, candidate, target, position)) {
+                int start = position;
+                int baseStart = candidate;
+                while (start > pending && baseStart > 0 && target[start - 1] == base[baseStart - 1]) {
+                    start--;
+                    baseStart--;
+                }
+                int end = position + BLOCK_SIZE;
+                int baseEnd = candidate + BLOCK_SIZE;
+                while (end < target.length && baseEnd < base.length && target[end] == base[baseEnd]) {
+                    end++;
+                    baseEnd++;
+                }
+                writeInsert(delta, target, pending, start);
+                writeVarint(delta, (end - start) << 1);
+                writeVarint(delta, baseStart);
+                pending = position = end;
+                if (position + BLOCK_SIZE <= target.length)
+                    hash = hash(target, position);
+            }
+            else {
+                if (position + BLOCK_SIZE < target.length)
+                    hash = (hash - target[position] * power) * HASH_MULTIPLIER + target[position + BLOCK_SIZE];
+                position++;
+            }
+        }
+        writeInsert(delta, target, pending, target.length);
+        return delta.toByteArray();
+    }
+
+    /**
+     * Returns the target payload created by applying the given delta to the given base.
+     *
+     * @throws IllegalArgumentException if the delta is invalid, or was not created from this base
+     */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] position = { 0 };
+        byte[] target = new byte[readVarint(delta, position)];
+        int written = 0;
+        while (position[0] < delta.length) {
+            int instruction = readVarint(delta, position);
+            int length = instruction >>> 1;
+            if (length > target.length - written)
+                throw new IllegalArgumentException("Delta produces more than the " + target.length + " bytes of its target");
+            if ((instruction & 1) == 1) {
+                if (length > delta.length - position[0])
+                    throw new IllegalArgumentException("Delta ends in the middle of an insert");
+                System.arraycopy(delta, position[0], target, written, length);
+                position[0] += length;
+            }
+            else {
+                int offset = readVarint(delta, position);
+                if (offset > base.length - length)
+                    throw new IllegalArgumentException("Delta copies outside its base of " + base.length + " bytes");
+                System.arraycopy(base, offset, target, written, length);
+            }
+            written += length;
+        }
+        if (written != target.length)
+            throw new IllegalArgumentException("Delta produces " + written + " bytes, but its target is " + target.length);
+        return target;
+    }
+
+    /** Returns a hash table of the offsets + 1 of the blocks starting at multiples of the block size in the base */
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK_SIZE;
+        int[] index = new int[Math.max(1, Integer.highestOneBit(Math.max(1, blocks)) << 2)];
+        int mask = index.length - 1;
+        for (int offset = (blocks - 1) * BLOCK_SIZE; offset >= 0; offset -= BLOCK_SIZE) // the first occurrence wins
+            index[slot(hash(base, offset), mask)] = offset + 1;
+        return index;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++)
+            hash = hash * HASH_MULTIPLIER + data[i];
+        return hash;
+    }
+
+    /** Returns HASH_MULTIPLIER to the power of BLOCK_SIZE - 1, the weight of the first byte of a block in its hash */
+    private static int power() {
+        int power = 1;
+        for (int i = 1; i < BLOCK_SIZE; i++)
+            power *= HASH_MULTIPLIER;
+        return power;
+    }
+
+    private static int slot(int hash, int mask) {
+        return ((hash * 0x9E3779B1) >>> 7) & mask;
+    }
+
+    private static boolean equal(byte[] base, int baseOffset, byte[] target, int targetOffset) {
+        return Arrays.equals(base, baseOffset, baseOffset + BLOCK_SIZE, target, targetOffset, targetOffset + BLOCK_SIZE);
+    }
+
+    private static void writeInsert(ByteArrayOutputStream delta, byte[] target, int start, int end) {
+        if (end == start) return;
+        writeVarint(delta, ((end - start) << 1) | 1);
+        delta.write(target, start, end - start);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= data.length)
+                throw new IllegalArgumentException("Delta ends in the middle of a number");
+            byte b = data[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0)
+                    throw new IllegalArgumentException("Delta contains a negative number");
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Delta contains a number of more than 5 bytes");
+    }
+
+}
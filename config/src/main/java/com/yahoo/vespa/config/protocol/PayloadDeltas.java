@@ -0,0 +1,98 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Remembers the uncompressed payloads of large configs sent from a server, by config md5, and creates and remembers
+ * deltas between them, for clients which accept a {@link PayloadDelta} against the config they already have.
+ * Payloads and deltas are evicted in least recently used order when the total size exceeds the limit. Nothing is
+ * remembered until some client has accepted a delta, so servers without such clients pay nothing for this.
+ *
+ * This is thread safe.
+ */
+public class PayloadDeltas {
+
+    /** Payloads smaller than this are always sent in full */
+    public static final int defaultMinPayloadSize = 64 * 1024;
+
+    /** The default maximum number of bytes of payloads and deltas to keep */
+    public static final long defaultMaxSize = 256L * 1024 * 1024;
+
+    private final int minPayloadSize;
+    private final long maxSize;
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private volatile boolean deltasAccepted = false;
+
+    public PayloadDeltas() {
+        this(defaultMinPayloadSize, defaultMaxSize);
+    }
+
+    public PayloadDeltas(int minPayloadSize, long maxSize) {
+        this.minPayloadSize = minPayloadSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns a delta from the payload with the given base md5 to the given payload, if the client accepts deltas,
+     * the base payload is known, and the delta is less than half the size of the payload. The given payload is
+     * remembered once some client has accepted deltas, so it may be used as the base of later deltas.
+     *
+     * @param acceptsDelta whether the client this is sent to accepts a delta
+     * @param baseMd5 the md5 of the payload the client has, or empty if it has none
+     */
+    public Optional<byte[]> delta(boolean acceptsDelta, String baseMd5, Payload payload, String configMd5) {
+        if (acceptsDelta) deltasAccepted = true;
+        if ( ! deltasAccepted || uncompressedSize(payload) < minPayloadSize) return Optional.empty();
+
+        byte[] target = get(configMd5);
+        if (target == null) {
+            target = payload.withCompression(CompressionType.UNCOMPRESSED).getData().getBytes();
+            put(configMd5, target);
+        }
+        if ( ! acceptsDelta || baseMd5.isEmpty() || baseMd5.equals(configMd5)) return Optional.empty();
+
+        String deltaKey = baseMd5 + ":" + configMd5;
+        byte[] delta = get(deltaKey);
+        if (delta == null) {
+            byte[] base = get(baseMd5);
+            if (base == null) return Optional.empty();
+
+            delta = PayloadDelta.create(base, target);
+            if (delta.length >= target.length / 2)
+                delta = new byte[0]; // Remember that no useful delta exists
+            put(deltaKey, delta);
+        }
+        return delta.length == 0 ? Optional.empty() : Optional.of(delta);
+    }
+
+    private static int uncompressedSize(Payload payload) {
+        CompressionInfo info = payload.getCompressionInfo();
+        return info.getCompressionType() == CompressionType.UNCOMPRESSED ? payload.getData().getByteLength()
+                                                                       : info.getUncompressedSize();
+    }
+
+    /** Returns the total number of bytes of the payloads and deltas kept by this */
+    public synchronized long size() { return size; }
+
+    private synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, byte[] value) {
+        if (value.length > maxSize) return;
+
+        byte[] previous = entries.put(key, value);
+        size += value.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while (size > maxSize) {
+            size -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+}
@@ -37,7 +37,8 @@ public abstract class SlimeClientConfigRequest implements JRTClientConfigRequest
                                        long timeout,
                                        Trace trace,
                                        CompressionType compressionType,
-                                       Optional<VespaVersion> vespaVersion) {
+                                       Optional<VespaVersion> vespaVersion,
+                                       boolean acceptDelta) {
         Slime data = SlimeRequestData.encodeRequest(key,
                 hostname,
                 defSchema,
@@ -47,7 +48,8 @@ public abstract class SlimeClientConfigRequest implements JRTClientConfigRequest
                 trace,
                 getProtocolVersion(),
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                acceptDelta);
         Request jrtReq = new Request(getJRTMethodName());
         jrtReq.parameters().add(new StringValue(encodeAsUtf8String(data, true)));
 
@@ -26,6 +26,7 @@ class SlimeResponseData {
     static final String RESPONSE_CONFIG_GENERATION = "generation";
     static final String RESPONSE_INTERNAL_REDEPLOY = "internalRedeploy";
     static final String RESPONSE_COMPRESSION_INFO = "compressionInfo";
+    static final String RESPONSE_DELTA_BASE = "deltaBase";
 
     private final Request request;
     private Slime data = null;
@@ -68,6 +69,12 @@ class SlimeResponseData {
         return CompressionInfo.fromSlime(getResponseField(RESPONSE_COMPRESSION_INFO));
     }
 
+    /** Returns the md5 of the config the payload of this is a delta from, or the empty string if it is not a delta */
+    String getResponseDeltaBase() {
+        Inspector inspector = getResponseField(RESPONSE_DELTA_BASE);
+        return inspector.valid() ? inspector.asString() : "";
+    }
+
     boolean getResponseInternalRedeployment() {
         Inspector inspector = getResponseField(RESPONSE_INTERNAL_REDEPLOY);
         return inspector.valid() ? inspector.asBool() : false;
@@ -191,6 +191,11 @@ abstract class SlimeServerConfigRequest implements JRTServerConfigRequest {
         return requestData.getCompressionType();
     }
 
+    /** Returns whether the client has the payload of its current config, and accepts a delta from it */
+    protected boolean acceptsDelta() {
+        return requestData.getAcceptDelta();
+    }
+
     @Override
     public long getTimeout() {
         return requestData.getTimeout();
@@ -2,6 +2,7 @@
 package com.yahoo.config.subscription.impl;
 
 import com.yahoo.foo.SimpletypesConfig;
+import com.yahoo.config.subscription.ConfigSourceSet;
 import com.yahoo.config.subscription.ConfigSubscriber;
 import com.yahoo.jrt.Request;
 import com.yahoo.vespa.config.ConfigKey;
@@ -17,6 +18,8 @@ import java.util.Random;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -158,21 +161,52 @@ public class JRTConfigRequesterTest {
         JRTServerConfigRequestV3 receivedRequest = JRTServerConfigRequestV3.createFromRequest(request);
         assertTrue(receivedRequest.validateParameters());
         assertThat(receivedRequest.getTimeout(), is(timingValues.getSubscribeTimeout()));
-        assertThat(requester.getFatalFailures(), is(0));
-        assertThat(requester.getTransientFailures(), is(0));
+        assertThat(sub.getFatalFailures(), is(0));
+        assertThat(sub.getTransientFailures(), is(0));
+    }
+
+    @Test
+    public void testRequestUsesTimingValuesOfSubscription() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        TimingValues timingValues = getTestTimingValues();
+        MockConnection connection = new MockConnection();
+        JRTConfigRequester requester = new JRTConfigRequester(connection, new TimingValues());
+        requester.request(createSubscription(subscriber, timingValues));
+        JRTServerConfigRequestV3 receivedRequest = JRTServerConfigRequestV3.createFromRequest(connection.getRequest());
+        assertThat(receivedRequest.getTimeout(), is(timingValues.getSubscribeTimeout()));
+    }
+
+    @Test
+    public void testSharedRequesterIsClosedByLastUser() {
+        ConfigSourceSet sources = new ConfigSourceSet("tcp/localhost:1");
+        JRTConfigRequester first = JRTConfigRequester.shared(sources, new TimingValues());
+        JRTConfigRequester second = JRTConfigRequester.shared(sources, new TimingValues());
+        assertSame(first, second);
+        assertNotSame(first, JRTConfigRequester.shared(new ConfigSourceSet("tcp/localhost:2"), new TimingValues()));
+
+        first.close();
+        JRTConfigRequester third = JRTConfigRequester.shared(sources, new TimingValues());
+        assertSame(first, third);
+
+        second.close();
+        third.close();
+        JRTConfigRequester fourth = JRTConfigRequester.shared(sources, new TimingValues());
+        assertNotSame(first, fourth);
+        fourth.close();
     }
 
     @Test
     public void testFatalError() {
         ConfigSubscriber subscriber = new ConfigSubscriber();
         final TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub = createSubscription(subscriber, timingValues);
 
         final MockConnection connection = new MockConnection(new ErrorResponseHandler());
         JRTConfigRequester requester = new JRTConfigRequester(connection, timingValues);
-        requester.request(createSubscription(subscriber, timingValues));
+        requester.request(sub);
         waitUntilResponse(connection);
-        assertThat(requester.getFatalFailures(), is(1));
-        assertThat(requester.getTransientFailures(), is(0));
+        assertThat(sub.getFatalFailures(), is(1));
+        assertThat(sub.getTransientFailures(), is(0));
     }
 
     @Test
@@ -186,21 +220,22 @@ public class JRTConfigRequesterTest {
         JRTConfigRequester requester = new JRTConfigRequester(connection, timingValues);
         requester.request(sub);
         waitUntilResponse(connection);
-        assertThat(requester.getFatalFailures(), is(1));
-        assertThat(requester.getTransientFailures(), is(0));
+        assertThat(sub.getFatalFailures(), is(1));
+        assertThat(sub.getTransientFailures(), is(0));
     }
 
     @Test
     public void testTransientError() {
         ConfigSubscriber subscriber = new ConfigSubscriber();
         final TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub = createSubscription(subscriber, timingValues);
 
         final MockConnection connection = new MockConnection(new ErrorResponseHandler(com.yahoo.jrt.ErrorCode.TIMEOUT));
         JRTConfigRequester requester = new JRTConfigRequester(connection, timingValues);
-        requester.request(createSubscription(subscriber, timingValues));
+        requester.request(sub);
         waitUntilResponse(connection);
-        assertThat(requester.getFatalFailures(), is(0));
-        assertThat(requester.getTransientFailures(), is(1));
+        assertThat(sub.getFatalFailures(), is(0));
+        assertThat(sub.getTransientFailures(), is(1));
     }
 
     @Test
@@ -214,8 +249,24 @@ public class JRTConfigRequesterTest {
         JRTConfigRequester requester = new JRTConfigRequester(connection, timingValues);
         requester.request(sub);
         waitUntilResponse(connection);
-        assertThat(requester.getFatalFailures(), is(0));
-        assertThat(requester.getTransientFailures(), is(1));
+        assertThat(sub.getFatalFailures(), is(0));
+        assertThat(sub.getTransientFailures(), is(1));
+    }
+
+    @Test
+    public void testFailuresAreCountedPerSubscription() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        final TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> failing = createSubscription(subscriber, timingValues, "failing");
+        JRTConfigSubscription<SimpletypesConfig> ok = createSubscription(subscriber, timingValues, "ok");
+
+        final MockConnection connection = new MockConnection(new ErrorForConfigIdResponseHandler("failing"));
+        JRTConfigRequester requester = new JRTConfigRequester(connection, timingValues);
+        requester.request(failing);
+        requester.request(ok);
+        assertThat(failing.getFatalFailures(), is(1));
+        assertThat(ok.getFatalFailures(), is(0));
+        assertThat(ok.getTransientFailures(), is(0));
     }
 
     @Test
@@ -230,8 +281,8 @@ public class JRTConfigRequesterTest {
         assertThat(requester.getConnectionPool(), is(connection));
         requester.request(sub);
         waitUntilResponse(connection);
-        assertThat(requester.getFatalFailures(), is(1));
-        assertThat(requester.getTransientFailures(), is(0));
+        assertThat(sub.getFatalFailures(), is(1));
+        assertThat(sub.getTransientFailures(), is(0));
         // TODO Check that no further request was sent?
     }
 
@@ -277,8 +328,13 @@ public class JRTConfigRequesterTest {
     }
 
     private JRTConfigSubscription<SimpletypesConfig> createSubscription(ConfigSubscriber subscriber, TimingValues timingValues) {
+        return createSubscription(subscriber, timingValues, "testid");
+    }
+
+    private JRTConfigSubscription<SimpletypesConfig> createSubscription(ConfigSubscriber subscriber, TimingValues timingValues,
+                                                                        String configId) {
         return new JRTConfigSubscription<>(
-                new ConfigKey<>(SimpletypesConfig.class, "testid"), subscriber, null, timingValues);
+                new ConfigKey<>(SimpletypesConfig.class, configId), subscriber, null, timingValues);
     }
 
     private SimpletypesConfig config() {
@@ -328,6 +384,24 @@ public class JRTConfigRequesterTest {
         }
     }
 
+    private static class ErrorForConfigIdResponseHandler extends MockConnection.OKResponseHandler {
+        private final String configId;
+
+        public ErrorForConfigIdResponseHandler(String configId) {
+            this.configId = configId;
+        }
+
+        @Override
+        public void run() {
+            if ( ! JRTServerConfigRequestV3.createFromRequest(request()).getConfigKey().getConfigId().equals(configId)) {
+                super.run();
+                return;
+            }
+            request().setError(ErrorCode.INTERNAL_ERROR, "error");
+            requestWaiter().handleRequestDone(request());
+        }
+    }
+
     private static class DelayedResponseHandler extends MockConnection.OKResponseHandler {
         private final long waitTimeMilliSeconds;
 
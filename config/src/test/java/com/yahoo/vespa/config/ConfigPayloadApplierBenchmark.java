@@ -0,0 +1,57 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config;
+
+import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.foo.FunctionTestConfig;
+import com.yahoo.slime.Cursor;
+
+/**
+ * Microbenchmark of applying a config payload to a builder, comparing generated field setters with reflection.
+ */
+public class ConfigPayloadApplierBenchmark {
+
+    private final ConfigPayload payload;
+
+    private ConfigPayloadApplierBenchmark(int structCount) {
+        FunctionTestConfig config = new ConfigGetter<>(FunctionTestConfig.class)
+                .getConfig("file:src/test/resources/configs/function-test/variableaccess.txt");
+        payload = ConfigPayload.fromInstance(config);
+        Cursor root = payload.getSlime().get();
+        for (int i = 0; i < structCount; i++) {
+            Cursor struct = root.field("myarray").addObject();
+            struct.setLong("intval", i);
+            struct.setString("refval", ":parent:");
+            struct.setString("fileVal", "file" + i);
+            struct.setObject("myStruct").setLong("a", i);
+            root.field("intMap").setLong("key" + i, i);
+        }
+    }
+
+    /** Returns the number of payloads applied per second */
+    private double benchmark(int iterations, boolean useFieldSetters) {
+        run(Math.max(iterations / 10, 1), useFieldSetters); // warmup
+        System.gc();
+        long startTime = System.nanoTime();
+        run(iterations, useFieldSetters);
+        long totalTime = System.nanoTime() - startTime;
+        return (double)iterations * 1e9 / totalTime;
+    }
+
+    private void run(int iterations, boolean useFieldSetters) {
+        for (int i = 0; i < iterations; i++) {
+            FunctionTestConfig.Builder builder = new FunctionTestConfig.Builder();
+            new ConfigPayloadApplier<>(builder, new ConfigPayloadApplier.IdentityPathAcquirer(), null, useFieldSetters)
+                    .applyPayload(payload);
+            if (builder.build().myarray().isEmpty()) throw new IllegalStateException("Expected structs to be applied");
+        }
+    }
+
+    public static void main(String[] args) {
+        ConfigPayloadApplierBenchmark benchmark = new ConfigPayloadApplierBenchmark(1000);
+        double reflection = benchmark.benchmark(200, false);
+        double generated = benchmark.benchmark(200, true);
+        System.out.printf("reflection: %8.1f payloads/s, generated field setters: %8.1f payloads/s\n",
+                          reflection, generated);
+    }
+
+}
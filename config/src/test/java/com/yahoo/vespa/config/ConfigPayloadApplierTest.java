@@ -0,0 +1,55 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config;
+
+import com.yahoo.config.ConfigInstance;
+import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.foo.FunctionTestConfig;
+import com.yahoo.foo.MaptypesConfig;
+import com.yahoo.foo.StructtypesConfig;
+import org.junit.Test;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ConfigPayloadApplierTest {
+
+    private static final String functionTestConfigId = "file:src/test/resources/configs/function-test/variableaccess.txt";
+
+    @Test
+    public void generated_field_setters_apply_payloads_like_reflection() throws Exception {
+        assertNotNull(FunctionTestConfig.Builder.class.getDeclaredField("__fieldSetter"));
+
+        FunctionTestConfig config = new ConfigGetter<>(FunctionTestConfig.class).getConfig(functionTestConfigId);
+        assertAppliedAlike(config, FunctionTestConfig.Builder::new, FunctionTestConfig.Builder::build);
+
+        MaptypesConfig maps = new MaptypesConfig.Builder()
+                .boolmap("t", true).intmap("one", 1).longmap("big", 1L << 40).doublemap("pi", 3.14)
+                .stringmap("s", "string").filemap("f", "file")
+                .innermap("i", new MaptypesConfig.Innermap.Builder().foo(3))
+                .nestedmap("n", new MaptypesConfig.Nestedmap.Builder().inner("x", 7))
+                .build();
+        assertAppliedAlike(maps, MaptypesConfig.Builder::new, MaptypesConfig.Builder::build);
+
+        StructtypesConfig structs = new StructtypesConfig.Builder()
+                .simple(new StructtypesConfig.Simple.Builder().name("name").gender(StructtypesConfig.Simple.Gender.FEMALE).emails("a@b"))
+                .simplearr(new StructtypesConfig.Simplearr.Builder().name("first").gender(StructtypesConfig.Simplearr.Gender.MALE))
+                .simplearr(new StructtypesConfig.Simplearr.Builder().name("second").gender(StructtypesConfig.Simplearr.Gender.FEMALE))
+                .build();
+        assertAppliedAlike(structs, StructtypesConfig.Builder::new, StructtypesConfig.Builder::build);
+    }
+
+    private static <B extends ConfigInstance.Builder> void assertAppliedAlike(ConfigInstance config, Supplier<B> builders,
+                                                                             Function<B, ConfigInstance> build) {
+        ConfigPayload payload = ConfigPayload.fromInstance(config);
+        for (boolean useFieldSetters : new boolean[] { true, false }) {
+            B builder = builders.get();
+            new ConfigPayloadApplier<>(builder, new ConfigPayloadApplier.IdentityPathAcquirer(), null, useFieldSetters)
+                    .applyPayload(payload);
+            assertEquals(payload.toString(), ConfigPayload.fromInstance(build.apply(builder)).toString());
+        }
+    }
+
+}
@@ -4,11 +4,14 @@ package com.yahoo.vespa.config.protocol;
 import com.yahoo.foo.SimpletypesConfig;
 import com.yahoo.config.subscription.impl.JRTConfigSubscription;
 import com.yahoo.jrt.Request;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
 import com.yahoo.vespa.config.*;
 import com.yahoo.vespa.config.util.ConfigUtils;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
@@ -78,4 +81,81 @@ public class JRTConfigRequestV3Test extends JRTConfigRequestBase {
         assertThat(clientReq.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(), is("{}"));
         assertFalse(clientReq.responseIsInternalRedeploy());
     }
+
+    @Test
+    public void payload_is_sent_as_delta_when_accepted() {
+        PayloadDeltas deltas = new PayloadDeltas(0, 1 << 20);
+        Payload first = largePayload(-1);
+        Payload second = largePayload(7);
+        String firstMd5 = ConfigUtils.getMd5(first.getData());
+        String secondMd5 = ConfigUtils.getMd5(second.getData());
+
+        // Clients only accept deltas once they have a payload, and payloads are only remembered once some client does
+        JRTClientConfigRequest older = createReq(true, "older", 0, Optional.of(largePayload(3)));
+        createReq(older.getRequest()).addOkResponse(first, 1, false, firstMd5, deltas);
+
+        JRTClientConfigRequest client = createReq(true, "", 0, Optional.empty());
+        createReq(client.getRequest()).addOkResponse(first.withCompression(CompressionType.LZ4), 1, false, firstMd5, deltas);
+        assertTrue(client.validateResponse());
+        assertThat(client.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData(), is(first.getData()));
+
+        JRTClientConfigRequest next = client.nextRequest(timeout);
+        createReq(next.getRequest()).addOkResponse(second.withCompression(CompressionType.LZ4), 2, false, secondMd5, deltas);
+        assertTrue(next.validateResponse());
+        int fullSize = second.withCompression(CompressionType.LZ4).getData().getByteLength();
+        int sentSize = next.getRequest().returnValues().get(1).asData().length;
+        assertTrue("Sent " + sentSize + " of " + fullSize + " bytes", sentSize * 10 < fullSize);
+        assertThat(next.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData(), is(second.getData()));
+        assertThat(next.getNewConfigMd5(), is(secondMd5));
+
+        JRTClientConfigRequest other = createReq(false, firstMd5, 1, Optional.empty());
+        createReq(other.getRequest()).addOkResponse(second, 2, false, secondMd5, deltas);
+        assertTrue(other.validateResponse());
+        assertThat(other.getRequest().returnValues().get(1).asData().length, is(fullSize));
+        assertThat(other.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData(), is(second.getData()));
+
+        JRTClientConfigRequest unknownBase = createReq(true, "unknown", 1, Optional.of(first));
+        createReq(unknownBase.getRequest()).addOkResponse(second, 2, false, secondMd5, deltas);
+        assertTrue(unknownBase.validateResponse());
+        assertThat(unknownBase.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData(), is(second.getData()));
+    }
+
+    @Test
+    public void payloads_are_not_remembered_until_a_client_accepts_deltas() {
+        PayloadDeltas deltas = new PayloadDeltas(0, 1 << 20);
+        Payload payload = largePayload(-1);
+        String md5 = ConfigUtils.getMd5(payload.getData());
+
+        createReq(createReq(false, "", 0, Optional.empty()).getRequest()).addOkResponse(payload, 1, false, md5, deltas);
+        assertThat(deltas.size(), is(0L));
+
+        createReq(createReq(true, "", 0, Optional.empty()).getRequest()).addOkResponse(payload, 1, false, md5, deltas);
+        assertThat("A client without a payload does not accept deltas", deltas.size(), is(0L));
+
+        createReq(createReq(true, "older", 0, Optional.of(largePayload(3))).getRequest()).addOkResponse(payload, 1, false, md5, deltas);
+        assertTrue(deltas.size() > 0);
+    }
+
+    private JRTClientConfigRequest createReq(boolean acceptDeltas, String configMd5, long generation, Optional<Payload> basePayload) {
+        return JRTClientConfigRequestV3.createWithParams(ConfigKey.createFull(defName, configId, defNamespace, defMd5),
+                                                         DefContent.fromList(Arrays.asList("namespace=my.name.space", "myfield[] string")),
+                                                         hostname,
+                                                         configMd5,
+                                                         generation,
+                                                         timeout,
+                                                         Trace.createNew(),
+                                                         CompressionType.LZ4,
+                                                         vespaVersion,
+                                                         acceptDeltas,
+                                                         basePayload);
+    }
+
+    private static Payload largePayload(int changed) {
+        Slime slime = new Slime();
+        Cursor array = slime.setObject().setArray("myfield");
+        for (int i = 0; i < 10000; i++)
+            array.addString(i == changed ? "changed" : "value " + i);
+        return Payload.from(new ConfigPayload(slime));
+    }
+
 }
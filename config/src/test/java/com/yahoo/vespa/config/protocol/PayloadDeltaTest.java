@@ -0,0 +1,83 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PayloadDeltaTest {
+
+    private static byte[] rankProfiles(int count, int changed) {
+        StringBuilder json = new StringBuilder("{\"rankprofile\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"profile").append(i).append("\",\"fef\":{\"property\":[")
+                .append("{\"name\":\"vespa.rank.firstphase\",\"value\":\"")
+                .append(i == changed ? "attribute(popularity)" : "nativeRank(title)").append("\"},")
+                .append("{\"name\":\"vespa.rank.secondphase\",\"value\":\"fieldMatch(body).proximity * ").append(i).append("\"}]}}");
+        }
+        return Utf8.toBytes(json.append("]}").toString());
+    }
+
+    private static void assertDelta(byte[] base, byte[] target) {
+        assertArrayEquals(target, PayloadDelta.apply(base, PayloadDelta.create(base, target)));
+    }
+
+    @Test
+    public void delta_of_small_change_is_small() {
+        byte[] base = rankProfiles(1000, -1);
+        byte[] target = rankProfiles(1000, 500);
+        byte[] delta = PayloadDelta.create(base, target);
+        assertTrue("Delta of " + delta.length + " bytes", delta.length < 100);
+        assertArrayEquals(target, PayloadDelta.apply(base, delta));
+    }
+
+    @Test
+    public void delta_reproduces_target() {
+        Random random = new Random(42);
+        byte[] base = rankProfiles(200, -1);
+        for (int i = 0; i < 100; i++) {
+            byte[] target = rankProfiles(random.nextInt(300), random.nextInt(200));
+            for (int j = random.nextInt(10); j > 0; j--)
+                target[random.nextInt(target.length)] = (byte) random.nextInt();
+            assertDelta(base, target);
+        }
+        assertDelta(new byte[0], base);
+        assertDelta(base, new byte[0]);
+        assertDelta(new byte[0], new byte[0]);
+        assertDelta(base, base);
+        byte[] noise = new byte[100000];
+        random.nextBytes(noise);
+        assertDelta(base, noise);
+        assertDelta(noise, base);
+    }
+
+    @Test
+    public void invalid_delta_is_rejected() {
+        byte[] base = rankProfiles(100, -1);
+        byte[] delta = PayloadDelta.create(base, rankProfiles(100, 10));
+        try {
+            PayloadDelta.apply(new byte[100], delta);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Delta copies outside its base of 100 bytes", e.getMessage());
+        }
+        try {
+            byte[] truncated = new byte[delta.length - 1];
+            System.arraycopy(delta, 0, truncated, 0, truncated.length);
+            PayloadDelta.apply(base, truncated);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
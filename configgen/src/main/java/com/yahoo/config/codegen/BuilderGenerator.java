@@ -33,7 +33,8 @@ public class BuilderGenerator {
                         getOverrideMethod(node) + "\n\n" + //
                         getBuilderSetters(node) + "\n" + //
                         getSpecialRootBuilderCode(node) + "\n" + //
-                        getBuildMethod(node) + "\n") //
+                        getBuildMethod(node) + "\n" + //
+                        getFieldSetter(node) + "\n") //
                 + "}";
     }
 
@@ -75,6 +76,105 @@ public class BuilderGenerator {
                 "public final String getDefNamespace() { return CONFIG_DEF_NAMESPACE; }";
     }
 
+    /** Returns a field setter which lets config payloads be applied to the builder without reflection */
+    private static String getFieldSetter(InnerCNode node) {
+        String valueParameters = "String " + INTERNAL_PREFIX + "value,\n" + //
+                "      java.util.function.Function<String, FileReference> " + INTERNAL_PREFIX + "paths,\n" + //
+                "      java.util.function.Function<String, UrlReference> " + INTERNAL_PREFIX + "urls) {\n";
+        String builder = "    Builder " + INTERNAL_PREFIX + "b = (Builder) " + INTERNAL_PREFIX + "builder;\n";
+        List<String> maps = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<String> mapValues = new ArrayList<>();
+        List<String> setStructs = new ArrayList<>();
+        List<String> putStructs = new ArrayList<>();
+        for (CNode child : node.getChildren()) {
+            String name = child.getName();
+            String call = INTERNAL_PREFIX + "b." + name + "(";
+            if (child.isMap)
+                maps.add("case \"" + name + "\":");
+            if (child instanceof LeafCNode && child.isMap) {
+                mapValues.add("case \"" + name + "\": " + call + INTERNAL_PREFIX + "key, " + resolvedValue(child) + "); return true;");
+            } else if (child instanceof LeafCNode) {
+                values.add("case \"" + name + "\": " + call + resolvedValue(child) + "); return true;");
+            } else if (child.isMap) {
+                putStructs.add("case \"" + name + "\": " + call + INTERNAL_PREFIX + "key, (" + builderType(child) + ") " +
+                               INTERNAL_PREFIX + "struct); return;");
+            } else {
+                setStructs.add("case \"" + name + "\": " + call + "(" + builderType(child) + ") " + INTERNAL_PREFIX + "struct); return;");
+            }
+        }
+        List<String> newStructs = newStructs(node);
+        String unknownStruct = "default: throw new IllegalArgumentException(\"Unknown struct field '\" + " + INTERNAL_PREFIX + "name + \"'\");";
+        return "// Used by ConfigPayloadApplier to set fields without reflection\n" + //
+                "private static final com.yahoo.config.FieldSetter " + INTERNAL_PREFIX + "fieldSetter = new com.yahoo.config.FieldSetter() {\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public boolean isMap(String " + INTERNAL_PREFIX + "name) {\n" + //
+                indentCode(INDENTATION + INDENTATION,
+                        maps.isEmpty() ? "return false;" : nameSwitch(maps, "  return true;\ndefault:\n  return false;")) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public boolean setValue(com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "builder, String " + INTERNAL_PREFIX + "name, " +
+                valueParameters + //
+                builder + //
+                indentCode(INDENTATION + INDENTATION, nameSwitch(values, "default: return false;")) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public boolean putValue(com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "builder, String " + INTERNAL_PREFIX + "name, " +
+                "String " + INTERNAL_PREFIX + "key, " + valueParameters + //
+                builder + //
+                indentCode(INDENTATION + INDENTATION, nameSwitch(mapValues, "default: return false;")) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public com.yahoo.config.ConfigBuilder newStruct(String " + INTERNAL_PREFIX + "name) {\n" + //
+                indentCode(INDENTATION + INDENTATION, newStructs.isEmpty() ? "return null;" : nameSwitch(newStructs, "default: return null;")) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public void setStruct(com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "builder, String " + INTERNAL_PREFIX + "name, " +
+                "com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "struct) {\n" + //
+                builder + //
+                indentCode(INDENTATION + INDENTATION, nameSwitch(setStructs, unknownStruct)) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "  @java.lang.Override\n" + //
+                "  public void putStruct(com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "builder, String " + INTERNAL_PREFIX + "name, " +
+                "String " + INTERNAL_PREFIX + "key, com.yahoo.config.ConfigBuilder " + INTERNAL_PREFIX + "struct) {\n" + //
+                builder + //
+                indentCode(INDENTATION + INDENTATION, nameSwitch(putStructs, unknownStruct)) + "\n" + //
+                "  }\n" + //
+                "\n" + //
+                "};\n";
+    }
+
+    private static List<String> newStructs(InnerCNode node) {
+        List<String> cases = new ArrayList<>();
+        for (CNode child : node.getChildren()) {
+            if (child instanceof InnerCNode)
+                cases.add("case \"" + child.getName() + "\": return new " + builderType(child) + "();");
+        }
+        return cases;
+    }
+
+    private static String nameSwitch(List<String> cases, String defaultCase) {
+        return "switch (" + INTERNAL_PREFIX + "name) {\n" + //
+                indentCode(INDENTATION, String.join("\n", cases) + (cases.isEmpty() ? "" : "\n") + defaultCase) + "\n" + //
+                "}";
+    }
+
+    private static String resolvedValue(CNode node) {
+        if (node instanceof PathLeaf) {
+            return INTERNAL_PREFIX + "paths.apply(" + INTERNAL_PREFIX + "value)";
+        } else if (node instanceof UrlLeaf) {
+            return INTERNAL_PREFIX + "urls.apply(" + INTERNAL_PREFIX + "value)";
+        } else {
+            return INTERNAL_PREFIX + "value";
+        }
+    }
+
     private static String getUninitializedScalars(InnerCNode node) {
         List<String> scalarsWithoutDefault = new ArrayList<>();
         for (CNode child : node.getChildren()) {
@@ -18,6 +18,7 @@ import com.yahoo.vespa.flags.Flags;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -155,12 +156,15 @@ public class ConfigServerBootstrap extends AbstractComponent implements Runnable
             log.log(LogLevel.INFO, "Config server upgrading from " + versionState.storedVersion() + " to "
                     + versionState.currentVersion() + ". Redeploying all applications");
             try {
+                Instant start = Instant.now();
                 if ( ! redeployAllApplications()) {
                     redeployingApplicationsFailed();
                     return; // Status will not be set to 'up' since we return here
                 }
                 versionState.saveNewVersion();
-                log.log(LogLevel.INFO, "All applications redeployed successfully");
+                Duration duration = Duration.between(start, Instant.now());
+                server.metricUpdaterFactory().getOrCreateMetricUpdater(Collections.emptyMap()).setBootstrapMillis(duration.toMillis());
+                log.log(LogLevel.INFO, "All applications redeployed successfully in " + duration);
             } catch (Exception e) {
                 log.log(LogLevel.ERROR, "Redeployment of applications failed", e);
                 redeployingApplicationsFailed();
@@ -28,9 +28,14 @@ import com.yahoo.vespa.flags.FetchVector;
 import com.yahoo.vespa.flags.FlagSource;
 import com.yahoo.vespa.flags.Flags;
 import com.yahoo.vespa.flags.InMemoryFlagSource;
+import com.yahoo.yolean.Exceptions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A Vespa application for a specific version of Vespa. It holds data and metadata associated with
@@ -158,6 +163,46 @@ public class Application implements ModelResult {
         return configResponse;
     }
 
+    /**
+     * Resolves the configs of all config keys produced by the model, with the config definitions known by this server,
+     * and puts them in the cache. This is done before the application is activated, so the requests which arrive when
+     * it is, are answered from the cache, instead of all resolving the same configs. Keys are resolved in chunks
+     * by the given executor, and this returns when all are done. Configs which fail to resolve are left to be
+     * resolved, and fail, when requested.
+     */
+    public void warmCache(ConfigResponseFactory responseFactory, Executor executor, int chunks) {
+        if ( ! useConfigServerCache.value()) return;
+
+        List<ConfigKey<?>> keys = new ArrayList<>(allConfigsProduced());
+        int chunkSize = Math.max(1, (keys.size() + chunks - 1) / chunks);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += chunkSize) {
+            List<ConfigKey<?>> chunk = keys.subList(start, Math.min(start + chunkSize, keys.size()));
+            futures.add(CompletableFuture.runAsync(() -> chunk.forEach(key -> warmCache(key, responseFactory)), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        metricUpdater.setCacheConfigElems(cache.configElems());
+        metricUpdater.setCacheChecksumElems(cache.checkSumElems());
+    }
+
+    private void warmCache(ConfigKey<?> key, ConfigResponseFactory responseFactory) {
+        try {
+            ConfigDefinition def = cache.getDef(new ConfigDefinitionKey(key.getName(), key.getNamespace()));
+            if (def == null) return;
+
+            ConfigPayload payload = model.getConfig(key, def);
+            if (payload == null) return;
+
+            ConfigResponse configResponse = responseFactory.createResponse(payload, def.getCNode(), appGeneration, internalRedeploy);
+            cache.put(new ConfigCacheKey(key, def.getCNode().getMd5()), configResponse, configResponse.getConfigMd5());
+        }
+        catch (RuntimeException e) {
+            if (logDebug()) {
+                debug("Could not resolve config " + key + " when warming cache: " + Exceptions.toMessageString(e));
+            }
+        }
+    }
+
     private boolean useCache(GetConfigRequest request) {
         if (request.noCache())
             return false;
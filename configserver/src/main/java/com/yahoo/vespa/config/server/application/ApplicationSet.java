@@ -4,9 +4,11 @@ package com.yahoo.vespa.config.server.application;
 import com.yahoo.config.model.api.HostInfo;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.component.Version;
+import com.yahoo.vespa.config.server.rpc.ConfigResponseFactory;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -82,6 +84,14 @@ public final class ApplicationSet {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Warms the config cache of the application for the latest version in this, which is the one nodes are served
+     * unless they ask for another. The others are resolved as requested. See {@link Application#warmCache}
+     */
+    public void warmCache(ConfigResponseFactory responseFactory, Executor executor, int chunks) {
+        applications.get(latestVersion).warmCache(responseFactory, executor, chunks);
+    }
+
     public void updateHostMetrics() {
         for (Application application : applications.values()) {
             application.updateHostMetrics(application.getModel().getHosts().size());
@@ -0,0 +1,108 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.Spec;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The nodes which have downloaded each file reference, and serve it to other nodes which download it.
+ * Peers are returned in random order, but with those in the same domain as the requesting node first,
+ * as hosts in the same domain are typically in the same rack or group. Only the most recent peers
+ * of the most recent file references are kept. Peers expire when they have not registered for a while,
+ * and are removed when a node reports that they failed serving the file reference.
+ *
+ * This is thread safe.
+ */
+class FilePeers {
+
+    static final int maxFileReferences = 1000;
+    static final int maxPeersPerFileReference = 1000;
+    static final int maxPeersReturned = 8;
+    static final Duration peerTtl = Duration.ofHours(1);
+
+    private final Clock clock;
+
+    /** The time each peer of each file reference registered, in registration order */
+    private final Map<FileReference, Map<String, Instant>> peers = new LinkedHashMap<FileReference, Map<String, Instant>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FileReference, Map<String, Instant>> eldest) {
+            return size() > maxFileReferences;
+        }
+    };
+
+    FilePeers() {
+        this(Clock.systemUTC());
+    }
+
+    FilePeers(Clock clock) {
+        this.clock = clock;
+    }
+
+    /** Records that the node at the given spec has the given file reference */
+    synchronized void add(FileReference reference, String spec) {
+        Spec parsed = new Spec(spec);
+        if (parsed.malformed() || parsed.host() == null) throw new IllegalArgumentException("Invalid peer spec '" + spec + "'");
+
+        Map<String, Instant> specs = peers.computeIfAbsent(reference, __ -> new LinkedHashMap<>());
+        specs.remove(spec);
+        specs.put(spec, clock.instant());
+        expire(specs);
+        if (specs.size() > maxPeersPerFileReference)
+            specs.remove(specs.keySet().iterator().next());
+    }
+
+    /** Forgets that the node at the given spec has the given file reference */
+    synchronized void remove(FileReference reference, String spec) {
+        Map<String, Instant> specs = peers.get(reference);
+        if (specs == null) return;
+
+        specs.remove(spec);
+        if (specs.isEmpty())
+            peers.remove(reference);
+    }
+
+    /** Returns some of the peers of the given file reference, preferring those closest to the given requester */
+    List<String> get(FileReference reference, String requester) {
+        List<String> specs;
+        synchronized (this) {
+            Map<String, Instant> registered = peers.getOrDefault(reference, Collections.emptyMap());
+            expire(registered);
+            specs = new ArrayList<>(registered.keySet());
+        }
+        specs.remove(requester);
+        Collections.shuffle(specs);
+        String requesterDomain = domain(requester);
+        specs.sort(Comparator.comparing(spec -> ! Objects.equals(domain(spec), requesterDomain)));
+        return specs.subList(0, Math.min(maxPeersReturned, specs.size()));
+    }
+
+    /** Removes the peers which registered longer ago than the peer TTL, which are the first ones */
+    private void expire(Map<String, Instant> specs) {
+        Instant oldest = clock.instant().minus(peerTtl);
+        for (Iterator<Instant> registered = specs.values().iterator(); registered.hasNext(); ) {
+            if ( ! registered.next().isBefore(oldest)) break;
+            registered.remove();
+        }
+    }
+
+    /** Returns the domain of the host of the given spec, or null if it has none */
+    static String domain(String spec) {
+        String host = new Spec(spec).host();
+        if (host == null) return null;
+        int dot = host.indexOf('.');
+        return dot < 0 || dot == host.length() - 1 ? null : host.substring(dot + 1);
+    }
+
+}
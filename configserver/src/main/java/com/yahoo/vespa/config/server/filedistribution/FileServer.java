@@ -18,6 +18,8 @@ import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.server.ConfigServerSpec;
 import com.yahoo.vespa.defaults.Defaults;
 import com.yahoo.vespa.filedistribution.CompressedFileReference;
+import com.yahoo.vespa.filedistribution.FileChunkServer;
+import com.yahoo.vespa.filedistribution.FileChunks;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDataBlob;
@@ -41,6 +43,8 @@ public class FileServer {
     private final ExecutorService pushExecutor;
     private final ExecutorService pullExecutor;
     private final FileDownloader downloader;
+    private final FileChunkServer chunkServer = new FileChunkServer();
+    private final FilePeers peers = new FilePeers();
 
     private enum FileApiErrorCodes {
         OK(0, "OK"),
@@ -174,6 +178,67 @@ public class FileServer {
         request.returnRequest();
     }
 
+    /** Returns the chunks of the given file reference, which clients then fetch with {@link #serveFileChunk} */
+    public void serveFileChunks(String fileReference, boolean downloadFromOtherSourceIfNotFound, Request request) {
+        pullExecutor.execute(() -> serveFileChunksInternal(fileReference, downloadFromOtherSourceIfNotFound, request));
+    }
+
+    private void serveFileChunksInternal(String fileReference, boolean downloadFromOtherSourceIfNotFound, Request request) {
+        log.log(LogLevel.DEBUG, () -> "Received request for chunks of reference '" + fileReference + "' from " + request.target());
+
+        int code = FileChunks.NOT_FOUND;
+        String description = FileApiErrorCodes.NOT_FOUND.getDescription();
+        Optional<FileChunks> chunks = Optional.empty();
+        try {
+            if (hasFile(fileReference) || download(fileReference, downloadFromOtherSourceIfNotFound)) {
+                FileReference reference = new FileReference(fileReference);
+                chunks = chunkServer.chunks(reference, root.getFile(reference));
+                code = chunks.isPresent() ? FileChunks.FOUND : FileChunks.NOT_AVAILABLE_IN_CHUNKS;
+                description = chunks.isPresent() ? FileApiErrorCodes.OK.getDescription() : "Directories are not served in chunks";
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            log.warning("Failed serving chunks of file reference '" + fileReference + "', request was from " +
+                        request.target() + ", with error " + Exceptions.toMessageString(e));
+        }
+
+        FileChunkServer.returnChunks(request, code, description, chunks);
+        request.returnRequest();
+    }
+
+    /** Returns the given chunk of the given file reference, if its hash is as expected */
+    public void serveFileChunk(String fileReference, int chunk, long hash, Request request) {
+        pullExecutor.execute(() -> serveFileChunkInternal(new FileReference(fileReference), chunk, hash, request));
+    }
+
+    private void serveFileChunkInternal(FileReference reference, int chunk, long hash, Request request) {
+        Optional<byte[]> data = Optional.empty();
+        try {
+            if (hasFile(reference))
+                data = chunkServer.chunk(reference, root.getFile(reference), chunk, hash);
+        } catch (IllegalArgumentException | IOException e) {
+            log.warning("Failed serving chunk " + chunk + " of file reference '" + reference.value() + "', request was from " +
+                        request.target() + ", with error " + Exceptions.toMessageString(e));
+        }
+
+        FileChunkServer.returnChunk(request, data);
+        request.returnRequest();
+    }
+
+    /** Returns the specs of some nodes which have the given file reference, preferring those close to the given node */
+    public List<String> peers(String fileReference, String requester) {
+        return peers.get(new FileReference(fileReference), requester);
+    }
+
+    /** Records that the node at the given spec has the given file reference, and serves it to other nodes */
+    public void addPeer(String fileReference, String spec) {
+        peers.add(new FileReference(fileReference), spec);
+    }
+
+    /** Forgets the node at the given spec as a peer of the given file reference, as it failed serving it */
+    public void removePeer(String fileReference, String spec) {
+        peers.remove(new FileReference(fileReference), spec);
+    }
+
     // downloadFromOtherSourceIfNotFound is true when the request comes from another config server.
     // This is to avoid config servers asking each other for a file that does not exist
     private boolean download(String fileReference, boolean downloadFromOtherSourceIfNotFound) {
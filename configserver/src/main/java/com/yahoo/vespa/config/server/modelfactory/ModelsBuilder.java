@@ -3,6 +3,7 @@ package com.yahoo.vespa.config.server.modelfactory;
 
 import com.google.common.util.concurrent.UncheckedTimeoutException;
 import com.yahoo.cloud.config.ConfigserverConfig;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.application.api.ApplicationPackage;
 import com.yahoo.config.model.api.HostProvisioner;
 import com.yahoo.config.model.api.ModelContext;
@@ -29,6 +30,11 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -169,21 +175,87 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
         // does not. In that case we really want to extend the set of allocated hosts to include those of that
         // cluster as well. To do that, create a new provisioner which uses static provisioning for known
         // clusters and the node repository provisioner as fallback.
+        List<Version> olderVersions = new ArrayList<>();
         for (Version version : versions) {
             if (latest.isPresent() && version.equals(latest.get())) continue; // already loaded
+            olderVersions.add(version);
+        }
+        if (hasMachineLearnedModels(applicationPackage)) {
+            // Converting models writes files to the application package, so these versions are built one at a time
+            for (Version version : olderVersions) {
+                MODELRESULT modelVersion = buildModelVersion(modelFactoryRegistry.getFactory(version),
+                                                             applicationPackage,
+                                                             applicationId,
+                                                             wantedNodeVespaVersion,
+                                                             allocatedHosts.asOptional(),
+                                                             now);
+                allocatedHosts.set(modelVersion.getModel().allocatedHosts()); // Update with additional clusters allocated
+                allApplicationVersions.add(modelVersion);
+            }
+            return allApplicationVersions;
+        }
 
-            MODELRESULT modelVersion = buildModelVersion(modelFactoryRegistry.getFactory(version),
-                                                         applicationPackage,
-                                                         applicationId,
-                                                         wantedNodeVespaVersion,
-                                                         allocatedHosts.asOptional(),
-                                                         now);
+        // Otherwise the older versions are built in parallel, all with the hosts allocated by the newer versions,
+        // rather than each with the hosts allocated by the versions built before it
+        Optional<AllocatedHosts> hostsOfNewerVersions = allocatedHosts.asOptional();
+        List<MODELRESULT> olderModelVersions = buildInParallel(olderVersions,
+                                                               version -> buildModelVersion(modelFactoryRegistry.getFactory(version),
+                                                                                            applicationPackage,
+                                                                                            applicationId,
+                                                                                            wantedNodeVespaVersion,
+                                                                                            hostsOfNewerVersions,
+                                                                                            now));
+        for (MODELRESULT modelVersion : olderModelVersions) {
             allocatedHosts.set(modelVersion.getModel().allocatedHosts()); // Update with additional clusters allocated
             allApplicationVersions.add(modelVersion);
         }
         return allApplicationVersions;
     }
 
+    /** Returns whether the given application has machine-learned models, which are converted and stored in it */
+    private static boolean hasMachineLearnedModels(ApplicationPackage applicationPackage) {
+        return applicationPackage.getFileReference(ApplicationPackage.MODELS_DIR).exists();
+    }
+
+    /**
+     * Builds a model for each of the given versions, in parallel if there are several, and returns them in the
+     * order of the versions. If any build fails, the exception of the first failed version is rethrown.
+     */
+    private List<MODELRESULT> buildInParallel(List<Version> versions, Function<Version, MODELRESULT> builder) {
+        if (versions.size() <= 1) return versions.stream().map(builder).collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(versions.size(), configserverConfig.numParallelModelBuilders()),
+                                                                new DaemonThreadFactory("build models"));
+        try {
+            List<Future<MODELRESULT>> futures = new ArrayList<>();
+            for (Version version : versions)
+                futures.add(executor.submit(() -> builder.apply(version)));
+
+            List<MODELRESULT> results = new ArrayList<>();
+            RuntimeException failure = null;
+            for (Future<MODELRESULT> future : futures) {
+                try {
+                    results.add(future.get());
+                }
+                catch (ExecutionException e) {
+                    if (failure != null) continue;
+                    if (e.getCause() instanceof RuntimeException) failure = (RuntimeException) e.getCause();
+                    else if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                    else failure = new RuntimeException(e.getCause());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while building models", e);
+                }
+            }
+            if (failure != null) throw failure;
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     private Set<Version> versionsToBuild(Set<Version> versions, Version wantedVersion, int majorVersion, AllocatedHosts allocatedHosts) {
         if (configserverConfig.buildMinimalSetOfConfigModels())
             versions = keepThoseUsedOn(allocatedHosts, versions);
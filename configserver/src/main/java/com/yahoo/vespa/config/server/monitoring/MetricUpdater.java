@@ -33,6 +33,8 @@ public class MetricUpdater {
     private static final String METRIC_CACHE_CONFIG_CHECKSUMS = getMetricName("cacheChecksumElems");
     private static final String METRIC_DELAYED_RESPONSES = getMetricName("delayedResponses");
     private static final String METRIC_RPCSERVER_WORK_QUEUE_SIZE = getMetricName("rpcServerWorkQueueSize");
+    private static final String METRIC_PREPARE_MILLIS = getMetricName("prepareMillis");
+    private static final String METRIC_BOOTSTRAP_MILLIS = getMetricName("bootstrapMillis");
 
 
     private final Metrics metrics;
@@ -219,4 +221,18 @@ public class MetricUpdater {
     public void setRpcServerQueueSize(int numQueued) {
         metrics.set(METRIC_RPCSERVER_WORK_QUEUE_SIZE, numQueued, metricContext);
     }
+
+    /**
+     * Sets the time used by the last prepare of an application, including building all its model versions.
+     */
+    public void setPrepareMillis(long millis) {
+        metrics.set(METRIC_PREPARE_MILLIS, millis, metricContext);
+    }
+
+    /**
+     * Sets the time used to bootstrap the config server, including redeploying all applications.
+     */
+    public void setBootstrapMillis(long millis) {
+        metrics.set(METRIC_BOOTSTRAP_MILLIS, millis, metricContext);
+    }
 }
@@ -17,6 +17,7 @@ import com.yahoo.jrt.ListenFailedException;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Target;
@@ -27,6 +28,7 @@ import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.PayloadDeltas;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.SuperModelRequestHandler;
 import com.yahoo.vespa.config.server.application.ApplicationSet;
@@ -41,11 +43,13 @@ import com.yahoo.vespa.config.server.monitoring.MetricUpdaterFactory;
 import com.yahoo.vespa.config.server.tenant.TenantHandlerProvider;
 import com.yahoo.vespa.config.server.tenant.TenantListener;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
+import com.yahoo.vespa.filedistribution.FileChunks;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReceiver;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
 
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
@@ -101,6 +105,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
 
     private final ThreadPoolExecutor executorService;
     private final FileDownloader downloader;
+    private final PayloadDeltas payloadDeltas = new PayloadDeltas();
     private volatile boolean allTenantsLoaded = false;
     private boolean isRunning = false;
 
@@ -219,6 +224,39 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                                   .methodDesc("printStatistics")
                                   .returnDesc(0, "statistics", "Statistics for server"));
         getSupervisor().addMethod(new Method("filedistribution.serveFile", "si", "is", this, "serveFile"));
+        getSupervisor().addMethod(new Method(FileChunks.GET_CHUNKS_METHOD, "si", "isssliL", this, "serveFileChunks")
+                                     .methodDesc("get the chunks of a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "downloadFromOtherSourceIfNotFound", "0 to download from another config server if not found")
+                                     .returnDesc(0, "ret", "0 if found, 1 if not found, 2 if it must be requested with serveFile")
+                                     .returnDesc(1, "description", "description of the return code")
+                                     .returnDesc(2, "filename", "file name")
+                                     .returnDesc(3, "type", "file type")
+                                     .returnDesc(4, "size", "file size")
+                                     .returnDesc(5, "chunk size", "size of each chunk, except the last")
+                                     .returnDesc(6, "hashes", "xxhash64 of each chunk"));
+        getSupervisor().addMethod(new Method(FileChunks.GET_CHUNK_METHOD, "sil", "ix", this, "serveFileChunk")
+                                     .methodDesc("get a chunk of a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "chunk", "chunk number")
+                                     .paramDesc(2, "hash", "expected xxhash64 of the chunk")
+                                     .returnDesc(0, "ret", "0 if found, 1 otherwise")
+                                     .returnDesc(1, "data", "content of the chunk"));
+        getSupervisor().addMethod(new Method(FileChunks.GET_PEERS_METHOD, "ss", "S", this, "getFilePeers")
+                                     .methodDesc("get nodes which serve the chunks of a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "requester", "spec of the requesting node, to prefer nodes close to it")
+                                     .returnDesc(0, "peers", "specs of nodes which have the file reference"));
+        getSupervisor().addMethod(new Method(FileChunks.ADD_PEER_METHOD, "si", "i", this, "addFilePeer")
+                                     .methodDesc("record that the calling node serves the chunks of a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "port", "port where the calling node serves the chunks")
+                                     .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        getSupervisor().addMethod(new Method(FileChunks.REMOVE_PEER_METHOD, "ss", "i", this, "removeFilePeer")
+                                     .methodDesc("report that a node failed serving the chunks of a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "peer", "spec of the node which failed")
+                                     .returnDesc(0, "ret", "0"));
         getSupervisor().addMethod(new Method("filedistribution.setFileReferencesToDownload", "S", "i",
                                         this, "setFileReferencesToDownload")
                                      .methodDesc("set which file references to download")
@@ -448,7 +486,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
      * not part of an application asks for sentinel config */
     public boolean canReturnEmptySentinelConfig() { return canReturnEmptySentinelConfig; }
     
-    MetricUpdaterFactory metricUpdaterFactory() {
+    public MetricUpdaterFactory metricUpdaterFactory() {
         return metricUpdaterFactory;
     }
 
@@ -554,6 +592,55 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         fileServer.serveFile(request.parameters().get(0).asString(), request.parameters().get(1).asInt32() == 0, request, receiver);
     }
 
+    @SuppressWarnings("UnusedDeclaration")
+    public final void serveFileChunks(Request request) {
+        request.detach();
+        fileServer.serveFileChunks(request.parameters().get(0).asString(), request.parameters().get(1).asInt32() == 0, request);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public final void serveFileChunk(Request request) {
+        request.detach();
+        fileServer.serveFileChunk(request.parameters().get(0).asString(), request.parameters().get(1).asInt32(),
+                                  request.parameters().get(2).asInt64(), request);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public final void getFilePeers(Request request) {
+        List<String> peers = fileServer.peers(request.parameters().get(0).asString(), request.parameters().get(1).asString());
+        request.returnValues().add(new StringArray(peers.toArray(new String[0])));
+    }
+
+    /**
+     * Records the calling node as a peer of a file reference. Only the port is taken from the caller, and the host
+     * is the one the request came from, so callers can not make other nodes download from arbitrary hosts. The host
+     * name is looked up in an RPC thread, as this may block.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public final void addFilePeer(Request request) {
+        request.detach();
+        executorService.execute(() -> {
+            InetSocketAddress address = request.target().peerAddress();
+            try {
+                if (address == null) throw new IllegalArgumentException("No address of the calling node");
+                String host = address.getAddress().getCanonicalHostName();
+                fileServer.addPeer(request.parameters().get(0).asString(),
+                                   new Spec(host, request.parameters().get(1).asInt32()).toString());
+                request.returnValues().add(new Int32Value(0));
+            } catch (IllegalArgumentException e) {
+                log.log(LogLevel.DEBUG, "Not adding file peer: " + e.getMessage());
+                request.returnValues().add(new Int32Value(1));
+            }
+            request.returnRequest();
+        });
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public final void removeFilePeer(Request request) {
+        fileServer.removePeer(request.parameters().get(0).asString(), request.parameters().get(1).asString());
+        request.returnValues().add(new Int32Value(0));
+    }
+
     @SuppressWarnings({"UnusedDeclaration"})
     public final void setFileReferencesToDownload(Request req) {
         String[] fileReferenceStrings = req.parameters().get(0).asStringArray();
@@ -567,4 +654,9 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     HostLivenessTracker hostLivenessTracker() {
         return hostLivenessTracker;
     }
+
+    /** Returns the payloads sent to clients, and deltas between them, for clients which accept deltas */
+    PayloadDeltas payloadDeltas() {
+        return payloadDeltas;
+    }
 }
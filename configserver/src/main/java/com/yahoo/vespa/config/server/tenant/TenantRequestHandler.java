@@ -2,13 +2,19 @@
 package com.yahoo.vespa.config.server.tenant;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.yahoo.component.Version;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.GetConfigRequest;
@@ -41,6 +47,7 @@ import com.yahoo.vespa.curator.Curator;
 public class TenantRequestHandler implements RequestHandler, ReloadHandler, HostValidator<ApplicationId> {
 
     private static final java.util.logging.Logger log = java.util.logging.Logger.getLogger(TenantRequestHandler.class.getName());
+    private static final int cacheWarmerThreads = Runtime.getRuntime().availableProcessors();
 
     private final Metrics metrics;
     private final TenantName tenant;
@@ -51,6 +58,7 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
     private final MetricUpdater tenantMetricUpdater;
     private final Clock clock = Clock.systemUTC();
     private final TenantApplications applications;
+    private final ThreadPoolExecutor cacheWarmer = createCacheWarmer();
 
     public TenantRequestHandler(Metrics metrics,
                                 TenantName tenant,
@@ -99,10 +107,28 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
      */
     @Override
     public void reloadConfig(ApplicationSet applicationSet) {
+        warmCache(applicationSet);
         setLiveApp(applicationSet);
         notifyReloadListeners(applicationSet);
     }
 
+    /** Fills the config cache of the given applications in parallel, before they are made live */
+    private void warmCache(ApplicationSet applicationSet) {
+        Instant start = clock.instant();
+        applicationSet.warmCache(responseFactory, cacheWarmer, 4 * cacheWarmerThreads);
+        log.log(LogLevel.DEBUG, () -> TenantRepository.logPre(applicationSet.getId()) + "Warmed config cache in " +
+                                      Duration.between(start, clock.instant()));
+    }
+
+    /** Returns an executor whose threads are stopped when idle, as most tenants rarely have applications activated */
+    private static ThreadPoolExecutor createCacheWarmer() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(cacheWarmerThreads, cacheWarmerThreads, 1, TimeUnit.MINUTES,
+                                                             new LinkedBlockingQueue<>(),
+                                                             new DaemonThreadFactory("warm config cache"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public void removeApplication(ApplicationId applicationId) {
         if (applicationMapper.hasApplication(applicationId, clock.instant())) {
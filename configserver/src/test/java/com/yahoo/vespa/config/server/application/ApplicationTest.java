@@ -12,6 +12,7 @@ import com.yahoo.config.provision.InstanceName;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.component.Version;
 import com.yahoo.jrt.Request;
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.GetConfigRequest;
@@ -28,6 +29,7 @@ import com.yahoo.vespa.config.server.UnknownConfigDefinitionException;
 import com.yahoo.vespa.config.server.UserConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
 import com.yahoo.vespa.config.server.monitoring.Metrics;
+import com.yahoo.vespa.config.server.rpc.UncompressedConfigResponseFactory;
 import com.yahoo.vespa.model.VespaModel;
 import org.junit.Before;
 import org.junit.Test;
@@ -138,6 +140,19 @@ public class ApplicationTest {
         assertTrue(response == cached_response);
     }
 
+    @Test
+    public void require_that_warmed_cache_is_used() {
+        handler.warmCache(new UncompressedConfigResponseFactory(), Runnable::run, 4);
+        ConfigKey<?> key = handler.allConfigsProduced().stream()
+                                  .filter(produced -> produced.getName().equals(SlobroksConfig.CONFIG_DEF_NAME))
+                                  .findFirst().get();
+        ConfigResponse warmed = handler.getCache().get(new ConfigCacheKey(key, SlobroksConfig.CONFIG_DEF_MD5));
+        assertNotNull(warmed);
+        ConfigResponse response = handler.resolveConfig(createRequest(SlobroksConfig.CONFIG_DEF_NAME, SlobroksConfig.CONFIG_DEF_NAMESPACE,
+                                                                      SlobroksConfig.CONFIG_DEF_MD5, emptySchema, key.getConfigId()));
+        assertTrue(response == warmed);
+    }
+
     private static GetConfigRequest createRequest(String name, String namespace, String defMd5, String[] schema, String configId) {
         Request request = JRTClientConfigRequestV3.
                 createWithParams(new ConfigKey<>(name, configId, namespace, defMd5, null), DefContent.fromArray(schema),
@@ -208,6 +208,26 @@ public class HostedDeployTest {
         tester.deployApp("src/test/apps/hosted/", "7.1.0", Instant.now());
     }
 
+    /**
+     * Tests that we fail deployment if one of several older model versions, which are built in parallel,
+     * fails to be created
+     **/
+    @Test(expected = InvalidApplicationException.class)
+    public void testDeploymentFailsIfOneOfSeveralNeededModelVersionsFails() {
+        List<Host> hosts = Arrays.asList(createHost("host1", "7.0.0"),
+                                         createHost("host2", "7.1.0"),
+                                         createHost("host3", "7.1.0"));
+        InMemoryProvisioner provisioner = new InMemoryProvisioner(new Hosts(hosts), true);
+
+        CountingModelFactory factory700 = DeployTester.createModelFactory(Version.fromString("7.0.0"));
+        ModelFactory factory710 = DeployTester.createFailingModelFactory(Version.fromString("7.1.0"));
+        CountingModelFactory factory720 = DeployTester.createModelFactory(Version.fromString("7.2.0"));
+        List<ModelFactory> modelFactories = Arrays.asList(factory700, factory710, factory720);
+
+        DeployTester tester = new DeployTester(modelFactories, createConfigserverConfig(), Clock.systemUTC(), provisioner);
+        tester.deployApp("src/test/apps/hosted/", "7.2.0", Instant.now());
+    }
+
     /**
      * Test that deploying an application works when there are no allocated hosts in the system
      * (the bootstrap a new zone case, so deploying the routing app since that is the first deployment
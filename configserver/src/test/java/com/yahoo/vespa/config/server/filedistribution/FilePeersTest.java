@@ -0,0 +1,80 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilePeersTest {
+
+    private final FileReference reference = new FileReference("foo");
+
+    @Test
+    public void peers_in_same_domain_are_preferred() {
+        FilePeers peers = new FilePeers();
+        peers.add(reference, "tcp/host1.rack1.example.com:19090");
+        peers.add(reference, "tcp/host2.rack2.example.com:19090");
+        peers.add(reference, "tcp/host3.rack1.example.com:19090");
+        peers.add(reference, "tcp/host4.rack2.example.com:19090");
+
+        List<String> specs = peers.get(reference, "tcp/host5.rack2.example.com:19090");
+        assertEquals(4, specs.size());
+        assertEquals(new HashSet<>(Arrays.asList("tcp/host2.rack2.example.com:19090", "tcp/host4.rack2.example.com:19090")),
+                     new HashSet<>(specs.subList(0, 2)));
+
+        assertEquals(3, peers.get(reference, "tcp/host1.rack1.example.com:19090").size());
+        assertTrue(peers.get(new FileReference("bar"), "tcp/host1.rack1.example.com:19090").isEmpty());
+    }
+
+    @Test
+    public void number_of_peers_is_bounded() {
+        FilePeers peers = new FilePeers();
+        for (int i = 0; i < FilePeers.maxPeersPerFileReference + 10; i++)
+            peers.add(reference, "tcp/host" + i + ":19090");
+        assertEquals(FilePeers.maxPeersReturned, peers.get(reference, "").size());
+        assertEquals("example.com", FilePeers.domain("tcp/host1.example.com:19090"));
+    }
+
+    @Test
+    public void peers_expire_unless_they_register_again() {
+        ManualClock clock = new ManualClock();
+        FilePeers peers = new FilePeers(clock);
+        peers.add(reference, "tcp/host1:19090");
+        peers.add(reference, "tcp/host2:19090");
+
+        clock.advance(FilePeers.peerTtl.minus(Duration.ofMinutes(1)));
+        peers.add(reference, "tcp/host1:19090");
+        assertEquals(2, peers.get(reference, "").size());
+
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(Collections.singletonList("tcp/host1:19090"), peers.get(reference, ""));
+
+        clock.advance(FilePeers.peerTtl);
+        assertTrue(peers.get(reference, "").isEmpty());
+    }
+
+    @Test
+    public void failed_peer_is_removed() {
+        FilePeers peers = new FilePeers();
+        peers.add(reference, "tcp/host1:19090");
+        peers.add(reference, "tcp/host2:19090");
+        peers.remove(reference, "tcp/host2:19090");
+        peers.remove(new FileReference("bar"), "tcp/host1:19090");
+        assertEquals(Collections.singletonList("tcp/host1:19090"), peers.get(reference, ""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_spec_is_not_added() {
+        new FilePeers().add(reference, "host1:19090");
+    }
+
+}
@@ -105,7 +105,8 @@ public class SessionPreparerTest {
                 componentRegistry.getStaticConfigDefinitionRepo(),
                 curator,
                 componentRegistry.getZone(),
-                flagSource);
+                flagSource,
+                componentRegistry.getMetrics());
     }
 
     @Test(expected = InvalidApplicationException.class)
@@ -22,7 +22,12 @@ import java.util.List;
  * @author bratseth
  */
 class RpcClient implements Client {
-    private final Supervisor supervisor = new Supervisor(new Transport());
+
+    private final Supervisor supervisor;
+
+    RpcClient(int transportThreads) {
+        supervisor = new Supervisor(new Transport(transportThreads));
+    }
 
     @Override
     public NodeConnection createConnection(String hostname, int port) {
@@ -42,7 +42,7 @@ public class RpcResourcePool {
     public RpcResourcePool(DispatchConfig dispatchConfig) {
         var clients = new ArrayList<RpcClient>(dispatchConfig.numJrtSupervisors());
         for (int i = 0; i < dispatchConfig.numJrtSupervisors(); i++) {
-            clients.add(new RpcClient());
+            clients.add(new RpcClient(dispatchConfig.numJrtTransportThreads()));
         }
 
         // Create node rpc connection pools, indexed by the node distribution key
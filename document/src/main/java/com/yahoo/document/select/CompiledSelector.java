@@ -0,0 +1,163 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.select.rule.ExpressionNode;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A document selector compiled for repeated evaluation, created by {@link DocumentSelector#compile()}.
+ * The expression is compiled separately for each document type it is evaluated for, the first time a document
+ * of that type is seen, and gives the same results as evaluating the document selector it was compiled from,
+ * except that now() is evaluated once, when this is created.</p>
+ *
+ * <p>Compiled selectors are multithread safe.</p>
+ */
+public class CompiledSelector {
+
+    private final ExpressionNode expression;
+    private final Map<ExpressionNode, Object> constants;
+    private final Evaluator operationEvaluator;
+    private final Map<DocumentType, TypeEvaluator> putEvaluators = new ConcurrentHashMap<>();
+
+    CompiledSelector(ExpressionNode expression) {
+        this.expression = expression;
+        this.constants = SelectionCompiler.foldConstants(expression);
+        this.operationEvaluator = compile(null);
+    }
+
+    /**
+     * Returns whether the document referenced by this document operation is accepted by this selector
+     *
+     * @param op A document operation
+     * @return True if the document is accepted.
+     * @throws RuntimeException if the evaluation enters an illegal state
+     */
+    public Result accepts(DocumentOperation op) {
+        if (op instanceof DocumentPut) {
+            return evaluatorFor(((DocumentPut)op).getDocument().getDataType()).evaluate(op);
+        }
+        return operationEvaluator.evaluate(op);
+    }
+
+    /**
+     * Returns whether the document serialized at the current position of the given deserializer is accepted by this
+     * selector. Only the fields this selector reads are deserialized when it is compiled for the type of the
+     * document, which makes this much cheaper than deserializing the document when the selection reads few fields.
+     * The deserializer is left positioned after the document.
+     *
+     * @param deserializer A deserializer positioned at the start of a serialized document
+     * @return True if the document is accepted.
+     * @throws RuntimeException if the evaluation enters an illegal state
+     */
+    public Result accepts(VespaDocumentDeserializer6 deserializer) {
+        Document document = deserializer.readDocument((type, field) -> evaluatorFor(type).reads(field));
+        return accepts(new DocumentPut(document));
+    }
+
+    /** Returns whether puts of documents of the given type are evaluated by a compiled expression */
+    public boolean isCompiled(DocumentType type) {
+        return evaluatorFor(type) instanceof CompiledEvaluator;
+    }
+
+    private Evaluator evaluatorFor(DocumentType type) {
+        // Document types are equal by name and version, so verify this evaluator was compiled for this instance.
+        TypeEvaluator evaluator = putEvaluators.get(type);
+        if (evaluator == null || evaluator.type != type) {
+            evaluator = new TypeEvaluator(type, compile(type));
+            putEvaluators.put(type, evaluator);
+        }
+        return evaluator.evaluator;
+    }
+
+    private Evaluator compile(DocumentType type) {
+        SelectionCompiler compiler = new SelectionCompiler(type, constants);
+        SelectionCompiler.Term term = compiler.compile(expression);
+        if (term == null) {
+            return new InterpretingEvaluator(expression);
+        }
+        return new CompiledEvaluator(term, compiler.fieldsRead());
+    }
+
+    /**
+     * Returns this selector as a Document Selection Language string.
+     *
+     * @return The selection string.
+     */
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    private interface Evaluator {
+
+        Result evaluate(DocumentOperation op);
+
+        /** Returns whether this may read the given document field */
+        boolean reads(Field field);
+
+    }
+
+    private static final class InterpretingEvaluator implements Evaluator {
+
+        private final ExpressionNode expression;
+
+        InterpretingEvaluator(ExpressionNode expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Result evaluate(DocumentOperation op) {
+            return Result.toResult(expression.evaluate(new Context(op)));
+        }
+
+        @Override
+        public boolean reads(Field field) {
+            return true;
+        }
+
+    }
+
+    private static final class CompiledEvaluator implements Evaluator {
+
+        private final SelectionCompiler.Term term;
+        private final Set<Field> fieldsRead;
+
+        CompiledEvaluator(SelectionCompiler.Term term, Set<Field> fieldsRead) {
+            this.term = term;
+            this.fieldsRead = fieldsRead;
+        }
+
+        @Override
+        public Result evaluate(DocumentOperation op) {
+            return Result.toResult(term.evaluate(op));
+        }
+
+        @Override
+        public boolean reads(Field field) {
+            return fieldsRead.contains(field);
+        }
+
+    }
+
+    private static final class TypeEvaluator {
+
+        private final DocumentType type;
+        private final Evaluator evaluator;
+
+        TypeEvaluator(DocumentType type, Evaluator evaluator) {
+            this.type = type;
+            this.evaluator = evaluator;
+        }
+
+    }
+
+}
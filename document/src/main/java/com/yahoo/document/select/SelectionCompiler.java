@@ -0,0 +1,426 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.FieldPath;
+import com.yahoo.document.FieldPathEntry;
+import com.yahoo.document.NumericDataType;
+import com.yahoo.document.PrimitiveDataType;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.NumericFieldValue;
+import com.yahoo.document.datatypes.StructuredFieldValue;
+import com.yahoo.document.select.rule.ArithmeticNode;
+import com.yahoo.document.select.rule.AttributeNode;
+import com.yahoo.document.select.rule.ComparisonNode;
+import com.yahoo.document.select.rule.DocumentNode;
+import com.yahoo.document.select.rule.EmbracedNode;
+import com.yahoo.document.select.rule.ExpressionNode;
+import com.yahoo.document.select.rule.IdNode;
+import com.yahoo.document.select.rule.LiteralNode;
+import com.yahoo.document.select.rule.LogicNode;
+import com.yahoo.document.select.rule.NegationNode;
+import com.yahoo.document.select.rule.NowNode;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.function.DoublePredicate;
+
+/**
+ * Compiles a selection expression tree into a tree of terms specialized for a single document type. Field paths
+ * are resolved to fields once, constant subexpressions are replaced by their values, and comparisons between
+ * numeric or string fields and constants are done directly on the field values.
+ *
+ * Only expressions whose every value is single valued are compiled, as the terms produce plain results instead of
+ * the result lists of the expression nodes. Everything else, e.g., collection fields, variables and functions,
+ * is left to the interpreter by returning null from {@link #compile}.
+ */
+class SelectionCompiler {
+
+    /** A compiled expression, evaluating to the same result as the expression node it was compiled from. */
+    interface Term {
+
+        Object evaluate(DocumentOperation op);
+
+    }
+
+    private static final Context emptyContext = new Context(null);
+
+    private final DocumentType type;
+    private final Map<ExpressionNode, Object> constants;
+    private final Set<Field> fieldsRead = new HashSet<>();
+
+    /**
+     * Creates a compiler for the given document type.
+     *
+     * @param type The type of the documents of the put operations to compile for, or null to compile for all
+     *             other operations.
+     * @param constants The constant subexpressions of the expression to compile, see {@link #foldConstants}.
+     */
+    SelectionCompiler(DocumentType type, Map<ExpressionNode, Object> constants) {
+        this.type = type;
+        this.constants = constants;
+    }
+
+    /**
+     * Evaluates all subexpressions of the given expression which do not depend on the document, including now(),
+     * and returns their values.
+     */
+    static Map<ExpressionNode, Object> foldConstants(ExpressionNode expression) {
+        Map<ExpressionNode, Object> constants = new IdentityHashMap<>();
+        foldConstants(expression, constants);
+        return constants;
+    }
+
+    private static boolean foldConstants(ExpressionNode node, Map<ExpressionNode, Object> constants) {
+        boolean constant;
+        if (node instanceof LiteralNode || node instanceof NowNode) {
+            constant = true;
+        } else if (node instanceof EmbracedNode) {
+            constant = foldConstants(((EmbracedNode)node).getNode(), constants);
+        } else if (node instanceof NegationNode) {
+            constant = foldConstants(((NegationNode)node).getNode(), constants);
+        } else if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode)node;
+            constant = foldConstants(comparison.getLHS(), constants) & foldConstants(comparison.getRHS(), constants);
+        } else if (node instanceof ArithmeticNode) {
+            constant = true;
+            for (ArithmeticNode.NodeItem item : ((ArithmeticNode)node).getItems()) {
+                constant &= foldConstants(item.getNode(), constants);
+            }
+        } else if (node instanceof LogicNode) {
+            constant = true;
+            for (LogicNode.NodeItem item : ((LogicNode)node).getItems()) {
+                constant &= foldConstants(item.getNode(), constants);
+            }
+        } else {
+            return false;
+        }
+        if ( ! constant) {
+            return false;
+        }
+        try {
+            constants.put(node, node.evaluate(emptyContext));
+            return true;
+        } catch (RuntimeException e) {
+            return false; // Leave it to the interpreter to fail in the same way for each document.
+        }
+    }
+
+    /** Returns the document fields read by the terms compiled so far */
+    Set<Field> fieldsRead() {
+        return fieldsRead;
+    }
+
+    /**
+     * Returns a term evaluating to the same value as the given node, or null if it cannot be compiled.
+     */
+    Term compile(ExpressionNode node) {
+        if (constants.containsKey(node)) {
+            return new Constant(constants.get(node));
+        } else if (node instanceof EmbracedNode) {
+            return compile(((EmbracedNode)node).getNode());
+        } else if (node instanceof DocumentNode) {
+            DocumentNode documentNode = (DocumentNode)node;
+            return documentNode::evaluate;
+        } else if (node instanceof IdNode) {
+            return op -> node.evaluate(new Context(op));
+        } else if (node instanceof AttributeNode) {
+            return compileAttribute((AttributeNode)node);
+        } else if (node instanceof ComparisonNode) {
+            return compileComparison((ComparisonNode)node);
+        } else if (node instanceof NegationNode) {
+            Term term = compile(((NegationNode)node).getNode());
+            return term == null ? null : op -> Result.invert(Result.toResult(term.evaluate(op)));
+        } else if (node instanceof LogicNode) {
+            return compileLogic((LogicNode)node);
+        }
+        return null;
+    }
+
+    private Term compileAttribute(AttributeNode node) {
+        if ( ! (node.getValue() instanceof DocumentNode)) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder();
+        for (AttributeNode.Item item : node.getItems()) {
+            if (item.getType() == AttributeNode.Item.FUNCTION) {
+                return null;
+            }
+            if (path.length() > 0) {
+                path.append(".");
+            }
+            path.append(item.getName());
+        }
+        DocumentNode documentNode = (DocumentNode)node.getValue();
+        if (type == null) { // Field values are only available in puts.
+            return op -> documentNode.evaluate(op) == Boolean.FALSE ? Result.FALSE : Result.INVALID;
+        }
+        if ( ! type.isA(documentNode.getType())) {
+            return new Constant(Result.FALSE);
+        }
+        FieldPath fieldPath;
+        try {
+            fieldPath = type.buildFieldPath(path.toString());
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (fieldPath.isEmpty() || ! (fieldPath.getResultingDataType() instanceof PrimitiveDataType)) {
+            return null;
+        }
+        Field[] fields = new Field[fieldPath.size()];
+        for (int i = 0; i < fields.length; i++) {
+            FieldPathEntry entry = fieldPath.get(i);
+            if (entry.getType() != FieldPathEntry.Type.STRUCT_FIELD) {
+                return null;
+            }
+            fields[i] = entry.getFieldRef();
+            if (i < fields.length - 1 && ! (fields[i].getDataType() instanceof StructDataType)) {
+                return null; // Struct fields of collections are iterated over.
+            }
+        }
+        fieldsRead.add(fields[0]);
+        return new FieldTerm(fields);
+    }
+
+    private Term compileComparison(ComparisonNode node) {
+        Term lhs = compileOperand(node.getLHS());
+        Term rhs = compileOperand(node.getRHS());
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        // The interpreter compares the field value with the other operand, whichever side it is on.
+        Term term = null;
+        if (lhs instanceof FieldTerm && rhs instanceof Constant) {
+            term = compileFieldComparison(node.getOperator(), (FieldTerm)lhs, ((Constant)rhs).value);
+        } else if (rhs instanceof FieldTerm && lhs instanceof Constant) {
+            term = compileFieldComparison(node.getOperator(), (FieldTerm)rhs, ((Constant)lhs).value);
+        }
+        if (term != null) {
+            return term;
+        }
+        return op -> compare(node, lhs.evaluate(op), rhs.evaluate(op));
+    }
+
+    /** Returns the compiled operand, or null if it is not a single value. */
+    private Term compileOperand(ExpressionNode node) {
+        while (node instanceof EmbracedNode) {
+            node = ((EmbracedNode)node).getNode();
+        }
+        if (constants.containsKey(node) || node instanceof DocumentNode || node instanceof IdNode ||
+            node instanceof AttributeNode)
+        {
+            return compile(node);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a term comparing the given field with a constant without going through the generic comparison,
+     * or null if there is no specialized comparison for these types.
+     */
+    private static Term compileFieldComparison(String operator, FieldTerm field, Object constant) {
+        DataType fieldType = field.fields[field.fields.length - 1].getDataType();
+        if (constant instanceof Number && fieldType instanceof NumericDataType) {
+            double value = ((Number)constant).doubleValue();
+            if (Double.isNaN(value)) {
+                return null;
+            }
+            switch (operator) {
+                case "==": return compileNumberComparison(field, a -> a == value, Result.FALSE, Result.FALSE);
+                case "!=": return compileNumberComparison(field, a -> a != value, Result.TRUE, Result.TRUE);
+                case "<": return compileNumberComparison(field, a -> a < value, Result.INVALID, Result.INVALID);
+                case "<=": return compileNumberComparison(field, a -> a <= value, Result.INVALID, Result.INVALID);
+                case ">": return compileNumberComparison(field, a -> a > value, Result.INVALID, Result.INVALID);
+                case ">=": return compileNumberComparison(field, a -> a >= value, Result.INVALID, Result.INVALID);
+                default: return null;
+            }
+        }
+        if (constant instanceof String && fieldType == DataType.STRING) {
+            switch (operator) {
+                case "==": return compileStringEquality(field, (String)constant, true);
+                case "!=": return compileStringEquality(field, (String)constant, false);
+                default: return null;
+            }
+        }
+        return null;
+    }
+
+    private static Term compileNumberComparison(FieldTerm field, DoublePredicate predicate,
+                                                Result ifMissing, Result ifNaN) {
+        return op -> {
+            FieldValue value = field.evaluate(op);
+            if (value == null) {
+                return ifMissing;
+            }
+            double a = ((NumericFieldValue)value).getNumber().doubleValue();
+            if (Double.isNaN(a)) {
+                return ifNaN;
+            }
+            return Result.toResult(predicate.test(a));
+        };
+    }
+
+    private static Term compileStringEquality(FieldTerm field, String constant, boolean equal) {
+        return op -> {
+            FieldValue value = field.evaluate(op);
+            if (value == null) {
+                return Result.toResult( ! equal);
+            }
+            return Result.toResult(constant.equals(value.toString()) == equal);
+        };
+    }
+
+    /** Compares two single values the same way as {@link ComparisonNode#evaluate} does. */
+    private static Result compare(ComparisonNode node, Object lhs, Object rhs) {
+        String operator = node.getOperator();
+        if (lhs == null || rhs == null) {
+            if (operator.equals("==") || operator.equals("=")) {
+                return Result.toResult(lhs == rhs);
+            } else if (operator.equals("!=")) {
+                return Result.toResult(lhs != rhs);
+            }
+            return Result.INVALID;
+        }
+        if (lhs == Result.INVALID || rhs == Result.INVALID) {
+            return Result.INVALID;
+        }
+        boolean lhsIsField = lhs instanceof FieldValue;
+        boolean rhsIsField = rhs instanceof FieldValue;
+        if (lhsIsField && rhsIsField) {
+            if (operator.equals("==") || operator.equals("!=")) {
+                return node.evaluateBool(lhs, rhs);
+            }
+            return Result.INVALID;
+        } else if (rhsIsField) {
+            return node.evaluateBool(rhs, lhs);
+        }
+        return node.evaluateBool(lhs, rhs);
+    }
+
+    private Term compileLogic(LogicNode node) {
+        Stack<LogicItem> buf = new Stack<>();
+        for (LogicNode.NodeItem item : node.getItems()) {
+            Term term = compile(item.getNode());
+            if (term == null) {
+                return null;
+            }
+            while ( ! buf.isEmpty() && buf.peek().operator > item.getOperator()) {
+                if ( ! combine(buf)) {
+                    return null;
+                }
+            }
+            buf.push(new LogicItem(item.getOperator(), term));
+        }
+        while (buf.size() > 1) {
+            if ( ! combine(buf)) {
+                return null;
+            }
+        }
+        Term term = buf.pop().term;
+        return op -> Result.toResult(term.evaluate(op));
+    }
+
+    /**
+     * Combines the top two items of the given stack using the operator of the second, as {@link LogicNode} does.
+     *
+     * @return Whether the operator could be compiled.
+     */
+    private static boolean combine(Stack<LogicItem> buf) {
+        LogicItem rhs = buf.pop();
+        LogicItem lhs = buf.pop();
+        switch (rhs.operator) {
+            case LogicNode.AND:
+                buf.push(new LogicItem(lhs.operator, op -> and(Result.toResult(lhs.term.evaluate(op)),
+                                                               Result.toResult(rhs.term.evaluate(op)))));
+                return true;
+            case LogicNode.OR:
+                buf.push(new LogicItem(lhs.operator, op -> or(Result.toResult(lhs.term.evaluate(op)),
+                                                              Result.toResult(rhs.term.evaluate(op)))));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Result and(Result lhs, Result rhs) {
+        if (lhs == Result.TRUE && rhs == Result.TRUE) {
+            return Result.TRUE;
+        }
+        if (lhs == Result.FALSE || rhs == Result.FALSE) {
+            return Result.FALSE;
+        }
+        return Result.INVALID;
+    }
+
+    private static Result or(Result lhs, Result rhs) {
+        if (lhs == Result.TRUE || rhs == Result.TRUE) {
+            return Result.TRUE;
+        }
+        if (lhs == Result.FALSE && rhs == Result.FALSE) {
+            return Result.FALSE;
+        }
+        return Result.INVALID;
+    }
+
+    /** A constant value. */
+    private static final class Constant implements Term {
+
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(DocumentOperation op) {
+            return value;
+        }
+
+    }
+
+    /** The value of a primitive field, possibly inside structs, of a put document of the compiled type. */
+    private static final class FieldTerm implements Term {
+
+        private final Field[] fields;
+
+        FieldTerm(Field[] fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public FieldValue evaluate(DocumentOperation op) {
+            StructuredFieldValue value = ((DocumentPut)op).getDocument();
+            for (int i = 0; i < fields.length - 1; i++) {
+                FieldValue nested = value.getFieldValue(fields[i]);
+                if (nested == null) {
+                    return null;
+                }
+                value = (StructuredFieldValue)nested;
+            }
+            return value.getFieldValue(fields[fields.length - 1]);
+        }
+
+    }
+
+    /** A term in a stack, with the operator combining it with the term before. */
+    private static final class LogicItem {
+
+        private final int operator;
+        private final Term term;
+
+        LogicItem(int operator, Term term) {
+            this.operator = operator;
+            this.term = term;
+        }
+
+    }
+
+}
@@ -23,6 +23,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The last regular expression compiled by this, reused as long as the pattern source does not change.
+    private volatile CachedPattern cachedPattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -73,6 +76,7 @@ public class ComparisonNode implements ExpressionNode {
      */
     public ComparisonNode setOperator(String operator) {
         this.operator = operator;
+        this.cachedPattern = null;
         return this;
     }
 
@@ -308,7 +312,7 @@ public class ComparisonNode implements ExpressionNode {
      * @param rhs Right hand side of operation.
      * @return The evaluation result.
      */
-    private Result evaluateBool(Object lhs, Object rhs) {
+    public Result evaluateBool(Object lhs, Object rhs) {
         if (operator.equals("==")) {
             return evaluateEquals(lhs, rhs);
         } else if (operator.equals("!=")) {
@@ -386,11 +390,25 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(getPattern(right).matcher(left).find());
+    }
+
+    /**
+     * Returns the compiled pattern of the given right hand side string, compiling it only if it differs from the
+     * one last seen. The right hand side is nearly always a literal, so this avoids compiling the same regular
+     * expression for every document evaluated.
+     *
+     * @param right The regular expression or glob to compile.
+     * @return The compiled pattern.
+     */
+    private Pattern getPattern(String right) {
+        CachedPattern cached = cachedPattern;
+        if (cached != null && cached.source.equals(right)) {
+            return cached.pattern;
         }
+        Pattern pattern = Pattern.compile(operator.equals("=~") ? right : globToRegex(right));
+        cachedPattern = new CachedPattern(right, pattern);
+        return pattern;
     }
 
     /**
@@ -449,4 +467,17 @@ public class ComparisonNode implements ExpressionNode {
     public String toString() {
         return lhs + " " + operator + " " + rhs;
     }
+
+    /**
+     * Private class to hold a compiled pattern together with the string it was compiled from.
+     */
+    private static final class CachedPattern {
+        private final String source;
+        private final Pattern pattern;
+
+        CachedPattern(String source, Pattern pattern) {
+            this.source = source;
+            this.pattern = pattern;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.text.Utf8;
+import com.yahoo.vespaxmlparser.DocumentFeedOperation;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import com.yahoo.vespaxmlparser.FeedReader;
+import com.yahoo.vespaxmlparser.RemoveFeedOperation;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Reads document operations written by {@link BinaryFeedWriter}. The documents are deserialized directly from
+ * their binary form, without any text parsing.
+ *
+ * <p>The feed reader will take ownership of the input stream and close it when the last operation has been read.</p>
+ */
+public class BinaryFeedReader implements FeedReader {
+
+    private final DataInputStream stream;
+    private final DocumentTypeManager manager;
+    private final Compressor compressor = new Compressor();
+    private boolean headerRead = false;
+    private GrowableByteBuffer block = null;
+
+    public BinaryFeedReader(InputStream stream, DocumentTypeManager manager) {
+        this.stream = new DataInputStream(stream);
+        this.manager = manager;
+    }
+
+    /** Returns whether the given bytes, the start of a stream, are the header of a binary feed */
+    public static boolean isBinaryFeed(byte[] start, int length) {
+        return length >= BinaryFeedWriter.MAGIC.length
+               && Arrays.equals(BinaryFeedWriter.MAGIC, Arrays.copyOf(start, BinaryFeedWriter.MAGIC.length));
+    }
+
+    @Override
+    public FeedOperation read() throws Exception {
+        if ( ! headerRead) {
+            readHeader();
+        }
+        while (block == null || block.position() == block.limit()) {
+            if ( ! readBlock()) {
+                stream.close();
+                return FeedOperation.INVALID;
+            }
+        }
+        byte type = block.get();
+        int size = block.getInt();
+        if (size < 0 || size > block.remaining())
+            throw new DeserializationException("Record of " + size + " bytes exceeds its block");
+        int end = block.position() + size;
+        FeedOperation operation;
+        switch (type) {
+            case BinaryFeedWriter.PUT:
+                GrowableByteBuffer record = GrowableByteBuffer.wrap(block.array(), block.position(), size);
+                operation = new DocumentFeedOperation(new Document(DocumentDeserializerFactory.create6(manager, record)));
+                break;
+            case BinaryFeedWriter.REMOVE:
+                operation = new RemoveFeedOperation(new DocumentId(Utf8.toString(block.array(), block.position(), size)));
+                break;
+            default:
+                throw new DeserializationException("Unknown record type " + type);
+        }
+        block.position(end);
+        return operation;
+    }
+
+    private void readHeader() throws IOException {
+        byte[] magic = new byte[BinaryFeedWriter.MAGIC.length];
+        stream.readFully(magic);
+        if ( ! isBinaryFeed(magic, magic.length))
+            throw new DeserializationException("Input is not a binary feed of a supported version");
+        headerRead = true;
+    }
+
+    /** Reads the next block, and returns false if there are no more blocks */
+    private boolean readBlock() throws IOException {
+        int typeCode = stream.read();
+        if (typeCode < 0) return false;
+        try {
+            CompressionType type = CompressionType.valueOf((byte) typeCode);
+            int size = stream.readInt();
+            int storedSize = stream.readInt();
+            if (size < 0 || storedSize < 0)
+                throw new DeserializationException("Invalid block sizes " + size + " and " + storedSize);
+            byte[] stored = new byte[storedSize];
+            stream.readFully(stored);
+            byte[] data = type.isCompressed() ? compressor.decompress(type, stored, 0, size, Optional.of(storedSize)) : stored;
+            block = GrowableByteBuffer.wrap(data, 0, size);
+            return true;
+        }
+        catch (EOFException e) {
+            throw new DeserializationException("Binary feed ends in the middle of a block");
+        }
+    }
+
+}
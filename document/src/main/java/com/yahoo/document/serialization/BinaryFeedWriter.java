@@ -0,0 +1,145 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.text.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+
+/**
+ * Writes document puts and removes to a channel in the binary feed format, which is read by {@link BinaryFeedReader}.
+ * Documents are stored in the 6.x serialization format, so no text rendering or parsing is needed.
+ *
+ * <p>The format is a header, {@link #MAGIC}, followed by blocks. Each block is a compression type byte,
+ * the uncompressed and stored sizes as ints, and the stored, possibly compressed, data. The data of a block is a
+ * sequence of records, each of which is a type byte, an int size, and the serialized document or the UTF-8
+ * document id of a remove. All ints are big endian.</p>
+ *
+ * <p>Records are added to {@link Block}s, which are owned by a single thread each, so serialization and compression
+ * may be done by many threads in parallel. Only the writing of complete blocks to the channel is serialized.</p>
+ */
+public class BinaryFeedWriter {
+
+    /** The first bytes of a binary feed: a format name and a version number */
+    public static final byte[] MAGIC = { 'V', 'D', 'O', 'C', 'B', 'I', 'N', 1 };
+
+    /** The default number of bytes of records in a block before it should be written */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+    static final int BLOCK_HEADER_SIZE = 9;
+
+    private final Object monitor = new Object();
+    private final WritableByteChannel channel;
+    private final CompressionType compression;
+    private final Compressor compressor;
+    private final int blockSize;
+
+    /**
+     * Creates a writer which writes the feed header to the given channel.
+     *
+     * @param channel the channel to write to, which is not closed by this
+     * @param compression the compression to use for blocks, either NONE or LZ4
+     * @param blockSize the number of bytes of records in a block before it is full
+     * @throws IOException if writing the header fails
+     */
+    public BinaryFeedWriter(WritableByteChannel channel, CompressionType compression, int blockSize) throws IOException {
+        if (compression != CompressionType.NONE && compression != CompressionType.LZ4)
+            throw new IllegalArgumentException("Unsupported block compression " + compression);
+        this.channel = channel;
+        this.compression = compression;
+        this.compressor = new Compressor(compression, 0, 0.95, 0);
+        this.blockSize = blockSize;
+        synchronized (monitor) {
+            writeFully(ByteBuffer.wrap(MAGIC));
+        }
+    }
+
+    /** Returns a new, empty block to add records to */
+    public Block newBlock() {
+        return new Block(blockSize);
+    }
+
+    /**
+     * Compresses the given block in the calling thread, writes it to the channel, and clears it.
+     * Empty blocks are not written. This may be called by many threads, but not concurrently for the same block.
+     */
+    public void write(Block block) throws IOException {
+        if (block.isEmpty()) return;
+
+        GrowableByteBuffer records = block.buffer;
+        int size = records.position();
+        Compressor.Compression compressed = compressor.compress(compression, records.array(), Optional.of(size));
+        CompressionType type = compressed.type() == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compressed.type();
+        int storedSize = type == CompressionType.NONE ? size : compressed.data().length;
+
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.put(type.getCode()).putInt(size).putInt(storedSize).flip();
+        ByteBuffer data = ByteBuffer.wrap(type == CompressionType.NONE ? records.array() : compressed.data(), 0, storedSize);
+        synchronized (monitor) {
+            writeFully(header);
+            writeFully(data);
+        }
+        records.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** A block of records, owned by a single thread */
+    public static class Block {
+
+        private final int blockSize;
+        private final GrowableByteBuffer buffer;
+        private final DocumentSerializer serializer;
+
+        private Block(int blockSize) {
+            this.blockSize = blockSize;
+            this.buffer = new GrowableByteBuffer(blockSize + blockSize / 4);
+            this.serializer = DocumentSerializerFactory.create6(buffer);
+        }
+
+        /** Adds a put of the given document to this */
+        public void addPut(Document document) {
+            int start = startRecord(PUT);
+            document.serialize(serializer);
+            endRecord(start);
+        }
+
+        /** Adds a remove of the given document id to this */
+        public void addRemove(DocumentId id) {
+            int start = startRecord(REMOVE);
+            buffer.put(Utf8.toBytes(id.toString()));
+            endRecord(start);
+        }
+
+        private int startRecord(byte type) {
+            buffer.put(type);
+            int start = buffer.position();
+            buffer.putInt(0);
+            return start;
+        }
+
+        private void endRecord(int start) {
+            buffer.putInt(start, buffer.position() - start - 4);
+        }
+
+        /** Returns whether this holds at least the block size number of bytes, and should be written */
+        public boolean isFull() { return buffer.position() >= blockSize; }
+
+        public boolean isEmpty() { return buffer.position() == 0; }
+
+    }
+
+}
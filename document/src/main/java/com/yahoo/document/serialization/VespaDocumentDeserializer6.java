@@ -72,6 +72,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 
 import static com.yahoo.text.Utf8.calculateStringPositions;
 
@@ -101,8 +103,23 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
          read(null, document);
     }
 
-    @SuppressWarnings("deprecation")
+    /**
+     * Reads a document like {@link Document#Document(DocumentReader)}, but only deserializes the values of the
+     * fields accepted by the given filter, and skips over the serialized values of all other fields.
+     *
+     * @param fieldFilter returns whether to deserialize the given field of a document of the given type
+     * @return the document read, containing only the accepted fields
+     */
+    public Document readDocument(BiPredicate<DocumentType, Field> fieldFilter) {
+        return new Document(new FilteringDocumentReader(fieldFilter));
+    }
+
     public void read(FieldBase field, Document doc) {
+        read(doc, (type, docField) -> true);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void read(Document doc, BiPredicate<DocumentType, Field> fieldFilter) {
         // Verify that we have correct version
         version = getShort(null);
         if (version < 6 || version > Document.SERIALIZED_VERSION) {
@@ -130,11 +147,12 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         Struct b = doc.getBody();
         h.clear();
         b.clear();
+        Predicate<Field> fields = field -> fieldFilter.test(doc.getDataType(), field);
         if ((content & 0x2) != 0) {
-            readHeaderBody(h, b);
+            readHeaderBody(h, b, fields);
         }
         if ((content & 0x4) != 0) {
-            readHeaderBody(b, h);
+            readHeaderBody(b, h, fields);
         }
 
         if (version < 8) {
@@ -370,7 +388,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         buf = bigBuf;
     }
 
-    private void readHeaderBody(Struct primary, Struct alternate) {
+    private void readHeaderBody(Struct primary, Struct alternate, Predicate<Field> fields) {
         primary.setVersion(version);
         int startPos = position();
 
@@ -422,18 +440,23 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
             int headerSize = position() - startPos;
             dataSize -= headerSize;
         }
-        byte[] destination = compressor.decompress(compression, getBuf().array(), position(), uncompressedSize, Optional.of(dataSize));
+        boolean inPlace = compression == CompressionType.NONE || compression == CompressionType.INCOMPRESSIBLE;
+        int dataPos = position();
+        if ( ! inPlace) {
+            byte[] destination = compressor.decompress(compression, getBuf().array(), position(), uncompressedSize, Optional.of(dataSize));
 
-        // set position in original buffer to after data
-        position(position() + dataSize);
+            // set position in original buffer to after data
+            position(position() + dataSize);
 
-        // for a while: deserialize from this buffer instead:
-        buf = GrowableByteBuffer.wrap(destination);
+            // for a while: deserialize from this buffer instead:
+            buf = GrowableByteBuffer.wrap(destination);
+            dataPos = 0;
+        }
 
         StructDataType priType = primary.getDataType();
         StructDataType altType = alternate.getDataType();
+        int fieldPos = dataPos;
         for (int i=0; i<numberOfFields; ++i) {
-            int posBefore = position();
             Struct s = null;
             Integer f_id = fieldIdsAndLengths.get(i).first;
             Field structField = priType.getField(f_id, version);
@@ -445,17 +468,23 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
                   s = alternate;
                 }
             }
-            if (s != null) {
+            if (s != null && fields.test(structField)) {
+              position(fieldPos);
               FieldValue value = structField.getDataType().createFieldValue();
               value.deserialize(structField, this);
               s.setFieldValue(structField, value);
             }
             //jump to beginning of next field:
-            position(posBefore + fieldIdsAndLengths.get(i).second.intValue());
+            fieldPos += fieldIdsAndLengths.get(i).second.intValue();
         }
 
-        // restore the original buffer
-        buf = bigBuf;
+        if (inPlace) {
+            // set position to after data, which was read directly from the original buffer
+            position(dataPos + dataSize);
+        } else {
+            // restore the original buffer
+            buf = bigBuf;
+        }
     }
 
     public void read(FieldBase field, StructuredFieldValue value) {
@@ -895,4 +924,24 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         throw new DeserializationException("Cannot deserialize TensorRemoveUpdate, not implemented for Vespa 6");
     }
 
+    /** Reads a document with only some of its fields through the document constructor */
+    private class FilteringDocumentReader implements DocumentReader {
+
+        private final BiPredicate<DocumentType, Field> fieldFilter;
+
+        FilteringDocumentReader(BiPredicate<DocumentType, Field> fieldFilter) {
+            this.fieldFilter = fieldFilter;
+        }
+
+        @Override
+        public void read(Document document) { VespaDocumentDeserializer6.this.read(document, fieldFilter); }
+
+        @Override
+        public DocumentId readDocumentId() { return VespaDocumentDeserializer6.this.readDocumentId(); }
+
+        @Override
+        public DocumentType readDocumentType() { return VespaDocumentDeserializer6.this.readDocumentType(); }
+
+    }
+
 }
@@ -0,0 +1,95 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.LongFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Microbenchmark of document selection over serialized documents, comparing the interpreted and compiled selectors.
+ */
+public class DocumentSelectorBenchmark {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final List<byte[]> serialized = new ArrayList<>();
+
+    private DocumentSelectorBenchmark(int documentCount) {
+        DocumentType type = new DocumentType("music");
+        type.addField("year", DataType.INT);
+        type.addField("artist", DataType.STRING);
+        type.addField("title", DataType.STRING);
+        type.addField("timestamp", DataType.LONG);
+        manager.registerDocumentType(type);
+
+        for (int i = 0; i < documentCount; i++) {
+            Document document = new Document(type, new DocumentId("id:test:music::" + i));
+            document.setFieldValue("year", new IntegerFieldValue(1950 + i % 70));
+            document.setFieldValue("artist", new StringFieldValue("artist " + i % 100));
+            document.setFieldValue("title", new StringFieldValue("A title which is long enough to matter " + i));
+            document.setFieldValue("timestamp", new LongFieldValue(1500000000L + i));
+            DocumentSerializer serializer = DocumentSerializerFactory.create6();
+            document.serialize(serializer);
+            GrowableByteBuffer buffer = serializer.getBuf();
+            buffer.flip();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            serialized.add(bytes);
+        }
+    }
+
+    /** Returns the number of documents selected per second when deserializing and evaluating each document */
+    private double benchmark(int iterations, Function<DocumentPut, Result> selector) {
+        run(Math.max(iterations / 10, 1), selector); // warmup
+        System.gc();
+        long startTime = System.nanoTime();
+        int accepted = run(iterations, selector);
+        long totalTime = System.nanoTime() - startTime;
+        if (accepted == 0) throw new IllegalStateException("Expected some documents to be accepted");
+        return (double)iterations * serialized.size() * 1e9 / totalTime;
+    }
+
+    private int run(int iterations, Function<DocumentPut, Result> selector) {
+        int accepted = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] bytes : serialized) {
+                Document document = new Document(DocumentDeserializerFactory.create6(manager, GrowableByteBuffer.wrap(bytes)));
+                if (selector.apply(new DocumentPut(document)) == Result.TRUE)
+                    accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private void benchmark(String expression) throws ParseException {
+        DocumentSelector selector = new DocumentSelector(expression);
+        CompiledSelector compiled = selector.compile();
+        double interpreted = benchmark(100, selector::accepts);
+        double compiledRate = benchmark(100, compiled::accepts);
+        System.out.printf("%-70s interpreted: %10.0f docs/s, compiled: %10.0f docs/s\n",
+                          expression, interpreted, compiledRate);
+    }
+
+    public static void main(String[] args) throws ParseException {
+        DocumentSelectorBenchmark benchmark = new DocumentSelectorBenchmark(10000);
+        benchmark.benchmark("music.year > 2000");
+        benchmark.benchmark("music.year > 2000 and music.artist == \"artist 17\"");
+        benchmark.benchmark("music.artist = \"artist 1*\" or music.timestamp < now() - 3600");
+        benchmark.benchmark("id.namespace == \"test\" and music.title =~ \"long\"");
+    }
+
+}
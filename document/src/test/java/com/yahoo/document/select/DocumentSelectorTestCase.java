@@ -6,6 +6,11 @@ import com.yahoo.document.datatypes.*;
 import com.yahoo.document.select.convert.SelectionExpressionConverter;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.yolean.Exceptions;
 import org.junit.Before;
 import org.junit.Test;
@@ -804,6 +809,66 @@ public class DocumentSelectorTestCase {
         }
     }
 
+    @Test
+    public void testCompiledSelector() throws ParseException {
+        List<DocumentPut> documents = createDocs();
+        DocumentType type = manager.getDocumentType("test");
+
+        CompiledSelector selector = new DocumentSelector("test.hint > 14 and (test.hstring == \"foo\" or test.hfloat < 2)").compile();
+        assertTrue(selector.isCompiled(type));
+        assertEquals(Result.TRUE, selector.accepts(documents.get(0)));
+        assertEquals(Result.FALSE, selector.accepts(documents.get(1)));
+        assertEquals(Result.TRUE, selector.accepts(documents.get(2)));
+        assertEquals(Result.FALSE, selector.accepts(documents.get(7)));
+
+        assertTrue(new DocumentSelector("test.mystruct.key == 14 and id.namespace == \"anotherspace\"").compile().isCompiled(type));
+        assertTrue(new DocumentSelector("music.year > 2000 or not test").compile().isCompiled(type));
+        assertTrue(new DocumentSelector("test.hstring =~ \"^f\" and test.hint > now() - 3600").compile().isCompiled(type));
+        assertFalse(new DocumentSelector("test.intarray > 50").compile().isCompiled(type));
+        assertFalse(new DocumentSelector("test.hstring.lowercase() == \"yet\"").compile().isCompiled(type));
+        assertFalse(new DocumentSelector("test.structarray[$x].key == 15 and test.structarray[$x].value == \"structval1\"").compile().isCompiled(type));
+        assertFalse(new DocumentSelector("test.nosuchfield == 1").compile().isCompiled(type));
+    }
+
+    @Test
+    public void testCompiledSelectorOnSerializedDocuments() throws ParseException {
+        List<DocumentPut> documents = createDocs();
+        String[] expressions = { "test.hint > 14 and (test.hstring == \"foo\" or test.hfloat < 2)",
+                                 "test.mystruct.key == 14 or test.hstring = \"*ar\"",
+                                 "test.intarray > 50",
+                                 "id.namespace == \"anotherspace\" and not test.hstring" };
+        for (String expression : expressions) {
+            CompiledSelector selector = new DocumentSelector(expression).compile();
+            for (DocumentPut put : documents) {
+                GrowableByteBuffer buffer = serialize(put.getDocument());
+                int size = buffer.remaining();
+                VespaDocumentDeserializer6 deserializer = (VespaDocumentDeserializer6)DocumentDeserializerFactory.create6(manager, buffer);
+                assertEquals(expression + " on " + put.getId(), selector.accepts(put), selector.accepts(deserializer));
+                assertEquals(size, buffer.position());
+            }
+        }
+    }
+
+    @Test
+    public void testReadingOnlySelectedFields() {
+        Document document = createDocs().get(0).getDocument();
+        VespaDocumentDeserializer6 deserializer =
+                (VespaDocumentDeserializer6)DocumentDeserializerFactory.create6(manager, serialize(document));
+        Document read = deserializer.readDocument((type, field) -> field.getName().equals("hint"));
+        assertEquals(document.getId(), read.getId());
+        assertEquals(document.getFieldValue("hint"), read.getFieldValue("hint"));
+        assertEquals(null, read.getFieldValue("hstring"));
+        assertEquals(null, read.getFieldValue("content"));
+    }
+
+    private static GrowableByteBuffer serialize(Document document) {
+        DocumentSerializer serializer = DocumentSerializerFactory.create6();
+        document.serialize(serializer);
+        GrowableByteBuffer buffer = serializer.getBuf();
+        buffer.flip();
+        return buffer;
+    }
+
     private static DocumentPut createDocument(String id, Integer hInt, float hFloat, String hString, String content) {
         Document doc = new Document(manager.getDocumentType("test"), new DocumentId(id));
         if (hInt != null)
@@ -841,7 +906,11 @@ public class DocumentSelectorTestCase {
     }
 
     private static Result evaluate(String expressionString, DocumentOperation op) throws ParseException {
-        return new DocumentSelector(expressionString).accepts(op);
+        DocumentSelector selector = new DocumentSelector(expressionString);
+        Result result = selector.accepts(op);
+        assertEquals("Compiled '" + expressionString + "' evaluates as interpreted",
+                     result, selector.compile().accepts(op));
+        return result;
     }
 
     private static void assertError(String expressionString, DocumentOperation op, String expectedError) {
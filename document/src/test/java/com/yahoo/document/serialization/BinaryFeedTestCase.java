@@ -0,0 +1,161 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryFeedTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type;
+
+    public BinaryFeedTestCase() {
+        type = new DocumentType("music");
+        type.addField("title", DataType.STRING);
+        type.addField("year", DataType.INT);
+        manager.registerDocumentType(type);
+    }
+
+    private Document document(int i) {
+        Document document = new Document(type, "id:ns:music::" + i);
+        document.setFieldValue("title", new StringFieldValue("Title of the song number " + i));
+        document.setFieldValue("year", new IntegerFieldValue(1900 + i % 100));
+        return document;
+    }
+
+    private List<FeedOperation> readAll(byte[] feed) throws Exception {
+        BinaryFeedReader reader = new BinaryFeedReader(new ByteArrayInputStream(feed), manager);
+        List<FeedOperation> operations = new ArrayList<>();
+        for (FeedOperation operation = reader.read(); operation.getType() != FeedOperation.Type.INVALID; operation = reader.read()) {
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    private void assertRoundTrip(CompressionType compression, int blockSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFeedWriter writer = new BinaryFeedWriter(Channels.newChannel(out), compression, blockSize);
+        BinaryFeedWriter.Block block = writer.newBlock();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 == 9) {
+                block.addRemove(new DocumentId("id:ns:music::" + i));
+            } else {
+                block.addPut(document(i));
+            }
+            if (block.isFull()) {
+                writer.write(block);
+                assertTrue(block.isEmpty());
+            }
+        }
+        writer.write(block);
+
+        byte[] feed = out.toByteArray();
+        assertTrue(BinaryFeedReader.isBinaryFeed(feed, feed.length));
+        List<FeedOperation> operations = readAll(feed);
+        assertEquals(1000, operations.size());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 == 9) {
+                assertEquals(FeedOperation.Type.REMOVE, operations.get(i).getType());
+                assertEquals(new DocumentId("id:ns:music::" + i), operations.get(i).getRemove());
+            } else {
+                assertEquals(FeedOperation.Type.DOCUMENT, operations.get(i).getType());
+                assertEquals(document(i), operations.get(i).getDocument());
+            }
+        }
+    }
+
+    @Test
+    public void requireThatOperationsAreReadBackUncompressed() throws Exception {
+        assertRoundTrip(CompressionType.NONE, 4096);
+    }
+
+    @Test
+    public void requireThatOperationsAreReadBackCompressed() throws Exception {
+        assertRoundTrip(CompressionType.LZ4, 4096);
+        assertRoundTrip(CompressionType.LZ4, BinaryFeedWriter.DEFAULT_BLOCK_SIZE);
+    }
+
+    @Test
+    public void requireThatBlocksMayBeWrittenFromManyThreads() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFeedWriter writer = new BinaryFeedWriter(Channels.newChannel(out), CompressionType.LZ4, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                BinaryFeedWriter.Block block = writer.newBlock();
+                for (int i = thread; i < 2000; i += 4) {
+                    block.addPut(document(i));
+                    if (block.isFull()) writer.write(block);
+                }
+                writer.write(block);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        boolean[] seen = new boolean[2000];
+        for (FeedOperation operation : readAll(out.toByteArray())) {
+            int i = Integer.parseInt(operation.getDocument().getId().getScheme().getNamespaceSpecific());
+            assertFalse(seen[i]);
+            seen[i] = true;
+            assertEquals(document(i), operation.getDocument());
+        }
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+    }
+
+    @Test
+    public void requireThatTruncatedFeedIsAnError() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFeedWriter writer = new BinaryFeedWriter(Channels.newChannel(out), CompressionType.NONE, 1000);
+        BinaryFeedWriter.Block block = writer.newBlock();
+        block.addPut(document(1));
+        writer.write(block);
+        byte[] feed = out.toByteArray();
+        byte[] truncated = new byte[feed.length - 3];
+        System.arraycopy(feed, 0, truncated, 0, truncated.length);
+        try {
+            readAll(truncated);
+            fail("Expected exception");
+        }
+        catch (DeserializationException e) {
+            assertEquals("Binary feed ends in the middle of a block", e.getMessage());
+        }
+    }
+
+    @Test
+    public void requireThatOtherInputIsNotBinaryFeed() {
+        byte[] json = "[{\"put\": \"id:ns:music::1\"}]".getBytes();
+        assertFalse(BinaryFeedReader.isBinaryFeed(json, json.length));
+        assertFalse(BinaryFeedReader.isBinaryFeed(BinaryFeedWriter.MAGIC, 4));
+    }
+
+}
@@ -6,6 +6,12 @@ import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentUpdate;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * <p>A session for asynchronous access to a document repository.
  * This class provides document repository writes and random access with high
@@ -97,6 +103,33 @@ public interface AsyncSession extends Session {
         return get(id);
     }
 
+    /**
+     * <p>Gets the documents with the given ids, keeping up to the given number of gets pending at any time.
+     * The ids are consumed, and the gets sent, as the returned stream is consumed, which blocks until the next
+     * reply arrives. The responses of these gets are returned only by the stream, and not by {@link #getNext} or to
+     * a response handler, in the order they complete.</p>
+     *
+     * <p>Each response is a {@link DocumentResponse} holding the document if it was found, a successful
+     * {@link DocumentIdResponse} holding the id if the document was not found, or a failed
+     * {@link DocumentIdResponse} holding the id if the get failed.</p>
+     *
+     * <p>The default implementation sends each get with {@link #get(DocumentId, DocumentProtocol.Priority)}, and
+     * reads the responses with {@link #getNext(int)}. It therefore gets all fields, requires a session without
+     * a response handler, and the session must not be used for other operations while the stream is consumed.</p>
+     *
+     * @param ids the ids of the documents to get
+     * @param fieldSet the fields to get, e.g., "[all]"
+     * @param priority the priority with which to perform these operations
+     * @param maxPending the maximum number of gets pending at any time
+     * @return a stream of the responses to the gets, which must be consumed by a single thread
+     * @throws UnsupportedOperationException if this access implementation does not support retrieving
+     */
+    default Stream<Response> getBatch(Iterator<DocumentId> ids, String fieldSet, DocumentProtocol.Priority priority, int maxPending) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new GetBatch(this, ids, priority, maxPending),
+                                                                        Spliterator.NONNULL),
+                                    false);
+    }
+
 
     /**
      * <p>Removes a document if it is present. This method returns immediately.</p>
@@ -0,0 +1,95 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.DocumentId;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Gets documents by sending single gets through an async session, and reading their responses from
+ * {@link Session#getNext(int)}, as responses are consumed, keeping a bounded number of gets pending.
+ * This is the batched get of sessions which have none of their own.
+ *
+ * @see AsyncSession#getBatch
+ */
+class GetBatch implements Iterator<Response> {
+
+    private static final int pollTimeoutMillis = 100;
+
+    private final AsyncSession session;
+    private final Iterator<DocumentId> ids;
+    private final DocumentProtocol.Priority priority;
+    private final int maxPending;
+    private final Map<Long, DocumentId> pending = new HashMap<>();
+    private DocumentId unsent = null;
+    private Response rejected = null;
+
+    GetBatch(AsyncSession session, Iterator<DocumentId> ids, DocumentProtocol.Priority priority, int maxPending) {
+        if (maxPending < 1)
+            throw new IllegalArgumentException("maxPending must be positive, but was " + maxPending);
+        this.session = session;
+        this.ids = ids;
+        this.priority = priority;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public boolean hasNext() {
+        sendMore();
+        return rejected != null || ! pending.isEmpty();
+    }
+
+    @Override
+    public Response next() {
+        if ( ! hasNext()) throw new NoSuchElementException();
+        if (rejected != null) {
+            Response response = rejected;
+            rejected = null;
+            return response;
+        }
+        try {
+            Response response;
+            do response = session.getNext(pollTimeoutMillis);
+            while (response == null);
+
+            DocumentId id = pending.remove(response.getRequestId());
+            if (id == null)
+                throw new IllegalStateException("Got response to a request which is not part of this batch: " + response);
+            return toBatchResponse(response, id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for responses", e);
+        }
+    }
+
+    private void sendMore() {
+        while (rejected == null && pending.size() < maxPending && (unsent != null || ids.hasNext())) {
+            DocumentId id = unsent != null ? unsent : ids.next();
+            unsent = null;
+            Result result = session.get(id, priority);
+            if (result.isSuccess()) {
+                pending.put(result.getRequestId(), id);
+            }
+            else if (result.type() == Result.ResultType.TRANSIENT_ERROR && ! pending.isEmpty()) {
+                unsent = id; // Try again when the response to a pending get is consumed
+                return;
+            }
+            else {
+                rejected = new DocumentIdResponse(result.getRequestId(), id, result.getError().getMessage(), false);
+            }
+        }
+    }
+
+    /** Returns the response to a get in a batch, which holds the document id unless the document is found */
+    private static Response toBatchResponse(Response response, DocumentId id) {
+        if (response instanceof DocumentResponse && ((DocumentResponse) response).getDocument() != null)
+            return response;
+
+        return new DocumentIdResponse(response.getRequestId(), id, response.getTextMessage(), response.isSuccess());
+    }
+
+}
@@ -7,6 +7,7 @@ import com.yahoo.document.select.BucketSelector;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.log.LogLevel;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -83,9 +84,29 @@ public class VisitorIterator {
         // Wouldn't need this if this were a non-static class, but do it for
         // the sake of keeping things identical in Java and C++
         private ProgressToken progressToken;
+        private final int sliceBits;
+        private final int sliceId;
 
         public DistributionRangeBucketSource(int distributionBitCount,
                                              ProgressToken progress) {
+            this(distributionBitCount, progress, 1, 0);
+        }
+
+        /**
+         * Creates a source which only returns the buckets in the given slice of the bucket space. The slices are
+         * contiguous ranges of bucket positions, so a bucket and all buckets it is split into or merged from belong
+         * to the same slice, as long as the distribution bit count is at least log2(slices). With fewer bits, the
+         * lowest slice id covered by a bucket visits it. Positions before the slice count as finished.
+         */
+        public DistributionRangeBucketSource(int distributionBitCount,
+                                             ProgressToken progress,
+                                             int slices,
+                                             int sliceId) {
+            if (slices < 1 || Integer.bitCount(slices) != 1 || sliceId < 0 || sliceId >= slices) {
+                throw new IllegalArgumentException("Invalid slice " + sliceId + " of " + slices);
+            }
+            this.sliceBits = Integer.numberOfTrailingZeros(slices);
+            this.sliceId = sliceId;
             progressToken = progress;
 
             // New progress token (could also be empty, in which this is a
@@ -140,6 +161,7 @@ public class VisitorIterator {
                                 "from position " + progressToken.getBucketCursor());
                     }
                 }
+                moveCursorIntoSlice();
                 progressToken.setFinishedBucketCount(progressToken.getBucketCursor() -
                         progressToken.getPendingBucketCount());
             } else {
@@ -152,7 +174,7 @@ public class VisitorIterator {
         protected boolean isLosslessResetPossible() {
             // #pending must be equal to cursor, i.e. all buckets ever fetched
             // must be located in the set of pending
-            if (progressToken.getPendingBucketCount() != progressToken.getBucketCursor()) {
+            if (progressToken.getPendingBucketCount() != fetchedSlicePositions()) {
                 return false;
             }
             // Check if all pending buckets have a progress of 0
@@ -290,6 +312,45 @@ public class VisitorIterator {
             }
         }
 
+        /** Returns the first position of this slice at the given bit count, or the end if it has no positions */
+        private long sliceStart(int distributionBits) {
+            if (distributionBits >= sliceBits) {
+                return (long) sliceId << (distributionBits - sliceBits);
+            }
+            int sharedBits = sliceBits - distributionBits;
+            boolean visitsPosition = (sliceId & ((1 << sharedBits) - 1)) == 0;
+            return visitsPosition ? sliceId >>> sharedBits : 1L << distributionBits;
+        }
+
+        /** Returns the position after the last position of this slice at the given bit count */
+        private long sliceEnd(int distributionBits) {
+            if (distributionBits >= sliceBits) {
+                return (long) (sliceId + 1) << (distributionBits - sliceBits);
+            }
+            return Math.min(sliceStart(distributionBits) + 1, 1L << distributionBits);
+        }
+
+        /**
+         * Moves the bucket cursor forward to the first position of this slice, or to the end of the bucket space
+         * if it is past the last position of this slice.
+         */
+        private void moveCursorIntoSlice() {
+            if (sliceBits == 0) return;
+            long cursor = progressToken.getBucketCursor();
+            if (cursor < sliceStart(distributionBitCount)) {
+                progressToken.setBucketCursor(sliceStart(distributionBitCount));
+            } else if (cursor >= sliceEnd(distributionBitCount)) {
+                progressToken.setBucketCursor(1L << distributionBitCount);
+            }
+        }
+
+        /** Returns the number of positions of this slice the bucket cursor has moved past, in the bits of the token */
+        private long fetchedSlicePositions() {
+            int distributionBits = progressToken.getDistributionBitCount();
+            long cursor = progressToken.getBucketCursor();
+            return Math.max(0, Math.min(cursor, sliceEnd(distributionBits)) - sliceStart(distributionBits));
+        }
+
         public boolean hasNext() {
             return progressToken.getBucketCursor() < (1L << distributionBitCount);
         }
@@ -314,6 +375,7 @@ public class VisitorIterator {
             long key = ProgressToken.makeNthBucketKey(currentPosition, distributionBitCount);
             ++currentPosition;
             progressToken.setBucketCursor(currentPosition);
+            moveCursorIntoSlice();
             return new BucketProgress(
                     new BucketId(ProgressToken.keyToBucketId(key)),
                     new BucketId());
@@ -372,6 +434,7 @@ public class VisitorIterator {
                 progressToken.setDistributionBitCount(distributionBitCount);
 
                 correctTruncatedBucketCursor();
+                moveCursorIntoSlice();
                 progressToken.setInconsistentState(false);
             }
         }
@@ -753,6 +816,26 @@ public class VisitorIterator {
             BucketIdFactory idFactory,
             int distributionBitCount,
             ProgressToken progress) throws ParseException {
+        return createFromDocumentSelection(documentSelection, idFactory, distributionBitCount, progress, 1, 0);
+    }
+
+    /**
+     * Create a new <code>VisitorIterator</code> instance which iterates over only one of a number of disjoint
+     * slices of the buckets given by a document selection, such that iterators over all the slices, each with
+     * its own progress, together cover the same buckets as a single iterator over the whole selection.
+     * An explicit set of buckets given by the selection is iterated over entirely in slice 0.
+     *
+     * @param slices the number of slices, which must be a power of two
+     * @param sliceId the slice to iterate over, in the range [0, slices)
+     * @see #createFromDocumentSelection(String, BucketIdFactory, int, ProgressToken)
+     */
+    public static VisitorIterator createFromDocumentSelection(
+            String documentSelection,
+            BucketIdFactory idFactory,
+            int distributionBitCount,
+            ProgressToken progress,
+            int slices,
+            int sliceId) throws ParseException {
         BucketSelector bucketSel = new BucketSelector(idFactory);
         Set<BucketId> rawBuckets = bucketSel.getBucketList(documentSelection);
         BucketSource src;
@@ -762,9 +845,12 @@ public class VisitorIterator {
         // bit-based range source
         if (rawBuckets == null) {
             // Range source
-            src = new DistributionRangeBucketSource(distributionBitCount, progress);
+            src = new DistributionRangeBucketSource(distributionBitCount, progress, slices, sliceId);
         } else {
             // Explicit source
+            if (sliceId != 0) {
+                rawBuckets = Collections.emptySet();
+            }
             src = new ExplicitBucketSource(rawBuckets, distributionBitCount, progress);
         }
 
@@ -50,6 +50,8 @@ public class VisitorParameters extends Parameters {
     private int traceLevel = 0;
     private ThrottlePolicy throttlePolicy = null;
     private boolean skipBucketsOnFatalErrors = false;
+    private int slices = 1;
+    private int sliceId = 0;
 
     // Advanced parameter, only for internal use.
     Set<BucketId> bucketsToVisit = null;
@@ -102,6 +104,7 @@ public class VisitorParameters extends Parameters {
                 params.getDynamicMaxBucketsIncreaseFactor());
         setTraceLevel(params.getTraceLevel());
         skipBucketsOnFatalErrors(params.skipBucketsOnFatalErrors());
+        slice(params.getSlices(), params.getSliceId());
     }
 
     // Get functions
@@ -336,6 +339,27 @@ public class VisitorParameters extends Parameters {
 
     public void skipBucketsOnFatalErrors(boolean skipBucketsOnFatalErrors) { this.skipBucketsOnFatalErrors = skipBucketsOnFatalErrors; }
 
+    /**
+     * Restricts visiting to one of a number of equally sized, disjoint slices of the bucket space, so that
+     * the slices may be visited by separate sessions in parallel, each with its own progress.
+     * Visiting an explicit set of buckets is done entirely by slice 0.
+     *
+     * @param slices the number of slices to divide the bucket space into, which must be a power of two
+     * @param sliceId the slice to visit, in the range [0, slices)
+     */
+    public void slice(int slices, int sliceId) {
+        if (slices < 1 || Integer.bitCount(slices) != 1)
+            throw new IllegalArgumentException("Number of slices must be a positive power of two, but was " + slices);
+        if (sliceId < 0 || sliceId >= slices)
+            throw new IllegalArgumentException("Slice id must be in [0, " + slices + "), but was " + sliceId);
+        this.slices = slices;
+        this.sliceId = sliceId;
+    }
+
+    public int getSlices() { return slices; }
+
+    public int getSliceId() { return sliceId; }
+
     /**
      * Set whether or not max buckets per visitor value should be dynamically
      * increased when using orderdoc and visitors do not return at least half
@@ -385,6 +409,9 @@ public class VisitorParameters extends Parameters {
         sb.append("  Visitor ordering:   ").append(visitorOrdering).append('\n');
         sb.append("  Max buckets:        ").append(maxBucketsPerVisitor).append('\n');
         sb.append("  Priority:           ").append(getPriority().toString()).append('\n');
+        if (slices > 1) {
+            sb.append("  Slice:              ").append(sliceId).append(" of ").append(slices).append('\n');
+        }
         if (dynamicallyIncreaseMaxBucketsPerVisitor) {
             sb.append("  Dynamically increasing max buckets per visitor\n");
             sb.append("  Increase factor:    ")
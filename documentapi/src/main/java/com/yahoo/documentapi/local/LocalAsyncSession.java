@@ -20,9 +20,14 @@ import com.yahoo.documentapi.SyncSession;
 import com.yahoo.documentapi.UpdateResponse;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author bratseth
@@ -90,6 +95,19 @@ public class LocalAsyncSession implements AsyncSession {
         return new Result(req);
     }
 
+    @Override
+    public Stream<Response> getBatch(Iterator<DocumentId> ids, String fieldSet, DocumentProtocol.Priority pri, int maxPending) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ids, Spliterator.NONNULL), false).map(id -> {
+            long req = getNextRequestId();
+            try {
+                Document document = syncSession.get(id);
+                return document != null ? new DocumentResponse(req, document) : new DocumentIdResponse(req, id);
+            } catch (Exception e) {
+                return new DocumentIdResponse(req, id, e.getMessage(), false);
+            }
+        });
+    }
+
     @Override
     public Result remove(DocumentId id) {
         return remove(id, DocumentProtocol.Priority.NORMAL_3);
@@ -24,6 +24,7 @@ import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentReply;
 import com.yahoo.documentapi.messagebus.protocol.UpdateDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.UpdateDocumentReply;
 import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.EmptyReply;
 import com.yahoo.messagebus.ErrorCode;
 import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.MessageBus;
@@ -33,12 +34,18 @@ import com.yahoo.messagebus.SourceSession;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.messagebus.ThrottlePolicy;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An access session which wraps a messagebus source session sending document messages.
@@ -54,6 +61,7 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
     private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
     private final ThrottlePolicy throttlePolicy;
     private final SourceSession session;
+    private final boolean ownReplyHandler;
     private String route;
     private String routeForGet;
     private int traceLevel;
@@ -83,6 +91,7 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
         routeForGet = mbusParams.getRouteForGet();
         traceLevel = mbusParams.getTraceLevel();
         throttlePolicy = mbusParams.getSourceSessionParams().getThrottlePolicy();
+        ownReplyHandler = handler == null;
         if (handler == null) {
             handler = new MyReplyHandler(asyncParams.getResponseHandler(), responses);
         }
@@ -119,6 +128,21 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
         return send(msg);
     }
 
+    @Override
+    public Stream<Response> getBatch(Iterator<DocumentId> ids, String fieldSet, DocumentProtocol.Priority pri, int maxPending) {
+        return send(new Iterator<Message>() {
+            @Override
+            public boolean hasNext() { return ids.hasNext(); }
+
+            @Override
+            public Message next() {
+                GetDocumentMessage msg = new GetDocumentMessage(ids.next(), fieldSet);
+                msg.setPriority(pri);
+                return msg;
+            }
+        }, maxPending);
+    }
+
     @Override
     public Result remove(DocumentId id) {
         return remove(id, DocumentProtocol.Priority.NORMAL_2);
@@ -154,18 +178,42 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
         try {
             long reqId = requestId.incrementAndGet();
             msg.setContext(reqId);
-            msg.getTrace().setLevel(traceLevel);
-            String toRoute = (msg.getType() == DocumentProtocol.MESSAGE_GETDOCUMENT ? routeForGet : route);
-            if (toRoute != null) {
-                return toResult(reqId, session.send(msg, toRoute, true));
-            } else {
-                return toResult(reqId, session.send(msg));
-            }
+            return toResult(reqId, sendToSession(msg));
         } catch (Exception e) {
             return new Result(Result.ResultType.FATAL_ERROR, new Error(e.getMessage(), e));
         }
     }
 
+    /**
+     * Sends the given messages, keeping up to the given number pending at any time, and returns a stream of
+     * the responses, in the order they complete. Messages are sent as the stream is consumed.
+     * See {@link AsyncSession#getBatch} for the responses to get messages.
+     *
+     * @param messages the messages to send
+     * @param maxPending the maximum number of messages pending at any time
+     * @return a stream of the responses to the messages, which must be consumed by a single thread
+     * @throws UnsupportedOperationException if this session was created with an external reply handler
+     */
+    public Stream<Response> send(Iterator<? extends Message> messages, int maxPending) {
+        if ( ! ownReplyHandler)
+            throw new UnsupportedOperationException("Batches can not be sent by a session with an external reply handler");
+        if (maxPending < 1)
+            throw new IllegalArgumentException("Max pending must be positive, but was " + maxPending);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Batch(messages, maxPending),
+                                                                        Spliterator.NONNULL),
+                                    false);
+    }
+
+    private com.yahoo.messagebus.Result sendToSession(Message msg) {
+        msg.getTrace().setLevel(traceLevel);
+        String toRoute = (msg.getType() == DocumentProtocol.MESSAGE_GETDOCUMENT ? routeForGet : route);
+        if (toRoute != null) {
+            return session.send(msg, toRoute, true);
+        } else {
+            return session.send(msg);
+        }
+    }
+
     @Override
     public Response getNext() {
         return responses.poll();
@@ -243,11 +291,94 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
                 new Error(mbusResult.getError().getMessage() + " (" + mbusResult.getError().getCode() + ")"));
     }
 
-    private static Response toResponse(Reply reply) {
-        long reqId = (Long)reply.getContext();
+    private static Response toResponse(Reply reply, long reqId) {
         return reply.hasErrors() ? toError(reply, reqId) : toSuccess(reply, reqId);
     }
 
+    /** Returns the response to a reply in a batch, which holds the document id also when a document is not found */
+    private static Response toBatchResponse(Reply reply, long reqId) {
+        Response response = toResponse(reply, reqId);
+        if (reply.getMessage() instanceof GetDocumentMessage
+            && response instanceof DocumentResponse && ((DocumentResponse) response).getDocument() == null) {
+            return new DocumentIdResponse(reqId, ((GetDocumentMessage) reply.getMessage()).getDocumentId());
+        }
+        return response;
+    }
+
+    /** The context of a message sent in a batch, which tells where to put the response to it */
+    private static class BatchContext {
+
+        final long requestId;
+        final Queue<Response> responses;
+
+        BatchContext(long requestId, Queue<Response> responses) {
+            this.requestId = requestId;
+            this.responses = responses;
+        }
+
+    }
+
+    /** Sends messages as responses are consumed, keeping a bounded number of them pending */
+    private class Batch implements Iterator<Response> {
+
+        private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+        private final Iterator<? extends Message> messages;
+        private final int maxPending;
+        private Message unsent = null;
+        private int pending = 0;
+
+        Batch(Iterator<? extends Message> messages, int maxPending) {
+            this.messages = messages;
+            this.maxPending = maxPending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            sendMore();
+            return pending > 0;
+        }
+
+        @Override
+        public Response next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            try {
+                Response response = responses.take();
+                pending--;
+                return response;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for responses", e);
+            }
+        }
+
+        private void sendMore() {
+            while (pending < maxPending && (unsent != null || messages.hasNext())) {
+                Message msg = unsent != null ? unsent : messages.next();
+                unsent = null;
+                long reqId = requestId.incrementAndGet();
+                msg.setContext(new BatchContext(reqId, responses));
+                com.yahoo.messagebus.Result result;
+                try {
+                    result = sendToSession(msg);
+                } catch (Exception e) {
+                    result = new com.yahoo.messagebus.Result(ErrorCode.FATAL_ERROR, e.getMessage());
+                }
+                if ( ! result.isAccepted()) {
+                    if (result.getError().getCode() == ErrorCode.SEND_QUEUE_FULL && pending > 0) {
+                        unsent = msg; // Try again when the response to a pending message is consumed
+                        return;
+                    }
+                    Reply reply = new EmptyReply();
+                    reply.setMessage(msg);
+                    reply.addError(result.getError());
+                    responses.add(toBatchResponse(reply, reqId));
+                }
+                pending++;
+            }
+        }
+
+    }
+
     private static Response toError(Reply reply, long reqId) {
         Message msg = reply.getMessage();
         String err = getErrorMessage(reply);
@@ -311,7 +442,12 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
             if (reply.getTrace().getLevel() > 0) {
                 log.log(LogLevel.INFO, reply.getTrace().toString());
             }
-            Response response = toResponse(reply);
+            if (reply.getContext() instanceof BatchContext) {
+                BatchContext context = (BatchContext) reply.getContext();
+                context.responses.add(toBatchResponse(reply, context.requestId));
+                return;
+            }
+            Response response = toResponse(reply, (Long) reply.getContext());
             if (handler != null) {
                 handler.handleResponse(response);
             } else {
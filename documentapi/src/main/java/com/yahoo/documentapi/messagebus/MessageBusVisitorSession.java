@@ -38,6 +38,7 @@ import com.yahoo.vdslib.VisitorStatistics;
 import com.yahoo.vdslib.state.ClusterState;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -57,6 +58,11 @@ import java.util.logging.Logger;
  * Create the visitor session by calling the
  * <code>DocumentAccess.createVisitorSession</code> method.
  * </p>
+ * <p>
+ * All state of a session, not only its progress, is guarded by the monitor of its
+ * {@link ProgressToken}. To visit with less contention, visit each slice of the bucket
+ * space in its own session (see {@link VisitorParameters#slice}), as each has its own token.
+ * </p>
  */
 public class MessageBusVisitorSession implements VisitorSession {
     /**
@@ -567,12 +573,16 @@ public class MessageBusVisitorSession implements VisitorSession {
             // return with a OK result in such a case, we recognize this as a special
             // case in the iterator and simply reset its entire internal state using
             // the new db count rather than doing any splitting.
+            // When visiting a slice of the bucket space, start with enough bits for
+            // every slice to have a bucket of its own to send.
             BucketIdFactory bucketIdFactory = new BucketIdFactory();
             visitorIterator = VisitorIterator.createFromDocumentSelection(
                     params.getDocumentSelection(),
                     bucketIdFactory,
-                    1,
-                    progressToken);
+                    Math.max(1, Integer.numberOfTrailingZeros(params.getSlices())),
+                    progressToken,
+                    params.getSlices(),
+                    params.getSliceId());
         } else {
             if (log.isLoggable(LogLevel.DEBUG)) {
                 log.log(LogLevel.DEBUG, "parameters specify explicit bucket set " +
@@ -584,7 +594,7 @@ public class MessageBusVisitorSession implements VisitorSession {
             // used for the defunct synchronization functionality, but since it's
             // so easy to support, don't deprecate it just yet.
             visitorIterator = VisitorIterator.createFromExplicitBucketSet(
-                    params.getBucketsToVisit(),
+                    params.getSliceId() == 0 ? params.getBucketsToVisit() : Collections.emptySet(),
                     1,
                     progressToken);
         }
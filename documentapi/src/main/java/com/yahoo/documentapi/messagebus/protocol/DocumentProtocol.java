@@ -17,6 +17,7 @@ import com.yahoo.messagebus.routing.RoutingNodeIterator;
 import com.yahoo.messagebus.routing.RoutingPolicy;
 import com.yahoo.text.Utf8String;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -540,6 +541,11 @@ public class DocumentProtocol implements Protocol {
     }
 
     public Routable decode(Version version, byte[] data) {
+        return decode(version, ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public Routable decode(Version version, ByteBuffer data) {
         try {
             return routableRepository.decode(docMan, version, data);
         } catch (RuntimeException e) {
@@ -3,7 +3,9 @@ package com.yahoo.documentapi.messagebus.protocol;
 
 import com.yahoo.config.subscription.ConfigSubscriber;
 import com.yahoo.document.DocumentGet;
+import com.yahoo.document.select.CompiledSelector;
 import com.yahoo.document.select.DocumentSelector;
+import com.yahoo.document.select.NowCheckVisitor;
 import com.yahoo.document.select.Result;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Message;
@@ -26,7 +28,7 @@ public class DocumentRouteSelectorPolicy
         implements DocumentProtocolRoutingPolicy, ConfigSubscriber.SingleSubscriber<DocumentrouteselectorpolicyConfig> {
 
     private static Logger log = Logger.getLogger(DocumentRouteSelectorPolicy.class.getName());
-    private Map<String, DocumentSelector> config;
+    private Map<String, RouteSelector> config;
     private String error = "Not configured.";
     private ConfigSubscriber subscriber;
 
@@ -59,7 +61,7 @@ public class DocumentRouteSelectorPolicy
     @Override
     public void configure(DocumentrouteselectorpolicyConfig cfg) {
         String error = null;
-        Map<String, DocumentSelector> config = new HashMap<>();
+        Map<String, RouteSelector> config = new HashMap<>();
         for (int i = 0; i < cfg.route().size(); i++) {
             DocumentrouteselectorpolicyConfig.Route route = cfg.route(i);
             if (route.selector().isEmpty()) {
@@ -74,7 +76,7 @@ public class DocumentRouteSelectorPolicy
                         e.getMessage();
                 break;
             }
-            config.put(route.name(), selector);
+            config.put(route.name(), new RouteSelector(selector));
         }
         synchronized (this) {
             this.config = config;
@@ -127,17 +129,18 @@ public class DocumentRouteSelectorPolicy
         if (config == null) {
             return true;
         }
-        DocumentSelector selector = config.get(routeName);
-        if (selector == null) {
+        RouteSelector routeSelector = config.get(routeName);
+        if (routeSelector == null) {
             return true;
         }
+        CompiledSelector selector = routeSelector.compiled();
 
         // Select based on message content.
         Message msg = context.getMessage();
         switch (msg.getType()) {
 
         case DocumentProtocol.MESSAGE_PUTDOCUMENT:
-            return selector.accepts(((PutDocumentMessage)msg).getDocumentPut()) == Result.TRUE;
+            return ((PutDocumentMessage)msg).accepts(selector) == Result.TRUE;
 
         case DocumentProtocol.MESSAGE_UPDATEDOCUMENT:
             return selector.accepts(((UpdateDocumentMessage)msg).getDocumentUpdate()) != Result.FALSE;
@@ -177,4 +180,40 @@ public class DocumentRouteSelectorPolicy
         }
     }
 
+    /**
+     * A document selector of a route and its compiled form. Selectors using now() are compiled again each second,
+     * as now() is evaluated when a selector is compiled.
+     */
+    private static class RouteSelector {
+
+        private static final long recompileIntervalMillis = 1000;
+
+        private final DocumentSelector selector;
+        private final boolean usesNow;
+        private CompiledSelector compiled;
+        private long compiledAtMillis;
+
+        RouteSelector(DocumentSelector selector) {
+            this.selector = selector;
+            NowCheckVisitor nowCheck = new NowCheckVisitor();
+            selector.visit(nowCheck);
+            this.usesNow = nowCheck.requiresConversion();
+            this.compiled = selector.compile();
+            this.compiledAtMillis = System.currentTimeMillis();
+        }
+
+        /** Returns the compiled selector. This is not thread safe; access is synchronized by the policy. */
+        CompiledSelector compiled() {
+            if (usesNow) {
+                long now = System.currentTimeMillis();
+                if (now - compiledAtMillis >= recompileIntervalMillis) {
+                    compiled = selector.compile();
+                    compiledAtMillis = now;
+                }
+            }
+            return compiled;
+        }
+
+    }
+
 }
@@ -4,7 +4,10 @@ package com.yahoo.documentapi.messagebus.protocol;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.TestAndSetCondition;
+import com.yahoo.document.select.CompiledSelector;
+import com.yahoo.document.select.Result;
 import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -72,6 +75,26 @@ public class PutDocumentMessage extends TestAndSetMessage {
         return put;
     }
 
+    /**
+     * Returns whether the document of this message is accepted by the given selector. If this message has not yet
+     * been deserialized, this is evaluated on the serialized document, deserializing only the fields the selector
+     * needs, and the message is left undeserialized so it may be forwarded without being serialized again.
+     *
+     * @param selector The selector to evaluate.
+     * @return The result of the selection.
+     */
+    Result accepts(CompiledSelector selector) {
+        if (decoder != null && buffer instanceof VespaDocumentDeserializer6) {
+            int position = buffer.getBuf().position();
+            try {
+                return selector.accepts((VespaDocumentDeserializer6)buffer);
+            } finally {
+                buffer.getBuf().position(position);
+            }
+        }
+        return selector.accepts(getDocumentPut());
+    }
+
     /**
      * Sets the document to put.
      *
@@ -11,6 +11,7 @@ import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Routable;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -45,16 +46,38 @@ final class RoutableRepository {
      * @return The decoded routable.
      */
     Routable decode(DocumentTypeManager docMan, Version version, byte[] data) {
-        if (data == null || data.length == 0) {
+        return decode(docMan, version, (data != null) ? ByteBuffer.wrap(data) : null);
+    }
+
+    /**
+     * Decodes a {@link Routable} from the remaining bytes of the given buffer. If the buffer is backed by an
+     * array starting at offset 0, the routable is deserialized directly from that array, without copying it.
+     *
+     * If a routable can not be decoded, this method returns null.
+     *
+     * @param version The version of the encoded routable.
+     * @param data    The buffer containing the encoded routable.
+     * @return The decoded routable.
+     */
+    Routable decode(DocumentTypeManager docMan, Version version, ByteBuffer data) {
+        if (data == null || ! data.hasRemaining()) {
             log.log(LogLevel.ERROR, "Received empty byte array for deserialization.");
             return null;
         }
+        if ( ! data.hasArray() || data.arrayOffset() != 0) { // Deserializers access the backing array directly
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            data = ByteBuffer.wrap(copy);
+        } else {
+            data = data.duplicate();
+        }
+        int start = data.position();
         DocumentDeserializer in;
 
         if (version.getMajor() >= 5) {
-            in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
+            in = DocumentDeserializerFactory.createHead(docMan, new GrowableByteBuffer(data));
         } else {
-            in = DocumentDeserializerFactory.create42(docMan, GrowableByteBuffer.wrap(data));
+            in = DocumentDeserializerFactory.create42(docMan, new GrowableByteBuffer(data));
         }
 
         int type = in.getInt(null);
@@ -68,7 +91,7 @@ final class RoutableRepository {
         if (ret == null) {
             log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to deserialize " +
                                     "routable of type " + type + " (version " + version + ").");
-            log.log(LogLevel.ERROR, Arrays.toString(data));
+            log.log(LogLevel.ERROR, Arrays.toString(Arrays.copyOfRange(data.array(), start, data.limit())));
             return null;
         }
         return ret;
@@ -0,0 +1,119 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GetBatchTest {
+
+    private static final DocumentType type = new DocumentType("music");
+
+    @Test
+    public void batched_get_is_made_from_single_gets_when_session_has_no_batched_get() {
+        GetSession session = new GetSession(3);
+        List<DocumentId> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            ids.add(new DocumentId("doc:music:" + i));
+
+        Set<DocumentId> found = new HashSet<>();
+        Set<DocumentId> missing = new HashSet<>();
+        session.getBatch(ids.iterator(), "[all]", DocumentProtocol.Priority.NORMAL_1, 4).forEach(response -> {
+            assertTrue(response.isSuccess());
+            if (response instanceof DocumentResponse)
+                found.add(((DocumentResponse) response).getDocument().getId());
+            else
+                missing.add(((DocumentIdResponse) response).getDocumentId());
+        });
+        assertEquals(ids.stream().filter(GetBatchTest::exists).collect(Collectors.toSet()), found);
+        assertEquals(ids.stream().filter(id -> ! exists(id)).collect(Collectors.toSet()), missing);
+        assertEquals(3, session.maxPending);
+        assertTrue(session.rejected > 0);
+        assertNull(session.getNext());
+    }
+
+    @Test
+    public void fatally_rejected_gets_are_failed_responses() {
+        GetSession session = new GetSession(0);
+        List<Response> responses = session.getBatch(List.of(new DocumentId("doc:music:0")).iterator(),
+                                                    "[all]", DocumentProtocol.Priority.NORMAL_1, 4)
+                                          .collect(Collectors.toList());
+        assertEquals(1, responses.size());
+        assertFalse(responses.get(0).isSuccess());
+        assertEquals(new DocumentId("doc:music:0"), ((DocumentIdResponse) responses.get(0)).getDocumentId());
+    }
+
+    private static boolean exists(DocumentId id) {
+        return id.toString().hashCode() % 2 == 0;
+    }
+
+    /** A session which rejects gets when its window is full, and has no batched get of its own */
+    private static class GetSession implements AsyncSession {
+
+        private final Deque<Response> responses = new ArrayDeque<>();
+        private final int window;
+        private long requestId = 0;
+        private int maxPending = 0;
+        private int rejected = 0;
+
+        GetSession(int window) {
+            this.window = window;
+        }
+
+        @Override
+        public Result get(DocumentId id) {
+            if (responses.size() >= window) {
+                rejected++;
+                return new Result(window > 0 ? Result.ResultType.TRANSIENT_ERROR : Result.ResultType.FATAL_ERROR,
+                                  new Error("Window full"));
+            }
+            long req = ++requestId;
+            responses.add(new DocumentResponse(req, exists(id) ? new Document(type, id) : null));
+            maxPending = Math.max(maxPending, responses.size());
+            return new Result(req);
+        }
+
+        @Override
+        public Response getNext() {
+            return responses.poll();
+        }
+
+        @Override
+        public Response getNext(int timeoutMilliseconds) {
+            return getNext();
+        }
+
+        @Override
+        public Result put(Document document) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public Result remove(DocumentId id) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public Result update(DocumentUpdate update) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public double getCurrentWindowSize() { return window; }
+
+        @Override
+        public void destroy() { }
+
+    }
+
+}
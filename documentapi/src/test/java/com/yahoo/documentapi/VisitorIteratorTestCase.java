@@ -1573,4 +1573,77 @@ public class VisitorIteratorTestCase {
         assertEquals(input, p2.toString());
     }
 
+    private static Set<BucketId> visitSlice(int slices, int sliceId, int initialBits, int finalBits) throws ParseException {
+        ProgressToken progress = new ProgressToken();
+        VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                "", new BucketIdFactory(), initialBits, progress, slices, sliceId);
+        Set<BucketId> visited = new TreeSet<>();
+        if (initialBits != finalBits && iter.hasNext()) {
+            // Mimic a wrong distribution reply to the first visitor sent
+            VisitorIterator.BucketProgress first = iter.getNext();
+            iter.setDistributionBitCount(finalBits);
+            iter.update(first.getSuperbucket(), new BucketId());
+        }
+        while (iter.hasNext()) {
+            VisitorIterator.BucketProgress bucket = iter.getNext();
+            assertEquals(finalBits, bucket.getSuperbucket().getUsedBits());
+            assertTrue("Bucket " + bucket.getSuperbucket() + " visited twice in slice " + sliceId,
+                       visited.add(bucket.getSuperbucket()));
+            iter.update(bucket.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+        }
+        assertTrue(iter.isDone());
+        assertTrue(progress.isFinished());
+        return visited;
+    }
+
+    private static void assertSlicesCoverBucketSpaceOnce(int slices, int initialBits, int finalBits) throws ParseException {
+        Set<BucketId> all = new TreeSet<>();
+        for (int sliceId = 0; sliceId < slices; sliceId++) {
+            for (BucketId bucket : visitSlice(slices, sliceId, initialBits, finalBits)) {
+                assertTrue("Bucket " + bucket + " visited by more than one slice", all.add(bucket));
+            }
+        }
+        assertEquals(1L << finalBits, all.size());
+    }
+
+    @Test
+    public void testSlicesCoverBucketSpaceExactlyOnce() throws ParseException {
+        assertSlicesCoverBucketSpaceOnce(1, 8, 8);
+        assertSlicesCoverBucketSpaceOnce(2, 8, 8);
+        assertSlicesCoverBucketSpaceOnce(8, 8, 8);
+        assertSlicesCoverBucketSpaceOnce(8, 2, 2);
+        assertSlicesCoverBucketSpaceOnce(4, 2, 10);
+        assertSlicesCoverBucketSpaceOnce(16, 4, 10);
+        assertSlicesCoverBucketSpaceOnce(2, 1, 10);
+    }
+
+    @Test
+    public void testSliceProgressCountsOtherSlicesAsFinished() throws ParseException {
+        ProgressToken progress = new ProgressToken();
+        VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                "", new BucketIdFactory(), 4, progress, 4, 2);
+        assertEquals(8, progress.getFinishedBucketCount());
+        assertEquals(8, iter.getRemainingBucketCount());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(iter.hasNext());
+            iter.update(iter.getNext().getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+        }
+        assertFalse(iter.hasNext());
+        assertTrue(iter.isDone());
+        assertEquals(16, progress.getFinishedBucketCount());
+    }
+
+    @Test
+    public void testSlicedExplicitBucketSetIsVisitedBySliceZero() throws ParseException {
+        VisitorIterator first = VisitorIterator.createFromDocumentSelection(
+                "id.user = 1234", new BucketIdFactory(), 1, new ProgressToken(), 2, 0);
+        VisitorIterator second = VisitorIterator.createFromDocumentSelection(
+                "id.user = 1234", new BucketIdFactory(), 1, new ProgressToken(), 2, 1);
+        assertTrue(first.hasNext());
+        assertEquals(new BucketId(32, 1234), first.getNext().getSuperbucket());
+        assertFalse(second.hasNext());
+        assertTrue(second.isDone());
+    }
+
+
 }
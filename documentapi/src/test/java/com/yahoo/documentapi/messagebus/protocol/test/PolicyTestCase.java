@@ -1,12 +1,14 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.documentapi.messagebus.protocol.test;
 
+import com.yahoo.component.Version;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.DocumentTypeManagerConfigurer;
 import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.documentapi.messagebus.protocol.ANDPolicy;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.messagebus.protocol.DocumentRouteSelectorPolicy;
@@ -612,6 +614,29 @@ public class PolicyTestCase {
         frame.destroy();
     }
 
+    @Test
+    public void testDocumentRouteSelectorOnSerializedPut() {
+        PolicyTestFrame frame = new PolicyTestFrame(manager);
+        frame.setHop(new HopSpec("test", "[DocumentRouteSelector:raw:" +
+                                         "route[2]\n" +
+                                         "route[0].name \"foo\"\n" +
+                                         "route[0].selector \"testdoc.stringfield == 'foo'\"\n" +
+                                         "route[0].feed \"myfeed\"\n" +
+                                         "route[1].name \"bar\"\n" +
+                                         "route[1].selector \"testdoc.stringfield == 'bar'\"\n" +
+                                         "route[1].feed \"myfeed\"\n]").addRecipient("foo").addRecipient("bar"));
+
+        Document document = new Document(manager.getDocumentType("testdoc"), new DocumentId("id:ns:testdoc::1"));
+        document.setFieldValue("stringfield", new StringFieldValue("bar"));
+        DocumentProtocol protocol = new DocumentProtocol(manager);
+        Version version = new Version(6, 221, 0);
+        PutDocumentMessage put = (PutDocumentMessage)protocol.decode(version, protocol.encode(version, new PutDocumentMessage(new DocumentPut(document))));
+        frame.setMessage(put);
+        frame.assertSelect(Arrays.asList("bar"));
+        assertEquals(document, put.getDocumentPut().getDocument());
+
+        frame.destroy();
+    }
 
     @Test
     public void testDocumentRouteSelectorIgnore() {
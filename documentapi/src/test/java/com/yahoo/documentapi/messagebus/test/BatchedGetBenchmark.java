@@ -0,0 +1,120 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.test;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.documentapi.AsyncParameters;
+import com.yahoo.documentapi.AsyncSession;
+import com.yahoo.documentapi.DocumentResponse;
+import com.yahoo.documentapi.SyncParameters;
+import com.yahoo.documentapi.SyncSession;
+import com.yahoo.documentapi.messagebus.MessageBusDocumentAccess;
+import com.yahoo.documentapi.messagebus.MessageBusParams;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of getting documents one by one with a sync session, against getting them in batches with
+ * {@link AsyncSession#getBatch}, over the network to a local destination which delays each reply, to simulate
+ * the latency of a content node. Must be run from the documentapi module directory, with the optional arguments:
+ * number of documents and reply delay in microseconds.
+ */
+public class BatchedGetBenchmark {
+
+    /** A destination which replies to gets after a delay, without blocking its network thread */
+    private static class DelayingDestination extends Destination {
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        private final long delayMicros;
+
+        DelayingDestination(String slobrokConfigId, String documentManagerConfigId, long delayMicros) {
+            super(slobrokConfigId, documentManagerConfigId);
+            this.delayMicros = delayMicros;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.getType() == DocumentProtocol.MESSAGE_GETDOCUMENT) {
+                executor.schedule(() -> super.handleMessage(msg), delayMicros, TimeUnit.MICROSECONDS);
+            } else {
+                super.handleMessage(msg);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+            super.shutdown();
+        }
+
+    }
+
+    private static void report(String name, int documents, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) * 1e-9;
+        System.out.printf("  %-24s %8.0f documents/s\n", name, documents / seconds);
+    }
+
+    public static void main(String[] args) throws ListenFailedException {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long delayMicros = args.length > 1 ? Long.parseLong(args[1]) : 500;
+
+        Slobrok slobrok = new Slobrok();
+        String slobrokConfigId = "raw:slobrok[1]\n" + "slobrok[0].connectionspec tcp/localhost:" + slobrok.port() + "\n";
+        MessageBusParams params = new MessageBusParams();
+        params.getRPCNetworkParams().setIdentity(new Identity("test/feeder"));
+        params.getRPCNetworkParams().setSlobrokConfigId(slobrokConfigId);
+        params.setDocumentManagerConfigId("file:src/test/cfg/documentmanager.cfg");
+        params.setRouteName("Route");
+        params.setRouteNameForGet("Route");
+        params.setRoutingConfigId("file:src/test/cfg/messagebus.cfg");
+        params.setSourceSessionParams(new SourceSessionParams().setThrottlePolicy(null));
+        MessageBusDocumentAccess access = new MessageBusDocumentAccess(params);
+        DelayingDestination destination = new DelayingDestination(slobrokConfigId, params.getDocumentManagerConfigId(), delayMicros);
+
+        SyncSession syncSession = access.createSyncSession(new SyncParameters.Builder().build());
+        AsyncSession asyncSession = access.createAsyncSession(new AsyncParameters());
+        DocumentType type = access.getDocumentTypeManager().getDocumentType("music");
+        List<DocumentId> ids = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            ids.add(new DocumentId("id:ns:music::" + i));
+            syncSession.put(new DocumentPut(new Document(type, ids.get(i))));
+        }
+        System.out.println(documents + " documents, replies delayed by " + delayMicros + " us");
+
+        for (int run = 0; run < 2; run++) { // The first run warms up
+            long start = System.nanoTime();
+            for (DocumentId id : ids) {
+                if (syncSession.get(id) == null) throw new IllegalStateException("Document " + id + " not found");
+            }
+            if (run > 0) report("sequential", documents, start);
+
+            for (int maxPending : new int[] { 16, 128, 1024 }) {
+                start = System.nanoTime();
+                long found = asyncSession.getBatch(ids.iterator(), "[all]", DocumentProtocol.Priority.NORMAL_1, maxPending)
+                                         .filter(response -> response instanceof DocumentResponse)
+                                         .count();
+                if (found != documents) throw new IllegalStateException("Found only " + found + " documents");
+                if (run > 0) report("batched, " + maxPending + " pending", documents, start);
+            }
+        }
+
+        syncSession.destroy();
+        asyncSession.destroy();
+        access.shutdown();
+        destination.shutdown();
+        slobrok.stop();
+    }
+
+}
@@ -0,0 +1,204 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.test;
+
+import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.documentapi.ProgressToken;
+import com.yahoo.documentapi.VisitorControlHandler;
+import com.yahoo.documentapi.VisitorParameters;
+import com.yahoo.documentapi.messagebus.MessageBusVisitorSession;
+import com.yahoo.documentapi.messagebus.protocol.CreateVisitorMessage;
+import com.yahoo.documentapi.messagebus.protocol.CreateVisitorReply;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.documentapi.messagebus.protocol.WrongDistributionReply;
+import com.yahoo.messagebus.AdaptiveThrottlePolicy;
+import com.yahoo.messagebus.DynamicThrottlePolicy;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.StaticThrottlePolicy;
+import com.yahoo.messagebus.ThrottlePolicy;
+import com.yahoo.messagebus.routing.RoutingTable;
+import com.yahoo.messagebus.routing.RoutingTableSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of visiting the whole bucket space with {@link MessageBusVisitorSession}, using different throttle
+ * policies and numbers of slices visited in parallel. The local document API does not support visiting, so the
+ * sessions visit a simulated content cluster, which serves a limited number of buckets concurrently, queues the
+ * rest, and replies busy when its queue is too long. Reports buckets visited per second, and busy replies.
+ * Run with the optional arguments: distribution bits, concurrent buckets served and milliseconds per bucket.
+ */
+public class VisitingBenchmark {
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    private final int distributionBits;
+    private final int capacity;
+    private final long serviceNanos;
+    private final PriorityQueue<Long> freeTimes = new PriorityQueue<>();
+    private final AtomicLong visited = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+
+    private VisitingBenchmark(int distributionBits, int capacity, long serviceMillis) {
+        this.distributionBits = distributionBits;
+        this.capacity = capacity;
+        this.serviceNanos = TimeUnit.MILLISECONDS.toNanos(serviceMillis);
+    }
+
+    /** Replies to the given visitor message when the simulated cluster has visited its bucket */
+    private void visit(CreateVisitorMessage message, ReplyHandler handler) {
+        if (message.getBuckets().get(0).getUsedBits() != distributionBits) {
+            Reply reply = new WrongDistributionReply("version:2 bits:" + distributionBits + " distributor:1 storage:1");
+            reply.addError(new Error(DocumentProtocol.ERROR_WRONG_DISTRIBUTION, "Wrong distribution bits"));
+            reply(message, reply, 0, handler);
+            return;
+        }
+        long now = System.nanoTime();
+        long done;
+        synchronized (freeTimes) {
+            while (freeTimes.size() < capacity) {
+                freeTimes.add(now);
+            }
+            done = Math.max(now, freeTimes.peek()) + serviceNanos;
+            if (done - now > 20 * serviceNanos) {
+                done = -1;
+            } else {
+                freeTimes.poll();
+                freeTimes.add(done);
+            }
+        }
+        if (done < 0) {
+            busy.incrementAndGet();
+            CreateVisitorReply reply = (CreateVisitorReply) message.createReply();
+            reply.addError(new Error(DocumentProtocol.ERROR_BUSY, "Too many visitors queued"));
+            reply(message, reply, serviceNanos / 10, handler);
+            return;
+        }
+        CreateVisitorReply reply = (CreateVisitorReply) message.createReply();
+        reply.setLastBucket(ProgressToken.FINISHED_BUCKET);
+        visited.incrementAndGet();
+        reply(message, reply, done - now, handler);
+    }
+
+    private void reply(Message message, Reply reply, long delayNanos, ReplyHandler handler) {
+        reply.setMessage(message);
+        reply.setContext(message.getContext());
+        executor.schedule(() -> handler.handleReply(reply), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Sends visitor messages to the simulated cluster, limited by a throttle policy, like a source session */
+    private class SimulatedSender implements MessageBusVisitorSession.Sender {
+
+        private final ThrottlePolicy policy;
+        private final ReplyHandler handler;
+        private int pending = 0;
+
+        SimulatedSender(ThrottlePolicy policy, ReplyHandler handler) {
+            this.policy = policy;
+            this.handler = handler;
+        }
+
+        @Override
+        public Result send(Message message) {
+            synchronized (this) {
+                if ( ! policy.canSend(message, pending)) {
+                    return new Result(ErrorCode.SEND_QUEUE_FULL, "Too much pending data (" + pending + " messages).");
+                }
+                policy.processMessage(message);
+                pending++;
+            }
+            visit((CreateVisitorMessage) message, this::handleReply);
+            return Result.ACCEPTED;
+        }
+
+        private void handleReply(Reply reply) {
+            synchronized (this) {
+                pending--;
+                policy.processReply(reply);
+            }
+            handler.handleReply(reply);
+        }
+
+        @Override
+        public synchronized int getPendingCount() { return pending; }
+
+        @Override
+        public void destroy() { }
+
+    }
+
+    private static class NullReceiver implements MessageBusVisitorSession.Receiver {
+
+        @Override
+        public void reply(Reply reply) { }
+
+        @Override
+        public void destroy() { }
+
+        @Override
+        public String getConnectionSpec() { return "benchmark/receiver"; }
+
+    }
+
+    private void run(String name, Supplier<ThrottlePolicy> policies, int slices) throws ParseException, InterruptedException {
+        visited.set(0);
+        busy.set(0);
+        List<MessageBusVisitorSession> sessions = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int sliceId = 0; sliceId < slices; sliceId++) {
+            VisitorParameters params = new VisitorParameters("");
+            params.setRoute("storage");
+            params.setRemoteDataHandler("benchmark/data");
+            params.setControlHandler(new VisitorControlHandler());
+            params.setThrottlePolicy(policies.get());
+            params.slice(slices, sliceId);
+            MessageBusVisitorSession session =
+                    new MessageBusVisitorSession(params,
+                                                 new MessageBusVisitorSession.ThreadAsyncTaskExecutor(executor),
+                                                 (handler, visitorParameters) -> new SimulatedSender(visitorParameters.getThrottlePolicy(), handler),
+                                                 (handler, sessionName) -> new NullReceiver(),
+                                                 new RoutingTable(new RoutingTableSpec(DocumentProtocol.NAME)));
+            sessions.add(session);
+            session.start();
+        }
+        for (MessageBusVisitorSession session : sessions) {
+            session.waitUntilDone(0);
+            if (session.getProgress().getFinishedBucketCount() != session.getProgress().getTotalBucketCount()) {
+                throw new IllegalStateException("Session did not visit all buckets: " + session.getProgress());
+            }
+            session.destroy();
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        System.out.printf("  %-32s %d slice%s: %8.0f buckets/s, %6d busy replies\n",
+                          name, slices, slices == 1 ? " " : "s", visited.get() / seconds, busy.get());
+        if (visited.get() != 1L << distributionBits) {
+            throw new IllegalStateException("Visited " + visited.get() + " buckets, expected " + (1L << distributionBits));
+        }
+    }
+
+    public static void main(String[] args) throws ParseException, InterruptedException {
+        int distributionBits = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int serviceMillis = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        VisitingBenchmark benchmark = new VisitingBenchmark(distributionBits, capacity, serviceMillis);
+        System.out.println((1 << distributionBits) + " buckets, " + capacity + " visited concurrently in " +
+                           serviceMillis + " ms each, at most " + capacity * 1000 / serviceMillis + " buckets/s");
+        benchmark.run("static, 16 pending", () -> new StaticThrottlePolicy().setMaxPendingCount(16), 1);
+        benchmark.run("static, 16 pending", () -> new StaticThrottlePolicy().setMaxPendingCount(16), 4);
+        benchmark.run("dynamic", DynamicThrottlePolicy::new, 1);
+        benchmark.run("adaptive", AdaptiveThrottlePolicy::new, 1);
+        benchmark.run("adaptive", AdaptiveThrottlePolicy::new, 4);
+        benchmark.executor.shutdown();
+    }
+
+}
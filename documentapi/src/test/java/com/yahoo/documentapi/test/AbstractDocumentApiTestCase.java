@@ -9,22 +9,28 @@ import com.yahoo.document.DocumentType;
 import com.yahoo.documentapi.AsyncParameters;
 import com.yahoo.documentapi.AsyncSession;
 import com.yahoo.documentapi.DocumentAccess;
+import com.yahoo.documentapi.DocumentIdResponse;
 import com.yahoo.documentapi.DocumentResponse;
 import com.yahoo.documentapi.Response;
 import com.yahoo.documentapi.ResponseHandler;
 import com.yahoo.documentapi.Result;
 import com.yahoo.documentapi.SyncParameters;
 import com.yahoo.documentapi.SyncSession;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -127,6 +133,44 @@ public abstract class AbstractDocumentApiTestCase {
         session.destroy();
     }
 
+    @Test
+    public void requireThatBatchedGetWorks() {
+        SyncSession syncSession = access().createSyncSession(new SyncParameters.Builder().build());
+        AsyncSession session = access().createAsyncSession(new AsyncParameters());
+        DocumentType type = access().getDocumentTypeManager().getDocumentType("music");
+        List<DocumentId> ids = new ArrayList<>();
+        Map<DocumentId, Document> documents = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            DocumentId id = new DocumentId("doc:music:" + i);
+            ids.add(id);
+            if (i % 4 != 3) {
+                documents.put(id, new Document(type, id));
+                syncSession.put(new DocumentPut(documents.get(id)));
+            }
+        }
+
+        Map<DocumentId, Document> found = new HashMap<>();
+        Set<DocumentId> missing = new HashSet<>();
+        session.getBatch(ids.iterator(), "[all]", DocumentProtocol.Priority.NORMAL_1, 4).forEach(response -> {
+            assertTrue(response.isSuccess());
+            if (response instanceof DocumentResponse) {
+                Document document = ((DocumentResponse) response).getDocument();
+                found.put(document.getId(), document);
+            } else {
+                missing.add(((DocumentIdResponse) response).getDocumentId());
+            }
+        });
+        assertEquals(documents, found);
+        assertEquals(5, missing.size());
+        for (DocumentId id : missing) {
+            assertFalse(documents.containsKey(id));
+        }
+        assertNull(session.getNext());
+
+        syncSession.destroy();
+        session.destroy();
+    }
+
     @Test
     public void requireThatAsyncHandlerWorks() throws InterruptedException {
         MyHandler handler = new MyHandler();
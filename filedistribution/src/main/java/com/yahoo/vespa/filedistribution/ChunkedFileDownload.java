@@ -0,0 +1,194 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.Connection;
+import com.yahoo.yolean.Exceptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads a file reference in chunks, which are fetched in parallel from all the given sources, and verified
+ * against their hashes as they arrive. Chunks are written to a partial file, which is kept if the download fails,
+ * so a later download of the same file reference only fetches the chunks which are still missing. A source which
+ * fails to deliver a chunk is not used again during the download, so a dead source is waited for at most once.
+ */
+class ChunkedFileDownload {
+
+    private final static Logger log = Logger.getLogger(ChunkedFileDownload.class.getName());
+
+    private final static Duration chunkTimeout = Duration.ofSeconds(60);
+    private final static int parallelChunksPerSource = 2;
+
+    private final FileReference reference;
+    private final FileChunks chunks;
+    private final List<Connection> sources;
+    private final Set<Connection> failedSources = ConcurrentHashMap.newKeySet();
+    private final File partialFile;
+    private final File tmpDirectory;
+    private final File fileReferenceDirectory;
+
+    ChunkedFileDownload(FileReference reference, FileChunks chunks, List<Connection> sources,
+                        File downloadDirectory, File tmpDirectory) {
+        if (sources.isEmpty()) throw new IllegalArgumentException("No sources to download " + reference + " from");
+        this.reference = reference;
+        this.chunks = chunks;
+        this.sources = sources;
+        this.partialFile = new File(tmpDirectory, reference.value() + "-" + chunks.filename() + ".partial");
+        this.tmpDirectory = tmpDirectory;
+        this.fileReferenceDirectory = new File(downloadDirectory, reference.value());
+    }
+
+    /** Returns the request for the chunks of the given file reference */
+    static Request chunksRequest(FileReference reference, boolean downloadFromOtherSourceIfNotFound) {
+        Request request = new Request(FileChunks.GET_CHUNKS_METHOD);
+        request.parameters().add(new StringValue(reference.value()));
+        request.parameters().add(new Int32Value(downloadFromOtherSourceIfNotFound ? 0 : 1));
+        return request;
+    }
+
+    /** Returns the chunks in the given successful response to a {@link #chunksRequest} */
+    static FileChunks chunksFrom(Request response) {
+        return new FileChunks(response.returnValues().get(2).asString(),
+                              FileReferenceData.Type.valueOf(response.returnValues().get(3).asString()),
+                              response.returnValues().get(4).asInt64(),
+                              response.returnValues().get(5).asInt32(),
+                              response.returnValues().get(6).asInt64Array());
+    }
+
+    /**
+     * Fetches the chunks which are not already in the partial file of this, and installs the complete file.
+     *
+     * @param executor the executor to fetch chunks in
+     * @param progress called with the fraction of the file which is downloaded as chunks arrive
+     * @return the downloaded file, or null if some chunk could not be fetched from any source
+     */
+    File download(ExecutorService executor, DoubleConsumer progress) throws IOException {
+        Files.createDirectories(tmpDirectory.toPath());
+        try (FileChannel channel = FileChannel.open(partialFile.toPath(), CREATE, READ, WRITE)) {
+            Queue<Integer> missing = missingChunks(channel);
+            AtomicLong downloaded = new AtomicLong(chunks.size());
+            missing.forEach(chunk -> downloaded.addAndGet(-chunks.length(chunk)));
+            if ( ! missing.isEmpty() && downloaded.get() > 0)
+                log.log(LogLevel.INFO, "Resuming download of " + reference + " with " + downloaded.get() + " of " +
+                                       chunks.size() + " bytes already downloaded");
+            progress.accept((double) downloaded.get() / Math.max(1, chunks.size()));
+
+            AtomicBoolean failed = new AtomicBoolean(false);
+            List<CompletableFuture<Void>> fetchers = new ArrayList<>();
+            int parallelism = Math.min(missing.size(), sources.size() * parallelChunksPerSource);
+            for (int i = 0; i < parallelism; i++) {
+                int firstSource = i % sources.size();
+                fetchers.add(CompletableFuture.runAsync(() -> {
+                    Integer chunk;
+                    while ( ! failed.get() && (chunk = missing.poll()) != null) {
+                        if ( ! fetch(chunk, firstSource, channel)) {
+                            failed.set(true);
+                            return;
+                        }
+                        long done = downloaded.addAndGet(chunks.length(chunk));
+                        progress.accept((double) done / chunks.size());
+                    }
+                }, executor));
+            }
+            fetchers.forEach(CompletableFuture::join);
+            if (failed.get()) return null;
+
+            channel.force(false);
+        }
+        File file = FileReceiver.install(partialFile, tmpDirectory, fileReferenceDirectory, chunks.type(), chunks.filename());
+        Files.deleteIfExists(partialFile.toPath()); // left behind when a compressed file was unpacked
+        return file;
+    }
+
+    /** Returns the sources which failed to deliver some chunk during the download */
+    List<Connection> failedSources() {
+        return sources.stream().filter(failedSources::contains).collect(Collectors.toList());
+    }
+
+    /** Returns the chunks which do not have the expected content in the given partial file, after resizing it */
+    private Queue<Integer> missingChunks(FileChannel channel) throws IOException {
+        if (channel.size() > chunks.size())
+            channel.truncate(chunks.size());
+        long existingSize = channel.size();
+        if (existingSize < chunks.size() && chunks.size() > 0)
+            channel.write(ByteBuffer.wrap(new byte[1]), chunks.size() - 1);
+
+        Queue<Integer> missing = new ConcurrentLinkedQueue<>();
+        for (int chunk = 0; chunk < chunks.count(); chunk++) {
+            if (chunks.offset(chunk) + chunks.length(chunk) > existingSize ||
+                ! chunks.isValid(chunk, channel.map(FileChannel.MapMode.READ_ONLY, chunks.offset(chunk), chunks.length(chunk))))
+                missing.add(chunk);
+        }
+        return missing;
+    }
+
+    /** Fetches the given chunk from the first source which has it and has not failed, starting with the given one */
+    private boolean fetch(int chunk, int firstSource, FileChannel channel) {
+        for (int i = 0; i < sources.size(); i++) {
+            Connection source = sources.get((firstSource + i) % sources.size());
+            if (failedSources.contains(source)) continue;
+
+            Request request = new Request(FileChunks.GET_CHUNK_METHOD);
+            request.parameters().add(new StringValue(reference.value()));
+            request.parameters().add(new Int32Value(chunk));
+            request.parameters().add(new Int64Value(chunks.hash(chunk)));
+            source.invokeSync(request, (double) chunkTimeout.getSeconds());
+            if (request.isError() || ! request.checkReturnTypes("ix") || request.returnValues().get(0).asInt32() != 0) {
+                log.log(LogLevel.DEBUG, () -> "Failed getting chunk " + chunk + " of " + reference + " from " +
+                                              source.getAddress() + ", not using it again: " + request.errorMessage());
+                failedSources.add(source);
+                continue;
+            }
+            byte[] data = request.returnValues().get(1).asData();
+            if ( ! chunks.isValid(chunk, data)) {
+                log.log(LogLevel.WARNING, "Chunk " + chunk + " of " + reference + " from " + source.getAddress() +
+                                          " does not have the expected hash, not using it again");
+                failedSources.add(source);
+                continue;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                for (long position = chunks.offset(chunk); buffer.hasRemaining(); )
+                    position += channel.write(buffer, position);
+                return true;
+            }
+            catch (IOException e) {
+                log.log(LogLevel.WARNING, "Failed writing chunk " + chunk + " of " + reference + " to " + partialFile +
+                                          ": " + Exceptions.toMessageString(e));
+                return false;
+            }
+        }
+        log.log(LogLevel.INFO, "Could not get chunk " + chunk + " of " + reference + " from any of " + sources.size() +
+                               " sources, of which " + failedSources.size() + " have failed");
+        return false;
+    }
+
+}
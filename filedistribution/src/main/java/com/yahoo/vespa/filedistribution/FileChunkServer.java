@@ -0,0 +1,80 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Array;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves file references in chunks, to config servers and to nodes which download them from a source which has them.
+ * The chunks of each file are computed when first requested, and then kept, as file references never change.
+ *
+ * This is thread safe.
+ */
+public class FileChunkServer {
+
+    private final Map<FileReference, FileChunks> fileChunks = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the chunks of the given file of the given file reference,
+     * or empty if it is a directory, which is not served in chunks.
+     */
+    public Optional<FileChunks> chunks(FileReference reference, File file) throws IOException {
+        if (file.isDirectory()) return Optional.empty();
+
+        FileChunks chunks = fileChunks.get(reference);
+        if (chunks == null || chunks.size() != file.length()) {
+            chunks = FileChunks.of(file, FileReferenceData.Type.file, FileChunks.defaultChunkSize);
+            fileChunks.put(reference, chunks);
+        }
+        return Optional.of(chunks);
+    }
+
+    /**
+     * Returns the content of the given chunk of the given file of the given file reference,
+     * or empty if the file does not have such a chunk with the given hash.
+     */
+    public Optional<byte[]> chunk(FileReference reference, File file, int chunk, long hash) throws IOException {
+        Optional<FileChunks> chunks = chunks(reference, file);
+        if ( ! chunks.isPresent() || chunk < 0 || chunk >= chunks.get().count() || chunks.get().hash(chunk) != hash)
+            return Optional.empty();
+
+        try {
+            return Optional.of(chunks.get().read(file, chunk));
+        }
+        catch (IOException e) {
+            fileChunks.remove(reference);
+            throw e;
+        }
+    }
+
+    /** Sets the return values of a {@link FileChunks#GET_CHUNKS_METHOD} request */
+    public static void returnChunks(Request request, int code, String description, Optional<FileChunks> chunks) {
+        request.returnValues()
+                .add(new Int32Value(code))
+                .add(new StringValue(description))
+                .add(new StringValue(chunks.map(FileChunks::filename).orElse("")))
+                .add(new StringValue(chunks.map(c -> c.type().name()).orElse("")))
+                .add(new Int64Value(chunks.map(FileChunks::size).orElse(0L)))
+                .add(new Int32Value(chunks.map(FileChunks::chunkSize).orElse(0)))
+                .add(new Int64Array(chunks.map(FileChunks::hashes).orElse(new long[0])));
+    }
+
+    /** Sets the return values of a {@link FileChunks#GET_CHUNK_METHOD} request */
+    public static void returnChunk(Request request, Optional<byte[]> data) {
+        request.returnValues()
+                .add(new Int32Value(data.isPresent() ? FileChunks.FOUND : FileChunks.NOT_FOUND))
+                .add(new DataValue(data.orElse(new byte[0])));
+    }
+
+}
@@ -0,0 +1,140 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The metadata of a file which is transferred in chunks: its name, type and size, and the xxhash64 of each chunk,
+ * so every chunk may be fetched from any source which has the file, and verified on its own.
+ */
+public class FileChunks {
+
+    /** Returns the chunks of a file reference as "isssliL", where the first value is one of the codes below */
+    public static final String GET_CHUNKS_METHOD = "filedistribution.getFileChunks";
+    /** Returns a chunk of a file reference as "ix", where the first value is 0 if the chunk was found, and 1 otherwise */
+    public static final String GET_CHUNK_METHOD = "filedistribution.getFileChunk";
+    /** Returns the specs of some nodes which have a file reference, and serve its chunks, as "S" */
+    public static final String GET_PEERS_METHOD = "filedistribution.getFilePeers";
+    /**
+     * Records that the calling node has a file reference, and serves its chunks on the given port, returning "i",
+     * which is 0 if the node was added
+     */
+    public static final String ADD_PEER_METHOD = "filedistribution.addFilePeer";
+    /** Reports that a peer of a file reference failed serving its chunks, returning "i", which is always 0 */
+    public static final String REMOVE_PEER_METHOD = "filedistribution.removeFilePeer";
+
+    public static final int FOUND = 0;
+    public static final int NOT_FOUND = 1;
+    /** The file reference exists, but can not be served in chunks, and must be requested with serveFile */
+    public static final int NOT_AVAILABLE_IN_CHUNKS = 2;
+
+    public static final int defaultChunkSize = 4 * 1024 * 1024;
+
+    private static final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+
+    private final String filename;
+    private final FileReferenceData.Type type;
+    private final long size;
+    private final int chunkSize;
+    private final long[] hashes;
+
+    public FileChunks(String filename, FileReferenceData.Type type, long size, int chunkSize, long[] hashes) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive, but was " + chunkSize);
+        if (hashes.length != chunkCount(size, chunkSize))
+            throw new IllegalArgumentException("Expected " + chunkCount(size, chunkSize) + " chunk hashes for " + size +
+                                               " bytes in chunks of " + chunkSize + ", but got " + hashes.length);
+        this.filename = filename;
+        this.type = type;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.hashes = hashes.clone();
+    }
+
+    /** Returns the chunks of the given file, with the hash of each chunk computed from its current content */
+    public static FileChunks of(File file, FileReferenceData.Type type, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] hashes = new long[chunkCount(size, chunkSize)];
+            for (int chunk = 0; chunk < hashes.length; chunk++) {
+                long offset = (long) chunk * chunkSize;
+                hashes[chunk] = hash(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(chunkSize, size - offset)));
+            }
+            return new FileChunks(file.getName(), type, size, chunkSize, hashes);
+        }
+    }
+
+    /** Returns the content of the given chunk of the given file, read through a mapping of the file */
+    public byte[] read(File file, int chunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != size)
+                throw new IOException("Expected '" + file + "' to have " + size + " bytes, but it has " + channel.size());
+            byte[] data = new byte[length(chunk)];
+            channel.map(FileChannel.MapMode.READ_ONLY, offset(chunk), data.length).get(data);
+            return data;
+        }
+    }
+
+    /** Returns whether the given data has the length and hash of the given chunk */
+    public boolean isValid(int chunk, byte[] data) {
+        return data.length == length(chunk) && hasher.hash(data, 0, data.length, 0) == hashes[chunk];
+    }
+
+    /** Returns whether the given mapping of a chunk has the length and hash of the given chunk */
+    boolean isValid(int chunk, MappedByteBuffer data) {
+        return data.remaining() == length(chunk) && hash(data) == hashes[chunk];
+    }
+
+    public String filename() { return filename; }
+
+    public FileReferenceData.Type type() { return type; }
+
+    public long size() { return size; }
+
+    public int chunkSize() { return chunkSize; }
+
+    public int count() { return hashes.length; }
+
+    public long hash(int chunk) { return hashes[chunk]; }
+
+    public long[] hashes() { return hashes.clone(); }
+
+    public long offset(int chunk) { return (long) chunk * chunkSize; }
+
+    public int length(int chunk) { return (int) Math.min(chunkSize, size - offset(chunk)); }
+
+    private static long hash(MappedByteBuffer data) {
+        return hasher.hash(data, data.position(), data.remaining(), 0);
+    }
+
+    private static int chunkCount(long size, int chunkSize) {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    @Override
+    public String toString() {
+        return "chunks of '" + filename + "' (" + type + ", " + size + " bytes in " + count() + " chunks)";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if ( ! (o instanceof FileChunks)) return false;
+        FileChunks other = (FileChunks) o;
+        return filename.equals(other.filename) && type == other.type && size == other.size &&
+               chunkSize == other.chunkSize && Arrays.equals(hashes, other.hashes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * filename.hashCode() + Long.hashCode(size)) + Arrays.hashCode(hashes);
+    }
+
+}
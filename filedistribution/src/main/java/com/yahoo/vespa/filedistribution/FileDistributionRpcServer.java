@@ -11,8 +11,10 @@ import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.log.LogLevel;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
@@ -34,6 +36,9 @@ public class FileDistributionRpcServer {
     private final FileDownloader downloader;
     private final ExecutorService rpcDownloadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
                                                                                      new DaemonThreadFactory("Rpc executor"));
+    private final ExecutorService chunkExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                                               new DaemonThreadFactory("Rpc chunk executor"));
+    private final FileChunkServer chunkServer = new FileChunkServer();
 
     public FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
@@ -63,6 +68,14 @@ public class FileDistributionRpcServer {
                                      .methodDesc("set which file references to download")
                                      .paramDesc(0, "file references", "file reference to download")
                                      .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        supervisor.addMethod(new Method(FileChunks.GET_CHUNK_METHOD, "sil", "ix",
+                                        this, "getFileChunk")
+                                     .methodDesc("get a chunk of a file reference which has been downloaded, for other nodes downloading it")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "chunk", "chunk number")
+                                     .paramDesc(2, "hash", "expected xxhash64 of the chunk")
+                                     .returnDesc(0, "ret", "0 if found, 1 otherwise")
+                                     .returnDesc(1, "data", "content of the chunk"));
     }
 
 
@@ -110,6 +123,36 @@ public class FileDistributionRpcServer {
         req.returnValues().add(new Int32Value(0));
     }
 
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void getFileChunk(Request req) {
+        req.detach();
+        chunkExecutor.execute(() -> serveFileChunk(req));
+    }
+
+    private void serveFileChunk(Request req) {
+        FileReference fileReference = new FileReference(req.parameters().get(0).asString());
+        int chunk = req.parameters().get(1).asInt32();
+        Optional<byte[]> data = Optional.empty();
+        try {
+            Optional<File> file = downloadedFile(fileReference);
+            if (file.isPresent())
+                data = chunkServer.chunk(fileReference, file.get(), chunk, req.parameters().get(2).asInt64());
+        } catch (IOException e) {
+            log.log(LogLevel.WARNING, "Failed serving chunk " + chunk + " of file reference '" + fileReference.value() +
+                                      "': " + Exceptions.toMessageString(e));
+        }
+        FileChunkServer.returnChunk(req, data);
+        req.returnRequest();
+    }
+
+    /** Returns the file of the given file reference, if it has been downloaded and is not being downloaded again */
+    private Optional<File> downloadedFile(FileReference fileReference) {
+        if (downloader.fileReferenceDownloader().isDownloading(fileReference)) return Optional.empty();
+
+        File[] files = new File(downloader.downloadDirectory(), fileReference.value()).listFiles();
+        return files != null && files.length == 1 && files[0].isFile() ? Optional.of(files[0]) : Optional.empty();
+    }
+
     private void downloadFile(Request req) {
         FileReference fileReference = new FileReference(req.parameters().get(0).asString());
         log.log(LogLevel.DEBUG, () -> "getFile() called for file reference '" + fileReference.value() + "'");
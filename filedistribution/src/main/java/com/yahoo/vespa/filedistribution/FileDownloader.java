@@ -33,17 +33,32 @@ public class FileDownloader {
     private final FileReferenceDownloader fileReferenceDownloader;
 
     public FileDownloader(ConnectionPool connectionPool) {
+        this(connectionPool, Optional.empty());
+    }
+
+    /**
+     * Creates a file downloader which tells the config servers it serves the chunks of the file references
+     * it has downloaded to other nodes at the given spec, if present, so they are downloaded from this too
+     */
+    public FileDownloader(ConnectionPool connectionPool, Optional<String> peerSpec) {
         this(connectionPool,
              new File(Defaults.getDefaults().underVespaHome("var/db/vespa/filedistribution")),
              new File(Defaults.getDefaults().underVespaHome("var/db/vespa/filedistribution")),
              Duration.ofMinutes(15),
-             Duration.ofSeconds(10));
+             Duration.ofSeconds(10),
+             peerSpec);
     }
 
     FileDownloader(ConnectionPool connectionPool, File downloadDirectory, File tmpDirectory, Duration timeout, Duration sleepBetweenRetries) {
+        this(connectionPool, downloadDirectory, tmpDirectory, timeout, sleepBetweenRetries, Optional.empty());
+    }
+
+    FileDownloader(ConnectionPool connectionPool, File downloadDirectory, File tmpDirectory, Duration timeout,
+                   Duration sleepBetweenRetries, Optional<String> peerSpec) {
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
-        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool, timeout, sleepBetweenRetries);
+        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool, timeout,
+                                                                   sleepBetweenRetries, peerSpec);
     }
 
     public Optional<File> getFile(FileReference fileReference) {
@@ -109,27 +109,8 @@ public class FileReceiver {
             if (hasher.getValue() != hash) {
                 throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
             }
-            File file = new File(fileReferenceDir, fileName);
             try {
-                // Unpack if necessary
-                if (fileType == FileReferenceData.Type.compressed) {
-                    File decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
-                    log.log(LogLevel.DEBUG, () -> "Archived file, unpacking " + inprogressFile + " to " + decompressedDir);
-                    CompressedFileReference.decompress(inprogressFile, decompressedDir);
-                    moveFileToDestination(decompressedDir, fileReferenceDir);
-                } else {
-                    try {
-                        Files.createDirectories(fileReferenceDir.toPath());
-                    } catch (IOException e) {
-                        log.log(LogLevel.ERROR, "Failed creating directory (" + fileReferenceDir.toPath() + "): " + e.getMessage(), e);
-                        throw new RuntimeException("Failed creating directory (" + fileReferenceDir.toPath() + "): ", e);
-                    }
-                    log.log(LogLevel.DEBUG, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
-                    moveFileToDestination(inprogressFile, file);
-                }
-            } catch (IOException e) {
-                log.log(LogLevel.ERROR, "Failed writing file: " + e.getMessage(), e);
-                throw new RuntimeException("Failed writing file: ", e);
+                return install(inprogressFile, tmpDir, fileReferenceDir, fileType, fileName);
             } finally {
                 try {
                     if (inprogressFile.exists()) {
@@ -139,7 +120,6 @@ public class FileReceiver {
                     log.log(LogLevel.ERROR, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage(), e);
                 }
             }
-            return file;
         }
 
         double percentageReceived() {
@@ -186,6 +166,36 @@ public class FileReceiver {
         return methods;
     }
 
+    /**
+     * Moves a completely received file to the given file reference directory, or unpacks it there if it is compressed,
+     * and returns the resulting file.
+     */
+    static File install(File receivedFile, File tmpDir, File fileReferenceDir, FileReferenceData.Type fileType, String fileName) {
+        File file = new File(fileReferenceDir, fileName);
+        try {
+            // Unpack if necessary
+            if (fileType == FileReferenceData.Type.compressed) {
+                File decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
+                log.log(LogLevel.DEBUG, () -> "Archived file, unpacking " + receivedFile + " to " + decompressedDir);
+                CompressedFileReference.decompress(receivedFile, decompressedDir);
+                moveFileToDestination(decompressedDir, fileReferenceDir);
+            } else {
+                try {
+                    Files.createDirectories(fileReferenceDir.toPath());
+                } catch (IOException e) {
+                    log.log(LogLevel.ERROR, "Failed creating directory (" + fileReferenceDir.toPath() + "): " + e.getMessage(), e);
+                    throw new RuntimeException("Failed creating directory (" + fileReferenceDir.toPath() + "): ", e);
+                }
+                log.log(LogLevel.DEBUG, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
+                moveFileToDestination(receivedFile, file);
+            }
+        } catch (IOException e) {
+            log.log(LogLevel.ERROR, "Failed writing file: " + e.getMessage(), e);
+            throw new RuntimeException("Failed writing file: ", e);
+        }
+        return file;
+    }
+
     private static void moveFileToDestination(File tempFile, File destination) {
         try {
             Files.move(tempFile.toPath(), destination.toPath());
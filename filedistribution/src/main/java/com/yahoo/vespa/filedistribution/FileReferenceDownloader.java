@@ -5,23 +5,33 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
+import com.yahoo.jrt.ErrorCode;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
+import com.yahoo.vespa.config.JRTConnection;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Downloads file reference using rpc requests to config server and keeps track of files being downloaded
@@ -38,14 +48,23 @@ public class FileReferenceDownloader {
 
     private final ExecutorService downloadExecutor =
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("filereference downloader"));
+    private final ExecutorService chunkExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("filereference chunk downloader"));
     private final ConnectionPool connectionPool;
+    private final File downloadDirectory;
+    private final File tmpDirectory;
     private final Map<FileReference, FileReferenceDownload> downloads = new LinkedHashMap<>();
     private final Map<FileReference, Double> downloadStatus = new HashMap<>();  // between 0 and 1
     private final Duration downloadTimeout;
     private final Duration sleepBetweenRetries;
+    /** The spec where this serves the chunks of the file references it has to other nodes, if it does */
+    private final Optional<String> peerSpec;
 
-    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Duration timeout, Duration sleepBetweenRetries) {
+    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Duration timeout,
+                            Duration sleepBetweenRetries, Optional<String> peerSpec) {
         this.connectionPool = connectionPool;
+        this.peerSpec = peerSpec;
+        this.downloadDirectory = downloadDirectory;
+        this.tmpDirectory = tmpDirectory;
         this.downloadTimeout = timeout;
         this.sleepBetweenRetries = sleepBetweenRetries;
         // Needed to receive RPC calls receiveFile* from server after asking for files
@@ -109,6 +128,9 @@ public class FileReferenceDownloader {
 
     private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount) {
         Connection connection = connectionPool.getCurrent();
+        Optional<Boolean> downloadedInChunks = downloadInChunks(fileReferenceDownload, connection);
+        if (downloadedInChunks.isPresent()) return downloadedInChunks.get();
+
         Request request = new Request("filedistribution.serveFile");
         String fileReference = fileReferenceDownload.fileReference().value();
         request.parameters().add(new StringValue(fileReference));
@@ -134,6 +156,111 @@ public class FileReferenceDownloader {
         }
     }
 
+    /**
+     * Downloads the given file reference in chunks from all sources, if the given source serves it in chunks.
+     * Returns whether the download succeeded, or empty if the file must be requested with serveFile instead,
+     * which is the case for sources which do not support chunks.
+     */
+    private Optional<Boolean> downloadInChunks(FileReferenceDownload fileReferenceDownload, Connection connection) {
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        Request request = ChunkedFileDownload.chunksRequest(fileReference, fileReferenceDownload.downloadFromOtherSourceIfNotFound());
+        execute(request, connection);
+        if (request.isError()) {
+            if (request.errorCode() == ErrorCode.NO_SUCH_METHOD) return Optional.empty();
+
+            log.log(LogLevel.DEBUG, () -> "Request for chunks of '" + fileReference.value() + "' to " + connection.getAddress() +
+                                          " failed: " + request.errorMessage());
+            connectionPool.setError(connection, request.errorCode());
+            return Optional.of(false);
+        }
+        if ( ! request.checkReturnTypes("isssliL")) return Optional.empty();
+
+        switch (request.returnValues().get(0).asInt32()) {
+            case FileChunks.FOUND:
+                break;
+            case FileChunks.NOT_FOUND:
+                log.log(LogLevel.DEBUG, () -> "File reference '" + fileReference.value() + "' not found for " + connection.getAddress());
+                connectionPool.setNewCurrentConnection();
+                return Optional.of(false);
+            default:
+                return Optional.empty();
+        }
+
+        FileChunks chunks = ChunkedFileDownload.chunksFrom(request);
+        List<JRTConnection> peers = peers(fileReference, connection);
+        log.log(LogLevel.DEBUG, () -> "Downloading " + chunks + " of '" + fileReference.value() + "' from " + peers.size() +
+                                      " peers and " + connectionPool.getSize() + " config servers");
+        try {
+            // Peers first, as the config servers are the sources of last resort for the chunks of every node
+            List<Connection> sources = new ArrayList<>(peers);
+            sources.addAll(connectionPool.getConnections());
+            ChunkedFileDownload download = new ChunkedFileDownload(fileReference, chunks, sources, downloadDirectory, tmpDirectory);
+            File file = download.download(chunkExecutor, completeness -> setDownloadStatus(fileReference, completeness));
+            download.failedSources().stream()
+                    .filter(peers::contains)
+                    .forEach(peer -> removePeer(fileReference, peer.getAddress(), connection));
+            if (file == null) return Optional.of(false);
+
+            completedDownloading(fileReference, file);
+            addPeer(fileReference);
+            return Optional.of(true);
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Failed downloading '" + fileReference.value() + "' in chunks: " + Exceptions.toMessageString(e));
+            return Optional.of(false);
+        } finally {
+            peers.forEach(JRTConnection::close);
+        }
+    }
+
+    /** Returns connections to some other nodes which serve the chunks of the given file reference, as told by the given source */
+    private List<JRTConnection> peers(FileReference fileReference, Connection connection) {
+        Request request = new Request(FileChunks.GET_PEERS_METHOD);
+        request.parameters().add(new StringValue(fileReference.value()));
+        request.parameters().add(new StringValue(peerSpec.orElse("")));
+        execute(request, connection);
+        if (request.isError() || ! request.checkReturnTypes("S")) {
+            log.log(LogLevel.DEBUG, () -> "Could not get peers of '" + fileReference.value() + "' from " + connection.getAddress() +
+                                          ": " + request.errorMessage());
+            return Collections.emptyList();
+        }
+        return Stream.of(request.returnValues().get(0).asStringArray())
+                .filter(spec -> ! peerSpec.equals(Optional.of(spec)))
+                .map(spec -> new JRTConnection(spec, connectionPool.getSupervisor()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tells all config servers that this serves the chunks of the given file reference to other nodes, if it does,
+     * as each config server only knows the peers which have registered with it. The config servers use the address
+     * this connects from, so only the port this serves on is sent.
+     */
+    private void addPeer(FileReference fileReference) {
+        if ( ! peerSpec.isPresent()) return;
+
+        for (Connection connection : connectionPool.getConnections()) {
+            Request request = new Request(FileChunks.ADD_PEER_METHOD);
+            request.parameters().add(new StringValue(fileReference.value()));
+            request.parameters().add(new Int32Value(new Spec(peerSpec.get()).port()));
+            connection.invokeAsync(request, (double) rpcTimeout.getSeconds(), done -> {
+                if (done.isError())
+                    log.log(LogLevel.DEBUG, () -> "Could not add this as peer of '" + fileReference.value() + "' to " +
+                                                  connection.getAddress() + ": " + done.errorMessage());
+            });
+        }
+    }
+
+    /** Tells the config server which returned the given peer that it failed serving the chunks of the given file reference */
+    private void removePeer(FileReference fileReference, String peer, Connection connection) {
+        Request request = new Request(FileChunks.REMOVE_PEER_METHOD);
+        request.parameters().add(new StringValue(fileReference.value()));
+        request.parameters().add(new StringValue(peer));
+        connection.invokeAsync(request, (double) rpcTimeout.getSeconds(), done -> {
+            if (done.isError())
+                log.log(LogLevel.DEBUG, () -> "Could not remove peer " + peer + " of '" + fileReference.value() + "' from " +
+                                              connection.getAddress() + ": " + done.errorMessage());
+        });
+    }
+
     boolean isDownloading(FileReference fileReference) {
         synchronized (downloads) {
             return downloads.containsKey(fileReference);
@@ -0,0 +1,165 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Transport;
+import com.yahoo.vespa.config.JRTConnectionPool;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests downloading a file reference from another node, with a config server, the other node and the downloading
+ * node each having their own {@link Supervisor}.
+ */
+public class FileDistributionRpcServerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Supervisor> supervisors = new ArrayList<>();
+
+    @After
+    public void shutdown() {
+        supervisors.forEach(supervisor -> supervisor.transport().shutdown().join());
+    }
+
+    @Test
+    public void file_reference_is_downloaded_from_peer() throws IOException, ListenFailedException, InterruptedException {
+        FileReference fileReference = new FileReference("peered");
+        File peerDownloadDirectory = temporaryFolder.newFolder("peer");
+        File file = new File(new File(peerDownloadDirectory, fileReference.value()), "model.bin");
+        IOUtils.writeFile(file, "content served by a peer", false);
+
+        // A node which has downloaded the file reference, and serves it to other nodes
+        Supervisor peer = supervisor();
+        String peerSpec = "tcp/localhost:" + peer.listen(new Spec(0)).port();
+
+        // Config servers which know the chunks of the file reference, but do not serve them
+        FileChunks chunks = FileChunks.of(file, FileReferenceData.Type.file, FileChunks.defaultChunkSize);
+        AtomicInteger chunksServedByConfigServers = new AtomicInteger();
+        List<List<String>> addedPeers = new ArrayList<>();
+        List<String> configServerSpecs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Supervisor configServer = supervisor();
+            configServerSpecs.add("tcp/localhost:" + configServer.listen(new Spec(0)).port());
+            List<String> added = new CopyOnWriteArrayList<>();
+            addedPeers.add(added);
+            configServer.addMethod(new Method(FileChunks.GET_CHUNKS_METHOD, "si", "isssliL",
+                                              request -> FileChunkServer.returnChunks(request, FileChunks.FOUND, "OK", Optional.of(chunks))));
+            configServer.addMethod(new Method(FileChunks.GET_CHUNK_METHOD, "sil", "ix", request -> {
+                chunksServedByConfigServers.incrementAndGet();
+                FileChunkServer.returnChunk(request, Optional.empty());
+            }));
+            configServer.addMethod(new Method(FileChunks.GET_PEERS_METHOD, "ss", "S",
+                                              request -> request.returnValues().add(new StringArray(new String[] { peerSpec }))));
+            configServer.addMethod(new Method(FileChunks.ADD_PEER_METHOD, "si", "i", request -> {
+                // The host of the peer is where the request comes from, and only the port is sent
+                String host = request.target().peerAddress().getAddress().isLoopbackAddress() ? "localhost" : "unknown";
+                added.add("tcp/" + host + ":" + request.parameters().get(1).asInt32());
+                request.returnValues().add(new Int32Value(0));
+            }));
+        }
+
+        new FileDistributionRpcServer(peer, downloader(peerDownloadDirectory, configServerSpecs, Optional.empty()));
+
+        FileDownloader downloader = downloader(temporaryFolder.newFolder("node"), configServerSpecs, Optional.of("tcp/node:19090"));
+        Optional<File> downloaded = downloader.getFile(fileReference);
+        assertTrue(downloaded.isPresent());
+        assertEquals("content served by a peer", IOUtils.readFile(downloaded.get()));
+        assertEquals(0, chunksServedByConfigServers.get());
+        for (List<String> added : addedPeers) { // peers are added asynchronously
+            for (long end = System.currentTimeMillis() + 60_000; added.isEmpty() && System.currentTimeMillis() < end; )
+                Thread.sleep(10);
+            assertEquals("The node is added as peer with all config servers",
+                         Collections.singletonList("tcp/localhost:19090"), added);
+        }
+    }
+
+    @Test
+    public void failing_peer_is_not_used_again_and_is_reported() throws IOException, ListenFailedException, InterruptedException {
+        FileReference fileReference = new FileReference("failing");
+        File file = temporaryFolder.newFile("model.bin");
+        byte[] content = new byte[20 * 1024];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        Files.write(file.toPath(), content);
+        FileChunks chunks = FileChunks.of(file, FileReferenceData.Type.file, 1024);
+
+        // A node which is registered as a peer, but fails serving the chunks
+        Supervisor peer = supervisor();
+        String peerSpec = "tcp/localhost:" + peer.listen(new Spec(0)).port();
+        AtomicInteger chunksRequestedFromPeer = new AtomicInteger();
+        peer.addMethod(new Method(FileChunks.GET_CHUNK_METHOD, "sil", "ix", request -> {
+            chunksRequestedFromPeer.incrementAndGet();
+            FileChunkServer.returnChunk(request, Optional.empty());
+        }));
+
+        // A config server which serves the chunks
+        Supervisor configServer = supervisor();
+        String configServerSpec = "tcp/localhost:" + configServer.listen(new Spec(0)).port();
+        List<String> removed = new CopyOnWriteArrayList<>();
+        configServer.addMethod(new Method(FileChunks.GET_CHUNKS_METHOD, "si", "isssliL",
+                                          request -> FileChunkServer.returnChunks(request, FileChunks.FOUND, "OK", Optional.of(chunks))));
+        configServer.addMethod(new Method(FileChunks.GET_CHUNK_METHOD, "sil", "ix", request -> {
+            int chunk = request.parameters().get(1).asInt32();
+            int offset = (int) chunks.offset(chunk);
+            FileChunkServer.returnChunk(request, Optional.of(Arrays.copyOfRange(content, offset, offset + chunks.length(chunk))));
+        }));
+        configServer.addMethod(new Method(FileChunks.GET_PEERS_METHOD, "ss", "S",
+                                          request -> request.returnValues().add(new StringArray(new String[] { peerSpec }))));
+        configServer.addMethod(new Method(FileChunks.ADD_PEER_METHOD, "si", "i",
+                                          request -> request.returnValues().add(new Int32Value(0))));
+        configServer.addMethod(new Method(FileChunks.REMOVE_PEER_METHOD, "ss", "i", request -> {
+            removed.add(request.parameters().get(1).asString());
+            request.returnValues().add(new Int32Value(0));
+        }));
+
+        FileDownloader downloader = downloader(temporaryFolder.newFolder("node"), Collections.singletonList(configServerSpec),
+                                               Optional.of("tcp/node:19090"));
+        Optional<File> downloaded = downloader.getFile(fileReference);
+        assertTrue(downloaded.isPresent());
+        assertArrayEquals(content, Files.readAllBytes(downloaded.get().toPath()));
+        assertTrue("The peer is asked for at most one chunk by each fetcher which starts with it, but was asked for " +
+                   chunksRequestedFromPeer.get(), chunksRequestedFromPeer.get() <= 2);
+        for (long end = System.currentTimeMillis() + 60_000; removed.isEmpty() && System.currentTimeMillis() < end; )
+            Thread.sleep(10);
+        assertEquals(Collections.singletonList(peerSpec), removed);
+    }
+
+    private Supervisor supervisor() {
+        Supervisor supervisor = new Supervisor(new Transport());
+        supervisors.add(supervisor);
+        return supervisor;
+    }
+
+    private FileDownloader downloader(File downloadDirectory, List<String> configServerSpecs, Optional<String> peerSpec) throws IOException {
+        return new FileDownloader(new JRTConnectionPool(configServerSpecs), downloadDirectory,
+                                  temporaryFolder.newFolder(), Duration.ofSeconds(10), Duration.ofMillis(100), peerSpec);
+    }
+
+}
@@ -4,7 +4,10 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Array;
+import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.RequestWaiter;
 import com.yahoo.jrt.StringValue;
@@ -24,12 +27,18 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.yahoo.jrt.ErrorCode.CONNECTION;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -207,6 +216,65 @@ public class FileDownloaderTest {
         assertEquals("content", IOUtils.readFile(downloadedFile));
     }
 
+    @Test
+    public void getFileInChunks() throws IOException {
+        byte[] content = Utf8.toBytes("content which is transferred in chunks of ten bytes");
+        FileChunks chunks = new FileChunks("chunked.jar", FileReferenceData.Type.file, content.length, 10, hashes(content, 10));
+        MockConnection.ChunkServingResponseHandler handler = new MockConnection.ChunkServingResponseHandler(chunks, content);
+        connection.setResponseHandler(handler);
+
+        FileReference fileReference = new FileReference("chunked");
+        Optional<File> downloadedFile = fileDownloader.getFile(fileReference);
+        assertTrue(downloadedFile.isPresent());
+        assertEquals(new File(fileReferenceFullPath(downloadDir, fileReference), "chunked.jar").getAbsolutePath(),
+                     downloadedFile.get().getAbsolutePath());
+        assertEquals(Utf8.toString(content), IOUtils.readFile(downloadedFile.get()));
+        assertEquals(chunks.count(), handler.chunkRequests);
+        assertDownloadStatus(fileDownloader, fileReference, 1.0);
+        assertEquals(0, tempDir.list((dir, name) -> name.endsWith(".partial")).length);
+    }
+
+    @Test
+    public void chunkedDownloadIsResumed() throws IOException {
+        byte[] content = Utf8.toBytes("content which is transferred in chunks of ten bytes");
+        FileChunks chunks = new FileChunks("chunked.jar", FileReferenceData.Type.file, content.length, 10, hashes(content, 10));
+        MockConnection.ChunkServingResponseHandler handler = new MockConnection.ChunkServingResponseHandler(chunks, content);
+        FileReference fileReference = new FileReference("resumed");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Download fails when a chunk can not be fetched, but the chunks already fetched are kept
+            handler.failingChunk = 3;
+            assertNull(new ChunkedFileDownload(fileReference, chunks, Collections.singletonList(new MockConnection(handler)),
+                                               downloadDir, tempDir).download(executor, progress -> { }));
+            assertEquals(1, tempDir.list((dir, name) -> name.endsWith(".partial")).length);
+
+            // Download is resumed, and only fetches the chunks which are missing
+            handler.failingChunk = -1;
+            handler.chunkRequests = 0;
+            List<Double> progress = new ArrayList<>();
+            File file = new ChunkedFileDownload(fileReference, chunks, Collections.singletonList(new MockConnection(handler)),
+                                                downloadDir, tempDir).download(executor, progress::add);
+            assertEquals(new File(fileReferenceFullPath(downloadDir, fileReference), "chunked.jar").getAbsolutePath(),
+                         file.getAbsolutePath());
+            assertEquals(Utf8.toString(content), IOUtils.readFile(file));
+            assertTrue("Fetched " + handler.chunkRequests + " chunks", handler.chunkRequests < chunks.count());
+            assertTrue(progress.get(0) > 0);
+            assertEquals(1.0, progress.get(progress.size() - 1), 0.0001);
+            assertEquals(0, tempDir.list((dir, name) -> name.endsWith(".partial")).length);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long[] hashes(byte[] content, int chunkSize) {
+        XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+        long[] hashes = new long[(content.length + chunkSize - 1) / chunkSize];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = hasher.hash(content, i * chunkSize, Math.min(chunkSize, content.length - i * chunkSize), 0);
+        return hashes;
+    }
+
     private void writeFileReference(File dir, String fileReferenceString, String fileName) throws IOException {
         File fileReferenceDir = new File(dir, fileReferenceString);
         fileReferenceDir.mkdir();
@@ -349,6 +417,44 @@ public class FileDownloaderTest {
             }
         }
 
+        static class ChunkServingResponseHandler implements MockConnection.ResponseHandler {
+
+            private final FileChunks chunks;
+            private final byte[] content;
+            private int failingChunk = -1;
+            private int chunkRequests = 0;
+
+            ChunkServingResponseHandler(FileChunks chunks, byte[] content) {
+                this.chunks = chunks;
+                this.content = content;
+            }
+
+            @Override
+            public synchronized void request(Request request) {
+                if (request.methodName().equals(FileChunks.GET_CHUNKS_METHOD)) {
+                    request.returnValues().add(new Int32Value(FileChunks.FOUND));
+                    request.returnValues().add(new StringValue("OK"));
+                    request.returnValues().add(new StringValue(chunks.filename()));
+                    request.returnValues().add(new StringValue(chunks.type().name()));
+                    request.returnValues().add(new Int64Value(chunks.size()));
+                    request.returnValues().add(new Int32Value(chunks.chunkSize()));
+                    request.returnValues().add(new Int64Array(chunks.hashes()));
+                }
+                else if (request.methodName().equals(FileChunks.GET_CHUNK_METHOD)) {
+                    chunkRequests++;
+                    int chunk = request.parameters().get(1).asInt32();
+                    if (chunk == failingChunk) {
+                        request.returnValues().add(new Int32Value(1));
+                        request.returnValues().add(new DataValue(new byte[0]));
+                    } else {
+                        request.returnValues().add(new Int32Value(0));
+                        request.returnValues().add(new DataValue(Arrays.copyOfRange(content, (int) chunks.offset(chunk),
+                                                                                    (int) chunks.offset(chunk) + chunks.length(chunk))));
+                    }
+                }
+            }
+        }
+
         static class ConnectionErrorResponseHandler implements MockConnection.ResponseHandler {
 
             private final int timesToFail;
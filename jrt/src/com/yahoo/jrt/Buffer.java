@@ -5,15 +5,46 @@ package com.yahoo.jrt;
 import java.nio.ByteBuffer;
 
 
+/**
+ * A growable byte buffer with separate read and write positions. A
+ * Buffer either allocates heap buffers, or obtains direct buffers from
+ * a {@link BufferPool} and returns them when they are replaced or the
+ * Buffer is released. The underlying buffer is obtained when the
+ * Buffer is first used, and again when it is used after being
+ * released.
+ **/
 class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final BufferPool pool;
+    private final int        initialSize;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
     private boolean    readMode;
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.allocate(size) : ByteBuffer.allocate(size);
+    }
+
+    private void replace(ByteBuffer tmp) {
+        if (pool != null) {
+            pool.release(buf);
+        }
+        buf = tmp;
+    }
+
+    private void ensureAllocated(int minSize) {
+        if (buf != null) {
+            return;
+        }
+        buf = allocate(Math.max(initialSize, minSize));
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
+
     private void setReadMode() {
         if (readMode) {
             buf.limit(writePos);
@@ -54,36 +85,78 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
-            buf = tmp;
+            replace(tmp);
             readPos = 0;
         }
     }
 
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
-        readPos = 0;
-        writePos = 0;
-        readMode = false;
+        this(size, null);
+    }
+
+    /**
+     * Create a buffer which obtains direct buffers from the given
+     * pool, or heap buffers if the pool is null.
+     *
+     * @param size initial size
+     * @param pool the pool to obtain buffers from, or null
+     **/
+    public Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        this.initialSize = size;
+    }
+
+    /**
+     * Return the underlying buffer to the pool, discarding any content
+     * of this buffer.
+     **/
+    public void release() {
+        if (buf == null) {
+            return;
+        }
+        if (pool != null) {
+            pool.release(buf);
+        }
+        buf = null;
+    }
+
+    /**
+     * Return the underlying buffer to the pool if this buffer is
+     * pooled and empty, so that idle buffers do not hold on to
+     * direct memory.
+     *
+     * @return whether the underlying buffer was released
+     **/
+    public boolean releaseIfEmpty() {
+        if (pool == null || buf == null || bytes() > 0) {
+            return false;
+        }
+        release();
+        return true;
     }
 
     public boolean shrink(int size) {
+        if (buf == null) {
+            return false;
+        }
         int rpos = readMode? buf.position() : readPos;
         int wpos = readMode? writePos : buf.position();
         int used = wpos - rpos;
-        if (used > size || buf.capacity() <= size) {
+        int capacity = (pool != null) ? BufferPool.capacityFor(size) : size;
+        if (used > size || buf.capacity() <= capacity) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
-        buf = tmp;
+        replace(tmp);
         readPos = 0;
         writePos = used;
         buf.position(readMode? readPos : writePos);
@@ -92,17 +165,22 @@ class Buffer {
     }
 
     public int bytes() {
+        if (buf == null) {
+            return 0;
+        }
         return (readMode)
             ? (writePos - buf.position())
             : (buf.position() - readPos);
     }
 
     public ByteBuffer getReadable() {
+        ensureAllocated(0);
         setReadMode();
         return buf;
     }
 
     public ByteBuffer getWritable(int minFree) {
+        ensureAllocated(minFree);
         setWriteMode();
         ensureFree(minFree);
         return buf;
@@ -0,0 +1,119 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A pool of direct byte buffers used for socket IO. Buffers are
+ * pooled in power of two size classes, and the total size of the
+ * pooled buffers is bounded. Buffers larger than the largest size
+ * class are allocated on demand and left to the garbage collector when
+ * released. This class is thread-safe, so a single pool may be shared
+ * by all the threads of a {@link Transport}.
+ **/
+class BufferPool {
+
+    static final int MIN_SIZE_SHIFT = 12; // 4 KiB
+    static final int MAX_SIZE_SHIFT = 22; // 4 MiB
+
+    private final List<Queue<ByteBuffer>> pools = new ArrayList<>();
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0);
+    private final AtomicLong allocations = new AtomicLong(0);
+
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int shift = MIN_SIZE_SHIFT; shift <= MAX_SIZE_SHIFT; shift++) {
+            pools.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SIZE_SHIFT) - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * Obtain the capacity of the buffers allocated for the given size.
+     *
+     * @return the capacity of allocated buffers
+     * @param size the minimum capacity
+     **/
+    static int capacityFor(int size) {
+        int sizeClass = sizeClass(size);
+        return (sizeClass >= MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1) ? size : 1 << (sizeClass + MIN_SIZE_SHIFT);
+    }
+
+    /**
+     * Obtain a cleared direct buffer with big-endian byte order and
+     * at least the given capacity.
+     *
+     * @return a buffer with capacity of at least size
+     * @param size the minimum capacity of the buffer
+     **/
+    ByteBuffer allocate(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass >= pools.size()) {
+            allocations.incrementAndGet();
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buffer = pools.get(sizeClass).poll();
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            return ByteBuffer.allocateDirect(capacityFor(size));
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #allocate} to this
+     * pool. The buffer must not be used after it has been released.
+     *
+     * @param buffer the buffer to release
+     **/
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if ( ! buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SIZE_SHIFT)) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass >= pools.size()) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        pools.get(sizeClass).offer(buffer);
+    }
+
+    /**
+     * Obtain the total capacity of the buffers currently in this pool.
+     *
+     * @return pooled bytes
+     **/
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Obtain the number of buffers this pool has allocated because no
+     * pooled buffer could be reused.
+     *
+     * @return allocated buffers
+     **/
+    long allocations() {
+        return allocations.get();
+    }
+}
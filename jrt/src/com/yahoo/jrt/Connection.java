@@ -2,10 +2,13 @@
 package com.yahoo.jrt;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
@@ -31,16 +34,21 @@ class Connection extends Target {
     private int           state      = INITIAL;
     private Queue         queue      = new Queue();
     private Queue         myQueue    = new Queue();
-    private Buffer        input      = new Buffer(READ_SIZE * 2);
-    private Buffer        output     = new Buffer(WRITE_SIZE * 2);
+    private Buffer        input;
+    private Buffer        output;
+    private ArrayDeque<TrailingData> trailingData = new ArrayDeque<>();
+    private long          trailingBytes = 0;
+    private long          outputEncoded = 0;
+    private long          outputWritten = 0;
     private int           maxInputSize  = 64*1024;
     private int           maxOutputSize = 64*1024;
     private Map<Integer, ReplyHandler> replyMap = new HashMap<>();
     private Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int           activeReqs = 0;
+    private boolean       writeScheduled = false; // owned by the transport thread
     private int           writeWork  = 0;
     private boolean       pendingHandshakeWork = false;
-    private Transport     parent;
+    private TransportThread parent;
     private Supervisor    owner;
     private Spec          spec;
     private CryptoSocket  socket;
@@ -50,6 +58,16 @@ class Connection extends Target {
     private SelectionKey  selectionKey;
     private Exception     lostReason = null;
 
+    /** Data which is written directly after the output buffer has been written up to a given position */
+    private static class TrailingData {
+        final long outputPosition;
+        final ByteBuffer data;
+        TrailingData(long outputPosition, ByteBuffer data) {
+            this.outputPosition = outputPosition;
+            this.data = data;
+        }
+    }
+
     private void setState(int state) {
         if (state <= this.state) {
             log.log(Level.WARNING, "Bogus state transition: " + this.state + "->" + state);
@@ -87,21 +105,25 @@ class Connection extends Target {
         }
     }
 
-    public Connection(Transport parent, Supervisor owner,
+    public Connection(TransportThread parent, Supervisor owner,
                       SocketChannel channel) {
 
         this.parent = parent;
         this.owner = owner;
-        this.socket = parent.createCryptoSocket(channel, true);
+        this.socket = parent.transport().createCryptoSocket(channel, true);
+        input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
         server = true;
         owner.sessionInit(this);
     }
 
-    public Connection(Transport parent, Supervisor owner, Spec spec, Object context) {
+    public Connection(TransportThread parent, Supervisor owner, Spec spec, Object context) {
         super(context);
         this.parent = parent;
         this.owner = owner;
         this.spec = spec;
+        input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
         server = false;
         owner.sessionInit(this);
     }
@@ -115,6 +137,10 @@ class Connection extends Target {
     }
 
     public Transport transport() {
+        return parent.transport();
+    }
+
+    public TransportThread transportThread() {
         return parent;
     }
 
@@ -169,7 +195,7 @@ class Connection extends Target {
             return this;
         }
         try {
-            socket = parent.createCryptoSocket(SocketChannel.open(spec.address()), false);
+            socket = parent.transport().createCryptoSocket(SocketChannel.open(spec.address()), false);
         } catch (Exception e) {
             setLostReason(e);
         }
@@ -195,24 +221,27 @@ class Connection extends Target {
         return true;
     }
 
+    private void setInterestOps(int ops) {
+        if (selectionKey.interestOps() != ops) {
+            selectionKey.interestOps(ops);
+            parent.metrics().incrementInterestUpdates();
+        }
+    }
+
     public void enableRead() {
-        selectionKey.interestOps(selectionKey.interestOps()
-                                 | SelectionKey.OP_READ);
+        setInterestOps(selectionKey.interestOps() | SelectionKey.OP_READ);
     }
 
     public void disableRead() {
-        selectionKey.interestOps(selectionKey.interestOps()
-                                 & ~SelectionKey.OP_READ);
+        setInterestOps(selectionKey.interestOps() & ~SelectionKey.OP_READ);
     }
 
     public void enableWrite() {
-        selectionKey.interestOps(selectionKey.interestOps()
-                                 | SelectionKey.OP_WRITE);
+        setInterestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
     }
 
     public void disableWrite() {
-        selectionKey.interestOps(selectionKey.interestOps()
-                                 & ~SelectionKey.OP_WRITE);
+        setInterestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
     }
 
     private void handshake() throws IOException {
@@ -241,7 +270,7 @@ class Connection extends Target {
             disableRead();
             disableWrite();
             pendingHandshakeWork = true;
-            parent.doHandshakeWork(this);
+            parent.transport().doHandshakeWork(this);
             break;
         }
     }
@@ -293,6 +322,7 @@ class Connection extends Target {
         boolean doneRead = false;
         for (int i = 0; !doneRead && i < READ_REDO; i++) {
             ByteBuffer wb = input.getChannelWritable(readSize);
+            parent.metrics().incrementReads();
             if (socket.read(wb) == -1) {
                 throw new IOException("jrt: Connection closed by peer");
             }
@@ -302,7 +332,7 @@ class Connection extends Target {
         while (socket.drain(input.getChannelWritable(readSize)) > 0) {
             handlePackets();
         }
-        if (maxInputSize > 0) {
+        if (!input.releaseIfEmpty() && maxInputSize > 0) {
             input.shrink(maxInputSize);
         }
     }
@@ -322,27 +352,30 @@ class Connection extends Target {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
+            while (output.bytes() + trailingBytes < WRITE_SIZE) {
                 Packet packet = (Packet) myQueue.dequeue();
                 if (packet == null) {
                     break;
                 }
                 PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
+                ByteBuffer data = packet.trailingData(WRITE_SIZE);
+                int dataLength = (data != null) ? data.remaining() : 0;
+                int length = info.packetLength() - dataLength;
+                ByteBuffer wb = output.getWritable(length);
                 owner.writePacket(info);
-                info.encodePacket(packet, wb);
-            }
-            ByteBuffer rb = output.getChannelReadable();
-            if (rb.remaining() == 0) {
-                break;
+                info.encodePacket(packet, wb, dataLength);
+                outputEncoded += length;
+                if (data != null) {
+                    trailingData.add(new TrailingData(outputEncoded, data));
+                    trailingBytes += data.remaining();
+                }
             }
-            socket.write(rb);
-            if (rb.remaining() > 0) {
+            if (!writeOutput()) {
                 break;
             }
         }
         int myWriteWork = 0;
-        if (output.bytes() > 0) {
+        if (output.bytes() > 0 || !trailingData.isEmpty()) {
             myWriteWork++;
         }
         if (socket.flush() == CryptoSocket.FlushResult.NEED_WRITE) {
@@ -357,12 +390,62 @@ class Connection extends Target {
         }
         if (disableWrite) {
             disableWrite();
+        } else {
+            enableWrite();
         }
-        if (maxOutputSize > 0) {
+        if (!output.releaseIfEmpty() && maxOutputSize > 0) {
             output.shrink(maxOutputSize);
         }
     }
 
+    /**
+     * Write encoded output, and data which is written without copying
+     * it into the output buffer, in the order they were encoded.
+     *
+     * @return whether everything which was attempted written was written
+     **/
+    private boolean writeOutput() throws IOException {
+        TrailingData next = trailingData.peek();
+        if (next == null && output.bytes() == 0) {
+            return false;
+        }
+        ByteBuffer rb = output.getChannelReadable();
+        if (next == null) {
+            parent.metrics().incrementWrites();
+            outputWritten += socket.write(rb);
+            return rb.remaining() == 0;
+        }
+        long outputBefore = next.outputPosition - outputWritten;
+        parent.metrics().incrementWrites();
+        if (outputBefore > rb.remaining()) {
+            outputWritten += socket.write(rb);
+            return rb.remaining() == 0;
+        }
+        ByteBuffer head = rb.duplicate();
+        head.limit(rb.position() + (int) outputBefore);
+        long written = socket.write(new ByteBuffer[] { head, next.data });
+        long headWritten = head.position() - rb.position();
+        rb.position(head.position());
+        outputWritten += headWritten;
+        trailingBytes -= written - headWritten;
+        if (next.data.hasRemaining()) {
+            return false;
+        }
+        trailingData.poll();
+        return true;
+    }
+
+    /**
+     * Write pending output at the end of a cycle of the transport
+     * thread, without waiting for a write event. Write events are
+     * enabled if the output could not be written completely.
+     **/
+    public void handlePendingWrite() throws IOException {
+        if (state == CONNECTED) {
+            write();
+        }
+    }
+
     public void handleWriteEvent() throws IOException {
         if (state == CONNECTED) {
             write();
@@ -373,11 +456,32 @@ class Connection extends Target {
         }
     }
 
+    /**
+     * Mark this as having output to write at the end of the current
+     * cycle of the transport thread.
+     *
+     * @return false if this was already marked
+     **/
+    boolean markPendingWrite() {
+        if (writeScheduled) {
+            return false;
+        }
+        writeScheduled = true;
+        return true;
+    }
+
+    void clearPendingWrite() {
+        writeScheduled = false;
+    }
+
     public void fini() {
         setState(CLOSED);
         if (selectionKey != null) {
             selectionKey.cancel();
         }
+        input.release();
+        output.release();
+        trailingData.clear();
     }
 
     public boolean isClosed() {
@@ -388,6 +492,15 @@ class Connection extends Target {
         return ((socket != null) && (socket.channel() != null));
     }
 
+    @Override
+    public InetSocketAddress peerAddress() {
+        if (!hasSocket()) {
+            return null;
+        }
+        SocketAddress address = socket.channel().socket().getRemoteSocketAddress();
+        return (address instanceof InetSocketAddress) ? (InetSocketAddress) address : null;
+    }
+
     public void closeSocket() {
         if (hasSocket()) {
             try {
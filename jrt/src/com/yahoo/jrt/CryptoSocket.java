@@ -81,6 +81,26 @@ public interface CryptoSocket {
      **/
     public int write(ByteBuffer src) throws IOException;
 
+    /**
+     * Write the given buffers in order, stopping at the first buffer
+     * which could not be written completely. Sockets which write
+     * directly to the channel should override this to use a single
+     * gathering write.
+     *
+     * @return the number of bytes written
+     * @param srcs the buffers to write
+     **/
+    public default long write(ByteBuffer[] srcs) throws IOException {
+        long written = 0;
+        for (ByteBuffer src : srcs) {
+            written += write(src);
+            if (src.hasRemaining()) {
+                break;
+            }
+        }
+        return written;
+    }
+
     public enum FlushResult { DONE, NEED_WRITE }
 
     /**
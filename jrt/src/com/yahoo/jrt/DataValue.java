@@ -7,10 +7,17 @@ import java.nio.ByteBuffer;
 
 /**
  * Data value (a sequence of bytes)
+ *
+ * Only sending avoids copying: a value created from a buffer is
+ * written to the connection without being copied into the output
+ * buffer. Received values are always copied out of the pooled input
+ * buffer, as values have no point where they are released, and a
+ * slice would keep the buffer from being reused.
  **/
 public class DataValue extends Value
 {
-    private byte[] value;
+    private byte[]     value;
+    private ByteBuffer buffer;
 
     /**
      * Create from a Java-type value
@@ -20,14 +27,26 @@ public class DataValue extends Value
     public DataValue(byte[] value) { this.value = value; }
 
     /**
-     * Create by decoding the value from the given buffer
+     * Create from the remaining bytes of the given buffer. The
+     * content of the buffer is not copied, so it must not be changed
+     * while this value is in use.
      *
+     * @param value buffer holding the value
+     **/
+    public DataValue(ByteBuffer value) { this.buffer = value.slice().asReadOnlyBuffer(); }
+
+    /**
+     * Decode a value from the given buffer. The bytes are copied, so
+     * the buffer may be reused as soon as the value is decoded.
+     *
+     * @return the decoded value
      * @param src buffer where the value is stored
      **/
-    DataValue(ByteBuffer src) {
+    static DataValue decode(ByteBuffer src) {
         int size = src.getInt();
-        value = new byte[size];
+        byte[] value = new byte[size];
         src.get(value);
+        return new DataValue(value);
     }
 
     /**
@@ -36,17 +55,61 @@ public class DataValue extends Value
     public byte type() { return DATA; }
     public int count() { return 1; }
 
-    int bytes() { return 4 + value.length; }
+    private int length() { return (value != null) ? value.length : buffer.remaining(); }
+
+    int bytes() { return 4 + length(); }
     void encode(ByteBuffer dst) {
-        dst.putInt(value.length);
-        dst.put(value);
+        encodeLength(dst);
+        if (value != null) {
+            dst.put(value);
+        } else {
+            dst.put(buffer.duplicate());
+        }
+    }
+
+    /**
+     * Encode only the length of this value, when the bytes are written
+     * separately.
+     *
+     * @param dst where to encode the length
+     **/
+    void encodeLength(ByteBuffer dst) {
+        dst.putInt(length());
     }
 
-    public byte[] asData() { return value; }
+    /**
+     * Obtain the bytes of this value as a buffer, without copying.
+     *
+     * @return a new buffer positioned at the bytes of this value
+     **/
+    ByteBuffer dataBuffer() {
+        return (buffer != null) ? buffer.duplicate() : ByteBuffer.wrap(value);
+    }
+
+    /**
+     * Obtain the value as a byte array. Values created from a buffer
+     * are copied into an array the first time this is called.
+     **/
+    public byte[] asData() {
+        if (value == null) {
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            value = copy;
+        }
+        return value;
+    }
+
+    /**
+     * Obtain the value as a read-only buffer, without copying.
+     **/
+    @Override
+    public ByteBuffer asDataBuffer() {
+        return (buffer != null) ? buffer.duplicate() : ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
 
     @Override
     public String toString() {
-        return String.valueOf(value);
+        return (value != null) ? String.valueOf(value) : String.valueOf(buffer);
     }
 
 }
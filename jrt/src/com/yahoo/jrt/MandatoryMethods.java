@@ -3,6 +3,7 @@ package com.yahoo.jrt;
 
 
 import java.util.Iterator;
+import java.util.Map;
 
 
 class MandatoryMethods {
@@ -47,13 +48,14 @@ class MandatoryMethods {
     }
 
     public void getMethodList(Request req) {
-        int cnt = parent.methodMap().size();
+        Map<String, Method> methodMap = parent.methodMap();
+        int cnt = methodMap.size();
         String[] ret0_names  = new String[cnt];
         String[] ret1_params = new String[cnt];
         String[] ret2_return = new String[cnt];
 
         int i = 0;
-        Iterator<Method> itr = parent.methodMap().values().iterator();
+        Iterator<Method> itr = methodMap.values().iterator();
         while (itr.hasNext()) {
             Method m = itr.next();
             ret0_names[i]  = m.name();
@@ -44,6 +44,28 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    /**
+     * Obtain the bytes of a data value of at least the given size
+     * which ends this packet, so it can be written without copying.
+     *
+     * @return the bytes ending this packet, or null
+     * @param minSize the minimum number of bytes
+     **/
+    ByteBuffer trailingData(int minSize) {
+        return null;
+    }
+
+    /**
+     * Encode this packet, optionally leaving out the bytes given by
+     * {@link #trailingData}.
+     *
+     * @param dst where to encode this packet
+     * @param skipTrailingData whether to leave out the trailing data
+     **/
+    void encode(ByteBuffer dst, boolean skipTrailingData) {
+        encode(dst);
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
@@ -85,8 +85,18 @@ class PacketInfo
     }
 
     public void encodePacket(Packet packet, ByteBuffer dst) {
+        encodePacket(packet, dst, 0);
+    }
+
+    /**
+     * Encode a packet, leaving out the given number of bytes of
+     * trailing data, as given by {@link Packet#trailingData}, if it
+     * is positive.
+     **/
+    public void encodePacket(Packet packet, ByteBuffer dst, int trailingDataLength) {
+        boolean skipTrailingData = (trailingDataLength > 0);
         int pos = dst.position();
-        int end = pos + packetLength;
+        int end = pos + packetLength - trailingDataLength;
         int limit = dst.limit();
         try {
             dst.limit(end);
@@ -97,7 +107,7 @@ class PacketInfo
             if (reverseByteOrder()) {
                 dst.order(ByteOrder.LITTLE_ENDIAN);
             }
-            packet.encode(dst);
+            packet.encode(dst, skipTrailingData);
         } catch (RuntimeException e) {
             dst.position(pos);
             throw e;
@@ -36,6 +36,16 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    @Override
+    ByteBuffer trailingData(int minSize) {
+        return returnValues.trailingData(minSize);
+    }
+
+    @Override
+    void encode(ByteBuffer dst, boolean skipTrailingData) {
+        returnValues.encode(dst, skipTrailingData);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
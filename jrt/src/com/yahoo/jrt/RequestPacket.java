@@ -42,6 +42,17 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    @Override
+    ByteBuffer trailingData(int minSize) {
+        return parameters.trailingData(minSize);
+    }
+
+    @Override
+    void encode(ByteBuffer dst, boolean skipTrailingData) {
+        methodName.encode(dst);
+        parameters.encode(dst, skipTrailingData);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
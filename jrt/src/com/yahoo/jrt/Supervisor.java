@@ -22,7 +22,9 @@ public class Supervisor {
             this.method = method;
         }
         public void run() {
-            methodMap.put(method.name(), method);
+            HashMap<String, Method> map = new HashMap<>(methodMap);
+            map.put(method.name(), method);
+            methodMap = map;
         }
     }
 
@@ -37,16 +39,18 @@ public class Supervisor {
             this.method = method;
         }
         public void run() {
-            Method m = methodMap.remove(methodName);
+            HashMap<String, Method> map = new HashMap<>(methodMap);
+            Method m = map.remove(methodName);
             if (method != null && m != method) {
-                methodMap.put(method.name(), method);
+                map.put(method.name(), method);
             }
+            methodMap = map;
         }
     }
 
     private Transport               transport;
     private SessionHandler          sessionHandler = null;
-    private HashMap<String, Method> methodMap      = new HashMap<>();
+    private volatile HashMap<String, Method> methodMap = new HashMap<>(); // copied on write, as it is read by all transport threads
     private int                     maxInputBufferSize  = 0;
     private int                     maxOutputBufferSize = 0;
 
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import java.net.InetSocketAddress;
+
 
 /**
  * A Target represents a connection endpoint with RPC
@@ -67,6 +69,15 @@ public abstract class Target {
      **/
     public Exception getConnectionLostReason() { return null; }
 
+    /**
+     * Obtain the address of the other end of the connection for
+     * which this target is an endpoint. This identifies the peer
+     * without trusting anything it has sent.
+     *
+     * @return the address of the peer, or null if not connected
+     **/
+    public InetSocketAddress peerAddress() { return null; }
+
     /**
      * Check if this target represents the client side of a
      * connection.
@@ -2,11 +2,10 @@
 package com.yahoo.jrt;
 
 
-import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,196 +16,95 @@ import java.util.logging.Logger;
  * multiplexed network IO, handles scheduled tasks and keeps track of
  * some additional helper threads. A single Transport object can back
  * multiple {@link Supervisor} objects.
+ *
+ * A Transport may run several transport threads, each with its own
+ * selector. Every connection is assigned to one of the threads when it
+ * is created, and all IO and packet handling for that connection is
+ * done by that thread, so connections are spread over the threads
+ * while the processing of a single connection stays sequential. Note
+ * that replies and requests arriving on different connections may then
+ * be handled concurrently.
  **/
 public class Transport {
 
-    private static final int OPEN    = 1;
-    private static final int CLOSING = 2;
-    private static final int CLOSED  = 3;
-
-    private class Run implements Runnable {
-        public void run() {
-            try {
-                Transport.this.run();
-            } catch (Throwable problem) {
-                handleFailure(problem, Transport.this);
-            }
-        }
-    }
-
-    private class AddConnectionCmd implements Runnable {
-        private Connection conn;
-        AddConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleAddConnection(conn); }
-    }
-
-    private class CloseConnectionCmd implements Runnable {
-        private Connection conn;
-        CloseConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleCloseConnection(conn); }
-    }
-
-    private class EnableWriteCmd implements Runnable {
-        private Connection conn;
-        EnableWriteCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleEnableWrite(conn); }
-    }
-
-    private class HandshakeWorkDoneCmd implements Runnable {
-        private Connection conn;
-        HandshakeWorkDoneCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleHandshakeWorkDone(conn); }
-    }
-
-    private class SyncCmd implements Runnable {
-        boolean done = false;
-        public synchronized void waitDone() {
-            while (!done) {
-                try { wait(); } catch (InterruptedException e) {}
-            }
-        }
-        public synchronized void run() {
-            done = true;
-            notify();
-        }
-    }
-
     private static Logger log = Logger.getLogger(Transport.class.getName());
 
-    private FatalErrorHandler fatalHandler; // NB: this must be set first
-    private CryptoEngine      cryptoEngine;
-    private Thread            thread;
-    private Queue             queue;
-    private Queue             myQueue;
-    private Connector         connector;
-    private Worker            worker;
-    private Scheduler         scheduler;
-    private int               state;
-    private Selector          selector;
-    private final TransportMetrics metrics = TransportMetrics.getInstance();
-
-    private void handleAddConnection(Connection conn) {
-        if (conn.isClosed()) {
-            if (conn.hasSocket()) {
-                worker.closeLater(conn);
-            }
-            return;
-        }
-        if (!conn.init(selector)) {
-            handleCloseConnection(conn);
-        }
-    }
-
-    private void handleCloseConnection(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.fini();
-        if (conn.hasSocket()) {
-            worker.closeLater(conn);
-        }
-    }
-
-    private void handleEnableWrite(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.enableWrite();
-    }
-
-    private void handleHandshakeWorkDone(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        try {
-            conn.handleHandshakeWorkDone();
-        } catch (IOException e) {
-            conn.setLostReason(e);
-            handleCloseConnection(conn);
-        }
-    }
-
-    private boolean postCommand(Runnable cmd) {
-        boolean wakeup;
-        synchronized (this) {
-            if (state == CLOSED) {
-                return false;
-            }
-            wakeup = queue.isEmpty();
-            queue.enqueue(cmd);
-        }
-        if (wakeup) {
-            selector.wakeup();
-        }
-        return true;
-    }
-
-    private void handleEvents() {
-        synchronized (this) {
-            queue.flush(myQueue);
-        }
-        while (!myQueue.isEmpty()) {
-            ((Runnable)myQueue.dequeue()).run();
-        }
-    }
-
-    private boolean handleIOEvents(Connection conn,
-                                   SelectionKey key) {
-        if (conn.isClosed()) {
-            return true;
-        }
-        if (key.isReadable()) {
-            try {
-                conn.handleReadEvent();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
-        }
-        if (key.isWritable()) {
-            try {
-                conn.handleWriteEvent();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
-        }
-        return true;
-    }
+    private final FatalErrorHandler fatalHandler; // NB: this must be set first
+    private final CryptoEngine      cryptoEngine;
+    private final Connector         connector;
+    private final Worker            worker;
+    private final TransportThread[] threads;
+    private final AtomicInteger     nextThread = new AtomicInteger(0);
+    private final AtomicInteger     runningThreads;
+    private final TransportMetrics  metrics = TransportMetrics.getInstance();
+    private final BufferPool        bufferPool = new BufferPool(32 * 1024 * 1024);
 
     /**
      * Create a new Transport object with the given fatal error
-     * handler and CryptoEngine. If a fatal error occurs when no fatal
-     * error handler is registered, the default action is to log the
-     * error and exit with exit code 1.
+     * handler, CryptoEngine and number of transport threads. If a
+     * fatal error occurs when no fatal error handler is registered,
+     * the default action is to log the error and exit with exit code
+     * 1.
      *
      * @param fatalHandler fatal error handler
      * @param cryptoEngine crypto engine to use
+     * @param numThreads number of transport threads, at least 1
      **/
-    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine) {
-        synchronized (this) {
-            this.fatalHandler = fatalHandler; // NB: this must be set first
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A transport needs at least one thread, got " + numThreads);
         }
+        this.fatalHandler = fatalHandler; // NB: this must be set first
         this.cryptoEngine = cryptoEngine;
-        thread    = new Thread(new Run(), "<jrt-transport>");
-        queue     = new Queue();
-        myQueue   = new Queue();
-        connector = new Connector(this);
-        worker    = new Worker(this);
-        scheduler = new Scheduler(System.currentTimeMillis());
-        state     = OPEN;
-        try {
-            selector = Selector.open();
-        } catch (Exception e) {
-            throw new Error("Could not open transport selector", e);
+        connector      = new Connector(this);
+        worker         = new Worker(this);
+        runningThreads = new AtomicInteger(numThreads);
+        threads        = new TransportThread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new TransportThread(this, numThreads == 1 ? "<jrt-transport>" : "<jrt-transport-" + i + ">");
         }
-        thread.setDaemon(true);
-        thread.start();
     }
+
+    /**
+     * Create a new Transport object with the given fatal error
+     * handler and CryptoEngine, and a single transport thread. If a
+     * fatal error occurs when no fatal error handler is registered,
+     * the default action is to log the error and exit with exit code
+     * 1.
+     *
+     * @param fatalHandler fatal error handler
+     * @param cryptoEngine crypto engine to use
+     **/
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine) { this(fatalHandler, cryptoEngine, 1); }
+    public Transport(CryptoEngine cryptoEngine, int numThreads) { this(null, cryptoEngine, numThreads); }
     public Transport(CryptoEngine cryptoEngine) { this(null, cryptoEngine); }
     public Transport(FatalErrorHandler fatalHandler) { this(fatalHandler, CryptoEngine.createDefault()); }
+    public Transport(int numThreads) { this(null, CryptoEngine.createDefault(), numThreads); }
     public Transport() { this(null, CryptoEngine.createDefault()); }
 
+    /**
+     * Select the transport thread to handle a new connection. Threads
+     * are selected in round-robin order.
+     *
+     * @return the selected thread
+     **/
+    TransportThread selectThread() {
+        if (threads.length == 1) {
+            return threads[0];
+        }
+        return threads[Math.floorMod(nextThread.getAndIncrement(), threads.length)];
+    }
+
+    /**
+     * Obtain the pool of direct buffers used for socket IO by the
+     * connections of this Transport.
+     *
+     * @return the buffer pool
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Use the underlying CryptoEngine to create a CryptoSocket.
      *
@@ -261,9 +159,10 @@ public class Transport {
      *             if this flag is set
      */
     Connection connect(Supervisor owner, Spec spec, Object context, boolean sync) {
-        Connection conn = new Connection(this, owner, spec, context);
+        TransportThread thread = selectThread();
+        Connection conn = new Connection(thread, owner, spec, context);
         if (sync) {
-            addConnection(conn.connect());
+            thread.addConnection(conn.connect());
         } else {
             connector.connectLater(conn);
         }
@@ -271,47 +170,18 @@ public class Transport {
     }
 
     /**
-     * Add a connection to the set of connections handled by this
-     * Transport. Invoked by the {@link Connector} class.
-     *
-     * @param conn the connection to add
-     **/
-    void addConnection(Connection conn) {
-        if (!postCommand(new AddConnectionCmd(conn))) {
-            perform(new CloseConnectionCmd(conn));
-        }
-    }
-
-    /**
-     * Request an asynchronous close of a connection.
-     *
-     * @param conn the connection to close
-     **/
-    void closeConnection(Connection conn) {
-        postCommand(new CloseConnectionCmd(conn));
-    }
-
-    /**
-     * Request an asynchronous enabling of write events for a
-     * connection.
+     * Request an asynchronous close of the socket of a connection.
      *
-     * @param conn the connection to enable write events for
+     * @param conn the connection to close the socket of
      **/
-    void enableWrite(Connection conn) {
-        if (Thread.currentThread() == thread) {
-            handleEnableWrite(conn);
-        } else {
-            postCommand(new EnableWriteCmd(conn));
-        }
-    }
-
-    void handshakeWorkDone(Connection conn) {
-        postCommand(new HandshakeWorkDoneCmd(conn));
+    void closeLater(Connection conn) {
+        worker.closeLater(conn);
     }
 
     /**
      * Request that {@link Connection#doHandshakeWork()} be called (in any thread)
-     * followed by a call to {@link Connection#handleHandshakeWorkDone()} from the transport thread.
+     * followed by a call to {@link Connection#handleHandshakeWorkDone()} from the
+     * transport thread of the connection.
      *
      * @param conn the connection needing handshake work
      */
@@ -321,99 +191,67 @@ public class Transport {
 
     /**
      * Create a {@link Task} that can be scheduled for execution in
-     * the transport thread.
+     * the first transport thread.
      *
      * @return the newly created Task
      * @param cmd what to run when the task is executed
      **/
     public Task createTask(Runnable cmd) {
-        return new Task(scheduler, cmd);
+        return threads[0].createTask(cmd);
     }
 
     /**
      * Perform the given command in such a way that it does not run
-     * concurrently with the transport thread or other commands
+     * concurrently with the first transport thread, which runs the
+     * tasks created by {@link #createTask}, or other commands
      * performed by invoking this method. This method will continue to
      * work even after the transport thread has been shut down.
      *
      * @param cmd the command to perform
      **/
     public void perform(Runnable cmd) {
-        if (Thread.currentThread() == thread) {
-            cmd.run();
-            return;
-        }
-        if (!postCommand(cmd)) {
-            join();
-            synchronized (thread) {
-                cmd.run();
-            }
-        }
+        threads[0].perform(cmd);
     }
 
     /**
-     * Synchronize with the transport thread. This method will block
+     * Synchronize with the transport threads. This method will block
      * until all commands issued before this method was invoked has
-     * completed. If the transport thread has been shut down (or is in
-     * the progress of being shut down) this method will instead wait
-     * for the transport thread to complete, since no more commands
-     * will be performed, and waiting would be forever. Invoking this
-     * method from the transport thread is not a good idea.
+     * completed. If the transport threads have been shut down (or are
+     * in the progress of being shut down) this method will instead
+     * wait for the transport threads to complete, since no more
+     * commands will be performed, and waiting would be
+     * forever. Invoking this method from a transport thread is not a
+     * good idea.
      *
      * @return this object, to enable chaining
      **/
     public Transport sync() {
-        SyncCmd cmd = new SyncCmd();
-        if (postCommand(cmd)) {
-            cmd.waitDone();
-        } else {
-            join();
+        for (TransportThread thread : threads) {
+            thread.sync();
         }
         return this;
     }
 
-    private void run() {
-        while (state == OPEN) {
-
-            // perform I/O selection
-            try {
-                selector.select(100);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "error during select", e);
-            }
-
-            // handle internal events
-            handleEvents();
-
-            // handle I/O events
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Connection conn = (Connection) key.attachment();
-                keys.remove();
-                if (!handleIOEvents(conn, key)) {
-                    handleCloseConnection(conn);
-                }
-            }
-
-            // check scheduled tasks
-            scheduler.checkTasks(System.currentTimeMillis());
-        }
+    /**
+     * Wait until the connector has added or closed all connections
+     * queued for connecting. Invoked by each transport thread when it
+     * is shutting down.
+     **/
+    void waitConnectorDone() {
         connector.shutdown().waitDone();
-        synchronized (this) {
-            state = CLOSED;
-        }
-        handleEvents();
-        Iterator<SelectionKey> keys = selector.keys().iterator();
-        while (keys.hasNext()) {
-            SelectionKey key = keys.next();
-            Connection conn = (Connection) key.attachment();
-            handleCloseConnection(conn);
+    }
+
+    /**
+     * Invoked by each transport thread when it has completed. The
+     * helper threads and the crypto engine are shut down when the
+     * last transport thread is done.
+     **/
+    void threadDone() {
+        if (runningThreads.decrementAndGet() == 0) {
+            worker.shutdown().join();
+            connector.exit().join();
+            try { cryptoEngine.close(); } catch (Exception e) {}
         }
-        try { selector.close(); } catch (Exception e) {}
-        worker.shutdown().join();
-        connector.exit().join();
-        try { cryptoEngine.close(); } catch (Exception e) {}
     }
 
     /**
@@ -422,28 +260,45 @@ public class Transport {
      * @return this object, to enable chaining with join
      **/
     public Transport shutdown() {
-        synchronized (this) {
-            if (state == OPEN) {
-                state = CLOSING;
-                selector.wakeup();
-            }
+        for (TransportThread thread : threads) {
+            thread.shutdown();
         }
         return this;
     }
 
     /**
-     * Wait for the transport thread to finish.
+     * Wait for the transport threads to finish.
      **/
     public void join() {
-        while (true) {
-            try {
-                thread.join();
-                return;
-            } catch (InterruptedException e) {}
+        for (TransportThread thread : threads) {
+            thread.join();
         }
     }
 
+    /**
+     * Obtain the number of transport threads used by this Transport.
+     *
+     * @return the number of transport threads
+     **/
+    public int getNumThreads() {
+        return threads.length;
+    }
+
     public TransportMetrics metrics() {
         return metrics;
     }
+
+    /**
+     * Obtain the metrics of each of the transport threads of this
+     * Transport.
+     *
+     * @return metrics per transport thread
+     **/
+    public List<TransportMetrics.ThreadMetrics> threadMetrics() {
+        List<TransportMetrics.ThreadMetrics> result = new ArrayList<>(threads.length);
+        for (TransportThread thread : threads) {
+            result.add(thread.metrics());
+        }
+        return result;
+    }
 }
@@ -152,4 +152,97 @@ public class TransportMetrics {
                     '}';
         }
     }
+
+    /**
+     * Metric values produced by a single thread of a {@link Transport}. These are only updated by the thread itself,
+     * except wakeups, which are counted by the threads waking it.
+     */
+    public static class ThreadMetrics {
+
+        private final String name;
+        private final AtomicLong connections = new AtomicLong(0);
+        private final AtomicLong ioEvents = new AtomicLong(0);
+        private final AtomicLong commands = new AtomicLong(0);
+        private final AtomicLong busyTimeNanos = new AtomicLong(0);
+        private final AtomicLong selects = new AtomicLong(0);
+        private final AtomicLong wakeups = new AtomicLong(0);
+        private final AtomicLong reads = new AtomicLong(0);
+        private final AtomicLong writes = new AtomicLong(0);
+        private final AtomicLong interestUpdates = new AtomicLong(0);
+
+        ThreadMetrics(String name) { this.name = name; }
+
+        /** Returns the name of the transport thread */
+        public String name() { return name; }
+
+        /** Returns the number of connections currently handled by the thread */
+        public long connections() { return connections.get(); }
+
+        /** Returns the total number of IO events handled by the thread */
+        public long ioEvents() { return ioEvents.get(); }
+
+        /** Returns the total number of internal commands performed by the thread */
+        public long commands() { return commands.get(); }
+
+        /** Returns the total time the thread has spent doing work, rather than waiting for IO, in nanoseconds */
+        public long busyTimeNanos() { return busyTimeNanos.get(); }
+
+        /** Returns the total number of times the thread has selected IO events */
+        public long selects() { return selects.get(); }
+
+        /** Returns the total number of times other threads have woken the thread to perform commands */
+        public long wakeups() { return wakeups.get(); }
+
+        /** Returns the total number of socket reads done by the thread */
+        public long reads() { return reads.get(); }
+
+        /** Returns the total number of socket writes done by the thread */
+        public long writes() { return writes.get(); }
+
+        /** Returns the total number of changes to the IO events selected for a connection */
+        public long interestUpdates() { return interestUpdates.get(); }
+
+        /**
+         * Returns an estimate of the total number of system calls made by the thread, as the sum of selects,
+         * wakeups, socket reads and writes, and changes to selected IO events.
+         */
+        public long systemCalls() {
+            return selects() + wakeups() + reads() + writes() + interestUpdates();
+        }
+
+        void incrementSelects() { selects.lazySet(selects.get() + 1); }
+
+        void incrementWakeups() { wakeups.incrementAndGet(); }
+
+        void incrementReads() { reads.lazySet(reads.get() + 1); }
+
+        void incrementWrites() { writes.lazySet(writes.get() + 1); }
+
+        void incrementInterestUpdates() { interestUpdates.lazySet(interestUpdates.get() + 1); }
+
+        void incrementIoEvents() { ioEvents.lazySet(ioEvents.get() + 1); }
+
+        void incrementCommands() { commands.lazySet(commands.get() + 1); }
+
+        void update(long currentConnections, long busyNanos) {
+            connections.lazySet(currentConnections);
+            busyTimeNanos.lazySet(busyTimeNanos.get() + busyNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "ThreadMetrics{" +
+                    "name=" + name +
+                    ", connections=" + connections +
+                    ", ioEvents=" + ioEvents +
+                    ", commands=" + commands +
+                    ", busyTimeNanos=" + busyTimeNanos +
+                    ", selects=" + selects +
+                    ", wakeups=" + wakeups +
+                    ", reads=" + reads +
+                    ", writes=" + writes +
+                    ", interestUpdates=" + interestUpdates +
+                    '}';
+        }
+    }
 }
@@ -125,7 +125,7 @@ public abstract class Value
         case DOUBLE_ARRAY: return new DoubleArray(src);
         case STRING:       return new StringValue(src);
         case STRING_ARRAY: return new StringArray(src);
-        case DATA:         return new DataValue(src);
+        case DATA:         return DataValue.decode(src);
         case DATA_ARRAY:   return new DataArray(src);
         }
         throw new IllegalArgumentException();
@@ -284,6 +284,15 @@ public abstract class Value
      **/
     public byte[][] asDataArray()   { throw new ClassCastException(); }
 
+    /**
+     * Interpret this value as a {@link DataValue} and return the
+     * contents as a read-only buffer, without copying
+     *
+     * @return the value contained in this object as a buffer
+     * @throws ClassCastException if this is not a {@link DataValue}
+     **/
+    public ByteBuffer asDataBuffer() { throw new ClassCastException(); }
+
     /** Force a proper toString */
     public abstract @Override String toString();
 
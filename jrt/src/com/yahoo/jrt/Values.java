@@ -99,6 +99,34 @@ public class Values
      * @param dst where to encode this value sequence
      **/
     void encode(ByteBuffer dst) {
+        encode(dst, false);
+    }
+
+    /**
+     * Obtain the bytes of the last value of this sequence, if it is a
+     * data value of at least the given size, so it can be written
+     * without copying it into the output buffer.
+     *
+     * @return the bytes of the last value, or null
+     * @param minSize the minimum size of the last value
+     **/
+    ByteBuffer trailingData(int minSize) {
+        if (values.isEmpty() || !(values.get(values.size() - 1) instanceof DataValue)) {
+            return null;
+        }
+        ByteBuffer data = ((DataValue) values.get(values.size() - 1)).dataBuffer();
+        return (data.remaining() >= minSize) ? data : null;
+    }
+
+    /**
+     * Encode this value sequence into the given buffer, optionally
+     * leaving out the bytes of the last value, as given by {@link
+     * #trailingData}.
+     *
+     * @param dst where to encode this value sequence
+     * @param skipTrailingData whether to leave out the trailing data
+     **/
+    void encode(ByteBuffer dst, boolean skipTrailingData) {
         byte[] types = new byte[values.size()];
         for (int i = 0; i < types.length; i++) {
             types[i] = get(i).type();
@@ -106,7 +134,11 @@ public class Values
         dst.putInt(types.length);
         dst.put(types);
         for (int i = 0; i < types.length; i++) {
-            get(i).encode(dst);
+            if (skipTrailingData && i == types.length - 1) {
+                ((DataValue) get(i)).encodeLength(dst);
+            } else {
+                get(i).encode(dst);
+            }
         }
     }
 
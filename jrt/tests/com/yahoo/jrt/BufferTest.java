@@ -263,4 +263,46 @@ public class BufferTest {
         }
     }
 
+
+    @org.junit.Test
+    public void testPooledBuffer() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        Buffer buf = new Buffer(5000, pool);
+        ByteBuffer b = buf.getWritable(10);
+        assertTrue(b.isDirect());
+        assertEquals(8192, b.capacity());
+        b.put(new byte[8000]);
+        buf.getReadable().position(7000);
+
+        // Compacting reuses the buffer, and growing returns the old buffer to the pool
+        assertEquals(8192, buf.getWritable(5000).capacity());
+        assertEquals(32768, buf.getWritable(16000).capacity());
+        assertEquals(8192, pool.pooledBytes());
+
+        buf.release();
+        assertEquals(8192 + 32768, pool.pooledBytes());
+    }
+
+    @org.junit.Test
+    public void testEmptyPooledBufferIsReleased() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        Buffer buf = new Buffer(8192, pool);
+        assertEquals(0, pool.allocations());
+        buf.getWritable(10).put((byte) 42);
+        assertEquals(1, pool.allocations());
+        assertFalse(buf.releaseIfEmpty());
+        assertEquals(0, pool.pooledBytes());
+
+        assertEquals(42, buf.getReadable().get());
+        assertTrue(buf.releaseIfEmpty());
+        assertEquals(8192, pool.pooledBytes());
+        assertEquals(0, buf.bytes());
+
+        // The released buffer is reused when the buffer is used again
+        ByteBuffer b = buf.getWritable(10);
+        assertEquals(8192, b.capacity());
+        assertEquals(0, b.position());
+        assertEquals(1, pool.allocations());
+        assertEquals(0, pool.pooledBytes());
+    }
 }
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ConnectTest {
@@ -25,6 +26,8 @@ public class ConnectTest {
 
         assertTrue(server.checkLifeCounts(1, 0));
         assertTrue(client.checkLifeCounts(1, 0));
+        assertEquals(acceptor.port(), target.peerAddress().getPort());
+        assertTrue(target.peerAddress().getAddress().isLoopbackAddress());
 
         target.close();
 
@@ -2,6 +2,11 @@
 package com.yahoo.jrt;
 
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.runner.RunWith;
@@ -10,6 +15,7 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
 import static com.yahoo.jrt.CryptoUtils.createTestTlsContext;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -138,4 +144,62 @@ public class EchoTest {
             metricsAssertions.assertMetrics(metrics.snapshot().changesSince(startSnapshot));
         }
     }
+
+    public void rpc_echo_data(Request req) {
+        Values p = req.parameters();
+        Values r = req.returnValues();
+        for (int i = 0; i < p.size(); i++) {
+            r.add(new DataValue(p.get(i).asDataBuffer()));
+        }
+    }
+
+    @org.junit.Test
+    public void testEchoLargeData() {
+        server.addMethod(new Method("echo_data", "*", "*", this, "rpc_echo_data"));
+        int[] sizes = { 1, 10000, 20000, 100000, 3000000 };
+        Request req = new Request("echo_data");
+        for (int size : sizes) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) (i * 31 + size);
+            }
+            req.parameters().add(new DataValue(data));
+        }
+        for (int i = 0; i < 3; i++) { // several requests in flight to exercise writes without copying
+            Request extra = new Request("echo_data");
+            extra.parameters().add(new DataValue(ByteBuffer.wrap(new byte[50000], 100, 40000)));
+            target.invokeAsync(extra, 60.0, done -> {});
+        }
+        target.invokeSync(req, 60.0);
+        assertTrue(req.errorMessage(), req.checkReturnTypes("xxxxx"));
+        for (int i = 0; i < sizes.length; i++) {
+            assertArrayEquals(req.parameters().get(i).asData(), req.returnValues().get(i).asData());
+            assertEquals(sizes[i], req.returnValues().get(i).asDataBuffer().remaining());
+        }
+    }
+
+    @org.junit.Test
+    public void testLargeDataReusesPooledBuffers() {
+        server.addMethod(new Method("echo_data", "*", "*", this, "rpc_echo_data"));
+        BufferPool serverPool = server.transport().bufferPool();
+        BufferPool clientPool = client.transport().bufferPool();
+        List<Request> requests = new ArrayList<>();
+        long allocations = 0;
+        for (int i = 0; i < 200; i++) {
+            if (i == 20) { // the pools hold the buffers needed once warmed up
+                allocations = serverPool.allocations() + clientPool.allocations();
+            }
+            byte[] data = new byte[65536];
+            Arrays.fill(data, (byte) i);
+            Request req = new Request("echo_data");
+            req.parameters().add(new DataValue(data));
+            target.invokeSync(req, 60.0);
+            assertTrue(req.errorMessage(), req.checkReturnTypes("x"));
+            requests.add(req);
+        }
+        assertTrue(serverPool.allocations() + clientPool.allocations() - allocations < 10);
+        for (Request req : requests) { // decoded values are not overwritten when buffers are reused
+            assertArrayEquals(req.parameters().get(0).asData(), req.returnValues().get(0).asData());
+        }
+    }
 }
@@ -0,0 +1,97 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of small requests, like message bus operations and pings, which reports requests per second and
+ * the estimated number of system calls per request made by the client and server transports.
+ * Run with the optional arguments: seconds per measurement and payload size in bytes.
+ */
+public class SmallRpcBenchmark {
+
+    private static final int connections = 4;
+
+    private final AtomicLong replies = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final byte[] payload;
+
+    private SmallRpcBenchmark(int payloadSize) {
+        this.payload = new byte[payloadSize];
+    }
+
+    public void rpc_echo(Request req) {
+        req.returnValues().add(req.parameters().get(0));
+    }
+
+    private void invoke(Target target) {
+        if (stopped.get()) return;
+        Request req = new Request("echo");
+        req.parameters().add(new DataValue(payload));
+        target.invokeAsync(req, 60.0, done -> {
+            if ( ! done.isError()) replies.incrementAndGet();
+            else if ( ! stopped.get()) errors.incrementAndGet(); // Requests in flight fail when stopping
+            invoke(target);
+        });
+    }
+
+    private void run(int inFlightPerConnection, int seconds) throws ListenFailedException, InterruptedException {
+        Supervisor server = new Supervisor(new Transport(new NullCryptoEngine()));
+        Supervisor client = new Supervisor(new Transport(new NullCryptoEngine()));
+        Acceptor acceptor = server.listen(new Spec(0));
+        server.addMethod(new Method("echo", "x", "x", this, "rpc_echo"));
+
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            targets.add(target);
+            for (int j = 0; j < inFlightPerConnection; j++) {
+                invoke(target);
+            }
+        }
+
+        Thread.sleep(2000); // warmup
+        long startReplies = replies.get();
+        long startTime = System.nanoTime();
+        long startClientCalls = systemCalls(client);
+        long startServerCalls = systemCalls(server);
+        Thread.sleep(seconds * 1000L);
+        long elapsed = System.nanoTime() - startTime;
+        long requests = replies.get() - startReplies;
+        double clientCalls = (double) (systemCalls(client) - startClientCalls) / requests;
+        double serverCalls = (double) (systemCalls(server) - startServerCalls) / requests;
+        System.out.printf("  %4d in flight per connection: %8.0f requests/s, %5.2f client and %5.2f server syscalls/request, %d failed\n",
+                          inFlightPerConnection, requests * 1e9 / elapsed, clientCalls, serverCalls, errors.get());
+
+        stopped.set(true);
+        client.transport().sync();
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    private static long systemCalls(Supervisor orb) {
+        long calls = 0;
+        for (TransportMetrics.ThreadMetrics metrics : orb.transport().threadMetrics()) {
+            calls += metrics.systemCalls();
+        }
+        return calls;
+    }
+
+    public static void main(String[] args) throws ListenFailedException, InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int payloadSize = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        System.out.println(connections + " connections, " + payloadSize + " byte payloads");
+        for (int inFlight : new int[] { 1, 8, 64, 256 }) {
+            new SmallRpcBenchmark(payloadSize).run(inFlight, seconds);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.yahoo.jrt.CryptoUtils.createTestTlsContext;
+
+/**
+ * Benchmark of requests per second between a client and a server using the same number of transport threads,
+ * over a number of connections which each have a fixed number of requests in flight at all times.
+ * Run with the optional arguments: seconds per measurement, "tls" or "null" crypto, and payload size in bytes.
+ */
+public class TransportBenchmark {
+
+    private static final int connections = 32;
+    private static final int requestsInFlightPerConnection = 16;
+
+    private final AtomicLong replies = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final byte[] payload;
+
+    private TransportBenchmark(int payloadSize) {
+        this.payload = new byte[payloadSize];
+    }
+
+    public void rpc_echo(Request req) {
+        req.returnValues().add(req.parameters().get(0));
+    }
+
+    private void invoke(Target target) {
+        if (stopped.get()) return;
+        Request req = new Request("echo");
+        req.parameters().add(new DataValue(payload));
+        target.invokeAsync(req, 60.0, done -> {
+            if ( ! done.isError()) replies.incrementAndGet();
+            else if ( ! stopped.get()) errors.incrementAndGet(); // Requests in flight fail when stopping
+            invoke(target);
+        });
+    }
+
+    /** Returns the number of replies per second */
+    private double run(CryptoEngine serverCrypto, CryptoEngine clientCrypto, int threads, int seconds)
+            throws ListenFailedException, InterruptedException {
+        Supervisor server = new Supervisor(new Transport(serverCrypto, threads));
+        Supervisor client = new Supervisor(new Transport(clientCrypto, threads));
+        Acceptor acceptor = server.listen(new Spec(0));
+        server.addMethod(new Method("echo", "x", "x", this, "rpc_echo"));
+
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            targets.add(target);
+            for (int j = 0; j < requestsInFlightPerConnection; j++) {
+                invoke(target);
+            }
+        }
+
+        Thread.sleep(2000); // warmup
+        long startReplies = replies.get();
+        long startTime = System.nanoTime();
+        List<Long> startBusyTimes = busyTimes(server);
+        Thread.sleep(seconds * 1000L);
+        long elapsed = System.nanoTime() - startTime;
+        double rate = (replies.get() - startReplies) * 1e9 / elapsed;
+        List<Long> endBusyTimes = busyTimes(server);
+        StringBuilder utilization = new StringBuilder();
+        for (int i = 0; i < threads; i++) {
+            utilization.append(String.format(" %3.0f%%", 100.0 * (endBusyTimes.get(i) - startBusyTimes.get(i)) / elapsed));
+        }
+        System.out.println("    server transport thread utilization:" + utilization);
+
+        stopped.set(true);
+        client.transport().sync();
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+        return rate;
+    }
+
+    private static List<Long> busyTimes(Supervisor orb) {
+        List<Long> busyTimes = new ArrayList<>();
+        for (TransportMetrics.ThreadMetrics metrics : orb.transport().threadMetrics()) {
+            busyTimes.add(metrics.busyTimeNanos());
+        }
+        return busyTimes;
+    }
+
+    private static CryptoEngine crypto(String name) {
+        switch (name) {
+            case "tls": return new TlsCryptoEngine(createTestTlsContext());
+            case "null": return new NullCryptoEngine();
+            default: throw new IllegalArgumentException("Unknown crypto '" + name + "', use 'tls' or 'null'");
+        }
+    }
+
+    public static void main(String[] args) throws ListenFailedException, InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String crypto = args.length > 1 ? args[1] : "tls";
+        int payloadSize = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        System.out.println(connections + " connections with " + requestsInFlightPerConnection + " requests in flight each, " +
+                           crypto + " crypto, " + payloadSize + " byte payloads");
+        for (int threads : new int[] { 1, 2, 4, 8 }) {
+            TransportBenchmark benchmark = new TransportBenchmark(payloadSize);
+            double rate = benchmark.run(crypto(crypto), crypto(crypto), threads, seconds);
+            System.out.printf("  %d transport threads: %8.0f requests/s, %d failed\n", threads, rate, benchmark.errors.get());
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.yahoo.jrt.CryptoUtils.createTestTlsContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransportThreadsTest {
+
+    private static final int numThreads = 4;
+
+    private Supervisor server;
+    private Supervisor client;
+    private Acceptor acceptor;
+
+    @Before
+    public void setUp() throws ListenFailedException {
+        server = new Supervisor(new Transport(new TlsCryptoEngine(createTestTlsContext()), numThreads));
+        client = new Supervisor(new Transport(new TlsCryptoEngine(createTestTlsContext()), numThreads));
+        acceptor = server.listen(new Spec(0));
+        server.addMethod(new Method("inc", "i", "i", this, "rpc_inc"));
+    }
+
+    @After
+    public void tearDown() {
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_inc(Request req) {
+        req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
+    }
+
+    @Test
+    public void testConnectionsAreSpreadOverThreads() {
+        assertEquals(numThreads, client.transport().getNumThreads());
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < 2 * numThreads; i++) {
+            targets.add(client.connect(new Spec("localhost", acceptor.port())));
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < targets.size(); i++) {
+                Request req = new Request("inc");
+                req.parameters().add(new Int32Value(i + round));
+                targets.get(i).invokeSync(req, 60.0);
+                assertTrue(req.errorMessage(), req.checkReturnTypes("i"));
+                assertEquals(i + round + 1, req.returnValues().get(0).asInt32());
+            }
+        }
+        client.transport().sync();
+        server.transport().sync();
+
+        assertEquals(numThreads, client.transport().threadMetrics().size());
+        for (Supervisor orb : List.of(client, server)) {
+            orb.transport().sync();
+            for (TransportMetrics.ThreadMetrics metrics : orb.transport().threadMetrics()) {
+                assertEquals(metrics.toString(), 2, metrics.connections());
+                assertTrue(metrics.toString(), metrics.ioEvents() > 0);
+            }
+        }
+        for (Target target : targets) {
+            target.close();
+        }
+    }
+
+    @Test
+    public void testMethodsAreVisibleFromAllThreads() {
+        server.addMethod(new Method("dec", "i", "i", req -> req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() - 1))));
+        for (int i = 0; i < 2 * numThreads; i++) {
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            Request req = new Request("dec");
+            req.parameters().add(new Int32Value(i));
+            target.invokeSync(req, 60.0);
+            assertTrue(req.errorMessage(), req.checkReturnTypes("i"));
+            assertEquals(i - 1, req.returnValues().get(0).asInt32());
+            target.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAtLeastOneThreadIsRequired() {
+        new Transport(0);
+    }
+
+}
@@ -0,0 +1,375 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.routing.Route;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * <p>This is an implementation of the {@link ThrottlePolicy} that keeps a separate window of pending messages for
+ * each destination, and sizes each window to keep a percentile of the reply latency of that destination close to a
+ * target latency.</p>
+ *
+ * <p>Windows are resized once per sample of replies, of the size of the window, using a gradient control law:
+ * the new window is the old window scaled by the ratio of the target latency to the observed latency, capped
+ * to [0.5, 1], plus the square root of the window as headroom for queueing. When no target latency is set, the target
+ * is the lowest latency observed for the destination times a tolerance factor, similar to TCP Vegas. The lowest latency
+ * is measured again after the destination has been idle, so an explicit target should be set for destinations whose
+ * latency changes for other reasons than load. Replies with transient errors signal overload and make the window back
+ * off multiplicatively.</p>
+ *
+ * <p>A destination is identified by the route of the message sent to it, as the throttle policy is consulted before
+ * the message is routed, so its recipient is not known yet. All messages sent over the same route therefore share one
+ * window, even when routing spreads them over many recipients, such as the nodes of a content cluster. A slow recipient
+ * then shrinks the window of the whole route, and separate windows per recipient require sending to each recipient over
+ * its own route. All calls to this are made while holding the lock of the owning {@link SourceSession}, so this does
+ * only constant amortized work per message.</p>
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ */
+public class AdaptiveThrottlePolicy implements ThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(AdaptiveThrottlePolicy.class.getName());
+    private static final long IDLE_TIME_MILLIS = 60000;
+    private static final int MIN_SAMPLE_SIZE = 16;
+
+    private final Timer timer;
+    private final Map<String, Destination> destinations = new HashMap<>();
+    private int maxPendingCount = 0;
+    private int pendingCount = 0;
+    private double minWindowSize = 4;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double initialWindowSize = 16;
+    private long latencyTargetMillis = 0;
+    private double latencyPercentile = 0.9;
+    private double latencyTolerance = 2.0;
+    private double smoothing = 0.5;
+    private double windowSizeBackOff = 0.7;
+    private long timeOfLastPrune;
+
+    // The destination of the last message passed to canSend, to avoid resolving it again in processMessage
+    private Message lastMessage = null;
+    private Destination lastDestination = null;
+
+    /**
+     * Constructs a new instance of this policy and sets the appropriate default values of member data.
+     */
+    public AdaptiveThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this class using the given clock to measure latency.
+     *
+     * @param timer the timer to use
+     */
+    public AdaptiveThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.timeOfLastPrune = timer.milliTime();
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        if (maxPendingCount > 0 && pendingCount >= maxPendingCount) {
+            return false;
+        }
+        long now = timer.milliTime();
+        Destination destination = destinationOf(message, now);
+        if (now - destination.timeOfLastMessage > IDLE_TIME_MILLIS) {
+            destination.window = Math.max(minWindowSize, Math.min(destination.window,
+                                                                  destination.pending + initialWindowSize));
+            destination.minLatency = 0; // The destination may have changed while idle, so measure it again
+        }
+        destination.timeOfLastMessage = now;
+        lastMessage = message;
+        lastDestination = destination;
+        return destination.pending < destination.window;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        long now = timer.milliTime();
+        Destination destination = message == lastMessage ? lastDestination : destinationOf(message, now);
+        lastMessage = null;
+        lastDestination = null;
+        message.setContext(new PendingMessage(destination, now));
+        destination.pending++;
+        destination.maxPendingInSample = Math.max(destination.maxPendingInSample, destination.pending);
+        pendingCount++;
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        if ( ! (reply.getContext() instanceof PendingMessage)) {
+            return;
+        }
+        PendingMessage pendingMessage = (PendingMessage)reply.getContext();
+        Destination destination = pendingMessage.destination;
+        destination.pending--;
+        pendingCount--;
+        if (hasTransientErrors(reply)) {
+            destination.overloaded = true;
+        }
+        destination.addSample(timer.milliTime() - pendingMessage.sendTime);
+        if (destination.sampleCount >= destination.samples.length) {
+            resize(destination);
+        }
+    }
+
+    private Destination destinationOf(Message message, long now) {
+        if (now - timeOfLastPrune > IDLE_TIME_MILLIS) {
+            pruneIdleDestinations(now);
+        }
+        Route route = message.getRoute();
+        String name = route != null ? route.toString() : "";
+        Destination destination = destinations.get(name);
+        if (destination == null) {
+            destination = new Destination(name, Math.max(minWindowSize, Math.min(maxWindowSize, initialWindowSize)), now);
+            destinations.put(name, destination);
+        }
+        return destination;
+    }
+
+    private void pruneIdleDestinations(long now) {
+        for (Iterator<Destination> it = destinations.values().iterator(); it.hasNext(); ) {
+            Destination destination = it.next();
+            if (destination.pending == 0 && now - destination.timeOfLastMessage > IDLE_TIME_MILLIS) {
+                it.remove();
+            }
+        }
+        timeOfLastPrune = now;
+    }
+
+    private void resize(Destination destination) {
+        long observedLatency = Math.max(1, destination.latencyPercentile(latencyPercentile));
+        destination.minLatency = destination.minLatency == 0 ? observedLatency
+                                                             : Math.min(observedLatency, destination.minLatency);
+        double targetLatency = latencyTargetMillis > 0 ? latencyTargetMillis
+                                                       : destination.minLatency * latencyTolerance;
+        double window = destination.window;
+        double newWindow;
+        if (destination.overloaded) {
+            newWindow = window * windowSizeBackOff;
+        }
+        else {
+            double gradient = Math.max(0.5, Math.min(1.0, targetLatency / observedLatency));
+            newWindow = window * gradient;
+            // Only grow windows which are actually filled, so idle destinations do not grow without bounds
+            if (gradient < 1.0 || destination.maxPendingInSample >= window * 0.5) {
+                newWindow += Math.sqrt(window);
+            }
+            newWindow = window * (1 - smoothing) + newWindow * smoothing;
+        }
+        destination.window = Math.max(minWindowSize, Math.min(maxWindowSize, newWindow));
+        destination.startSample();
+
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, "Destination '" + destination.name + "': latency " + observedLatency +
+                                    " ms, target " + targetLatency + " ms, window " + window + " -> " + destination.window);
+        }
+    }
+
+    private static boolean hasTransientErrors(Reply reply) {
+        for (int i = 0; i < reply.getNumErrors(); i++) {
+            if (ErrorCode.isTransient(reply.getError(i).getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the latency target, in milliseconds, for the configured percentile of reply latencies. If this is 0, the
+     * target is the lowest latency observed for each destination times the latency tolerance.
+     *
+     * @param latencyTargetMillis the target to set
+     * @return this, to allow chaining
+     * @see #setLatencyTolerance(double)
+     */
+    public AdaptiveThrottlePolicy setLatencyTarget(long latencyTargetMillis) {
+        this.latencyTargetMillis = latencyTargetMillis;
+        return this;
+    }
+
+    /**
+     * Sets the percentile of reply latencies which should be kept at the latency target, as a number in [0, 1].
+     *
+     * @param latencyPercentile the percentile to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setLatencyPercentile(double latencyPercentile) {
+        this.latencyPercentile = Math.max(0, Math.min(1, latencyPercentile));
+        return this;
+    }
+
+    /**
+     * Sets the factor of the lowest observed latency which is used as the latency target when no explicit target is
+     * set. Larger values give higher throughput at the cost of longer queues at the destinations.
+     *
+     * @param latencyTolerance the tolerance to set, which must be at least 1
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = Math.max(1, latencyTolerance);
+        return this;
+    }
+
+    /**
+     * Sets how much of each resize to apply, as a number in (0, 1]. Lower values give more stable windows,
+     * while higher values make windows converge faster.
+     *
+     * @param smoothing the smoothing to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setSmoothing(double smoothing) {
+        this.smoothing = Math.max(0.01, Math.min(1, smoothing));
+        return this;
+    }
+
+    /**
+     * Sets the factor to multiply the window size of a destination with when it replies with transient errors.
+     * This value is capped to the [0, 1] range.
+     *
+     * @param windowSizeBackOff the back off to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    /**
+     * Sets the window size of new destinations.
+     *
+     * @param initialWindowSize the size to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setInitialWindowSize(double initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+        return this;
+    }
+
+    /**
+     * Sets the minimum number of pending messages allowed to each destination.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pending messages allowed to each destination.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pending messages allowed in total, or 0 for no limit.
+     *
+     * @param maxCount the max to set
+     * @return this, to allow chaining
+     */
+    public AdaptiveThrottlePolicy setMaxPendingCount(int maxCount) {
+        this.maxPendingCount = maxCount;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pending messages allowed in total, or 0 if there is no limit.
+     *
+     * @return the max limit
+     */
+    public int getMaxPendingCount() {
+        return maxPendingCount;
+    }
+
+    /**
+     * Returns the number of pending messages to all destinations.
+     *
+     * @return the pending count
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Returns the current window size for messages sent with the given route, or the initial window size if no
+     * messages have been sent with this route recently.
+     *
+     * @param route the route messages are sent with
+     * @return the window size
+     */
+    public double getWindowSize(Route route) {
+        Destination destination = destinations.get(route.toString());
+        return destination != null ? destination.window : initialWindowSize;
+    }
+
+    private static class Destination {
+
+        final String name;
+        double window;
+        int pending = 0;
+        int maxPendingInSample = 0;
+        long timeOfLastMessage;
+        long minLatency = 0;
+        boolean overloaded = false;
+        long[] samples;
+        int sampleCount = 0;
+
+        Destination(String name, double window, long now) {
+            this.name = name;
+            this.window = window;
+            this.timeOfLastMessage = now;
+            startSample();
+        }
+
+        void addSample(long latency) {
+            samples[sampleCount++] = latency;
+        }
+
+        /** Returns the given percentile of the latencies in the current sample, which is reordered */
+        long latencyPercentile(double percentile) {
+            Arrays.sort(samples, 0, sampleCount);
+            return samples[Math.min(sampleCount - 1, (int)(percentile * sampleCount))];
+        }
+
+        void startSample() {
+            int size = Math.max(MIN_SAMPLE_SIZE, (int)window);
+            if (samples == null || samples.length != size) {
+                samples = new long[size];
+            }
+            sampleCount = 0;
+            maxPendingInSample = pending;
+            overloaded = false;
+        }
+
+    }
+
+    private static class PendingMessage {
+
+        final Destination destination;
+        final long sendTime;
+
+        PendingMessage(Destination destination, long sendTime) {
+            this.destination = destination;
+            this.sendTime = sendTime;
+        }
+
+    }
+
+}
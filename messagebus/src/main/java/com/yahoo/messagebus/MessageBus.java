@@ -8,6 +8,7 @@ import com.yahoo.messagebus.network.Network;
 import com.yahoo.messagebus.network.NetworkOwner;
 import com.yahoo.messagebus.routing.Resender;
 import com.yahoo.messagebus.routing.RetryPolicy;
+import com.yahoo.messagebus.routing.RoutingNode;
 import com.yahoo.messagebus.routing.RoutingPolicy;
 import com.yahoo.messagebus.routing.RoutingSpec;
 import com.yahoo.messagebus.routing.RoutingTable;
@@ -138,12 +139,12 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
             throw new IllegalStateException("Network failed to become ready in time.");
 
         // Start messenger.
-        msn = new Messenger();
+        msn = new Messenger(params.getMessengerThreads());
 
         RetryPolicy retryPolicy = params.getRetryPolicy();
         if (retryPolicy != null) {
             resender = new Resender(retryPolicy);
-            msn.addRecurrentTask(new ResenderTask(resender));
+            msn.addRecurrentTask(new ResenderTask(resender, msn));
         } else {
             resender = null;
         }
@@ -589,14 +590,19 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
     /**
      * <p>Implements a task for running the resender in the messenger
      * thread. This task acts as a proxy for the resender, allowing the task to
-     * be deleted without affecting the resender itself.</p>
+     * be deleted without affecting the resender itself. Messages due for
+     * resending are sent by the messenger threads, partitioned by sequence id
+     * when the messenger has more than one thread.</p>
      */
     private static class ResenderTask implements Messenger.Task {
 
         final Resender resender;
+        final Messenger msn;
+        long nextSequenceId = 0;
 
-        ResenderTask(Resender resender) {
+        ResenderTask(Resender resender, Messenger msn) {
             this.resender = resender;
+            this.msn = msn;
         }
 
         public void destroy() {
@@ -604,9 +610,42 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
         }
 
         public void run() {
-            resender.resendScheduled();
+            if (msn.getNumThreads() == 1) {
+                resender.resendScheduled();
+            } else {
+                resender.resendScheduled(node -> msn.enqueue(new ResendTask(node), sequenceIdOf(node.getMessage())));
+            }
+        }
+
+        private long sequenceIdOf(Message msg) {
+            return msg.hasSequenceId() ? msg.getSequenceId() : nextSequenceId++;
         }
 
     }
-}
 
+    /**
+     * <p>Implements a task for resending a single message, which is discarded
+     * if the messenger is destroyed before it is run.</p>
+     */
+    private static class ResendTask implements Messenger.Task {
+
+        RoutingNode node;
+
+        ResendTask(RoutingNode node) {
+            this.node = node;
+        }
+
+        public void run() {
+            RoutingNode node = this.node;
+            this.node = null;
+            node.send();
+        }
+
+        public void destroy() {
+            if (node != null) {
+                node.discard();
+            }
+        }
+
+    }
+}
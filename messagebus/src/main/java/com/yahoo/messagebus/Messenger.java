@@ -3,39 +3,58 @@ package com.yahoo.messagebus;
 
 import com.yahoo.log.LogLevel;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements a set of threads that are able to process arbitrary
+ * tasks. Each thread owns a shard with a lock-free queue of tasks. Tasks are
+ * enqueued using {@link #enqueue(Task)}, which runs them in the order they were
+ * enqueued in the first shard, or using {@link #enqueue(Task, long)}, which runs
+ * tasks with the same sequence id in the order they were enqueued.</p>
  *
  * @author Simon Thoresen Hult
  */
 public class Messenger implements Runnable {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
-
-    private final Thread thread = new Thread(this, "Messenger");
+    private final Shard[] shards;
 
     public Messenger() {
-        thread.setDaemon(true);
+        this(1);
+    }
+
+    /**
+     * <p>Creates a messenger which runs tasks in the given number of
+     * threads.</p>
+     *
+     * @param numThreads The number of threads to run tasks in, at least 1.
+     */
+    public Messenger(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A messenger needs at least one thread, got " + numThreads);
+        }
+        shards = new Shard[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            shards[i] = new Shard(i == 0 ? "Messenger" : "Messenger-" + i);
+        }
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first thread. This task must be very light-weight
+     * as to not block the messenger. Note that this method is NOT thread-safe,
+     * so it should NOT be used after calling {@link #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -44,13 +63,24 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * <p>Returns the number of threads running tasks in this.</p>
+     *
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return shards.length;
     }
 
     /**
@@ -86,36 +116,64 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
+     * <p>Enqueues the given task in the list of tasks that the first thread of
+     * this is to process. If this has been destroyed previously, this method
      * invokes {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(final Task task) {
+        enqueue(task, shards[0]);
+    }
+
+    /**
+     * <p>Enqueues the given task in the list of tasks of the thread which owns
+     * the given sequence id. Tasks with the same sequence id are run in the
+     * order they were enqueued, while tasks with different sequence ids may run
+     * in parallel. If this has been destroyed previously, this method invokes
+     * {@link Messenger.Task#destroy()}.</p>
+     *
+     * @param task       The task to enqueue.
+     * @param sequenceId The sequence id of the task.
+     */
+    public void enqueue(final Task task, long sequenceId) {
+        enqueue(task, shards[shardOf(sequenceId)]);
+    }
+
+    private void enqueue(Task task, Shard shard) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
-        }
+        shard.enqueue(task);
+    }
+
+    private int shardOf(long sequenceId) {
+        if (shards.length == 1) return 0;
+        long hash = sequenceId * 0x9E3779B97F4A7C15L; // Spread sequential ids over the shards
+        return (int)((hash >>> 32) % shards.length);
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with the internal threads. If this method is called using
+     * a messenger thread, this returns immediately, as waiting for itself would
+     * deadlock.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        for (Shard shard : shards) {
+            if (Thread.currentThread() == shard.thread) {
+                return; // no need to wait for self
+            }
+        }
+        List<SyncTask> tasks = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            SyncTask task = new SyncTask();
+            enqueue(task, shard);
+            tasks.add(task);
+        }
+        for (SyncTask task : tasks) {
+            task.await();
         }
-        final SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -128,15 +186,14 @@ public class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(Terminate.INSTANCE);
+        for (Shard shard : shards) {
+            enqueue(Terminate.INSTANCE, shard);
+        }
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
+                for (Shard shard : shards) {
+                    shard.thread.join();
                 }
-                thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
@@ -145,53 +202,100 @@ public class Messenger implements Runnable {
         return done;
     }
 
+    /**
+     * <p>Runs the main loop of the first thread, which also runs all recurrent
+     * tasks.</p>
+     */
     @Override
     public void run() {
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        wait(10);
-                    } catch (final InterruptedException e) {
-                        continue;
+        shards[0].run();
+    }
+
+    private static void runTask(Task task) {
+        try {
+            task.run();
+        } catch (final Exception e) {
+            log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+        }
+        destroyTask(task);
+    }
+
+    private static void destroyTask(Task task) {
+        try {
+            task.destroy();
+        } catch (final Exception e) {
+            log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                        e.toString());
+            log.warning("Someone, somewhere might have to wait indefinetly for something.");
+        }
+    }
+
+    /**
+     * <p>A thread with its own queue of tasks. The queue is lock-free, and the
+     * thread parks when idle and is unparked by the first task enqueued after
+     * it has announced that it is about to park.</p>
+     */
+    private class Shard implements Runnable {
+
+        final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        volatile boolean idle = false;
+        volatile boolean closed = false;
+
+        Shard(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void enqueue(Task task) {
+            queue.offer(task);
+            if (closed) {
+                destroyRemaining(); // the thread has exited, and will not see this task
+            } else if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean runChildren = this == shards[0];
+            while (true) {
+                Task task = queue.poll();
+                if (task == null) {
+                    idle = true;
+                    task = queue.poll(); // recheck, as an enqueue may have missed the idle flag
+                    if (task == null) {
+                        LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
                     }
+                    idle = false;
                 }
-                if (queue.size() > 0) {
-                    task = queue.poll();
+                if (task == Terminate.INSTANCE) {
+                    break;
                 }
-            }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                if (task != null) {
+                    runTask(task);
                 }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                if (runChildren) {
+                    for (final Task child : children) {
+                        child.run();
+                    }
                 }
             }
-            for (final Task child : children) {
-                child.run();
+            if (runChildren) {
+                for (final Task child : children) {
+                    child.destroy();
+                }
             }
+            closed = true;
+            destroyRemaining();
         }
-        for (final Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
+
+        private void destroyRemaining() {
+            for (Task task; (task = queue.poll()) != null; ) {
+                destroyTask(task);
             }
-            notify();
         }
+
     }
 
     /**
@@ -4,6 +4,8 @@ package com.yahoo.messagebus;
 import com.yahoo.component.Version;
 import com.yahoo.messagebus.routing.RoutingPolicy;
 
+import java.nio.ByteBuffer;
+
 /**
  * Interface implemented by the concrete application message protocol.
  *
@@ -37,6 +39,24 @@ public interface Protocol {
      */
     public Routable decode(Version version, byte[] payload);
 
+    /**
+     * Decodes the protocol specific data in the remaining bytes of the given buffer into a routable of the correct
+     * type. Protocols which can deserialize directly from a buffer should override this, as the default
+     * implementation copies the bytes into an array unless the buffer is backed by an array holding exactly them.
+     *
+     * @param version The version of the serialized routable.
+     * @param payload The payload to decode from.
+     * @return The decoded routable.
+     */
+    public default Routable decode(Version version, ByteBuffer payload) {
+        if (payload.hasArray() && payload.arrayOffset() + payload.position() == 0 && payload.remaining() == payload.array().length) {
+            return decode(version, payload.array());
+        }
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+        return decode(version, data);
+    }
+
     /**
      * Create a policy of the named type with the named param passed to the constructor of that policy.
      *
@@ -1,11 +1,14 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Sequencing is implemented as a message handler that is configured in a source session in that session's chain of
@@ -13,13 +16,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The lists are kept in a concurrent map and are only modified by atomic operations on their own entries, so messages
+ * and replies with different sequence ids do not contend for a common lock.
+ *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    /** Marks a sequence id with a message in flight and no queued messages, to avoid creating queues needlessly */
+    private static final Queue<Message> inFlight = new ArrayDeque<>(0);
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private final ConcurrentMap<Long, Queue<Message>> seqMap = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final LongAdder totalQueuedCount = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -38,15 +50,14 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
-                        }
+            for (Long seqId : seqMap.keySet()) {
+                Queue<Message> queue = seqMap.remove(seqId);
+                if (queue != null) {
+                    for (Message msg : queue) {
+                        queuedCount.decrementAndGet();
+                        msg.discard();
                     }
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,23 +76,28 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.get(seqId);
-                if (queue == null) {
-                    queue = new LinkedList<>();
-                    seqMap.put(seqId, queue);
-                }
-                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
-                    msg.getTrace().trace(TraceLevel.COMPONENT,
-                                         "Sequencer queued message with sequence id '" + seqId + "'.");
-                }
-                queue.add(msg);
-                return false;
+        Queue<Message> queue = seqMap.compute(seqId, (id, current) -> {
+            if (current == null) {
+                return inFlight;
+            }
+            if (current == inFlight) {
+                current = new ArrayDeque<>();
             }
-            seqMap.put(seqId, null);
+            current.add(msg);
+            return current;
+        });
+        if (queue == inFlight) {
+            return true;
         }
-        return true;
+        // The size of the queue is only read here, as a metric, so it need not be consistent with concurrent changes
+        maxQueueDepth.accumulate(queue.size());
+        queuedCount.incrementAndGet();
+        totalQueuedCount.increment();
+        if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
+            msg.getTrace().trace(TraceLevel.COMPONENT,
+                                 "Sequencer queued message with sequence id '" + seqId + "'.");
+        }
+        return false;
     }
 
     /**
@@ -137,19 +153,43 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             reply.getTrace().trace(TraceLevel.COMPONENT,
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
-        Message msg = null;
-        synchronized (this) {
-            Queue<Message> queue = seqMap.get(seqId);
-            if (queue == null || queue.isEmpty()) {
-                seqMap.remove(seqId);
-            } else {
-                msg = queue.remove();
+        Message[] next = new Message[1];
+        seqMap.computeIfPresent(seqId, (id, queue) -> {
+            if (queue.isEmpty()) {
+                return null;
             }
-        }
-        if (msg != null) {
-            sequencedSend(msg);
+            next[0] = queue.remove();
+            return queue;
+        });
+        if (next[0] != null) {
+            queuedCount.decrementAndGet();
+            sequencedSend(next[0]);
         }
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
     }
+
+    /** Returns the number of sequence ids which currently have a message in flight */
+    public int getSequenceCount() {
+        return seqMap.size();
+    }
+
+    /** Returns the number of messages currently queued behind a message in flight with the same sequence id */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Returns the total number of messages which have been queued behind a message in flight with the same sequence
+     * id, which is a measure of how much sequencing delays messages.
+     */
+    public long getTotalQueuedCount() {
+        return totalQueuedCount.sum();
+    }
+
+    /** Returns the largest number of messages which have been queued for a single sequence id */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
 }
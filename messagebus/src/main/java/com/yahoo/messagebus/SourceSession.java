@@ -8,6 +8,8 @@ import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A session supporting sending new messages.
@@ -18,7 +20,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final CountDownLatch done = new CountDownLatch(1);
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder lockContentionCount = new LongAdder();
     private final MessageBus mbus;
     private final Sequencer sequencer;
     private final ReplyHandler replyHandler;
@@ -62,8 +65,11 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         if (destroyed.getAndSet(true)) {
             return false;
         }
-        synchronized (lock) {
+        lock();
+        try {
             closed = true;
+        } finally {
+            lock.unlock();
         }
         sequencer.destroy();
         mbus.sync();
@@ -75,8 +81,11 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
      * returning, this method calls {@link #destroy()}.
      */
     public void close() {
-        synchronized (lock) {
+        lock();
+        try {
             closed = true;
+        } finally {
+            lock.unlock();
         }
         if (pendingCount == 0) {
             done.countDown();
@@ -127,7 +136,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     }
 
     private Result sendInternal(Message message) {
-        synchronized (lock) {
+        lock();
+        try {
             if (closed) {
                 return new Result(ErrorCode.SEND_QUEUE_CLOSED,
                                   "Source session is closed.");
@@ -141,6 +151,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
                 throttlePolicy.processMessage(message);
             }
             ++pendingCount;
+        } finally {
+            lock.unlock();
         }
         if (message.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             message.getTrace().trace(TraceLevel.COMPONENT,
@@ -235,8 +247,11 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         Result res = send(msg);
         if (isSendQFull(res)) {
             BlockedMessage blockedMessage = new BlockedMessage(msg);
-            synchronized (lock) {
+            lock();
+            try {
                 blockedQ.add(blockedMessage);
+            } finally {
+                lock.unlock();
             }
             res = blockedMessage.waitComplete();
         }
@@ -244,19 +259,25 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     }
 
     private void expireStalledBlockedMessages() {
-        synchronized (lock) {
+        lock();
+        try {
             blockedQ.removeIf(BlockedMessage::notifyIfExpired);
+        } finally {
+            lock.unlock();
         }
     }
 
     private void sendBlockedMessages() {
-        synchronized (lock) {
+        lock();
+        try {
             for (boolean success = true; success && !blockedQ.isEmpty(); ) {
                 success = blockedQ.element().sendOrExpire();
                 if (success) {
                     blockedQ.remove();
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -267,13 +288,16 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
             return;
         }
         boolean done;
-        synchronized (lock) {
+        lock();
+        try {
             --pendingCount;
             if (throttlePolicy != null) {
                 throttlePolicy.processReply(reply);
             }
             done = (closed && pendingCount == 0);
             sendBlockedMessages();
+        } finally {
+            lock.unlock();
         }
         if (reply.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             reply.getTrace().trace(TraceLevel.COMPONENT,
@@ -347,6 +371,14 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         return send(msg);
     }
 
+    /** Acquires the lock of this, counting the times it had to wait for another thread holding it */
+    private void lock() {
+        if ( ! lock.tryLock()) {
+            lockContentionCount.increment();
+            lock.lock();
+        }
+    }
+
     /** Returns the reply handler of this session */
     public ReplyHandler getReplyHandler() {
         return replyHandler;
@@ -357,6 +389,19 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         return pendingCount;
     }
 
+    /** Returns the sequencer of this session, which holds back messages with the same sequence id as one in flight */
+    public Sequencer getSequencer() {
+        return sequencer;
+    }
+
+    /**
+     * Returns the number of times a thread sending a message or handling a reply had to wait for another thread
+     * holding the lock of this session, which is a measure of how much this session limits the throughput
+     */
+    public long getLockContentionCount() {
+        return lockContentionCount.sum();
+    }
+
     /**
      * Sets the number of seconds a message can be attempted sent until it times out.
      *
@@ -23,6 +23,8 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingNode;
 import com.yahoo.text.Utf8Array;
 
+import java.nio.ByteBuffer;
+
 /**
  * Implements the request adapter for method "mbus.send1/mbus.slime".
  *
@@ -84,7 +86,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         req.discardParameters(); // allow garbage collection of request parameters
     }
 
-    protected final Object decode(Utf8Array protocolName, Version version, byte [] payload) {
+    protected final Object decode(Utf8Array protocolName, Version version, ByteBuffer payload) {
         Protocol protocol = net.getOwner().getProtocol(protocolName);
         if (protocol != null) {
             Routable routable = protocol.decode(version, payload);
@@ -154,7 +156,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         int retry;
         long timeRemaining;
         Utf8Array protocolName;
-        byte [] payload;
+        ByteBuffer payload;
         int traceLevel;
     }
 
@@ -22,6 +22,8 @@ import com.yahoo.messagebus.TraceNode;
 import com.yahoo.messagebus.routing.Route;
 import com.yahoo.text.Utf8Array;
 
+import java.nio.ByteBuffer;
+
 /**
  * Implements the request adapter for method "mbus.send1".
  *
@@ -84,13 +86,13 @@ public class RPCSendV1 extends RPCSend {
         String[] errorMessages = ret.get(3).asStringArray();
         String[] errorServices = ret.get(4).asStringArray();
         Utf8Array protocolName = ret.get(5).asUtf8Array();
-        byte[] payload = ret.get(6).asData();
+        ByteBuffer payload = ret.get(6).asDataBuffer();
         String replyTrace = ret.get(7).asString();
 
         // Make sure that the owner understands the protocol.
         Reply reply = null;
         Error error = null;
-        if (payload.length > 0) {
+        if (payload.hasRemaining()) {
             Object retval = decode(protocolName, version, payload);
             if (retval instanceof Reply) {
                 reply = (Reply) retval;
@@ -124,7 +126,7 @@ public class RPCSendV1 extends RPCSend {
         p.retry = args.get(4).asInt32();
         p.timeRemaining = args.get(5).asInt64();
         p.protocolName = args.get(6).asUtf8Array();
-        p.payload = args.get(7).asData();
+        p.payload = args.get(7).asDataBuffer();
         p.traceLevel = args.get(8).asInt32();
         return p;
     }
@@ -9,6 +9,7 @@ import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Int8Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Value;
 import com.yahoo.jrt.Values;
 import com.yahoo.messagebus.EmptyReply;
 import com.yahoo.messagebus.Error;
@@ -17,13 +18,15 @@ import com.yahoo.messagebus.Reply;
 import com.yahoo.messagebus.Trace;
 import com.yahoo.messagebus.TraceNode;
 import com.yahoo.messagebus.routing.Route;
-import com.yahoo.slime.BinaryFormat;
 import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Inspector;
 import com.yahoo.slime.Slime;
 import com.yahoo.text.Utf8;
 import com.yahoo.text.Utf8Array;
 
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
 /**
  * Implements the request adapter for method "mbus.slime".
  *
@@ -96,32 +99,57 @@ public class RPCSendV2 extends RPCSend {
         root.setLong(RETRY_F, msg.getRetry());
         root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
         root.setLong(TRACELEVEL_F, traceLevel);
-        root.setData(BLOB_F, payload);
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
+        addEnvelope(v, slime, payload);
+        return req;
+    }
+
+    /** Adds the encoding, size and data parameters of the given header slime and payload to the given values. */
+    private void addEnvelope(Values v, Slime header, byte[] payload) {
+        byte[] serializedSlime = SlimeEnvelope.encode(header, BLOB_F, payload);
         Compressor.Compression compressionResult = compressor.compress(serializedSlime);
 
         v.add(new Int8Value(compressionResult.type().getCode()));
         v.add(new Int32Value(compressionResult.uncompressedSize()));
         v.add(new DataValue(compressionResult.data()));
+    }
 
-        return req;
+    /**
+     * Decodes the envelope in the given encoding, size and data parameters. Data which is not compressed is
+     * decoded in place when it is backed by an array, and the payload of the returned envelope is a view of the
+     * decompressed bytes in any case.
+     */
+    private SlimeEnvelope toEnvelope(Value encoding, Value decodedSize, Value data) {
+        CompressionType compression = CompressionType.valueOf(encoding.asInt8());
+        ByteBuffer buffer = data.asDataBuffer();
+        if ( ! buffer.hasArray()) {
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.get(copy);
+            buffer = ByteBuffer.wrap(copy);
+        }
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        int length = buffer.remaining();
+        if (compression == CompressionType.LZ4) {
+            array = compressor.decompress(compression, array, offset, decodedSize.asInt32(), Optional.empty());
+            offset = 0;
+            length = array.length;
+        }
+        return SlimeEnvelope.decode(array, offset, length, BLOB_F);
     }
 
     @Override
     protected Reply createReply(Values ret, String serviceName, Trace trace) {
-        CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        SlimeEnvelope envelope = toEnvelope(ret.get(3), ret.get(4), ret.get(5));
+        Inspector root = envelope.header().get();
 
         Version version = new Version(root.field(VERSION_F).asString());
-        byte[] payload = root.field(BLOB_F).asData();
+        ByteBuffer payload = envelope.payload();
 
         // Make sure that the owner understands the protocol.
         Reply reply = null;
         Error error = null;
-        if (payload.length > 0) {
+        if (payload.hasRemaining()) {
             Object retval = decode(new Utf8Array(root.field(PROTOCOL_F).asUtf8()), version, payload);
             if (retval instanceof Reply) {
                 reply = (Reply) retval;
@@ -151,10 +179,8 @@ public class RPCSendV2 extends RPCSend {
     }
 
     protected Params toParams(Values args) {
-        CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        SlimeEnvelope envelope = toEnvelope(args.get(3), args.get(4), args.get(5));
+        Inspector root = envelope.header().get();
         Params p = new Params();
         p.version = new Version(root.field(VERSION_F).asString());
         p.route = root.field(ROUTE_F).asString();
@@ -163,7 +189,7 @@ public class RPCSendV2 extends RPCSend {
         p.retry = (int)root.field(RETRY_F).asLong();
         p.timeRemaining = root.field(TIMEREMAINING_F).asLong();
         p.protocolName = new Utf8Array(Utf8.toBytes(root.field(PROTOCOL_F).asString()));
-        p.payload = root.field(BLOB_F).asData();
+        p.payload = envelope.payload();
         p.traceLevel = (int)root.field(TRACELEVEL_F).asLong();
         return p;
     }
@@ -180,7 +206,6 @@ public class RPCSendV2 extends RPCSend {
         root.setString(VERSION_F, version.toString());
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().toString());
-        root.setData(BLOB_F, payload);
         if (reply.getTrace().getLevel() > 0) {
             root.setString(TRACE_F, reply.getTrace().getRoot().encode());
         }
@@ -198,12 +223,7 @@ public class RPCSendV2 extends RPCSend {
             }
         }
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
-
-        ret.add(new Int8Value(compressionResult.type().getCode()));
-        ret.add(new Int32Value(compressionResult.uncompressedSize()));
-        ret.add(new DataValue(compressionResult.data()));
+        addEnvelope(ret, slime, payload);
     }
 
 }
@@ -0,0 +1,236 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.Type;
+import com.yahoo.text.Utf8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the slime envelope of the "mbus.slime" method, which is a slime object holding a set of
+ * header fields and a data field with the encoded routable. The routable payload is copied directly into the
+ * encoded envelope when sending, and is returned as a view of the received bytes when receiving, instead of
+ * being copied through an intermediate slime structure. The binary format is the same as that produced by
+ * {@link BinaryFormat}.
+ */
+final class SlimeEnvelope {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte EMPTY_DATA = typeAndMeta(Type.DATA.ID, 1);
+
+    private final Slime header;
+    private final ByteBuffer payload;
+
+    private SlimeEnvelope(Slime header, ByteBuffer payload) {
+        this.header = header;
+        this.payload = payload;
+    }
+
+    /** Returns the header fields of this envelope, where the payload field, if present, is empty */
+    Slime header() { return header; }
+
+    /** Returns a view of the payload of this envelope, which is empty if there is no payload */
+    ByteBuffer payload() { return payload; }
+
+    /**
+     * Encodes the given header slime object, with the given payload added as its last field.
+     *
+     * @param header the header fields, which must not contain the payload field
+     * @param payloadField the name of the payload field
+     * @param payload the routable payload
+     * @return the binary slime encoding of the envelope
+     */
+    static byte[] encode(Slime header, String payloadField, byte[] payload) {
+        header.get().setData(payloadField, EMPTY);
+        byte[] encodedHeader = BinaryFormat.encode(header);
+        int headerLength = encodedHeader.length - 1;
+        if (encodedHeader[headerLength] != EMPTY_DATA) {
+            throw new IllegalArgumentException("Payload field '" + payloadField + "' is already set in the header");
+        }
+        byte[] encoded = new byte[headerLength + sizeOfTypeAndSize(payload.length) + payload.length];
+        System.arraycopy(encodedHeader, 0, encoded, 0, headerLength);
+        int pos = writeTypeAndSize(encoded, headerLength, Type.DATA.ID, payload.length);
+        System.arraycopy(payload, 0, encoded, pos, payload.length);
+        return encoded;
+    }
+
+    /**
+     * Decodes an envelope from the given bytes. The payload refers to the given array, which must therefore not be
+     * changed while the payload is in use. Other data fields than the top level payload field are decoded normally.
+     *
+     * @param data array holding the binary slime encoding of the envelope
+     * @param offset the start of the envelope in the array
+     * @param length the length of the envelope
+     * @param payloadField the name of the payload field
+     * @return the decoded envelope
+     */
+    static SlimeEnvelope decode(byte[] data, int offset, int length, String payloadField) {
+        Scanner scanner = new Scanner(data, offset, length);
+        if ( ! scanner.findTopLevelData(payloadField)) {
+            return new SlimeEnvelope(BinaryFormat.decode(data, offset, length), ByteBuffer.wrap(EMPTY));
+        }
+        int headEnd = scanner.typePosition;
+        int tailStart = scanner.dataStart + scanner.dataLength;
+        int tailLength = offset + length - tailStart;
+        byte[] header = new byte[headEnd - offset + 1 + tailLength];
+        System.arraycopy(data, offset, header, 0, headEnd - offset);
+        header[headEnd - offset] = EMPTY_DATA;
+        System.arraycopy(data, tailStart, header, headEnd - offset + 1, tailLength);
+        return new SlimeEnvelope(BinaryFormat.decode(header), ByteBuffer.wrap(data, scanner.dataStart, scanner.dataLength));
+    }
+
+    private static byte typeAndMeta(int type, int meta) {
+        return (byte) ((meta << 3) | (type & 0x7));
+    }
+
+    private static int sizeOfCompressedLong(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int sizeOfTypeAndSize(long size) {
+        return (size <= 30) ? 1 : 1 + sizeOfCompressedLong(size);
+    }
+
+    private static int writeTypeAndSize(byte[] dst, int pos, int type, long size) {
+        if (size <= 30) {
+            dst[pos++] = typeAndMeta(type, (int) (size + 1));
+            return pos;
+        }
+        dst[pos++] = typeAndMeta(type, 0);
+        while ((size & ~0x7fL) != 0) {
+            dst[pos++] = (byte) ((size & 0x7f) | 0x80);
+            size >>>= 7;
+        }
+        dst[pos++] = (byte) size;
+        return pos;
+    }
+
+    /** Locates a data field in the top level object of binary slime data, without decoding it */
+    private static class Scanner {
+
+        private final byte[] data;
+        private final int end;
+        private int pos;
+
+        int typePosition = -1;
+        int dataStart = -1;
+        int dataLength = -1;
+
+        Scanner(byte[] data, int offset, int length) {
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        boolean findTopLevelData(String field) {
+            try {
+                long symbol = findSymbol(field);
+                if (symbol < 0) return false;
+                byte typeAndMeta = next();
+                if ((typeAndMeta & 0x7) != Type.OBJECT.ID) return false;
+                long fields = readSize((typeAndMeta & 0xff) >>> 3);
+                for (long i = 0; i < fields; i++) {
+                    long fieldSymbol = readCompressedLong();
+                    int valuePosition = pos;
+                    byte valueTypeAndMeta = next();
+                    if (fieldSymbol == symbol && (valueTypeAndMeta & 0x7) == Type.DATA.ID) {
+                        long size = readSize((valueTypeAndMeta & 0xff) >>> 3);
+                        if (size > end - pos) return false;
+                        typePosition = valuePosition;
+                        dataStart = pos;
+                        dataLength = (int) size;
+                        return true;
+                    }
+                    skipValue(valueTypeAndMeta);
+                }
+                return false;
+            } catch (IndexOutOfBoundsException e) {
+                return false; // Let the regular decoder report the problem
+            }
+        }
+
+        private long findSymbol(String field) {
+            byte[] name = Utf8.toBytes(field);
+            long symbols = readCompressedLong();
+            long found = -1;
+            for (long i = 0; i < symbols; i++) {
+                int length = (int) readCompressedLong();
+                if (found < 0 && length == name.length && regionEquals(name, pos)) {
+                    found = i;
+                }
+                skip(length);
+            }
+            return found;
+        }
+
+        private boolean regionEquals(byte[] name, int at) {
+            if (at + name.length > end) return false;
+            for (int i = 0; i < name.length; i++) {
+                if (data[at + i] != name[i]) return false;
+            }
+            return true;
+        }
+
+        private void skipValue(byte typeAndMeta) {
+            int meta = (typeAndMeta & 0xff) >>> 3;
+            switch (typeAndMeta & 0x7) {
+                case 0: case 1: // NIX and BOOL are stored in the type byte
+                    return;
+                case 2: case 3: // LONG and DOUBLE store the number of bytes in the meta bits
+                    skip(meta);
+                    return;
+                case 4: case 5: // STRING and DATA
+                    skip(readSize(meta));
+                    return;
+                case 6: { // ARRAY
+                    long entries = readSize(meta);
+                    for (long i = 0; i < entries; i++) {
+                        skipValue(next());
+                    }
+                    return;
+                }
+                default: { // OBJECT
+                    long fields = readSize(meta);
+                    for (long i = 0; i < fields; i++) {
+                        readCompressedLong();
+                        skipValue(next());
+                    }
+                }
+            }
+        }
+
+        private byte next() {
+            if (pos >= end) throw new IndexOutOfBoundsException("End of slime data at " + pos);
+            return data[pos++];
+        }
+
+        private void skip(long bytes) {
+            if (bytes > end - pos) throw new IndexOutOfBoundsException("End of slime data at " + pos);
+            pos += (int) bytes;
+        }
+
+        private long readSize(int meta) {
+            return (meta == 0) ? readCompressedLong() : (meta - 1);
+        }
+
+        private long readCompressedLong() {
+            long next = next();
+            long value = (next & 0x7f);
+            int shift = 7;
+            while ((next & 0x80) != 0) {
+                next = next();
+                value |= ((next & 0x7f) << shift);
+                shift += 7;
+            }
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveThrottlePolicyTestCase {
+
+    private final Route routeA = Route.parse("a");
+    private final Route routeB = Route.parse("b");
+
+    @Test
+    public void testWindowConvergesToCapacity() {
+        CustomTimer timer = new CustomTimer();
+        AdaptiveThrottlePolicy policy = new AdaptiveThrottlePolicy(timer);
+
+        double windowSize = getWindowSize(policy, timer, routeA, 100);
+        assertTrue("window size " + windowSize, windowSize >= 100 && windowSize <= 250);
+
+        windowSize = getWindowSize(policy, timer, routeA, 50);
+        assertTrue("window size " + windowSize, windowSize >= 50 && windowSize <= 130);
+
+        windowSize = getWindowSize(policy, timer, routeA, 400);
+        assertTrue("window size " + windowSize, windowSize >= 400 && windowSize <= 900);
+    }
+
+    @Test
+    public void testLatencyTarget() {
+        CustomTimer timer = new CustomTimer();
+        AdaptiveThrottlePolicy policy = new AdaptiveThrottlePolicy(timer).setLatencyTarget(3000);
+
+        // Latency is 1000 ms per 100 pending messages over 100, so the target is met with 300 pending.
+        double windowSize = getWindowSize(policy, timer, routeA, 100);
+        assertTrue("window size " + windowSize, windowSize >= 250 && windowSize <= 350);
+    }
+
+    @Test
+    public void testWindowsArePerDestination() {
+        CustomTimer timer = new CustomTimer();
+        AdaptiveThrottlePolicy policy = new AdaptiveThrottlePolicy(timer);
+
+        double windowSizeA = getWindowSize(policy, timer, routeA, 400);
+        assertTrue("window size " + windowSizeA, windowSizeA >= 400);
+        double windowSizeB = getWindowSize(policy, timer, routeB, 20);
+        assertTrue("window size " + windowSizeB, windowSizeB >= 20 && windowSizeB <= 60);
+
+        Message message = new SimpleMessage("foo").setRoute(routeB);
+        for (int i = 0; i < policy.getWindowSize(routeB); i++) {
+            assertTrue(policy.canSend(message, i));
+            policy.processMessage(message);
+            message = new SimpleMessage("foo").setRoute(routeB);
+        }
+        assertFalse(policy.canSend(message, policy.getPendingCount()));
+        assertTrue(policy.canSend(new SimpleMessage("foo").setRoute(routeA), policy.getPendingCount()));
+    }
+
+    @Test
+    public void testBackOffOnTransientErrors() {
+        CustomTimer timer = new CustomTimer();
+        AdaptiveThrottlePolicy policy = new AdaptiveThrottlePolicy(timer).setInitialWindowSize(100);
+
+        List<Message> pending = sendAll(policy, routeA);
+        assertEquals(100, pending.size());
+        timer.millis += 10;
+        for (Message message : pending) {
+            Reply reply = reply(message);
+            reply.addError(new Error(ErrorCode.SESSION_BUSY, "busy"));
+            policy.processReply(reply);
+        }
+        assertEquals(70, policy.getWindowSize(routeA), 1e-9);
+        assertEquals(0, policy.getPendingCount());
+    }
+
+    @Test
+    public void testMaxPendingCount() {
+        AdaptiveThrottlePolicy policy = new AdaptiveThrottlePolicy(new CustomTimer()).setMaxPendingCount(10);
+        assertTrue(policy.canSend(new SimpleMessage("foo").setRoute(routeA), 9));
+        assertFalse(policy.canSend(new SimpleMessage("foo").setRoute(routeA), 10));
+    }
+
+    /**
+     * Simulates a destination which processes up to capacity messages in parallel in 1 second, and queues the rest,
+     * and returns the window size after sending to it for a while.
+     */
+    private double getWindowSize(AdaptiveThrottlePolicy policy, CustomTimer timer, Route route, int capacity) {
+        for (int i = 0; i < 999; ++i) {
+            List<Message> pending = sendAll(policy, route);
+            long tripTime = (pending.size() <= capacity) ? 1000 : 1000L * pending.size() / capacity;
+            timer.millis += tripTime;
+            for (Message message : pending) {
+                policy.processReply(reply(message));
+            }
+        }
+        return policy.getWindowSize(route);
+    }
+
+    private static List<Message> sendAll(AdaptiveThrottlePolicy policy, Route route) {
+        List<Message> pending = new ArrayList<>();
+        Message message = new SimpleMessage("foo").setRoute(route);
+        while (policy.canSend(message, policy.getPendingCount())) {
+            policy.processMessage(message);
+            pending.add(message);
+            message = new SimpleMessage("foo").setRoute(route);
+        }
+        return pending;
+    }
+
+    private static Reply reply(Message message) {
+        Reply reply = new SimpleReply("bar");
+        reply.setContext(message.getContext());
+        return reply;
+    }
+
+}
@@ -0,0 +1,116 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.RPCNetworkParams;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.RetryTransientErrorsPolicy;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of end-to-end messages per second from a source session to a destination session over the rpc network,
+ * with a number of feeder threads and messenger threads. The destination fails a fraction of the messages the first
+ * time with a transient error, so these are resent by the messenger threads of the source.
+ */
+public class MessageBusBenchmark {
+
+    private static final double failureRate = 0.2;
+
+    private final AtomicLong replies = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /** Returns the number of successful replies per second */
+    private double run(Slobrok slobrok, int feederThreads, int messengerThreads, int seconds) throws InterruptedException {
+        TestServer src = newServer("src", slobrok, messengerThreads);
+        TestServer dst = newServer("dst", slobrok, messengerThreads);
+        DestinationSession[] session = new DestinationSession[1];
+        session[0] = dst.mb.createDestinationSession(new DestinationSessionParams()
+                .setName("session")
+                .setMessageHandler(message -> {
+                    Reply reply = new SimpleReply("ok");
+                    reply.swapState(message);
+                    if (message.getRetry() == 0 && Math.random() < failureRate) {
+                        reply.addError(new Error(ErrorCode.SESSION_BUSY, "Busy"));
+                    }
+                    session[0].reply(reply);
+                }));
+        src.waitSlobrok("dst/session", 1);
+
+        SourceSession source = src.mb.createSourceSession(new SourceSessionParams()
+                .setTimeout(600)
+                .setThrottlePolicy(new StaticThrottlePolicy().setMaxPendingCount(2000))
+                .setReplyHandler(reply -> {
+                    if (reply.hasErrors()) errors.incrementAndGet();
+                    else replies.incrementAndGet();
+                }));
+
+        Route route = Route.parse("dst/session");
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        List<Thread> feeders = new ArrayList<>();
+        for (int i = 0; i < feederThreads; i++) {
+            Thread feeder = new Thread(() -> {
+                try {
+                    while ( ! stopped.get()) {
+                        source.sendBlocking(new SimpleMessage("message").setRoute(route));
+                    }
+                }
+                catch (InterruptedException e) {
+                    // Done
+                }
+            });
+            feeder.start();
+            feeders.add(feeder);
+        }
+
+        Thread.sleep(1000); // warmup
+        long startReplies = replies.get();
+        long startTime = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        double rate = (replies.get() - startReplies) * 1e9 / (System.nanoTime() - startTime);
+
+        stopped.set(true);
+        for (Thread feeder : feeders) {
+            feeder.interrupt();
+            feeder.join();
+        }
+        source.destroy();
+        session[0].destroy();
+        src.destroy();
+        dst.destroy();
+        return rate;
+    }
+
+    private static TestServer newServer(String name, Slobrok slobrok, int messengerThreads) {
+        return new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol())
+                                                    .setRetryPolicy(new RetryTransientErrorsPolicy().setBaseDelay(0))
+                                                    .setMaxPendingCount(0)
+                                                    .setMessengerThreads(messengerThreads),
+                              new RPCNetworkParams().setIdentity(new Identity(name))
+                                                    .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+    }
+
+    public static void main(String[] args) throws InterruptedException, ListenFailedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Slobrok slobrok = new Slobrok();
+        for (int feederThreads : new int[] { 1, 4, 16 }) {
+            for (int messengerThreads : new int[] { 1, 4 }) {
+                MessageBusBenchmark benchmark = new MessageBusBenchmark();
+                double rate = benchmark.run(slobrok, feederThreads, messengerThreads, seconds);
+                System.out.printf("%2d feeder threads, %d messenger threads: %8.0f messages/s, %d failed replies\n",
+                                  feederThreads, messengerThreads, rate, benchmark.errors.get());
+            }
+        }
+        slobrok.stop();
+    }
+
+}
@@ -3,9 +3,16 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +102,57 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatTasksWithSameSequenceIdRunInOrder() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        int numSequences = 16, numTasks = 1000;
+        List<List<Integer>> runOrders = new ArrayList<>();
+        for (int i = 0; i < numSequences; i++) {
+            runOrders.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        for (int task = 0; task < numTasks; task++) {
+            for (int sequence = 0; sequence < numSequences; sequence++) {
+                List<Integer> runOrder = runOrders.get(sequence);
+                int taskNumber = task;
+                msn.enqueue(new RunnableTask(() -> runOrder.add(taskNumber)), sequence);
+            }
+        }
+        msn.sync();
+        for (List<Integer> runOrder : runOrders) {
+            assertEquals(numTasks, runOrder.size());
+            for (int i = 0; i < numTasks; i++) {
+                assertEquals(i, (int)runOrder.get(i));
+            }
+        }
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    public void requireThatTasksRunInAllThreads() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        for (int i = 0; i < 1000; i++) {
+            msn.enqueue(new RunnableTask(() -> threads.add(Thread.currentThread())), i);
+        }
+        msn.sync();
+        assertEquals(4, threads.size());
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    public void requireThatTasksAreDestroyedAfterDestroy() {
+        Messenger msn = new Messenger(2);
+        msn.start();
+        assertTrue(msn.destroy());
+        assertFalse(msn.destroy());
+        MyTask task = new MyTask();
+        msn.enqueue(task, 1);
+        assertEquals(1, task.runLatch.getCount());
+        assertEquals(0, task.destroyLatch.getCount());
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
@@ -106,6 +164,25 @@ public class MessengerTestCase {
         }
     }
 
+    private static class RunnableTask implements Messenger.Task {
+
+        final Runnable runnable;
+
+        RunnableTask(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void destroy() {
+
+        }
+    }
+
     private static class MyTask implements Messenger.Task {
 
         final CountDownLatch runLatch = new CountDownLatch(1);
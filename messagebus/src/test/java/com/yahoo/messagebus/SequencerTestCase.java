@@ -1,14 +1,33 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.RoutingTableSpec;
+import com.yahoo.messagebus.test.QueueAdapter;
+import com.yahoo.messagebus.test.Receptor;
 import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -71,6 +90,10 @@ public class SequencerTestCase {
         seq.handleMessage(src.createMessage(true, 3L));
         assertEquals(0, src.size());
         assertEquals(6, dst.size());
+        assertEquals(6, seq.getSequenceCount());
+        assertEquals(5, seq.getQueuedCount());
+        assertEquals(5, seq.getTotalQueuedCount());
+        assertEquals(1, seq.getMaxQueueDepth());
 
         dst.replyNext();
         dst.replyNext();
@@ -79,6 +102,8 @@ public class SequencerTestCase {
         dst.replyNext();
         assertEquals(5, src.size());
         assertEquals(6, dst.size());
+        assertEquals(6, seq.getSequenceCount());
+        assertEquals(0, seq.getQueuedCount());
 
         dst.replyNext();
         dst.replyNext();
@@ -102,6 +127,150 @@ public class SequencerTestCase {
         src.checkReply(true, 5);
         assertEquals(0, src.size());
         assertEquals(0, dst.size());
+        assertEquals(0, seq.getSequenceCount());
+        assertEquals(5, seq.getTotalQueuedCount());
+    }
+
+    @Test
+    public void testConcurrentSendersAndRepliers() throws InterruptedException {
+        int senderCount = 4, replierCount = 4, messagesPerSender = 5000, sequenceIds = 16;
+        BlockingQueue<Message> sent = new LinkedBlockingQueue<>();
+        Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        Map<String, Integer> lastSent = new ConcurrentHashMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch replies = new CountDownLatch(senderCount * messagesPerSender);
+        Sequencer seq = new Sequencer(msg -> {
+            StressMessage message = (StressMessage)msg;
+            if (inFlight.computeIfAbsent(message.seqId, id -> new AtomicInteger()).incrementAndGet() != 1) {
+                failure.compareAndSet(null, "Several messages in flight for sequence id " + message.seqId);
+            }
+            Integer last = lastSent.put(message.seqId + "/" + message.sender, message.counter);
+            if (last != null && last >= message.counter) {
+                failure.compareAndSet(null, "Message " + message.counter + " from sender " + message.sender +
+                                            " was sent after " + last + " for sequence id " + message.seqId);
+            }
+            sent.add(msg);
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < replierCount; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (true) {
+                        Message msg = sent.take();
+                        inFlight.get(msg.getSequenceId()).decrementAndGet();
+                        Reply reply = new EmptyReply();
+                        reply.swapState(msg);
+                        reply.setMessage(msg);
+                        reply.popHandler().handleReply(reply);
+                    }
+                }
+                catch (InterruptedException e) {
+                    // Done
+                }
+            }));
+        }
+        for (int i = 0; i < senderCount; i++) {
+            int sender = i;
+            threads.add(new Thread(() -> {
+                for (int counter = 0; counter < messagesPerSender; counter++) {
+                    Message msg = new StressMessage(counter % sequenceIds, sender, counter);
+                    msg.pushHandler(reply -> replies.countDown());
+                    seq.handleMessage(msg);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTrue(replies.await(60, TimeUnit.SECONDS));
+        threads.forEach(Thread::interrupt);
+
+        assertNull(failure.get());
+        assertEquals(0, seq.getSequenceCount());
+        assertEquals(0, seq.getQueuedCount());
+        assertTrue(seq.getMaxQueueDepth() >= 1);
+    }
+
+    @Test
+    public void testSourceSessionMetrics() throws ListenFailedException, InterruptedException {
+        RoutingTableSpec table = new RoutingTableSpec(SimpleProtocol.NAME);
+        table.addHop("dst", "test/dst/session", Arrays.asList("test/dst/session"));
+        table.addRoute("test", Arrays.asList("dst"));
+        Slobrok slobrok = new Slobrok();
+        TestServer src = new TestServer("test/src", table, slobrok, null);
+        TestServer dst = new TestServer("test/dst", table, slobrok, null);
+        try {
+            // A throttle policy which holds the lock of the session while it sends the message named "slow"
+            CountDownLatch sendingSlow = new CountDownLatch(1);
+            CountDownLatch releaseSlow = new CountDownLatch(1);
+            SourceSessionParams params = new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(new ThrottlePolicy() {
+                @Override
+                public boolean canSend(Message message, int pendingCount) {
+                    if (((SimpleMessage)message).getValue().equals("slow")) {
+                        sendingSlow.countDown();
+                        try {
+                            releaseSlow.await();
+                        }
+                        catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return true;
+                }
+                @Override
+                public void processMessage(Message message) { }
+                @Override
+                public void processReply(Reply reply) { }
+            });
+            Receptor replies = new Receptor();
+            SourceSession session = src.mb.createSourceSession(replies, params);
+            QueueAdapter received = new QueueAdapter();
+            DestinationSession destination = dst.mb.createDestinationSession("session", true, received);
+            src.waitSlobrok("test/dst/session", 1);
+
+            for (int i = 0; i < 3; i++) {
+                assertTrue(session.send(new MyMessage(true, 1L), "test").isAccepted());
+            }
+            assertEquals(1, session.getSequencer().getSequenceCount());
+            assertEquals(2, session.getSequencer().getQueuedCount());
+            assertEquals(2, session.getSequencer().getMaxQueueDepth());
+
+            Thread slow = new Thread(() -> session.send(new SimpleMessage("slow"), "test"));
+            slow.start();
+            assertTrue(sendingSlow.await(60, TimeUnit.SECONDS));
+            Thread contending = new Thread(() -> session.send(new SimpleMessage("contending"), "test"));
+            contending.start();
+            for (long end = System.currentTimeMillis() + 60_000; session.getLockContentionCount() == 0 && System.currentTimeMillis() < end; ) {
+                Thread.sleep(1);
+            }
+            assertTrue(session.getLockContentionCount() > 0);
+            releaseSlow.countDown();
+            slow.join();
+            contending.join();
+
+            // The first sequenced message and the two unsequenced ones are sent, the others when the previous is replied to
+            assertTrue(received.waitSize(3, 60));
+            for (int i = 0; i < 3; i++) {
+                destination.acknowledge((Message)received.dequeue());
+            }
+            for (int i = 0; i < 2; i++) {
+                assertTrue(received.waitSize(1, 60));
+                destination.acknowledge((Message)received.dequeue());
+            }
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(replies.getReply(60));
+            }
+            assertEquals(0, session.getSequencer().getSequenceCount());
+            assertEquals(0, session.getSequencer().getQueuedCount());
+            assertEquals(2, session.getSequencer().getTotalQueuedCount());
+
+            session.close();
+            destination.destroy();
+        }
+        finally {
+            dst.destroy();
+            src.destroy();
+            slobrok.stop();
+        }
     }
 
     @SuppressWarnings("serial")
@@ -183,5 +352,17 @@ public class SequencerTestCase {
         }
     }
 
+    private static class StressMessage extends MyMessage {
+
+        final int sender;
+        final int counter;
+
+        StressMessage(long seqId, int sender, int counter) {
+            super(true, seqId);
+            this.sender = sender;
+            this.counter = counter;
+        }
+    }
+
 }
 
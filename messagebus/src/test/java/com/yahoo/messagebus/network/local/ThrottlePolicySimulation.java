@@ -0,0 +1,216 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.local;
+
+import com.yahoo.messagebus.AdaptiveThrottlePolicy;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.DynamicThrottlePolicy;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.ThrottlePolicy;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Simulation of feeding through a source session to destinations with limited capacity, over the local network,
+ * which compares how throttle policies converge after the capacity of a destination changes, and the throughput
+ * and latency they give. Run with the phase length in seconds as the optional argument.
+ */
+public class ThrottlePolicySimulation {
+
+    private static final int workersPerDestination = 8;
+
+    private final LocalWire wire = new LocalWire();
+    private final List<Destination> destinations = new ArrayList<>();
+    private final Map<Message, Long> sendTimes = new ConcurrentHashMap<>();
+    private final List<Long> latencies = new ArrayList<>();
+    private final MessageBus sourceBus;
+    private final SourceSession source;
+    private final ThrottlePolicy policy;
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    private ThrottlePolicySimulation(ThrottlePolicy policy, int destinationCount) {
+        this.policy = policy;
+        for (int i = 0; i < destinationCount; i++) {
+            destinations.add(new Destination(wire));
+        }
+        sourceBus = newMessageBus(wire);
+        source = sourceBus.createSourceSession(new SourceSessionParams().setTimeout(600.0)
+                                                                        .setThrottlePolicy(policy)
+                                                                        .setReplyHandler(this::handleReply));
+    }
+
+    private void handleReply(Reply reply) {
+        Long sendTime = sendTimes.remove(reply.getMessage());
+        if (sendTime == null) return;
+        synchronized (latencies) {
+            latencies.add((System.nanoTime() - sendTime) / 1000_000);
+        }
+    }
+
+    /** Feeds to each destination from a separate thread, as fast as the throttle policy allows */
+    private List<Thread> startFeeding() {
+        List<Thread> feeders = new ArrayList<>();
+        for (Destination destination : destinations) {
+            Thread feeder = new Thread(() -> {
+                try {
+                    while ( ! stopped.get()) {
+                        Message message = new SimpleMessage("message").setRoute(destination.route);
+                        sendTimes.put(message, System.nanoTime());
+                        if ( ! source.sendBlocking(message).isAccepted()) {
+                            sendTimes.remove(message);
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    // Done
+                }
+            });
+            feeder.start();
+            feeders.add(feeder);
+        }
+        return feeders;
+    }
+
+    /** Runs one phase with the given service times of each destination, printing statistics each second */
+    private void runPhase(String name, int seconds, long ... serviceTimeMillis) throws InterruptedException {
+        System.out.println("  " + name + ": service times " + Arrays.toString(serviceTimeMillis) + " ms");
+        for (int i = 0; i < destinations.size(); i++) {
+            destinations.get(i).serviceTimeMillis = serviceTimeMillis[i];
+        }
+        long totalReplies = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            List<Long> sample;
+            synchronized (latencies) {
+                sample = new ArrayList<>(latencies);
+                latencies.clear();
+            }
+            totalReplies += sample.size();
+            sample.sort(Long::compare);
+            System.out.printf("    %3d s: %7d replies/s, p50 %5d ms, p99 %5d ms, pending %5d, windows %s\n",
+                              second, sample.size(), percentile(sample, 0.5), percentile(sample, 0.99),
+                              source.getPendingCount(), windowSizes());
+        }
+        System.out.printf("  %s: %.0f replies/s on average\n", name, (double)totalReplies / seconds);
+    }
+
+    private String windowSizes() {
+        List<String> sizes = new ArrayList<>();
+        if (policy instanceof AdaptiveThrottlePolicy) {
+            for (Destination destination : destinations) {
+                sizes.add(String.valueOf((int)((AdaptiveThrottlePolicy)policy).getWindowSize(destination.route)));
+            }
+        }
+        else if (policy instanceof DynamicThrottlePolicy) {
+            sizes.add(String.valueOf(((DynamicThrottlePolicy)policy).getMaxPendingCount()));
+        }
+        return sizes.toString();
+    }
+
+    private void destroy(List<Thread> feeders) throws InterruptedException {
+        stopped.set(true);
+        for (Thread feeder : feeders) {
+            feeder.interrupt();
+            feeder.join();
+        }
+        source.destroy();
+        sourceBus.destroy();
+        for (Destination destination : destinations) {
+            destination.destroy();
+        }
+    }
+
+    private static long percentile(List<Long> sortedValues, double percentile) {
+        if (sortedValues.isEmpty()) return 0;
+        return sortedValues.get(Math.min(sortedValues.size() - 1, (int)(percentile * sortedValues.size())));
+    }
+
+    private static MessageBus newMessageBus(LocalWire wire) {
+        return new MessageBus(new LocalNetwork(wire),
+                              new MessageBusParams().addProtocol(new SimpleProtocol()).setRetryPolicy(null));
+    }
+
+    private static void simulate(String name, Supplier<ThrottlePolicy> policy, int phaseSeconds) throws InterruptedException {
+        System.out.println(name + ":");
+        ThrottlePolicySimulation simulation = new ThrottlePolicySimulation(policy.get(), 2);
+        List<Thread> feeders = simulation.startFeeding();
+        simulation.runPhase("Equal destinations", phaseSeconds, 2, 2);
+        simulation.runPhase("Second destination slowed down", phaseSeconds, 2, 8);
+        simulation.runPhase("Second destination recovered", phaseSeconds, 2, 2);
+        simulation.destroy(feeders);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int phaseSeconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        simulate("DynamicThrottlePolicy", DynamicThrottlePolicy::new, phaseSeconds);
+        simulate("AdaptiveThrottlePolicy", AdaptiveThrottlePolicy::new, phaseSeconds);
+        simulate("AdaptiveThrottlePolicy with 50 ms latency target",
+                 () -> new AdaptiveThrottlePolicy().setLatencyTarget(50), phaseSeconds);
+        System.exit(0); // The executors of the local networks are not stopped when they are shut down
+    }
+
+    /** A destination which handles messages with a fixed number of workers, each using the service time per message */
+    private static class Destination {
+
+        final MessageBus bus;
+        final DestinationSession session;
+        final Route route;
+        final BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+        final List<Thread> workers = new ArrayList<>();
+        volatile long serviceTimeMillis = 1;
+
+        Destination(LocalWire wire) {
+            bus = newMessageBus(wire);
+            session = bus.createDestinationSession(new DestinationSessionParams().setMessageHandler(queue::add));
+            route = Route.parse(session.getConnectionSpec());
+            for (int i = 0; i < workersPerDestination; i++) {
+                Thread worker = new Thread(this::work);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Message message = queue.take();
+                    Thread.sleep(serviceTimeMillis);
+                    Reply reply = new SimpleReply("ok");
+                    reply.swapState(message);
+                    session.reply(reply);
+                }
+            }
+            catch (InterruptedException e) {
+                // Done
+            }
+        }
+
+        void destroy() {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            session.destroy();
+            bus.destroy();
+        }
+
+    }
+
+}
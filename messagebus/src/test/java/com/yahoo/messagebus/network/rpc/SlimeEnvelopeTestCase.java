@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlimeEnvelopeTestCase {
+
+    private static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) (i * 7 + 3);
+        }
+        return payload;
+    }
+
+    private static Slime header() {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setString("version", "6.1.2");
+        root.setLong("retry", 3);
+        Cursor errors = root.setArray("errors");
+        Cursor error = errors.addObject();
+        error.setLong("code", 42);
+        error.setString("msg", "nested fields with the payload name are kept");
+        return slime;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void requireThatEncodingMatchesBinaryFormat() {
+        for (int size : new int[] { 0, 1, 30, 31, 200, 10000, 300000 }) {
+            Slime expected = header();
+            expected.get().setData("msg", payload(size));
+            assertArrayEquals(BinaryFormat.encode(expected), SlimeEnvelope.encode(header(), "msg", payload(size)));
+        }
+    }
+
+    @Test
+    public void requireThatPayloadIsDecodedInPlace() {
+        byte[] encoded = SlimeEnvelope.encode(header(), "msg", payload(10000));
+        byte[] framed = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, framed, 5, encoded.length);
+
+        SlimeEnvelope envelope = SlimeEnvelope.decode(framed, 5, encoded.length, "msg");
+        assertSame(framed, envelope.payload().array());
+        assertArrayEquals(payload(10000), bytes(envelope.payload()));
+        assertEquals("6.1.2", envelope.header().get().field("version").asString());
+        assertEquals(3, envelope.header().get().field("retry").asLong());
+        assertEquals(42, envelope.header().get().field("errors").entry(0).field("code").asLong());
+        assertEquals("nested fields with the payload name are kept",
+                     envelope.header().get().field("errors").entry(0).field("msg").asString());
+        assertEquals(0, envelope.header().get().field("msg").asData().length);
+    }
+
+    @Test
+    public void requireThatPayloadCanBeDecodedFromAnyPosition() {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setData("msg", payload(500));
+        root.setDouble("retrydelay", 1.5);
+        root.setBool("useretry", true);
+        root.setString("trace", "tail");
+
+        byte[] encoded = BinaryFormat.encode(slime);
+        SlimeEnvelope envelope = SlimeEnvelope.decode(encoded, 0, encoded.length, "msg");
+        assertArrayEquals(payload(500), bytes(envelope.payload()));
+        assertEquals(1.5, envelope.header().get().field("retrydelay").asDouble(), 0.0);
+        assertTrue(envelope.header().get().field("useretry").asBool());
+        assertEquals("tail", envelope.header().get().field("trace").asString());
+    }
+
+    @Test
+    public void requireThatMissingPayloadGivesEmptyView() {
+        byte[] encoded = BinaryFormat.encode(header());
+        SlimeEnvelope envelope = SlimeEnvelope.decode(encoded, 0, encoded.length, "msg");
+        assertFalse(envelope.payload().hasRemaining());
+        assertEquals("6.1.2", envelope.header().get().field("version").asString());
+    }
+
+}
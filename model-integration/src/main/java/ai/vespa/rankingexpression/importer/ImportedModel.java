@@ -67,6 +67,10 @@ public class ImportedModel implements ImportedMlModel {
         return Optional.ofNullable(inputs.get(input)).map(TensorType::toString);
     }
 
+    /** Returns an immutable map of the types of the inputs of this, represented as tensor type strings */
+    @Override
+    public Map<String, String> inputTypeSpecs() { return asStrings(inputs); }
+
     /**
      * Returns an immutable map of the small constants of this, represented as strings on the standard tensor form.
      * These should have sizes up to a few kb at most, and correspond to constant values given in the source model.
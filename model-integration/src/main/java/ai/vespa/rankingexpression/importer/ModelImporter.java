@@ -44,6 +44,10 @@ public abstract class ModelImporter implements MlModelImporter {
     /** Imports the given model */
     public abstract ImportedModel importModel(String modelName, String modelPath);
 
+    /** Returns the version of the conversion of this, which is increased when it changes which models are produced */
+    @Override
+    public int version() { return 1; }
+
     /**
      * Takes an IntermediateGraph and converts it to a ImportedModel containing
      * the actual Vespa ranking expressions.
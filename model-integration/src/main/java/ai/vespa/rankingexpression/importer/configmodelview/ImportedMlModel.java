@@ -15,6 +15,7 @@ public interface ImportedMlModel {
     String name();
     String source();
     Optional<String> inputTypeSpec(String input);
+    Map<String, String> inputTypeSpecs();
     Map<String, String> smallConstants();
     Map<String, String> largeConstants();
     Map<String, String> functions();
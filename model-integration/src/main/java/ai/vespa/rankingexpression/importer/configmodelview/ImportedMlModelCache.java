@@ -0,0 +1,259 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.rankingexpression.importer.configmodelview;
+
+import com.yahoo.slime.ArrayTraverser;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.yolean.Exceptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of imported models, keyed by a hash of the content of the model files, the Vespa version
+ * and the importer version, such that a model is only converted once by each Vespa and importer version, across
+ * deployments and sessions. The cached models are stored as files in a directory, where the least recently
+ * used are deleted when there are more than a maximum number of them.
+ *
+ * This is thread safe.
+ */
+public class ImportedMlModelCache {
+
+    private static final Logger log = Logger.getLogger(ImportedMlModelCache.class.getName());
+
+    /** The version of the format of the stored models, which is increased when this format is changed */
+    private static final int formatVersion = 1;
+
+    private static final String suffix = ".model";
+
+    private final File directory;
+    private final String vespaVersion;
+    private final int maxModels;
+
+    /**
+     * Creates a cache of models imported by the given Vespa version, which is part of the key of each model,
+     * such that changes to the importers are picked up even if their version is not increased
+     */
+    public ImportedMlModelCache(File directory, String vespaVersion) {
+        this(directory, vespaVersion, 100);
+    }
+
+    public ImportedMlModelCache(File directory, String vespaVersion, int maxModels) {
+        this.directory = directory;
+        this.vespaVersion = vespaVersion;
+        this.maxModels = maxModels;
+    }
+
+    /** Returns the model at the given path as imported by the given importer, from this cache if it is present */
+    public ImportedMlModel importModel(String modelName, File modelPath, MlModelImporter importer) {
+        String key;
+        try {
+            key = key(modelName, modelPath, importer);
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "Could not hash " + modelPath + ", importing it without caching: " + Exceptions.toMessageString(e));
+            return importer.importModel(modelName, modelPath);
+        }
+
+        File file = new File(directory, key + suffix);
+        Optional<ImportedMlModel> cached = read(file, modelPath);
+        if (cached.isPresent()) return cached.get();
+
+        ImportedMlModel model = importer.importModel(modelName, modelPath);
+        write(model, file);
+        return model;
+    }
+
+    private Optional<ImportedMlModel> read(File file, File modelPath) {
+        if ( ! file.exists()) return Optional.empty();
+        try {
+            Inspector root = BinaryFormat.decode(Files.readAllBytes(file.toPath())).get();
+            if ( ! root.field("name").valid()) throw new IllegalArgumentException("Not a stored model");
+            Files.setLastModifiedTime(file.toPath(), FileTime.from(Instant.now()));
+            return Optional.of(new CachedMlModel(root, modelPath.toString()));
+        }
+        catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Could not read cached model " + file + ", importing " + modelPath + " again: " +
+                                   Exceptions.toMessageString(e));
+            file.delete();
+            return Optional.empty();
+        }
+    }
+
+    private void write(ImportedMlModel model, File file) {
+        try {
+            Files.createDirectories(directory.toPath());
+            File tmpFile = new File(directory, file.getName() + ".tmp." + Thread.currentThread().getId());
+            Files.write(tmpFile.toPath(), BinaryFormat.encode(toSlime(model)));
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "Could not cache model " + model.name() + " in " + file + ": " + Exceptions.toMessageString(e));
+        }
+    }
+
+    /** Deletes the least recently used models until there are no more than maxModels of them */
+    private synchronized void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(suffix));
+        if (files == null || files.length <= maxModels) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - maxModels; i++)
+            files[i].delete();
+    }
+
+    /** Returns a hash of the name and content of all the files of the given model, and the Vespa and importer version */
+    private String key(String modelName, File modelPath, MlModelImporter importer) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update((formatVersion + "\n" + vespaVersion + "\n" + importer.getClass().getName() + "\n" +
+                       importer.version() + "\n" + modelName + "\n").getBytes(StandardCharsets.UTF_8));
+        List<File> files = new ArrayList<>();
+        addFilesRecursively(modelPath, files);
+        byte[] buffer = new byte[65536];
+        for (File file : files) {
+            String relativePath = modelPath.toPath().relativize(file.toPath()).toString();
+            digest.update((relativePath + "\n" + file.length() + "\n").getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                for (int read; (read = in.read(buffer)) > 0; )
+                    digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte value : digest.digest())
+            key.append(String.format("%02x", value));
+        return key.toString();
+    }
+
+    private static void addFilesRecursively(File path, List<File> files) {
+        if (path.isFile()) {
+            files.add(path);
+            return;
+        }
+        File[] children = path.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (File child : children)
+            addFilesRecursively(child, files);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Slime toSlime(ImportedMlModel model) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setString("name", model.name());
+        toSlime(model.inputTypeSpecs(), root.setObject("inputs"));
+        toSlime(model.smallConstants(), root.setObject("smallConstants"));
+        toSlime(model.largeConstants(), root.setObject("largeConstants"));
+        toSlime(model.functions(), root.setObject("functions"));
+        Cursor outputs = root.setArray("outputs");
+        for (ImportedMlFunction function : model.outputExpressions()) {
+            Cursor output = outputs.addObject();
+            output.setString("name", function.name());
+            Cursor arguments = output.setArray("arguments");
+            function.arguments().forEach(arguments::addString);
+            toSlime(function.argumentTypes(), output.setObject("argumentTypes"));
+            output.setString("expression", function.expression());
+            function.returnType().ifPresent(type -> output.setString("returnType", type));
+        }
+        return slime;
+    }
+
+    private static void toSlime(Map<String, String> map, Cursor object) {
+        map.forEach(object::setString);
+    }
+
+    private static Map<String, String> fromSlime(Inspector object) {
+        Map<String, String> map = new HashMap<>();
+        object.traverse((String name, Inspector value) -> map.put(name, value.asString()));
+        return Collections.unmodifiableMap(map);
+    }
+
+    /** A model read from this cache */
+    private static class CachedMlModel implements ImportedMlModel {
+
+        private final String name;
+        private final String source;
+        private final Map<String, String> inputs;
+        private final Map<String, String> smallConstants;
+        private final Map<String, String> largeConstants;
+        private final Map<String, String> functions;
+        private final List<ImportedMlFunction> outputExpressions;
+
+        CachedMlModel(Inspector root, String source) {
+            this.name = root.field("name").asString();
+            this.source = source;
+            this.inputs = fromSlime(root.field("inputs"));
+            this.smallConstants = fromSlime(root.field("smallConstants"));
+            this.largeConstants = fromSlime(root.field("largeConstants"));
+            this.functions = fromSlime(root.field("functions"));
+            List<ImportedMlFunction> outputExpressions = new ArrayList<>();
+            root.field("outputs").traverse((ArrayTraverser) (index, output) -> {
+                List<String> arguments = new ArrayList<>();
+                output.field("arguments").traverse((ArrayTraverser) (i, argument) -> arguments.add(argument.asString()));
+                Inspector returnType = output.field("returnType");
+                outputExpressions.add(new ImportedMlFunction(output.field("name").asString(),
+                                                             arguments,
+                                                             output.field("expression").asString(),
+                                                             fromSlime(output.field("argumentTypes")),
+                                                             returnType.valid() ? Optional.of(returnType.asString())
+                                                                                : Optional.empty()));
+            });
+            this.outputExpressions = Collections.unmodifiableList(outputExpressions);
+        }
+
+        @Override
+        public String name() { return name; }
+
+        @Override
+        public String source() { return source; }
+
+        @Override
+        public Optional<String> inputTypeSpec(String input) { return Optional.ofNullable(inputs.get(input)); }
+
+        @Override
+        public Map<String, String> inputTypeSpecs() { return inputs; }
+
+        @Override
+        public Map<String, String> smallConstants() { return smallConstants; }
+
+        @Override
+        public Map<String, String> largeConstants() { return largeConstants; }
+
+        @Override
+        public Map<String, String> functions() { return functions; }
+
+        @Override
+        public List<ImportedMlFunction> outputExpressions() { return outputExpressions; }
+
+    }
+
+}
@@ -29,10 +29,19 @@ public class ImportedMlModels {
     }
 
     public ImportedMlModels(File modelsDirectory, Collection<MlModelImporter> importers) {
+        this(modelsDirectory, importers, Optional.empty());
+    }
+
+    /**
+     * Imports all models in the given directory
+     *
+     * @param cache the cache to read models from, and store them in, instead of importing them every time, if any
+     */
+    public ImportedMlModels(File modelsDirectory, Collection<MlModelImporter> importers, Optional<ImportedMlModelCache> cache) {
         Map<String, ImportedMlModel> models = new HashMap<>();
 
         // Find all subdirectories recursively which contains a model we can read
-        importRecursively(modelsDirectory, models, importers);
+        importRecursively(modelsDirectory, models, importers, cache);
         importedModels = Collections.unmodifiableMap(models);
     }
 
@@ -55,7 +64,8 @@ public class ImportedMlModels {
 
     private static void importRecursively(File dir,
                                           Map<String, ImportedMlModel> models,
-                                          Collection<MlModelImporter> importers) {
+                                          Collection<MlModelImporter> importers,
+                                          Optional<ImportedMlModelCache> cache) {
         if ( ! dir.isDirectory()) return;
 
         Arrays.stream(dir.listFiles()).sorted().forEach(child -> {
@@ -66,10 +76,11 @@ public class ImportedMlModels {
                 if (existing != null)
                     throw new IllegalArgumentException("The models in " + child + " and " + existing.source() +
                                                        " both resolve to the model name '" + name + "'");
-                models.put(name, importer.get().importModel(name, child));
+                models.put(name, cache.isPresent() ? cache.get().importModel(name, child, importer.get())
+                                                   : importer.get().importModel(name, child));
             }
             else {
-                importRecursively(child, models, importers);
+                importRecursively(child, models, importers, cache);
             }
         });
     }
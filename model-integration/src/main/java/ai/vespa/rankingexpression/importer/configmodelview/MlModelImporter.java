@@ -13,4 +13,10 @@ public interface MlModelImporter {
 
     ImportedMlModel importModel(String modelName, File modelPath);
 
+    /**
+     * Returns the version of the conversion done by this importer. This must be increased whenever
+     * a change to the importer causes it to produce a different model from the same model file.
+     */
+    default int version() { return 0; }
+
 }
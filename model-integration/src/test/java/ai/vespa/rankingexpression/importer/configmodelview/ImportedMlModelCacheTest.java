@@ -0,0 +1,101 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.rankingexpression.importer.configmodelview;
+
+import ai.vespa.rankingexpression.importer.onnx.OnnxImporter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class ImportedMlModelCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void unchanged_models_are_imported_once() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        File modelFile = new File(temporaryFolder.newFolder("models"), "mnist_softmax.onnx");
+        Files.copy(new File("src/test/models/onnx/mnist_softmax/mnist_softmax.onnx").toPath(), modelFile.toPath());
+
+        CountingImporter importer = new CountingImporter(1);
+        ImportedMlModel imported = new ImportedMlModelCache(cacheDirectory, "7.1.0").importModel("test", modelFile, importer);
+        ImportedMlModel cached = new ImportedMlModelCache(cacheDirectory, "7.1.0").importModel("test", modelFile, importer);
+        assertEquals(1, importer.imports);
+        assertNotSame(imported, cached);
+        assertEquals(modelFile.toString(), cached.source());
+        assertEquals(imported.name(), cached.name());
+        assertEquals(imported.inputTypeSpecs(), cached.inputTypeSpecs());
+        assertEquals(imported.inputTypeSpec("Placeholder"), cached.inputTypeSpec("Placeholder"));
+        assertEquals(imported.smallConstants(), cached.smallConstants());
+        assertEquals(imported.largeConstants(), cached.largeConstants());
+        assertEquals(imported.functions(), cached.functions());
+        assertEquals(imported.outputExpressions().size(), cached.outputExpressions().size());
+        for (int i = 0; i < imported.outputExpressions().size(); i++) {
+            ImportedMlFunction expected = imported.outputExpressions().get(i);
+            ImportedMlFunction actual = cached.outputExpressions().get(i);
+            assertEquals(expected.name(), actual.name());
+            assertEquals(expected.arguments(), actual.arguments());
+            assertEquals(expected.argumentTypes(), actual.argumentTypes());
+            assertEquals(expected.expression(), actual.expression());
+            assertEquals(expected.returnType(), actual.returnType());
+        }
+
+        CountingImporter newVersion = new CountingImporter(2);
+        new ImportedMlModelCache(cacheDirectory, "7.1.0").importModel("test", modelFile, newVersion);
+        assertEquals("A new importer version imports again", 1, newVersion.imports);
+
+        new ImportedMlModelCache(cacheDirectory, "7.2.0").importModel("test", modelFile, importer);
+        assertEquals("A new Vespa version imports again", 2, importer.imports);
+
+        Files.write(modelFile.toPath(), new byte[] { 1 }, StandardOpenOption.APPEND);
+        try {
+            new ImportedMlModelCache(cacheDirectory, "7.1.0").importModel("test", modelFile, importer);
+        }
+        catch (RuntimeException e) { // not a valid model any more
+        }
+        assertEquals("A changed model is imported again", 3, importer.imports);
+    }
+
+    @Test
+    public void least_recently_used_models_are_evicted() throws IOException {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        File modelFile = new File("src/test/models/onnx/mnist_softmax/mnist_softmax.onnx");
+        ImportedMlModelCache cache = new ImportedMlModelCache(cacheDirectory, "7.1.0", 2);
+        for (int version = 1; version <= 3; version++)
+            cache.importModel("test", modelFile, new CountingImporter(version));
+        assertEquals(2, cacheDirectory.listFiles().length);
+    }
+
+    private static class CountingImporter implements MlModelImporter {
+
+        private final OnnxImporter importer = new OnnxImporter();
+        private final int version;
+        private int imports = 0;
+
+        CountingImporter(int version) {
+            this.version = version;
+        }
+
+        @Override
+        public boolean canImport(String modelPath) { return importer.canImport(modelPath); }
+
+        @Override
+        public ImportedMlModel importModel(String modelName, File modelPath) {
+            imports++;
+            return importer.importModel(modelName, modelPath);
+        }
+
+        @Override
+        public int version() { return version; }
+
+    }
+
+}
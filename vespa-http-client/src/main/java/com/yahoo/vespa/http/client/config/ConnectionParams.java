@@ -43,6 +43,8 @@ public final class ConnectionParams {
         private int traceLevel = 0;
         private int traceEveryXOperation = 0;
         private boolean printTraceToStdErr = true;
+        private boolean useHttp2 = false;
+        private int maxConcurrentStreamsPerConnection = 16;
 
         /**
          * Sets the SSLContext for the connection to the gateway when SSL is enabled for Endpoint.
@@ -217,6 +219,36 @@ public final class ConnectionParams {
             return this;
         }
 
+        /**
+         * Set whether to feed over HTTP/2. All the persistent connections to an endpoint are then multiplexed as
+         * concurrent streams over a single HTTP/2 connection, which makes it cheap to use many of them. If the
+         * gateway does not support HTTP/2, HTTP/1.1 is used. This requires Java 11 or later, and hostnames are
+         * verified by the JDK, so only the default hostname verifier can be used.
+         *
+         * @param useHttp2 true to feed over HTTP/2
+         * @return pointer to builder.
+         */
+        public Builder setUseHttp2(boolean useHttp2) {
+            this.useHttp2 = useHttp2;
+            return this;
+        }
+
+        /**
+         * Set the max number of requests each persistent connection may have in flight when feeding over HTTP/2.
+         * Each of these is a stream of the HTTP/2 connection to the endpoint, so the connection has at most this times
+         * the number of persistent connections per endpoint streams open. Default is 16.
+         *
+         * @param maxConcurrentStreamsPerConnection max requests in flight per persistent connection
+         * @return pointer to builder.
+         */
+        public Builder setMaxConcurrentStreamsPerConnection(int maxConcurrentStreamsPerConnection) {
+            if (maxConcurrentStreamsPerConnection < 1) {
+                throw new IllegalArgumentException("Max concurrent streams per connection must be positive, but was "
+                                                   + maxConcurrentStreamsPerConnection);
+            }
+            this.maxConcurrentStreamsPerConnection = maxConcurrentStreamsPerConnection;
+            return this;
+        }
 
         public ConnectionParams build() {
             return new ConnectionParams(
@@ -233,7 +265,9 @@ public final class ConnectionParams {
                     dryRun,
                     traceLevel,
                     traceEveryXOperation,
-                    printTraceToStdErr);
+                    printTraceToStdErr,
+                    useHttp2,
+                    maxConcurrentStreamsPerConnection);
         }
 
         public int getNumPersistentConnectionsPerEndpoint() {
@@ -262,6 +296,14 @@ public final class ConnectionParams {
             return printTraceToStdErr;
         }
 
+        public boolean getUseHttp2() {
+            return useHttp2;
+        }
+
+        public int getMaxConcurrentStreamsPerConnection() {
+            return maxConcurrentStreamsPerConnection;
+        }
+
         public int getProxyPort() {
             return proxyPort;
         }
@@ -288,6 +330,8 @@ public final class ConnectionParams {
     private final int traceLevel;
     private final int traceEveryXOperation;
     private final boolean printTraceToStdErr;
+    private final boolean useHttp2;
+    private final int maxConcurrentStreamsPerConnection;
 
     private ConnectionParams(
             SSLContext sslContext,
@@ -303,7 +347,9 @@ public final class ConnectionParams {
             boolean dryRun,
             int traceLevel,
             int traceEveryXOperation,
-            boolean printTraceToStdErr) {
+            boolean printTraceToStdErr,
+            boolean useHttp2,
+            int maxConcurrentStreamsPerConnection) {
         this.sslContext = sslContext;
         this.hostnameVerifier = hostnameVerifier;
         this.headers.putAll(headers);
@@ -318,6 +364,8 @@ public final class ConnectionParams {
         this.traceLevel = traceLevel;
         this.traceEveryXOperation = traceEveryXOperation;
         this.printTraceToStdErr = printTraceToStdErr;
+        this.useHttp2 = useHttp2;
+        this.maxConcurrentStreamsPerConnection = maxConcurrentStreamsPerConnection;
     }
 
     @JsonIgnore
@@ -378,6 +426,14 @@ public final class ConnectionParams {
         return printTraceToStdErr;
     }
 
+    public boolean getUseHttp2() {
+        return useHttp2;
+    }
+
+    public int getMaxConcurrentStreamsPerConnection() {
+        return maxConcurrentStreamsPerConnection;
+    }
+
     /**
      * A header provider that provides a header value. {@link #getHeaderValue()} is called each time a new HTTP request
      * is constructed by {@link com.yahoo.vespa.http.client.FeedClient}.
@@ -23,6 +23,8 @@ public final class FeedParams {
 
     public boolean getSilentUpgrade() { return silentUpgrade; }
 
+    public boolean getBulk() { return bulk; }
+
     /**
      * Enumeration of data formats that are acceptable by the
      * {@link com.yahoo.vespa.http.client.FeedClient} methods.
@@ -47,6 +49,7 @@ public final class FeedParams {
         private boolean denyIfBusyV3 = true;
         private long maxSleepTimeMs = 3000;
         private boolean silentUpgrade = true;
+        private boolean bulk = false;
 
         /**
          * Make server not throw 4xx/5xx for situations that are normal during upgrade as this can esily mask
@@ -73,6 +76,18 @@ public final class FeedParams {
             return this;
         }
 
+        /**
+         * If this is set to true, the gateway will parse the operations of each request in parallel, ahead of
+         * sending them in the order they are fed. Replies are returned as operations complete, as when this is
+         * false. Only active for V3 protocol.
+         * @param value true to have the gateway feed in bulk mode
+         * @return this, for chaining
+         */
+        public Builder setBulk(boolean value) {
+            bulk = value;
+            return this;
+        }
+
         /**
          * If this is set to false, the gateway will block threads until messagebus can send the message.
          * If true, the gateway will exit and fail the request early if there are many threads already
@@ -223,7 +238,7 @@ public final class FeedParams {
             return new FeedParams(
                     dataFormat, serverTimeout, clientTimeout, route,
                     maxChunkSizeBytes, maxInFlightRequests, localQueueTimeOut, priority,
-                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade);
+                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade, bulk);
         }
 
         public long getClientTimeout(TimeUnit unit) {
@@ -262,12 +277,13 @@ public final class FeedParams {
     private final boolean denyIfBusyV3;
     private final long maxSleepTimeMs;
     private final boolean silentUpgrade;
+    private final boolean bulk;
 
 
     private FeedParams(DataFormat dataFormat, long serverTimeout, long clientTimeout, String route,
                        int maxChunkSizeBytes, final int maxInFlightRequests,
                        long localQueueTimeOut, String priority, boolean denyIfBusyV3, long maxSleepTimeMs,
-                       boolean silentUpgrade) {
+                       boolean silentUpgrade, boolean bulk) {
         this.dataFormat = dataFormat;
         this.serverTimeoutMillis = serverTimeout;
         this.clientTimeoutMillis = clientTimeout;
@@ -279,6 +295,7 @@ public final class FeedParams {
         this.denyIfBusyV3 = denyIfBusyV3;
         this.maxSleepTimeMs = maxSleepTimeMs;
         this.silentUpgrade = silentUpgrade;
+        this.bulk = bulk;
     }
 
     public DataFormat getDataFormat() {
@@ -15,6 +15,7 @@ import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -64,10 +65,17 @@ public class ClusterConnection implements AutoCloseable {
                     timeoutExecutor,
                     feedParams.getServerTimeout(TimeUnit.MILLISECONDS)
                             + feedParams.getClientTimeout(TimeUnit.MILLISECONDS));
+            GatewayConnectionFactory connectionFactory = connectionParams.getUseHttp2() && ! connectionParams.isDryRun()
+                    ? createHttp2ConnectionFactory(endpoint, connectionParams)
+                    : null;
             for (int i = 0; i < connectionParams.getNumPersistentConnectionsPerEndpoint(); i++) {
                 GatewayConnection gatewayConnection;
                 if (connectionParams.isDryRun()) {
                     gatewayConnection = new DryRunGatewayConnection(endpoint);
+                } else if (connectionFactory != null) {
+                    gatewayConnection = connectionFactory.createConnection(feedParams,
+                                                                           cluster.getRoute(),
+                                                                           operationProcessor.getClientId());
                 } else {
                     gatewayConnection = new ApacheGatewayConnection(
                             endpoint,
@@ -97,6 +105,22 @@ public class ClusterConnection implements AutoCloseable {
         }
     }
 
+    /** The HTTP/2 connections are built on the Java 11 HTTP client, so this must not be linked statically */
+    private static GatewayConnectionFactory createHttp2ConnectionFactory(Endpoint endpoint, ConnectionParams connectionParams) {
+        try {
+            return (GatewayConnectionFactory) Class.forName(ClusterConnection.class.getPackage().getName() + ".Http2GatewayConnectionFactory")
+                                                   .getDeclaredConstructor(Endpoint.class, ConnectionParams.class)
+                                                   .newInstance(endpoint, connectionParams);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed creating HTTP/2 connections to " + endpoint, e.getCause());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Feeding over HTTP/2 requires Java 11 or later", e);
+        }
+    }
+
     public int getClusterId() {
         return clusterId;
     }
@@ -3,120 +3,181 @@ package com.yahoo.vespa.http.client.core.communication;
 
 import com.yahoo.vespa.http.client.core.Document;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Document queue that only gives you document operations on documents for which there are no
  * already in flight operations for.
  *
+ * Documents are passed through a lock-free ring buffer holding at most the max size of the queue. Documents
+ * put back by the IO threads themselves are never blocked, and go to an unbounded overflow queue when the ring
+ * is full. The lock is only taken by threads which must wait for room or documents, and by threads waking them.
+ *
  * @author dybis
  */
 class DocumentQueue {
 
-    private final Deque<Document> queue;
-    private final int maxSize;
-    private boolean closed = false;
+    private final RingBuffer<Document> ring;
+    private final Queue<Document> overflow = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private volatile boolean closed = false;
 
     DocumentQueue(int maxSize) {
-        this.maxSize = maxSize;
-        this.queue = new ArrayDeque<>(maxSize);
+        this.ring = new RingBuffer<>(Math.max(1, maxSize));
     }
 
     List<Document> removeAllDocuments() {
-        synchronized (queue) {
-            List<Document> allDocs = new ArrayList<>();
-            while (!queue.isEmpty()) {
-                allDocs.add(queue.poll());
-            }
-            queue.notifyAll();
-            return allDocs;
+        List<Document> allDocs = new ArrayList<>();
+        for (Document document = poll(); document != null; document = poll()) {
+            allDocs.add(document);
         }
+        signalAll(notFull);
+        return allDocs;
     }
 
     void put(Document document, boolean calledFromIoThreadGroup) throws InterruptedException {
         document.resetQueueTime();
-        synchronized (queue) {
-            while (!closed && (queue.size() >= maxSize) && !calledFromIoThreadGroup) {
-                queue.wait();
+        if (closed) {
+            throw new IllegalStateException("Cannot add elements to closed queue.");
+        }
+        if (calledFromIoThreadGroup) {
+            if ( ! ring.offer(document)) {
+                overflow.add(document);
+            }
+        }
+        else {
+            while ( ! ring.offer(document)) {
+                awaitNotFull();
+            }
+        }
+        if (waitingConsumers.get() > 0) {
+            signal(notEmpty);
+        }
+    }
+
+    private void awaitNotFull() throws InterruptedException {
+        lock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            while ( ! closed && ring.isFull()) {
+                notFull.await();
             }
             if (closed) {
                 throw new IllegalStateException("Cannot add elements to closed queue.");
             }
-            queue.add(document);
-            queue.notifyAll();
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
         }
     }
 
     Document poll(long timeout, TimeUnit unit) throws InterruptedException {
-        synchronized (queue) {
-            long remainingToWait = unit.toMillis(timeout);
-            while (queue.isEmpty()) {
-                long startTime = System.currentTimeMillis();
-                queue.wait(remainingToWait);
-                remainingToWait -= (System.currentTimeMillis() - startTime);
-                if (remainingToWait <= 0) {
-                    break;
-                }
-            }
-            Document document = queue.poll();
-            queue.notifyAll();
+        Document document = poll();
+        if (document != null) {
             return document;
         }
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        waitingConsumers.incrementAndGet();
+        try {
+            while ((document = pollNow()) == null && remainingNanos > 0) {
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
+            }
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+        signalProducer(document);
+        return document;
     }
 
     Document poll() {
-        synchronized (queue) {
-            Document document = queue.poll();
-            queue.notifyAll();
-            return document;
+        Document document = pollNow();
+        signalProducer(document);
+        return document;
+    }
+
+    /** Documents put back by the IO threads are the oldest, so the overflow is drained first */
+    private Document pollNow() {
+        Document document = overflow.poll();
+        return document != null ? document : ring.poll();
+    }
+
+    private void signalProducer(Document polled) {
+        if (polled != null && waitingProducers.get() > 0) {
+            signal(notFull);
         }
     }
 
-    boolean isEmpty() {
-        synchronized (queue) {
-            return queue.isEmpty();
+    private void signal(Condition condition) {
+        lock.lock();
+        try {
+            condition.signal();
+        } finally {
+            lock.unlock();
         }
     }
 
-    int size() {
-        synchronized (queue) {
-            return queue.size();
+    private void signalAll(Condition condition) {
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
+    boolean isEmpty() {
+        return overflow.isEmpty() && ring.isEmpty();
+    }
+
+    int size() {
+        return overflow.size() + ring.size();
+    }
+
     void clear() {
-        synchronized (queue) {
-            queue.clear();
-            queue.notifyAll();
-        }
+        while (pollNow() != null) { }
+        signalAll(notFull);
     }
 
     boolean close() {
         boolean previousState;
-        synchronized (queue) {
+        lock.lock();
+        try {
             previousState = closed;
             closed = true;
-            queue.notifyAll();
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
         }
         return previousState;
     }
 
     Optional<Document> pollDocumentIfTimedoutInQueue(long localQueueTimeOut) {
-        synchronized (queue) {
-            if (queue.isEmpty()) {
-                return Optional.empty();
-            }
-            Document document = queue.peek();
-            if (document.timeInQueueMillis() > localQueueTimeOut) {
-                return Optional.of(queue.poll());
+        Document document = overflow.peek();
+        if (document != null) {
+            if (document.timeInQueueMillis() > localQueueTimeOut && overflow.remove(document)) {
+                signalProducer(document);
+                return Optional.of(document);
             }
             return Optional.empty();
         }
+        document = ring.pollIf(candidate -> candidate.timeInQueueMillis() > localQueueTimeOut);
+        signalProducer(document);
+        return Optional.ofNullable(document);
     }
 
 }
@@ -0,0 +1,13 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.config.FeedParams;
+
+/**
+ * Creates gateway connections to a single endpoint, which may share resources with each other.
+ */
+interface GatewayConnectionFactory {
+
+    GatewayConnection createConnection(FeedParams feedParams, String clusterSpecificRoute, String clientId);
+
+}
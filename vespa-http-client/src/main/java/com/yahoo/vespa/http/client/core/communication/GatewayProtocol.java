@@ -0,0 +1,285 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.Encoder;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The state of the feed protocol between a single gateway connection and a gateway, independent of the
+ * HTTP client used: which headers and body to send, and how to verify the responses.
+ */
+class GatewayProtocol {
+
+    private static Logger log = Logger.getLogger(GatewayProtocol.class.getName());
+    private static final String PATH = "/reserved-for-internal-use/feedapi?";
+    private static final List<Integer> SUPPORTED_VERSIONS = Collections.singletonList(3);
+    private static final byte[] START_OF_FEED_XML = "<vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_XML = "\n</vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] START_OF_FEED_JSON = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_JSON = "]".getBytes(StandardCharsets.UTF_8);
+    private final byte[] startOfFeed;
+    private final byte[] endOfFeed;
+    private final Endpoint endpoint;
+    private final FeedParams feedParams;
+    private final String clusterSpecificRoute;
+    private final ConnectionParams connectionParams;
+    private final String clientId;
+    private final String shardingKey = UUID.randomUUID().toString().substring(0, 5);
+    private String sessionId;
+    private int negotiatedVersion = -1;
+
+    GatewayProtocol(Endpoint endpoint,
+                    FeedParams feedParams,
+                    String clusterSpecificRoute,
+                    ConnectionParams connectionParams,
+                    String clientId) {
+        this.endpoint = endpoint;
+        this.feedParams = feedParams;
+        this.clusterSpecificRoute = clusterSpecificRoute;
+        this.connectionParams = connectionParams;
+        boolean isJson = feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8;
+        if (isJson) {
+            startOfFeed = START_OF_FEED_JSON;
+            endOfFeed = END_OF_FEED_JSON;
+        } else {
+            startOfFeed = START_OF_FEED_XML;
+            endOfFeed = END_OF_FEED_XML;
+        }
+        this.clientId = clientId;
+        if (this.clientId == null) {
+            throw new RuntimeException("Got no client Id.");
+        }
+    }
+
+    Endpoint endpoint() { return endpoint; }
+
+    String sessionId() { return sessionId; }
+
+    /** Returns the URI to post feed requests to */
+    String uri() {
+        StringBuilder u = new StringBuilder();
+        u.append(endpoint.isUseSsl() ? "https://" : "http://");
+        u.append(endpoint.getHostname());
+        u.append(":").append(endpoint.getPort());
+        u.append(PATH);
+        u.append(feedParams.toUriParameters());
+        return u.toString();
+    }
+
+    /** Returns the headers of a feed request, in the order they should be added. A header may occur more than once. */
+    List<Map.Entry<String, String>> headers(boolean drain, boolean useCompression, boolean isHandshake) {
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for (int v : SUPPORTED_VERSIONS) {
+            add(headers, Headers.VERSION, "" + v);
+        }
+        if (sessionId != null) {
+            add(headers, Headers.SESSION_ID, sessionId);
+        }
+        add(headers, Headers.CLIENT_ID, clientId);
+        add(headers, Headers.SHARDING_KEY, shardingKey);
+        add(headers, Headers.DRAIN, drain ? "true" : "false");
+        if (clusterSpecificRoute != null) {
+            add(headers, Headers.ROUTE, feedParams.getRoute());
+        } else {
+            if (feedParams.getRoute() != null) {
+                add(headers, Headers.ROUTE, feedParams.getRoute());
+            }
+        }
+        if (!isHandshake) {
+            if (feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8) {
+                add(headers, Headers.DATA_FORMAT, FeedParams.DataFormat.JSON_UTF8.name());
+            } else {
+                add(headers, Headers.DATA_FORMAT, FeedParams.DataFormat.XML_UTF8.name());
+            }
+            if (feedParams.getPriority() != null) {
+                add(headers, Headers.PRIORITY, feedParams.getPriority());
+            }
+            if (connectionParams.getTraceLevel() != 0) {
+                add(headers, Headers.TRACE_LEVEL, String.valueOf(connectionParams.getTraceLevel()));
+            }
+            if (negotiatedVersion == 3 && feedParams.getDenyIfBusyV3()) {
+                add(headers, Headers.DENY_IF_BUSY, "true");
+            }
+            if (negotiatedVersion == 3 && feedParams.getBulk()) {
+                add(headers, Headers.BULK, "true");
+            }
+        }
+        if (feedParams.getSilentUpgrade()) {
+            add(headers, Headers.SILENTUPGRADE, "true");
+        }
+        add(headers, Headers.TIMEOUT, "" + feedParams.getServerTimeout(TimeUnit.SECONDS));
+
+        for (Map.Entry<String, String> extraHeader : connectionParams.getHeaders()) {
+            add(headers, extraHeader.getKey(), extraHeader.getValue());
+        }
+        connectionParams.getDynamicHeaders().forEach((headerName, provider) -> {
+            String headerValue = Objects.requireNonNull(
+                    provider.getHeaderValue(),
+                    provider.getClass().getName() + ".getHeader() returned null as header value!");
+            add(headers, headerName, headerValue);
+        });
+
+        if (useCompression) {
+            add(headers, "Content-Encoding", "gzip");
+        }
+        return headers;
+    }
+
+    private static void add(List<Map.Entry<String, String>> headers, String name, String value) {
+        headers.add(new AbstractMap.SimpleImmutableEntry<>(name, value));
+    }
+
+    /** Returns the body of a feed request with the given documents, for the negotiated protocol version */
+    ByteBuffer[] body(List<Document> docs) {
+        List<ByteBuffer> data = new ArrayList<>();
+        if (negotiatedVersion == 3) {
+            for (Document doc : docs) {
+                int operationSize = doc.size() + startOfFeed.length + endOfFeed.length;
+                StringBuilder envelope = new StringBuilder();
+                Encoder.encode(doc.getOperationId(), envelope);
+                envelope.append(' ');
+                envelope.append(Integer.toHexString(operationSize));
+                envelope.append('\n');
+                data.add(StandardCharsets.US_ASCII.encode(envelope.toString()));
+                data.add(ByteBuffer.wrap(startOfFeed));
+                data.add(doc.getData());
+                data.add(ByteBuffer.wrap(endOfFeed));
+            }
+        } else {
+            throw new IllegalArgumentException("Protocol version " + negotiatedVersion + " unsupported by client.");
+        }
+        return data.toArray(new ByteBuffer[data.size()]);
+    }
+
+    /** Returns the gzipped content of the given stream */
+    static byte[] zip(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[4096];
+        GZIPOutputStream gzos = null;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            gzos = new GZIPOutputStream(baos);
+            while (inputStream.available() > 0) {
+                int length = inputStream.read(buffer);
+                gzos.write(buffer, 0,length);
+            }
+        } finally {
+            if (gzos != null)  {
+                gzos.close();
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Verifies the status code of a response.
+     *
+     * @param statusCode the status code of the response
+     * @param errorMessage supplies the message to use when the status code signals an error
+     * @throws ServerResponseException if the status code signals an error
+     */
+    void verifyServerResponseCode(int statusCode, Supplier<String> errorMessage) throws ServerResponseException {
+        // We use code 261-299 to report errors related to internal transitive errors that the tenants should not care
+        // about to avoid masking more serious errors.
+        if (statusCode > 199 && statusCode < 260) {
+            return;
+        }
+        if (statusCode == 299) {
+            throw new ServerResponseException(429, "Too  many requests.");
+        }
+        throw new ServerResponseException(statusCode, errorMessage.get());
+    }
+
+    /** Verifies the session header value of a response, which is null if the header is missing */
+    void verifySessionHeader(String serverHeader) throws ServerResponseException {
+        if (serverHeader == null) {
+            throw new ServerResponseException("Got no session ID from server.");
+        }
+        final String serverHeaderVal = serverHeader.trim();
+        if (negotiatedVersion == 3) {
+            if (clientId == null || !clientId.equals(serverHeaderVal)) {
+                String message = "Running using v3. However, server responds with different session " +
+                        "than client has set; " + serverHeaderVal + " vs client code " + clientId;
+                log.severe(message);
+                throw new ServerResponseException(message);
+            }
+            return;
+        }
+        if (sessionId == null) { //this must be the first request
+            log.finer("Got session ID from server: " + serverHeaderVal);
+            this.sessionId = serverHeaderVal;
+            return;
+        } else {
+            if (!sessionId.equals(serverHeaderVal)) {
+                log.info("Request has been routed to a server which does not recognize the client session."
+                        + " Most likely cause is upgrading of cluster, transitive error.");
+                throw new ServerResponseException(
+                        "Session ID received from server ('" + serverHeaderVal
+                        + "') does not match cached session ID ('" + sessionId + "')");
+            }
+        }
+    }
+
+    /** Verifies the version header value of a response, which is null if the header is missing */
+    void verifyServerVersion(String serverHeader) throws ServerResponseException {
+        if (serverHeader == null) {
+            throw new ServerResponseException("Got bad protocol version from server.");
+        }
+        int serverVersion;
+        try {
+            serverVersion = Integer.parseInt(serverHeader);
+        } catch (NumberFormatException nfe) {
+            throw new ServerResponseException("Got bad protocol version from server: " + nfe.getMessage());
+        }
+        if (!SUPPORTED_VERSIONS.contains(serverVersion)) {
+            throw new ServerResponseException("Unsupported version: " + serverVersion
+                    + ". Supported versions: " + SUPPORTED_VERSIONS);
+        }
+        if (negotiatedVersion == -1) {
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Server decided upon protocol version " + serverVersion + ".");
+            }
+        }
+        this.negotiatedVersion = serverVersion;
+    }
+
+    /** Forgets the current session before a new handshake, and returns it */
+    String startHandshake() {
+        String oldSessionID = sessionId;
+        sessionId = null;
+        return oldSessionID;
+    }
+
+    /** Verifies that the session established by a handshake is the same as the given previous session */
+    void verifyHandshake(String oldSessionID) throws ServerResponseException {
+        if (oldSessionID != null && !oldSessionID.equals(sessionId)) {
+            throw new ServerResponseException(
+                    "Session ID changed after new handshake, some documents might not be acked to correct thread. "
+                            + endpoint + " old " + oldSessionID + " new " + sessionId);
+        }
+        log.fine("Got session ID " + sessionId);
+    }
+
+}
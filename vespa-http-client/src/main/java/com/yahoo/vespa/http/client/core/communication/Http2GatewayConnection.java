@@ -0,0 +1,253 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.ErrorCode;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * A gateway connection which sends each request as a stream of an HTTP/2 connection shared with the other
+ * connections to the same endpoint. Flow control and multiplexing is done by the JDK HTTP client, so
+ * the number of concurrent requests to an endpoint is not limited by the number of TCP connections.
+ *
+ * Requests are sent asynchronously, and each of these has up to
+ * {@link ConnectionParams#getMaxConcurrentStreamsPerConnection()} streams in flight. A write returns the responses
+ * which have completed since the last one, and only blocks when there is nothing to send, or when the max number
+ * of streams are in flight. As the server returns the result of any operation of the session in any of the responses,
+ * the order in which these complete does not matter. The operations of a request which fails are given a transient
+ * error in the next response returned, and the failure is then thrown, before any more operations are sent.
+ */
+class Http2GatewayConnection implements GatewayConnection {
+
+    private static Logger log = Logger.getLogger(Http2GatewayConnection.class.getName());
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final GatewayProtocol protocol;
+    private final ConnectionParams connectionParams;
+    private final HttpClient sharedClient;
+
+    /** The requests in flight, oldest first */
+    private final Deque<Stream> streams = new ArrayDeque<>();
+
+    /** The responses which are completed, but not yet returned */
+    private final List<InputStream> responses = new ArrayList<>();
+
+    private HttpClient httpClient;
+
+    Http2GatewayConnection(GatewayProtocol protocol, ConnectionParams connectionParams, HttpClient sharedClient) {
+        this.protocol = protocol;
+        this.connectionParams = connectionParams;
+        this.sharedClient = sharedClient;
+    }
+
+    @Override
+    public InputStream writeOperations(List<Document> docs) throws ServerResponseException, IOException {
+        return write(docs, false, connectionParams.getUseCompression());
+    }
+
+    @Override
+    public InputStream drain() throws ServerResponseException, IOException {
+        return write(Collections.emptyList(), true, false);
+    }
+
+    @Override
+    public boolean connect() {
+        log.fine("Attempting to connect to " + protocol.endpoint());
+        httpClient = sharedClient;
+        return true;
+    }
+
+    private InputStream write(List<Document> docs, boolean drain, boolean useCompression)
+            throws ServerResponseException, IOException {
+        if (httpClient == null) {
+            throw new IOException("Trying to execute request while not having a connection/http client");
+        }
+        for (Stream stream : new ArrayList<>(streams)) {
+            if (stream.response.isDone()) {
+                complete(stream);
+            }
+        }
+        if (drain) {
+            // The server returns the results of all operations of the session on drain, so it must be sent last
+            while ( ! streams.isEmpty()) {
+                complete(streams.getFirst());
+            }
+            complete(send(docs, true, false));
+        }
+        else if (docs.isEmpty()) {
+            // There is nothing to send, so wait for the results of what is in flight, or ask for them if nothing is
+            complete(streams.isEmpty() ? send(docs, false, false) : streams.getFirst());
+        }
+        else {
+            if (streams.size() >= connectionParams.getMaxConcurrentStreamsPerConnection()) {
+                complete(streams.getFirst());
+            }
+            send(docs, false, useCompression);
+        }
+        return takeResponses();
+    }
+
+    private Stream send(List<Document> docs, boolean drain, boolean useCompression) throws IOException {
+        HttpRequest.Builder request = createRequest(drain, useCompression, false);
+        ByteBuffer[] body = protocol.body(docs);
+        if (useCompression) {
+            request.POST(HttpRequest.BodyPublishers.ofByteArray(GatewayProtocol.zip(new ByteBufferInputStream(body))));
+        } else {
+            // The client subscribes to the body again when it retries a request, so each subscriber needs its own stream
+            request.POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteBufferInputStream(duplicates(body))));
+        }
+        Stream stream = new Stream(docs, httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream()));
+        streams.addLast(stream);
+        return stream;
+    }
+
+    private static ByteBuffer[] duplicates(ByteBuffer[] buffers) {
+        ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++)
+            duplicates[i] = buffers[i].duplicate();
+        return duplicates;
+    }
+
+    private HttpRequest.Builder createRequest(boolean drain, boolean useCompression, boolean isHandshake) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(protocol.uri()));
+        request.header("User-Agent", String.format("vespa-http-client (%s)", Vtag.currentVersion));
+        request.header(Headers.CLIENT_VERSION, Vtag.currentVersion);
+        for (Map.Entry<String, String> header : protocol.headers(drain, useCompression, isHandshake)) {
+            request.header(header.getKey(), header.getValue());
+        }
+        return request;
+    }
+
+    /** Waits for the given request to complete, and keeps its response, or throws if it failed */
+    private void complete(Stream stream) throws ServerResponseException, IOException {
+        try {
+            responses.add(verified(await(stream.response)));
+            streams.remove(stream);
+        } catch (ServerResponseException | IOException e) {
+            streams.remove(stream);
+            responses.add(transientErrors(stream.docs, e));
+            throw e;
+        }
+    }
+
+    private HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> response) throws IOException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for response from " + protocol.endpoint());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed sending request to " + protocol.endpoint(), e.getCause());
+        }
+    }
+
+    private InputStream verified(HttpResponse<InputStream> response) throws ServerResponseException, IOException {
+        try {
+            protocol.verifyServerResponseCode(response.statusCode(),
+                                              () -> tryGetDetailedErrorMessage(response).orElse("HTTP status " + response.statusCode()));
+            protocol.verifyServerVersion(response.headers().firstValue(Headers.VERSION).orElse(null));
+            protocol.verifySessionHeader(response.headers().firstValue(Headers.SESSION_ID).orElse(null));
+        } catch (ServerResponseException e) {
+            response.body().close();
+            throw e;
+        }
+        return response.body();
+    }
+
+    /** Returns the responses kept since the last time this was called, as one */
+    private InputStream takeResponses() {
+        InputStream response = responses.size() == 1 ? responses.get(0)
+                                                     : new SequenceInputStream(Collections.enumeration(new ArrayList<>(responses)));
+        responses.clear();
+        return response;
+    }
+
+    /** Returns a response with a transient error for each of the given operations */
+    private static InputStream transientErrors(List<Document> docs, Exception cause) {
+        StringBuilder statuses = new StringBuilder();
+        for (Document doc : docs) {
+            statuses.append(new OperationStatus("Request failed: " + cause, doc.getOperationId(),
+                                                ErrorCode.TRANSIENT_ERROR, false, "").render());
+        }
+        return new ByteArrayInputStream(statuses.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Optional<String> tryGetDetailedErrorMessage(HttpResponse<InputStream> response) {
+        Optional<String> contentType = response.headers().firstValue("Content-Type");
+        if ( ! contentType.isPresent() || ! contentType.get().equalsIgnoreCase("application/json")) return Optional.empty();
+        try (InputStream in = response.body()) {
+            JsonNode jsonNode = mapper.readTree(in);
+            JsonNode message = jsonNode.get("message");
+            if (message == null || message.textValue() == null) return Optional.empty();
+            return Optional.of("HTTP status " + response.statusCode() + " - " + message.textValue());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Endpoint getEndpoint() {
+        return protocol.endpoint();
+    }
+
+    @Override
+    public void handshake() throws ServerResponseException, IOException {
+        if (httpClient == null) {
+            throw new IOException("Trying to execute request while not having a connection/http client");
+        }
+        HttpRequest.Builder request = createRequest(false, false, true);
+        request.POST(HttpRequest.BodyPublishers.noBody());
+        String oldSessionID = protocol.startHandshake();
+        verified(await(httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream()))).close();
+        protocol.verifyHandshake(oldSessionID);
+    }
+
+    @Override
+    public void close() {
+        httpClient = null; // The shared client is left to the garbage collector when all connections are gone
+    }
+
+    /** A request in flight, and the operations it contains */
+    private static class Stream {
+
+        private final List<Document> docs;
+        private final CompletableFuture<HttpResponse<InputStream>> response;
+
+        private Stream(List<Document> docs, CompletableFuture<HttpResponse<InputStream>> response) {
+            this.docs = docs;
+            this.response = response;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.util.logging.Logger;
+
+/**
+ * Creates gateway connections to an endpoint which are all multiplexed over a single HTTP/2 connection,
+ * as the JDK HTTP client keeps one connection per origin and sends each request on a new stream of it.
+ * This requires Java 11, and is therefore only created by reflection. Hostnames are verified by the JDK client,
+ * so only the default hostname verifier is accepted.
+ */
+class Http2GatewayConnectionFactory implements GatewayConnectionFactory {
+
+    private static Logger log = Logger.getLogger(Http2GatewayConnectionFactory.class.getName());
+
+    private final Endpoint endpoint;
+    private final ConnectionParams connectionParams;
+    private final HttpClient httpClient;
+
+    Http2GatewayConnectionFactory(Endpoint endpoint, ConnectionParams connectionParams) {
+        this.endpoint = endpoint;
+        this.connectionParams = connectionParams;
+        this.httpClient = createClient(endpoint, connectionParams);
+    }
+
+    private static HttpClient createClient(Endpoint endpoint, ConnectionParams connectionParams) {
+        // The JDK client verifies hostnames itself, and does not accept a hostname verifier
+        if (endpoint.isUseSsl() && ! (connectionParams.getHostnameVerifier() instanceof DefaultHostnameVerifier)) {
+            throw new IllegalArgumentException("Feeding over HTTP/2 verifies hostnames the way the JDK does, and can not use " +
+                                               "hostname verifier " + connectionParams.getHostnameVerifier() +
+                                               " for " + endpoint + ": Feed over HTTP/1.1 to use another hostname verifier");
+        }
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (endpoint.isUseSsl() && connectionParams.getSslContext() != null) {
+            builder.sslContext(connectionParams.getSslContext());
+        }
+        if (connectionParams.getProxyHost() != null) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(connectionParams.getProxyHost(),
+                                                                 connectionParams.getProxyPort())));
+        }
+        log.fine("Creating HTTP/2 client for " + endpoint
+                 + " proxyhost (can be null) " + connectionParams.getProxyHost()
+                 + ":" + connectionParams.getProxyPort()
+                 + (endpoint.isUseSsl() ? " using ssl " : " not using ssl"));
+        return builder.build();
+    }
+
+    @Override
+    public GatewayConnection createConnection(FeedParams feedParams, String clusterSpecificRoute, String clientId) {
+        return new Http2GatewayConnection(
+                new GatewayProtocol(endpoint, feedParams, clusterSpecificRoute, connectionParams, clientId),
+                connectionParams,
+                httpClient);
+    }
+
+}
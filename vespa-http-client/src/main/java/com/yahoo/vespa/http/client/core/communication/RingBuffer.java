@@ -0,0 +1,116 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, lock-free queue for multiple producers and multiple consumers. Each slot has a sequence number
+ * telling whether it is ready to be written at, or read from, a given position, so producers and consumers only
+ * contend on a single compare-and-set of the tail and head position, respectively.
+ *
+ * @param <T> the type of the elements in this
+ */
+class RingBuffer<T> {
+
+    private final int capacity;
+    private final int slots;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    RingBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        this.capacity = capacity;
+        this.slots = Math.max(2, capacity); // With a single slot, a written slot is indistinguishable from a free one
+        this.elements = new AtomicReferenceArray<>(slots);
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Adds the given element at the tail of this, and returns whether there was room for it */
+    boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            int index = index(position);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (slots > capacity && position - head.get() >= capacity) {
+                    return false;
+                }
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                return false; // The slot still holds the element from one lap ago
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** Removes and returns the element at the head of this, or null if this is empty */
+    T poll() {
+        return pollIf(element -> true);
+    }
+
+    /** Removes and returns the element at the head of this if it matches the given condition, and null otherwise */
+    T pollIf(Predicate<T> condition) {
+        long position = head.get();
+        while (true) {
+            int index = index(position);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                // The slot can not be written again until it is released below, so the element is ours if the head is unchanged
+                T element = elements.get(index);
+                if (element != null) {
+                    if ( ! condition.test(element)) {
+                        if (head.get() == position) return null;
+                    }
+                    else if (head.compareAndSet(position, position + 1)) {
+                        elements.set(index, null);
+                        sequences.set(index, position + slots);
+                        return element;
+                    }
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                return null; // The slot is not yet written
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    boolean isEmpty() { return size() == 0; }
+
+    boolean isFull() { return size() >= capacity; }
+
+    /** Returns the number of elements in this, which is only a snapshot when there are concurrent updates */
+    int size() {
+        while (true) {
+            long before = head.get();
+            long size = tail.get() - before;
+            if (head.get() == before) {
+                return (int) Math.max(0, Math.min(capacity, size));
+            }
+        }
+    }
+
+    private int index(long position) {
+        return (int) (position % slots);
+    }
+
+}
@@ -171,6 +171,14 @@ public class CommandLineArguments {
             description = "How many tcp connections to establish per endoint.)")
     private int numPersistentConnectionsPerEndpoint = 4;
 
+    @Option(name = {"--useHttp2"},
+            description = "Feed over HTTP/2, multiplexing the persistent connections to each endpoint as streams over a single connection. Requires Java 11.")
+    private boolean useHttp2 = false;
+
+    @Option(name = {"--maxConcurrentStreamsPerConnection"},
+            description = "With --useHttp2, how many requests each persistent connection may have in flight.")
+    private int maxConcurrentStreamsPerConnection = 16;
+
     @Option(name = {"--maxChunkSizeBytes"},
             description = "How much data to send to gateway in each message.")
     private int maxChunkSizeBytes = 20 * 1024;
@@ -234,6 +242,8 @@ public class CommandLineArguments {
                                 .setTraceEveryXOperation(traceEveryXOperation)
                                 .setPrintTraceToStdErr(traceArg > 0)
                                 .setNumPersistentConnectionsPerEndpoint(numPersistentConnectionsPerEndpoint)
+                                .setUseHttp2(useHttp2)
+                                .setMaxConcurrentStreamsPerConnection(maxConcurrentStreamsPerConnection)
                                 .build()
                 )
                         // Enable dynamic throttling.
@@ -0,0 +1,77 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client;
+
+import com.yahoo.vespa.http.client.config.Cluster;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.config.SessionParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of the throughput of a single feed client, where many threads feed through dry run connections,
+ * so only the client side queueing and result processing is measured.
+ * Run with the optional arguments: seconds per measurement and number of connections per endpoint.
+ */
+public class FeedClientBenchmark {
+
+    private static final String document = "{\"put\": \"id:ns:type::%d\", \"fields\": {\"title\": \"benchmark\"}}";
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private void run(int feeders, int seconds, int connections) throws InterruptedException {
+        SessionParams params = new SessionParams.Builder()
+                .addCluster(new Cluster.Builder().addEndpoint(Endpoint.create("localhost")).build())
+                .setConnectionParams(new ConnectionParams.Builder()
+                                             .setDryRun(true)
+                                             .setNumPersistentConnectionsPerEndpoint(connections)
+                                             .build())
+                .setFeedParams(new FeedParams.Builder()
+                                       .setDataFormat(FeedParams.DataFormat.JSON_UTF8)
+                                       .setMaxSleepTimeMs(0)
+                                       .build())
+                .build();
+        FeedClient client = FeedClientFactory.create(params, (docId, result) -> {
+            if (result.isSuccess()) completed.incrementAndGet();
+            else failed.incrementAndGet();
+        });
+
+        long end = System.nanoTime() + (seconds + 10) * 1_000_000_000L;
+        AtomicLong ids = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < feeders; i++) {
+            threads.add(new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    long id = ids.getAndIncrement() % 100000; // Reuse document ids to exercise per document ordering
+                    client.stream("id:ns:type::" + id, String.format(document, id));
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+
+        Thread.sleep(10000); // warmup, including compilation of the feed path
+        long startCompleted = completed.get();
+        long startTime = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long operations = completed.get() - startCompleted;
+        long elapsed = System.nanoTime() - startTime;
+        for (Thread thread : threads) thread.join();
+        client.close();
+        System.out.printf("  %3d feeding threads: %9.0f operations/s, %d failed\n",
+                          feeders, operations * 1e9 / elapsed, failed.get());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        System.out.println("Dry run feeding over " + connections + " connections");
+        for (int feeders : new int[] { 1, 4, 16, 32 }) {
+            new FeedClientBenchmark().run(feeders, seconds, connections);
+        }
+    }
+
+}
@@ -12,7 +12,7 @@ public class TestDocument {
     private final String documentId;
     private final byte[] contents;
 
-    TestDocument(String documentId, byte[] contents) {
+    public TestDocument(String documentId, byte[] contents) {
         this.documentId = documentId;
         this.contents = contents;
     }
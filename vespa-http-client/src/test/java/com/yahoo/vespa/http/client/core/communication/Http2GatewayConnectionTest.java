@@ -0,0 +1,144 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.Result;
+import com.yahoo.vespa.http.client.Server;
+import com.yahoo.vespa.http.client.Session;
+import com.yahoo.vespa.http.client.SessionFactory;
+import com.yahoo.vespa.http.client.TestDocument;
+import com.yahoo.vespa.http.client.TestUtils;
+import com.yahoo.vespa.http.client.V3HttpAPITest;
+import com.yahoo.vespa.http.client.config.Cluster;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.config.SessionParams;
+import com.yahoo.vespa.http.client.handlers.V3MockParsingRequestHandler;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings("deprecation")
+public class Http2GatewayConnectionTest {
+
+    @Test
+    public void testFeedingOverSharedClientFallsBackToHttp11() throws Exception {
+        try (Server server = new Server(new V3MockParsingRequestHandler(), 0);
+             Session session = SessionFactory.create(
+                     new SessionParams.Builder()
+                             .setConnectionParams(new ConnectionParams.Builder()
+                                                          .setUseHttp2(true)
+                                                          .setNumPersistentConnectionsPerEndpoint(4)
+                                                          .build())
+                             .addCluster(new Cluster.Builder()
+                                                 .addEndpoint(Endpoint.create("localhost", server.getPort(), false))
+                                                 .build())
+                             .build())) {
+
+            TestUtils.writeDocuments(session, V3HttpAPITest.documents);
+            Map<String, Result> results = TestUtils.getResults(session, V3HttpAPITest.documents.size());
+            assertEquals(V3HttpAPITest.documents.size(), results.size());
+            for (TestDocument document : V3HttpAPITest.documents) {
+                Result result = results.get(document.getDocumentId());
+                assertNotNull(result);
+                assertTrue(result.getDetails().toString(), result.isSuccess());
+            }
+        }
+    }
+
+    @Test
+    public void testFeedingWithConcurrentStreamsPerConnection() throws Exception {
+        AtomicInteger requestsInFlight = new AtomicInteger();
+        AtomicInteger maxRequestsInFlight = new AtomicInteger();
+        V3MockParsingRequestHandler feedHandler = new V3MockParsingRequestHandler();
+        AbstractHandler handler = new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                    throws IOException, ServletException {
+                // Counted until the response is written, as the client may send another request when it is received
+                maxRequestsInFlight.accumulateAndGet(requestsInFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50); // Lets the requests of the connection overlap
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                } finally {
+                    requestsInFlight.decrementAndGet();
+                }
+                feedHandler.handle(target, baseRequest, request, response);
+            }
+        };
+
+        List<TestDocument> documents = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String id = "id:music:music::http://music.yahoo.com/" + i;
+            documents.add(new TestDocument(id, ("<document documenttype=\"music\" documentid=\"" + id + "\">\n" +
+                                                "  <title>Best of " + i + "</title>\n" +
+                                                "</document>\n").getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (Server server = new Server(handler, 0);
+             Session session = SessionFactory.create(
+                     new SessionParams.Builder()
+                             .setFeedParams(new FeedParams.Builder()
+                                                    .setMaxChunkSizeBytes(1) // One operation per request
+                                                    .build())
+                             .setConnectionParams(new ConnectionParams.Builder()
+                                                          .setUseHttp2(true)
+                                                          .setNumPersistentConnectionsPerEndpoint(1)
+                                                          .setMaxConcurrentStreamsPerConnection(4)
+                                                          .build())
+                             .addCluster(new Cluster.Builder()
+                                                 .addEndpoint(Endpoint.create("localhost", server.getPort(), false))
+                                                 .build())
+                             .build())) {
+
+            TestUtils.writeDocuments(session, documents);
+            Map<String, Result> results = TestUtils.getResults(session, documents.size());
+            assertEquals(documents.size(), results.size());
+            for (TestDocument document : documents) {
+                Result result = results.get(document.getDocumentId());
+                assertNotNull(result);
+                assertTrue(result.getDetails().toString(), result.isSuccess());
+            }
+        }
+        assertTrue("Requests of the single connection were sent concurrently: " + maxRequestsInFlight,
+                   maxRequestsInFlight.get() > 1);
+        assertTrue("No more than the max number of streams were in flight: " + maxRequestsInFlight,
+                   maxRequestsInFlight.get() <= 4);
+    }
+
+    @Test
+    public void testOtherHostnameVerifiersThanTheDefaultAreRejected() {
+        try {
+            SessionFactory.create(new SessionParams.Builder()
+                                          .setConnectionParams(new ConnectionParams.Builder()
+                                                                       .setUseHttp2(true)
+                                                                       .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                                                                       .build())
+                                          .addCluster(new Cluster.Builder()
+                                                              .addEndpoint(Endpoint.create("localhost", 4443, true))
+                                                              .build())
+                                          .build());
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("can not use hostname verifier"));
+        }
+    }
+
+}
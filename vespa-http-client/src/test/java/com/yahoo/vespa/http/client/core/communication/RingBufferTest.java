@@ -0,0 +1,83 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void testOrderAndBounds() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertTrue(ring.isEmpty());
+        for (int lap = 0; lap < 4; lap++) {
+            assertTrue(ring.offer(1));
+            assertTrue(ring.offer(2));
+            assertTrue(ring.offer(3));
+            assertFalse(ring.offer(4));
+            assertTrue(ring.isFull());
+            assertEquals(3, ring.size());
+            assertEquals(1, (int) ring.poll());
+            assertTrue(ring.offer(4));
+            assertEquals(2, (int) ring.poll());
+            assertEquals(3, (int) ring.poll());
+            assertEquals(4, (int) ring.poll());
+            assertNull(ring.poll());
+        }
+    }
+
+    @Test
+    public void testConditionalPollOnlyRemovesMatchingHead() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        ring.offer(1);
+        ring.offer(2);
+        assertNull(ring.pollIf(element -> element == 2));
+        assertEquals(1, (int) ring.pollIf(element -> element == 1));
+        assertEquals(2, (int) ring.pollIf(element -> element == 2));
+        assertNull(ring.pollIf(element -> true));
+    }
+
+    @Test
+    public void testEachElementIsPolledExactlyOnceByConcurrentConsumers() throws InterruptedException {
+        int producers = 4, consumers = 4, perProducer = 100000;
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(producers * perProducer);
+        CountDownLatch produced = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while ( ! ring.offer(i)) Thread.yield();
+                }
+                produced.countDown();
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                while (true) {
+                    Integer element = ring.poll();
+                    if (element != null) seen.incrementAndGet(element);
+                    else if (produced.getCount() == 0 && ring.isEmpty()) return;
+                    else Thread.yield();
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        for (int i = 0; i < seen.length(); i++) {
+            assertEquals("Element " + i, 1, seen.get(i));
+        }
+    }
+
+}
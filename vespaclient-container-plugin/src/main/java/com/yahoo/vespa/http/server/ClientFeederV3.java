@@ -25,8 +25,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -45,6 +49,8 @@ import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
 class ClientFeederV3 {
 
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
+    /** The max number of operations in bulk mode which are read and parsed ahead of the one being sent */
+    static final int PARSE_AHEAD = 256;
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
     private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
@@ -60,6 +66,7 @@ class ClientFeederV3 {
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
+    private final Executor parsers;
 
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
@@ -69,6 +76,21 @@ class ClientFeederV3 {
             Metric metric,
             ReplyHandler feedReplyHandler,
             AtomicInteger threadsAvailableForFeeding) {
+        this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler,
+             threadsAvailableForFeeding, Runnable::run);
+    }
+
+    /** Creates a client feeder which uses the given executor to parse operations of bulk requests in parallel */
+    ClientFeederV3(
+            ReferencedResource<SharedSourceSession> sourceSession,
+            FeedReaderFactory feedReaderFactory,
+            DocumentTypeManager docTypeManager,
+            String clientId,
+            Metric metric,
+            ReplyHandler feedReplyHandler,
+            AtomicInteger threadsAvailableForFeeding,
+            Executor parsers) {
+        this.parsers = parsers;
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
@@ -225,6 +247,10 @@ class ClientFeederV3 {
             InputStream requestInputStream,
             BlockingQueue<OperationStatus> repliesFromOldMessages,
             AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        if (settings.bulk) {
+            feedBulk(settings, requestInputStream, repliesFromOldMessages, threadsAvailableForFeeding);
+            return;
+        }
         while (true) {
 
             Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
@@ -233,33 +259,130 @@ class ClientFeederV3 {
                 break;
             }
             setMessageParameters(msg.get(), settings);
+            send(settings, msg.get(), repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
 
-            Result result;
-            try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
+    /**
+     * Feeds the operations of the request while up to {@link #PARSE_AHEAD} of the following operations are parsed
+     * in parallel. Operations are sent in the order they are read, as soon as each is parsed, so operations to the
+     * same document keep their order. The status of each operation is reported when its reply arrives, as in the
+     * default mode.
+     */
+    private void feedBulk(
+            FeederSettings settings,
+            InputStream requestInputStream,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        Deque<BulkOperation> operations = new ArrayDeque<>(PARSE_AHEAD);
+        while (true) {
+            Optional<BulkOperation> operation = readOperation(requestInputStream, repliesFromOldMessages);
+            if ( ! operation.isPresent()) {
+                break;
+            }
+            updatePendingMetric();
+            operation.get().parsed = CompletableFuture.runAsync(() -> parse(operation.get(), settings, repliesFromOldMessages),
+                                                                parsers);
+            operations.addLast(operation.get());
+            if (operations.size() >= PARSE_AHEAD) {
+                sendParsed(operations.removeFirst(), settings, repliesFromOldMessages, threadsAvailableForFeeding);
+            }
+        }
+        while ( ! operations.isEmpty()) {
+            sendParsed(operations.removeFirst(), settings, repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
 
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), Exceptions.toMessageString(e),
-                        ErrorCode.ERROR, false, msg.get().getMessage()));
-                continue;
+    /** Reads the id and unparsed data of the next operation in the stream, or returns empty if there are no more */
+    private Optional<BulkOperation> readOperation(InputStream requestInputStream, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        while (true) {
+            Optional<String> operationId;
+            try {
+                operationId = streamReaderV3.getNextOperationId(requestInputStream);
+            } catch (IOException ioe) {
+                if (log.isLoggable(LogLevel.DEBUG)) {
+                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
+                }
+                return Optional.empty();
+            }
+            if (! operationId.isPresent()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new BulkOperation(operationId.get(), streamReaderV3.getNextOperationData(requestInputStream)));
+            } catch (Exception e) {
+                if (log.isLoggable(LogLevel.DEBUG)) {
+                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
+                }
+                repliesFromOldMessages.add(new OperationStatus(
+                        Exceptions.toMessageString(e), operationId.get(), ErrorCode.ERROR, false, ""));
             }
+        }
+    }
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
+    private void parse(BulkOperation operation, FeederSettings settings, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        try {
+            DocumentOperationMessageV3 message = DocumentOperationMessageV3.create(streamReaderV3.parseOperation(operation.data, settings),
+                                                                                   operation.operationId,
+                                                                                   metric);
+            if (message == null) {
+                return;
+            }
+            metric.add(MetricNames.NUM_OPERATIONS, 1, null /*metricContext*/);
+            setRoute(message, settings);
+            operation.message = message;
+        } catch (Exception e) {
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
             }
+            repliesFromOldMessages.add(new OperationStatus(
+                    Exceptions.toMessageString(e), operation.operationId, ErrorCode.ERROR, false, ""));
+        }
+    }
+
+    /** Waits for the given operation to be parsed, and sends it unless parsing failed */
+    private void sendParsed(
+            BulkOperation operation,
+            FeederSettings settings,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        operation.parsed.join();
+        if (operation.message == null) {
+            return;
+        }
+        setMessageParameters(operation.message, settings);
+        send(settings, operation.message, repliesFromOldMessages, threadsAvailableForFeeding);
+    }
+
+    /** Sends the given message, or reports its status if it was not accepted */
+    private void send(
+            FeederSettings settings,
+            DocumentOperationMessageV3 msg,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        Result result;
+        try {
+            result = sendMessage(settings, msg, threadsAvailableForFeeding);
+
+        } catch  (RuntimeException e) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), Exceptions.toMessageString(e),
+                    ErrorCode.ERROR, false, msg.getMessage()));
+            return;
+        }
+
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.TRANSIENT_ERROR, false, msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.ERROR, isConditionNotMet, msg.getMessage()));
         }
     }
 
@@ -276,14 +399,7 @@ class ClientFeederV3 {
     protected DocumentOperationMessageV3 getNextMessage(
             String operationId, InputStream requestInputStream, FeederSettings settings) throws Exception {
         FeedOperation operation = streamReaderV3.getNextOperation(requestInputStream, settings);
-
-        // This is a bit hard to set up while testing, so we accept that things are not perfect.
-        if (sourceSession.getResource().session() != null) {
-            metric.set(
-                    MetricNames.PENDING,
-                    Double.valueOf(sourceSession.getResource().session().getPendingCount()),
-                    null);
-        }
+        updatePendingMetric();
 
         DocumentOperationMessageV3 message = DocumentOperationMessageV3.create(operation, operationId, metric);
         if (message == null) {
@@ -295,6 +411,16 @@ class ClientFeederV3 {
         return message;
     }
 
+    private void updatePendingMetric() {
+        // This is a bit hard to set up while testing, so we accept that things are not perfect.
+        if (sourceSession.getResource().session() != null) {
+            metric.set(
+                    MetricNames.PENDING,
+                    Double.valueOf(sourceSession.getResource().session().getPendingCount()),
+                    null);
+        }
+    }
+
     private void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
         msg.getMessage().setContext(new ReplyContext(msg.getOperationId(), feedReplies));
         if (settings.traceLevel != null) {
@@ -319,6 +445,21 @@ class ClientFeederV3 {
         }
     }
 
+    /** An operation of a bulk request, which is parsed to a message by one of the parser threads */
+    private static class BulkOperation {
+
+        final String operationId;
+        final byte[] data;
+        CompletableFuture<Void> parsed;
+        DocumentOperationMessageV3 message = null;
+
+        BulkOperation(String operationId, byte[] data) {
+            this.operationId = operationId;
+            this.data = data;
+        }
+
+    }
+
     protected final void log(LogLevel level, Object... msgParts) {
         StringBuilder s;
 
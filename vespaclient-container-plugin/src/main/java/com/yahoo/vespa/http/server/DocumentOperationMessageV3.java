@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.http.server;
 
+import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentRemove;
 import com.yahoo.document.DocumentUpdate;
@@ -22,10 +23,12 @@ class DocumentOperationMessageV3 {
 
     private final String operationId;
     private final Message message;
+    private final DocumentId documentId;
 
-    private DocumentOperationMessageV3(String operationId, Message message) {
+    private DocumentOperationMessageV3(String operationId, Message message, DocumentId documentId) {
         this.operationId = operationId;
         this.message = message;
+        this.documentId = documentId;
     }
 
     Message getMessage() {
@@ -36,13 +39,17 @@ class DocumentOperationMessageV3 {
         return operationId;
     }
 
+    DocumentId getDocumentId() {
+        return documentId;
+    }
+
     private static DocumentOperationMessageV3 newUpdateMessage(FeedOperation op, String operationId) {
         DocumentUpdate update = op.getDocumentUpdate();
         update.setCondition(op.getCondition());
         Message msg = new UpdateDocumentMessage(update);
 
         String id = (operationId == null) ? update.getId().toString() : operationId;
-        return new DocumentOperationMessageV3(id, msg);
+        return new DocumentOperationMessageV3(id, msg, update.getId());
     }
 
     static DocumentOperationMessageV3 newRemoveMessage(FeedOperation op, String operationId) {
@@ -51,7 +58,7 @@ class DocumentOperationMessageV3 {
         Message msg = new RemoveDocumentMessage(remove);
 
         String id = (operationId == null) ? remove.getId().toString() : operationId;
-        return new DocumentOperationMessageV3(id, msg);
+        return new DocumentOperationMessageV3(id, msg, remove.getId());
     }
 
     private static DocumentOperationMessageV3 newPutMessage(FeedOperation op, String operationId) {
@@ -60,7 +67,7 @@ class DocumentOperationMessageV3 {
         Message msg = new PutDocumentMessage(put);
 
         String id = (operationId == null) ? put.getId().toString() : operationId;
-        return new DocumentOperationMessageV3(id, msg);
+        return new DocumentOperationMessageV3(id, msg, put.getId());
     }
 
     static DocumentOperationMessageV3 create(FeedOperation operation, String operationId, Metric metric) {
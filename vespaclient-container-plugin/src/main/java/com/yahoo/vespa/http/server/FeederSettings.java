@@ -20,6 +20,7 @@ public class FeederSettings {
     public final DataFormat dataFormat;
     public final String priority;
     public final Integer traceLevel;
+    public final boolean bulk;
 
     public FeederSettings(HttpRequest request) {
         {
@@ -70,6 +71,14 @@ public class FeederSettings {
                 traceLevel = null;
             }
         }
+        {
+            String tmpBulk = request.getHeader(Headers.BULK);
+            if (tmpBulk != null) {
+                bulk = Boolean.parseBoolean(tmpBulk);
+            } else {
+                bulk = false;
+            }
+        }
     }
 
 }
@@ -8,6 +8,8 @@ import com.yahoo.vespa.http.server.util.ByteLimitedInputStream;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.vespaxmlparser.FeedReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
@@ -42,6 +44,26 @@ public class StreamReaderV3 {
         return op;
     }
 
+    /** Returns the bytes of the next operation, without parsing them */
+    public byte[] getNextOperationData(InputStream requestInputStream) throws IOException {
+        int length = readByteLength(requestInputStream);
+        byte[] data = new byte[length];
+        for (int read = 0; read < length; ) {
+            int n = requestInputStream.read(data, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Stream ended after " + read + " of " + length + " bytes of operation.");
+            }
+            read += n;
+        }
+        return data;
+    }
+
+    /** Parses an operation returned by {@link #getNextOperationData}. This may be called by many threads concurrently. */
+    public FeedOperation parseOperation(byte[] data, FeederSettings settings) throws Exception {
+        FeedReader reader = feedReaderFactory.createReader(new ByteArrayInputStream(data), docTypeManager, settings.dataFormat);
+        return reader.read();
+    }
+
     public Optional<String> getNextOperationId(InputStream requestInputStream) throws IOException {
         StringBuilder idBuf = new StringBuilder(100);
         int c;
@@ -28,11 +28,16 @@ import com.yahoo.container.jdisc.HttpRequest;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -42,6 +47,8 @@ import org.mockito.stubbing.Answer;
 
 public class FeedTesterV3 {
 
+    private final List<PutDocumentMessage> sent = new ArrayList<>();
+
     @Test
     public void feedOneDocument() throws Exception {
         final FeedHandlerV3 feedHandlerV3 = setupFeederHandler();
@@ -64,6 +71,28 @@ public class FeedTesterV3 {
         assertThat(Splitter.on("\n").splitToList(result).size(), is(101));
     }
 
+    @Test
+    public void feedManyDocumentsInBulk() throws Exception {
+        final FeedHandlerV3 feedHandlerV3 = setupFeederHandler();
+        HttpResponse httpResponse = feedHandlerV3.handle(createRequest(1000, true));
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        httpResponse.render(outStream);
+        String result = Utf8.toString(outStream.toByteArray());
+        assertThat(Splitter.on("\n").splitToList(result).size(), is(1001));
+        for (int x = 0; x < 1000; x++) {
+            assertTrue(result.contains("123" + x + " OK message trace\n"));
+        }
+
+        // Operations to the same document are sent in the order they were fed
+        Map<String, Integer> lastSent = new HashMap<>();
+        for (PutDocumentMessage message : sent) {
+            int operation = Integer.parseInt(((ReplyContext) message.getContext()).docId.substring(3));
+            Integer previous = lastSent.put(message.getDocumentPut().getId().toString(), operation);
+            assertTrue(previous == null || previous < operation);
+        }
+        assertThat(sent.size(), is(1000));
+    }
+
     DocumentTypeManager createDoctypeManager() {
         DocumentTypeManager docTypeManager = new DocumentTypeManager();
         DocumentType documentType = new DocumentType("testdocument");
@@ -74,10 +103,15 @@ public class FeedTesterV3 {
     }
 
     HttpRequest createRequest(int numberOfDocs) {
+        return createRequest(numberOfDocs, false);
+    }
+
+    HttpRequest createRequest(int numberOfDocs, boolean bulk) {
         String clientId = "client123";
         StringBuilder wireData = new StringBuilder();
         for (int x = 0; x < numberOfDocs; x++) {
-            String docData = "[{\"put\": \"id:testdocument:testdocument::c\", \"fields\": { \"title\": \"fooKey\", \"body\": \"value\"}}]";
+            String docId = bulk ? "c" + x % 50 : "c";
+            String docData = "[{\"put\": \"id:testdocument:testdocument::" + docId + "\", \"fields\": { \"title\": \"fooKey\", \"body\": \"value\"}}]";
             String operationId = "123" + x;
             wireData.append(operationId + " " + Integer.toHexString(docData.length()) + "\n" + docData);
         }
@@ -93,6 +127,9 @@ public class FeedTesterV3 {
         request.getJDiscRequest().headers().add(Headers.PRIORITY, "LOWEST");
         request.getJDiscRequest().headers().add(Headers.TRACE_LEVEL, "4");
         request.getJDiscRequest().headers().add(Headers.DRAIN, "true");
+        if (bulk) {
+            request.getJDiscRequest().headers().add(Headers.BULK, "true");
+        }
         return request;
     }
 
@@ -114,6 +151,7 @@ public class FeedTesterV3 {
                     Mockito.stub(sharedSourceSession.sendMessageBlocking(anyObject())).toAnswer((Answer) invocation -> {
                         Object[] args = invocation.getArguments();
                         PutDocumentMessage putDocumentMessage = (PutDocumentMessage) args[0];
+                        sent.add(putDocumentMessage);
                         ReplyContext replyContext = (ReplyContext)putDocumentMessage.getContext();
                         replyContext.feedReplies.add(new OperationStatus("message", replyContext.docId, ErrorCode.OK, false, "trace"));
                         Result result = mock(Result.class);
@@ -0,0 +1,25 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.feedapi;
+
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.serialization.BinaryFeedReader;
+import com.yahoo.vespaxmlparser.FeedReader;
+
+import java.io.InputStream;
+
+/**
+ * Unpack document operations in the binary feed format, as written by vespa-visit and vespa-get,
+ * and push them to a feed access point.
+ */
+public class BinaryFeeder extends Feeder {
+
+    public BinaryFeeder(DocumentTypeManager docMan, SimpleFeedAccess sender, InputStream stream) {
+        super(docMan, new VespaFeedSender(sender), stream);
+    }
+
+    @Override
+    protected FeedReader createReader() {
+        return new BinaryFeedReader(stream, docMan);
+    }
+
+}
@@ -4,6 +4,7 @@ package com.yahoo.feedhandler;
 import com.yahoo.clientmetrics.RouteMetricSet;
 import com.yahoo.container.jdisc.HttpRequest;
 import com.yahoo.container.protect.Error;
+import com.yahoo.feedapi.BinaryFeeder;
 import com.yahoo.feedapi.FeedContext;
 import com.yahoo.feedapi.Feeder;
 import com.yahoo.feedapi.JsonFeeder;
@@ -24,6 +25,7 @@ import java.util.List;
 public final class VespaFeedHandler extends VespaFeedHandlerBase {
 
     public static final String JSON_INPUT = "jsonInput";
+    public static final String BINARY_INPUT = "binaryInput";
 
     private VespaFeedHandler(FeedContext context) {
         super(context);
@@ -65,7 +67,9 @@ public final class VespaFeedHandler extends VespaFeedHandlerBase {
     }
 
     private Feeder createFeeder(SimpleFeedAccess sender, HttpRequest request) {
-        if (Boolean.valueOf(request.getProperty(JSON_INPUT))) {
+        if (Boolean.valueOf(request.getProperty(BINARY_INPUT))) {
+            return new BinaryFeeder(getDocumentTypeManager(), sender, getRequestInputStream(request));
+        } else if (Boolean.valueOf(request.getProperty(JSON_INPUT))) {
             return new JsonFeeder(getDocumentTypeManager(), sender, getRequestInputStream(request));
         } else {
             return new XMLFeeder(getDocumentTypeManager(), sender, getRequestInputStream(request));
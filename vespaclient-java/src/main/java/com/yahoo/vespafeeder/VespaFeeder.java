@@ -4,6 +4,8 @@ package com.yahoo.vespafeeder;
 import com.yahoo.clientmetrics.RouteMetricSet;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.DocumentTypeManagerConfigurer;
+import com.yahoo.document.serialization.BinaryFeedReader;
+import com.yahoo.document.serialization.BinaryFeedWriter;
 import com.yahoo.feedapi.FeedContext;
 import com.yahoo.feedhandler.FeedResponse;
 import com.yahoo.feedhandler.VespaFeedHandler;
@@ -126,15 +128,21 @@ public class VespaFeeder {
 
     // package access for easy testing
     static void setJsonInput(InputStreamRequest req, BufferedInputStream input) throws IOException {
-        input.mark(4);
-        int b = input.read();
+        byte[] start = new byte[BinaryFeedWriter.MAGIC.length];
+        input.mark(start.length);
+        int length = 0;
+        int read;
+        while (length < start.length && (read = input.read(start, length, start.length - length)) > 0) {
+            length += read;
+        }
         input.reset();
         // A valid JSON feed will always start with '['
-        if (b == '[') {
+        if (length > 0 && start[0] == '[') {
             req.setProperty(VespaFeedHandler.JSON_INPUT, Boolean.TRUE.toString());
         } else {
             req.setProperty(VespaFeedHandler.JSON_INPUT, Boolean.FALSE.toString());
         }
+        req.setProperty(VespaFeedHandler.BINARY_INPUT, Boolean.toString(BinaryFeedReader.isBinaryFeed(start, length)));
     }
 
     public static void main(String[] args) {
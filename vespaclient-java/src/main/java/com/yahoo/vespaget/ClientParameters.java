@@ -39,13 +39,16 @@ public class ClientParameters {
     public final String loadTypeName;
     // If full documents are printed, they will be printed as JSON (instead of XML)
     public final boolean jsonOutput;
-
+    // If full documents are printed, they will be written in the binary feed format
+    public final boolean binaryOutput;
+    // The number of requests to keep pending when documents are retrieved in batches, or 0 to retrieve them one by one
+    public final int batchSize;
 
     private ClientParameters(
             boolean help, Iterator<String> documentIds, boolean printIdsOnly,
             String fieldSet, String route, String cluster, String configId,
             boolean showDocSize, double timeout, boolean noRetry, int traceLevel,
-            DocumentProtocol.Priority priority, String loadTypeName, boolean jsonOutput) {
+            DocumentProtocol.Priority priority, String loadTypeName, boolean jsonOutput, boolean binaryOutput, int batchSize) {
 
         this.help = help;
         this.documentIds = documentIds;
@@ -61,6 +64,8 @@ public class ClientParameters {
         this.priority = priority;
         this.loadTypeName = loadTypeName;
         this.jsonOutput = jsonOutput;
+        this.binaryOutput = binaryOutput;
+        this.batchSize = batchSize;
     }
 
     public static class Builder {
@@ -78,6 +83,8 @@ public class ClientParameters {
         private DocumentProtocol.Priority priority;
         private String loadTypeName;
         private boolean jsonOutput;
+        private boolean binaryOutput;
+        private int batchSize;
 
         public Builder setHelp(boolean help) {
             this.help = help;
@@ -149,10 +156,20 @@ public class ClientParameters {
             return this;
         }
 
+        public Builder setBinaryOutput(boolean binaryOutput) {
+            this.binaryOutput = binaryOutput;
+            return this;
+        }
+
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
         public ClientParameters build() {
             return new ClientParameters(
                     help, documentIds, printIdsOnly, fieldSet, route, cluster, configId,
-                    showDocSize, timeout, noRetry, traceLevel, priority, loadTypeName, jsonOutput);
+                    showDocSize, timeout, noRetry, traceLevel, priority, loadTypeName, jsonOutput, binaryOutput, batchSize);
         }
     }
 
@@ -37,6 +37,8 @@ public class CommandLineOptions {
     public static final String LOADTYPE_OPTION = "loadtype";
     public static final String JSONOUTPUT_OPTION = "jsonoutput";
     public static final String XMLOUTPUT_OPTION = "xmloutput";
+    public static final String BINARYOUTPUT_OPTION = "binaryoutput";
+    public static final String BATCH_OPTION = "batch";
 
     private final Options options = createOptions();
     private final InputStream stdIn;
@@ -135,6 +137,19 @@ public class CommandLineOptions {
                 .desc("XML output")
                 .longOpt(XMLOUTPUT_OPTION).build());
 
+        options.addOption(Option.builder()
+                .hasArg(false)
+                .desc("Binary output, in the format read by vespa-feeder")
+                .longOpt(BINARYOUTPUT_OPTION).build());
+
+        options.addOption(Option.builder()
+                .hasArg(true)
+                .desc("Retrieve documents in batches, keeping this many requests pending at a time. " +
+                      "Documents are then printed in the order they are retrieved.")
+                .longOpt(BATCH_OPTION)
+                .argName("pending")
+                .type(Number.class).build());
+
         return options;
     }
 
@@ -164,7 +179,9 @@ public class CommandLineOptions {
             boolean showDocSize = cl.hasOption(SHOWDOCSIZE_OPTION);
             boolean jsonOutput = cl.hasOption(JSONOUTPUT_OPTION);
             boolean xmlOutput = cl.hasOption(XMLOUTPUT_OPTION);
+            boolean binaryOutput = cl.hasOption(BINARYOUTPUT_OPTION);
             int trace = getTrace(cl);
+            int batchSize = getBatchSize(cl);
             DocumentProtocol.Priority priority = getPriority(cl);
             double timeout = getTimeout(cl);
             Iterator<String> documentIds = getDocumentIds(cl);
@@ -173,6 +190,10 @@ public class CommandLineOptions {
                 throw new IllegalArgumentException("Cannot combine both xml and json output");
             }
 
+            if (binaryOutput && (jsonOutput || xmlOutput || printIdsOnly || showDocSize)) {
+                throw new IllegalArgumentException("Binary output can not be combined with other output options.");
+            }
+
             if (printIdsOnly && !fieldSet.isEmpty()) {
                 throw new IllegalArgumentException("Field set option can not be used in combination with print ids option.");
             }
@@ -191,6 +212,10 @@ public class CommandLineOptions {
                 route = "default-get";
             }
 
+            if (batchSize < 0) {
+                throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+            }
+
             if (trace < 0 || trace > 9) {
                 throw new IllegalArgumentException("Invalid tracelevel: " + trace);
             }
@@ -214,7 +239,9 @@ public class CommandLineOptions {
                     .setTraceLevel(trace)
                     .setPriority(priority)
                     .setTimeout(timeout)
-                    .setJsonOutput(!xmlOutput)
+                    .setJsonOutput(!xmlOutput && !binaryOutput)
+                    .setBinaryOutput(binaryOutput)
+                    .setBatchSize(batchSize)
                     .build();
         } catch (ParseException pe) {
             throw new IllegalArgumentException(pe.getMessage());
@@ -243,6 +270,11 @@ public class CommandLineOptions {
         return traceObj != null ? traceObj.intValue() : 0;
     }
 
+    private static int getBatchSize(CommandLine cl) throws ParseException {
+        Number batchObj = (Number) cl.getParsedOptionValue(BATCH_OPTION);
+        return batchObj != null ? batchObj.intValue() : 0;
+    }
+
     private static DocumentProtocol.Priority getPriority(CommandLine cl) throws ParseException {
         String priority = cl.getOptionValue(PRIORITY_OPTION, "NORMAL_2");
         return parsePriority(priority);
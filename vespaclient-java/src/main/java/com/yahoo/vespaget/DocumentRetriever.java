@@ -3,8 +3,14 @@ package com.yahoo.vespaget;
 
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.compress.CompressionType;
 import com.yahoo.document.json.JsonWriter;
+import com.yahoo.document.serialization.BinaryFeedWriter;
+import com.yahoo.documentapi.AsyncParameters;
+import com.yahoo.documentapi.DocumentResponse;
+import com.yahoo.documentapi.Response;
 import com.yahoo.documentapi.SyncParameters;
+import com.yahoo.documentapi.messagebus.MessageBusAsyncSession;
 import com.yahoo.documentapi.messagebus.MessageBusDocumentAccess;
 import com.yahoo.documentapi.messagebus.MessageBusParams;
 import com.yahoo.documentapi.messagebus.MessageBusSyncSession;
@@ -19,6 +25,10 @@ import com.yahoo.text.Utf8;
 import com.yahoo.vespaclient.ClusterDef;
 import com.yahoo.vespaclient.ClusterList;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -36,6 +46,10 @@ public class DocumentRetriever {
 
     private MessageBusSyncSession session;
     private MessageBusDocumentAccess documentAccess;
+    private MessageBusAsyncSession asyncSession;
+    private BinaryFeedWriter binaryWriter;
+    private BinaryFeedWriter.Block binaryBlock;
+    private boolean first = true;
 
     public DocumentRetriever(ClusterList clusterList,
                              DocumentAccessFactory documentAccessFactory,
@@ -55,6 +69,13 @@ public class DocumentRetriever {
         } catch (IllegalStateException e) {
             // Ignore exception on shutdown
         }
+        try {
+            if (asyncSession != null) {
+                asyncSession.destroy();
+            }
+        } catch (IllegalStateException e) {
+            // Ignore exception on shutdown
+        }
         try {
             if (documentAccess != null) {
                 documentAccess.shutdown();
@@ -65,38 +86,82 @@ public class DocumentRetriever {
     }
 
     public void retrieveDocuments() throws DocumentRetrieverException {
-        boolean first = true;
         String route = params.cluster.isEmpty() ? params.route : resolveClusterRoute(params.cluster);
         LoadType loadType = params.loadTypeName.isEmpty() ? null : resolveLoadType(params.loadTypeName);
 
         MessageBusParams messageBusParams = createMessageBusParams(params.configId, params.timeout, route);
         documentAccess = documentAccessFactory.createDocumentAccess(messageBusParams);
-        session = documentAccess.createSyncSession(new SyncParameters.Builder().build());
         int trace = params.traceLevel;
-        if (trace > 0) {
-            session.setTraceLevel(trace);
+        if (params.batchSize > 0) {
+            asyncSession = documentAccess.createAsyncSession(new AsyncParameters());
+            if (trace > 0) {
+                asyncSession.setTraceLevel(trace);
+            }
+        } else {
+            session = documentAccess.createSyncSession(new SyncParameters.Builder().build());
+            if (trace > 0) {
+                session.setTraceLevel(trace);
+            }
+        }
+
+        if (params.binaryOutput) {
+            try {
+                binaryWriter = new BinaryFeedWriter(new FileOutputStream(FileDescriptor.out).getChannel(),
+                                                    CompressionType.NONE,
+                                                    BinaryFeedWriter.DEFAULT_BLOCK_SIZE);
+                binaryBlock = binaryWriter.newBlock();
+            } catch (IOException e) {
+                throw new DocumentRetrieverException("Failed writing binary output: " + e.getMessage());
+            }
         }
 
         Iterator<String> iter = params.documentIds;
         if (params.jsonOutput && !params.printIdsOnly) {
             System.out.println('[');
         }
-        while (iter.hasNext()) {
-            if (params.jsonOutput && !params.printIdsOnly) {
-                if (!first) {
-                    System.out.println(',');
-                } else {
-                    first = false;
-                }
+        if (params.batchSize > 0) {
+            Iterator<Message> messages = new Iterator<Message>() {
+                @Override
+                public boolean hasNext() { return iter.hasNext(); }
+
+                @Override
+                public Message next() { return createDocumentRequest(iter.next(), loadType); }
+            };
+            // Traces of batched requests are logged by the session
+            Iterator<Response> responses = asyncSession.send(messages, params.batchSize).iterator();
+            while (responses.hasNext()) {
+                printRecordSeparator();
+                printResponse(responses.next());
+            }
+        } else {
+            while (iter.hasNext()) {
+                printRecordSeparator();
+                String docid = iter.next();
+                Message msg = createDocumentRequest(docid, loadType);
+                Reply reply = session.syncSend(msg);
+                printReply(reply);
             }
-            String docid = iter.next();
-            Message msg = createDocumentRequest(docid, loadType);
-            Reply reply = session.syncSend(msg);
-            printReply(reply);
         }
         if (params.jsonOutput && !params.printIdsOnly) {
             System.out.println(']');
         }
+        if (params.binaryOutput) {
+            try {
+                binaryWriter.write(binaryBlock);
+            } catch (IOException e) {
+                throw new DocumentRetrieverException("Failed writing binary output: " + e.getMessage());
+            }
+        }
+    }
+
+    private void printRecordSeparator() {
+        if (params.jsonOutput && !params.printIdsOnly) {
+            if (!first) {
+                System.out.println(',');
+            } else {
+                first = false;
+            }
+        }
     }
 
     private String resolveClusterRoute(String clusterName) throws DocumentRetrieverException {
@@ -152,10 +217,12 @@ public class DocumentRetriever {
         return msg;
     }
 
-    private void printReply(Reply reply) {
+    private void printReply(Reply reply) throws DocumentRetrieverException {
+        // Standard out holds only documents when these are written in the binary format
+        PrintStream messages = params.binaryOutput ? System.err : System.out;
         Trace trace = reply.getTrace();
         if (!trace.getRoot().isEmpty()) {
-            System.out.println(trace);
+            messages.println(trace);
         }
 
         if (reply.hasErrors()) {
@@ -173,10 +240,21 @@ public class DocumentRetriever {
         }
 
         GetDocumentReply documentReply = (GetDocumentReply) reply;
-        Document document = documentReply.getDocument();
+        printDocument(documentReply.getDocument(), messages);
+    }
 
+    private void printResponse(Response response) throws DocumentRetrieverException {
+        PrintStream messages = params.binaryOutput ? System.err : System.out;
+        if ( ! response.isSuccess()) {
+            System.err.printf("Request failed: \n  %s\n", response.getTextMessage());
+            return;
+        }
+        printDocument(response instanceof DocumentResponse ? ((DocumentResponse) response).getDocument() : null, messages);
+    }
+
+    private void printDocument(Document document, PrintStream messages) throws DocumentRetrieverException {
         if (document == null) {
-            System.out.println("Document not found.");
+            messages.println("Document not found.");
             return;
         }
 
@@ -185,6 +263,8 @@ public class DocumentRetriever {
         }
         if (params.printIdsOnly) {
             System.out.println(document.getId());
+        } else if (params.binaryOutput) {
+            writeBinary(document);
         } else {
             if (params.jsonOutput) {
                 System.out.print(Utf8.toString(JsonWriter.toByteArray(document)));
@@ -194,6 +274,17 @@ public class DocumentRetriever {
         }
     }
 
+    private void writeBinary(Document document) throws DocumentRetrieverException {
+        binaryBlock.addPut(document);
+        if (binaryBlock.isFull()) {
+            try {
+                binaryWriter.write(binaryBlock);
+            } catch (IOException e) {
+                throw new DocumentRetrieverException("Failed writing binary output: " + e.getMessage());
+            }
+        }
+    }
+
     private String createClusterNamesString() {
         StringBuilder names = new StringBuilder();
         for (ClusterDef c : clusterList.getStorageClusters()) {
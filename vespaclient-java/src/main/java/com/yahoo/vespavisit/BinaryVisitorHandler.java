@@ -0,0 +1,99 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespavisit;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.serialization.BinaryFeedWriter;
+import com.yahoo.documentapi.DumpVisitorDataHandler;
+import com.yahoo.documentapi.VisitorDataHandler;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * A visitor handler which writes visited documents and removes to STDOUT in the binary feed format,
+ * which vespa-feeder reads without any parsing of text.
+ *
+ * Documents are serialized by the threads delivering them, into blocks which are written whole, so
+ * rendering and compression is done in parallel, and the output is written in large chunks.
+ */
+public class BinaryVisitorHandler extends VdsVisitHandler {
+
+    private final BinaryFeedWriter writer;
+    private final VisitorDataHandler dataHandler = new DataHandler();
+
+    public BinaryVisitorHandler(boolean showProgress, boolean showStatistics, boolean abortOnClusterDown, boolean compress) {
+        this(showProgress, showStatistics, abortOnClusterDown, compress, new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    BinaryVisitorHandler(boolean showProgress, boolean showStatistics, boolean abortOnClusterDown,
+                         boolean compress, WritableByteChannel out) {
+        super(showProgress, showStatistics, abortOnClusterDown);
+        try {
+            this.writer = new BinaryFeedWriter(out,
+                                               compress ? CompressionType.LZ4 : CompressionType.NONE,
+                                               BinaryFeedWriter.DEFAULT_BLOCK_SIZE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public VisitorDataHandler getDataHandler() { return dataHandler; }
+
+    class DataHandler extends DumpVisitorDataHandler {
+
+        /** Blocks not currently in use by any thread */
+        private final Queue<BinaryFeedWriter.Block> blocks = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void onDocument(Document doc, long timestamp) {
+            add(block -> block.addPut(doc));
+        }
+
+        @Override
+        public void onRemove(DocumentId docId) {
+            add(block -> block.addRemove(docId));
+        }
+
+        private void add(Consumer<BinaryFeedWriter.Block> record) {
+            BinaryFeedWriter.Block block = blocks.poll();
+            if (block == null) {
+                block = writer.newBlock();
+            }
+            try {
+                record.accept(block);
+                if (block.isFull()) {
+                    writer.write(block);
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to output document: " + e.getMessage());
+                getControlHandler().abort();
+            } finally {
+                blocks.add(block);
+            }
+        }
+
+        @Override
+        public void onDone() {
+            try {
+                for (BinaryFeedWriter.Block block : blocks) {
+                    writer.write(block);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to output documents: " + e.getMessage());
+            }
+            super.onDone();
+        }
+
+    }
+
+}
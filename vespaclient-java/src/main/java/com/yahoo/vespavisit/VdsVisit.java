@@ -13,6 +13,7 @@ import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.log.LogSetup;
 import com.yahoo.document.select.OrderingSpecification;
+import com.yahoo.messagebus.AdaptiveThrottlePolicy;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.vespaclient.ClusterDef;
 import com.yahoo.vespaclient.ClusterList;
@@ -24,6 +25,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Map;
 
@@ -41,6 +43,7 @@ public class VdsVisit {
     private final VisitorSessionAccessorFactory sessionAccessorFactory;
     private VisitorSessionAccessor sessionAccessor;
     private ShutdownHookRegistrar shutdownHookRegistrar;
+    private final WritableByteChannel binaryOut;
 
     public interface ShutdownHookRegistrar {
 
@@ -107,11 +110,19 @@ public class VdsVisit {
     public VdsVisit() {
         this.sessionAccessorFactory = new MessageBusVisitorSessionAccessorFactory(mbparams);
         this.shutdownHookRegistrar = new JvmRuntimeShutdownHookRegistrar();
+        this.binaryOut = new FileOutputStream(FileDescriptor.out).getChannel();
     }
 
     public VdsVisit(VisitorSessionAccessorFactory sessionAccessorFactory, ShutdownHookRegistrar shutdownHookRegistrar) {
+        this(sessionAccessorFactory, shutdownHookRegistrar, new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    /** Creates a visit which writes binary output to the given channel instead of STDOUT */
+    VdsVisit(VisitorSessionAccessorFactory sessionAccessorFactory, ShutdownHookRegistrar shutdownHookRegistrar,
+             WritableByteChannel binaryOut) {
         this.sessionAccessorFactory = sessionAccessorFactory;
         this.shutdownHookRegistrar = shutdownHookRegistrar;
+        this.binaryOut = binaryOut;
     }
 
     public static void main(String args[]) {
@@ -214,7 +225,31 @@ public class VdsVisit {
                 .longOpt("maxpendingsuperbuckets")
                 .hasArg(true)
                 .argName("num")
-                .desc("Maximum pending visitor messages from the vespa-visit client. If set, dynamic throttling of visitors will be disabled!")
+                .desc("Maximum pending visitor messages from the vespa-visit client. If set without --adaptive, dynamic throttling of visitors will be disabled!")
+                .type(Number.class)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("adaptive")
+                .hasArg(false)
+                .desc("Adapt the number of pending visitor messages to the reply latency of, and busy replies from, the content nodes. " +
+                      "The number is limited by --maxpendingsuperbuckets, if set.")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("slices")
+                .hasArg(true)
+                .argName("num")
+                .desc("Split the bucket space into this many slices, which must be a power of two, and visit only the slice given by " +
+                      "--sliceid. The slices may be visited in parallel by separate invocations, each with its own progress file.")
+                .type(Number.class)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("sliceid")
+                .hasArg(true)
+                .argName("id")
+                .desc("The slice of the bucket space to visit, in the range [0, slices).")
                 .type(Number.class)
                 .build());
 
@@ -338,6 +373,18 @@ public class VdsVisit {
               .hasArg(false)
               .build());
 
+        options.addOption(Option.builder()
+                .longOpt("binaryoutput")
+                .desc("Output documents in the binary feed format, which vespa-feeder reads without parsing")
+                .hasArg(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("compress")
+                .desc("Compress blocks of binary output with LZ4")
+                .hasArg(false)
+                .build());
+
         options.addOption(Option.builder()
                 .longOpt("bucketspace")
                 .hasArg(true)
@@ -361,6 +408,8 @@ public class VdsVisit {
         private int processTime = 0;
         private int fullTimeout = 7 * 24 * 60 * 60 * 1000;
         private boolean jsonOutput = false;
+        private boolean binaryOutput = false;
+        private boolean compressOutput = false;
 
         public VisitorParameters getVisitorParameters() {
             return visitorParameters;
@@ -429,6 +478,22 @@ public class VdsVisit {
         public void setJsonOutput(boolean jsonOutput) {
             this.jsonOutput = jsonOutput;
         }
+
+        public boolean isBinaryOutput() {
+            return binaryOutput;
+        }
+
+        public void setBinaryOutput(boolean binaryOutput) {
+            this.binaryOutput = binaryOutput;
+        }
+
+        public boolean isCompressOutput() {
+            return compressOutput;
+        }
+
+        public void setCompressOutput(boolean compressOutput) {
+            this.compressOutput = compressOutput;
+        }
     }
 
     protected static class ArgumentParser {
@@ -557,11 +622,24 @@ public class VdsVisit {
             if (line.hasOption("skipbucketsonfatalerrors")) {
                 params.skipBucketsOnFatalErrors(true);
             }
-            if (line.hasOption("maxpendingsuperbuckets")) {
+            if (line.hasOption("adaptive")) {
+                AdaptiveThrottlePolicy throttlePolicy = new AdaptiveThrottlePolicy();
+                if (line.hasOption("maxpendingsuperbuckets")) {
+                    throttlePolicy.setMaxPendingCount(((Number)line.getParsedOptionValue("maxpendingsuperbuckets")).intValue());
+                }
+                params.setThrottlePolicy(throttlePolicy);
+            } else if (line.hasOption("maxpendingsuperbuckets")) {
                 StaticThrottlePolicy throttlePolicy = new StaticThrottlePolicy();
                 throttlePolicy.setMaxPendingCount(((Number)line.getParsedOptionValue("maxpendingsuperbuckets")).intValue());
                 params.setThrottlePolicy(throttlePolicy);
             }
+            if (line.hasOption("slices") || line.hasOption("sliceid")) {
+                if ( ! line.hasOption("slices") || ! line.hasOption("sliceid")) {
+                    throw new IllegalArgumentException("Both --slices and --sliceid must be given when visiting a slice");
+                }
+                params.slice(((Number) line.getParsedOptionValue("slices")).intValue(),
+                             ((Number) line.getParsedOptionValue("sliceid")).intValue());
+            }
 
             boolean jsonOutput = line.hasOption("jsonoutput");
             boolean xmlOutput = line.hasOption("xmloutput");
@@ -569,6 +647,15 @@ public class VdsVisit {
                 throw new IllegalArgumentException("Cannot combine both xml and json output");
             }
             allParams.setJsonOutput(!xmlOutput);
+            boolean binaryOutput = line.hasOption("binaryoutput");
+            if (binaryOutput && (jsonOutput || xmlOutput || allParams.isPrintIdsOnly())) {
+                throw new IllegalArgumentException("Cannot combine binary output with other output formats");
+            }
+            if (line.hasOption("compress") && ! binaryOutput) {
+                throw new IllegalArgumentException("Compression is only supported for binary output");
+            }
+            allParams.setBinaryOutput(binaryOutput);
+            allParams.setCompressOutput(line.hasOption("compress"));
 
             allParams.setVisitorParameters(params);
             return allParams;
@@ -671,6 +758,12 @@ public class VdsVisit {
         if (params.skipBucketsOnFatalErrors()) {
             out.println("Skip visiting super buckets with fatal errors.");
         }
+        if (params.getThrottlePolicy() instanceof AdaptiveThrottlePolicy) {
+            out.println("Adapting the number of pending visitors to the content nodes.");
+        }
+        if (params.getSlices() > 1) {
+            out.println("Visiting slice " + params.getSliceId() + " of " + params.getSlices() + " of the bucket space.");
+        }
     }
 
     private void onDocumentSelectionException(Exception e) {
@@ -727,15 +820,24 @@ public class VdsVisit {
 
         VdsVisitHandler handler;
 
-        handler = new StdOutVisitorHandler(
-                params.isPrintIdsOnly(),
-                params.isVerbose(),
-                params.isVerbose(),
-                params.isVerbose(),
-                params.getStatisticsParts() != null,
-                params.getAbortOnClusterDown(),
-                params.getProcessTime(),
-                params.jsonOutput);
+        if (params.isBinaryOutput()) {
+            handler = new BinaryVisitorHandler(
+                    params.isVerbose(),
+                    params.isVerbose(),
+                    params.getAbortOnClusterDown(),
+                    params.isCompressOutput(),
+                    binaryOut);
+        } else {
+            handler = new StdOutVisitorHandler(
+                    params.isPrintIdsOnly(),
+                    params.isVerbose(),
+                    params.isVerbose(),
+                    params.isVerbose(),
+                    params.getStatisticsParts() != null,
+                    params.getAbortOnClusterDown(),
+                    params.getProcessTime(),
+                    params.jsonOutput);
+        }
 
         if (visitorParameters.getResumeFileName() != null) {
             handler.setProgressFileName(visitorParameters.getResumeFileName());
@@ -762,7 +864,9 @@ public class VdsVisit {
             }
 
             if (visitorParameters.getTraceLevel() > 0) {
-                System.out.println(session.getTrace().toString());
+                // Binary output is a feed on STDOUT, which text would corrupt
+                PrintStream messages = params.isBinaryOutput() ? System.err : System.out;
+                messages.println(session.getTrace().toString());
             }
         } catch (ParseException e) {
             onDocumentSelectionException(e);
@@ -13,6 +13,7 @@ import com.yahoo.clientmetrics.RouteMetricSet;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.DocumentTypeManagerConfigurer;
 import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.serialization.BinaryFeedWriter;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
@@ -103,6 +104,16 @@ public class VespaFeederTestCase {
             InputStreamRequest r = new InputStreamRequest(b);
             VespaFeeder.setJsonInput(r, b);
             assertEquals("false", r.getProperty(VespaFeedHandler.JSON_INPUT));
+            assertEquals("false", r.getProperty(VespaFeedHandler.BINARY_INPUT));
+        }
+        {
+            BufferedInputStream b = new BufferedInputStream(
+                    new ByteArrayInputStream(BinaryFeedWriter.MAGIC));
+            InputStreamRequest r = new InputStreamRequest(b);
+            VespaFeeder.setJsonInput(r, b);
+            assertEquals("false", r.getProperty(VespaFeedHandler.JSON_INPUT));
+            assertEquals("true", r.getProperty(VespaFeedHandler.BINARY_INPUT));
+            assertEquals('V', b.read());
         }
     }
 
@@ -102,6 +102,26 @@ public class CommandLineOptionsTest {
         getParsedOptions("--route", "dummyroute", "--cluster", "dummycluster");
     }
 
+    @Test
+    public void testInvalidCombination5() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Binary output can not be combined with other output options.");
+        getParsedOptions("--binaryoutput", "--printids");
+    }
+
+    @Test
+    public void testBinaryOutput() {
+        ClientParameters params = getParsedOptions("--binaryoutput");
+        assertTrue(params.binaryOutput);
+        assertFalse(params.jsonOutput);
+    }
+
+    @Test
+    public void testBatch() {
+        assertEquals(0, getParsedOptions().batchSize);
+        assertEquals(1000, getParsedOptions("--batch", "1000").batchSize);
+    }
+
     @Test
     public void testInvalidPriority() {
         exception.expect(IllegalArgumentException.class);
@@ -8,6 +8,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yahoo.document.DataType;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.documentapi.DocumentIdResponse;
+import com.yahoo.documentapi.DocumentResponse;
+import com.yahoo.documentapi.messagebus.MessageBusAsyncSession;
 import com.yahoo.documentapi.messagebus.MessageBusDocumentAccess;
 import com.yahoo.documentapi.messagebus.MessageBusParams;
 import com.yahoo.documentapi.messagebus.MessageBusSyncSession;
@@ -17,6 +20,7 @@ import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.messagebus.protocol.GetDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.GetDocumentReply;
 import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.Reply;
 import com.yahoo.vespaclient.ClusterDef;
 import com.yahoo.vespaclient.ClusterList;
@@ -31,16 +35,19 @@ import org.mockito.ArgumentMatcher;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -168,6 +175,35 @@ public class DocumentRetrieverTest {
         assertContainsDocument(DOC_ID_1);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchedMessages() throws DocumentRetrieverException {
+        ClientParameters params = createParameters()
+                .setDocumentIds(asIterator(DOC_ID_1, DOC_ID_2, DOC_ID_3))
+                .setBatchSize(2)
+                .build();
+
+        MessageBusAsyncSession mockedAsyncSession = mock(MessageBusAsyncSession.class);
+        when(mockedDocumentAccess.createAsyncSession(any())).thenReturn(mockedAsyncSession);
+        List<Message> sent = new ArrayList<>();
+        when(mockedAsyncSession.send(any(Iterator.class), eq(2))).thenAnswer(invocation -> {
+            Iterator<Message> messages = (Iterator<Message>) invocation.getArguments()[0];
+            messages.forEachRemaining(sent::add);
+            return Stream.of(new DocumentResponse(1, new Document(DataType.DOCUMENT, new DocumentId(DOC_ID_2))),
+                             new DocumentIdResponse(2, new DocumentId(DOC_ID_1)),
+                             new DocumentIdResponse(3, new DocumentId(DOC_ID_3), "Timed out", false));
+        });
+
+        DocumentRetriever documentRetriever = createDocumentRetriever(params);
+        documentRetriever.retrieveDocuments();
+
+        assertEquals(3, sent.size());
+        assertEquals(new DocumentId(DOC_ID_1), ((GetDocumentMessage) sent.get(0)).getDocumentId());
+        assertContainsDocument(DOC_ID_2);
+        assertTrue(outContent.toString().contains("Document not found."));
+        assertTrue(errContent.toString().contains("Request failed: \n  Timed out"));
+    }
+
     @Test
     public void testMultipleMessages() throws DocumentRetrieverException {
         ClientParameters params = createParameters()
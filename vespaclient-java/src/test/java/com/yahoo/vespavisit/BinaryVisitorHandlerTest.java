@@ -0,0 +1,54 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespavisit;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.serialization.BinaryFeedReader;
+import com.yahoo.documentapi.DumpVisitorDataHandler;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryVisitorHandlerTest {
+
+    @Test
+    public void visited_documents_and_removes_are_written_as_binary_feed() throws Exception {
+        DocumentTypeManager manager = new DocumentTypeManager();
+        DocumentType type = new DocumentType("music");
+        type.addField("title", DataType.STRING);
+        manager.registerDocumentType(type);
+        Document document = new Document(type, "id:ns:music::1");
+        document.setFieldValue("title", new StringFieldValue("Title"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryVisitorHandler visitorHandler = new BinaryVisitorHandler(false, false, false, true, Channels.newChannel(out));
+        DumpVisitorDataHandler dataHandler = (DumpVisitorDataHandler) visitorHandler.getDataHandler();
+        dataHandler.onDocument(document, 0);
+        dataHandler.onRemove(new DocumentId("id:ns:music::2"));
+        dataHandler.onDone();
+
+        BinaryFeedReader reader = new BinaryFeedReader(new ByteArrayInputStream(out.toByteArray()), manager);
+        assertEquals(document, reader.read().getDocument());
+        assertEquals(new DocumentId("id:ns:music::2"), reader.read().getRemove());
+        assertEquals(FeedOperation.Type.INVALID, reader.read().getType());
+    }
+
+    @Test
+    public void visiting_nothing_produces_only_the_header() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryVisitorHandler visitorHandler = new BinaryVisitorHandler(false, false, false, false, Channels.newChannel(out));
+        visitorHandler.getDataHandler().onDone();
+        BinaryFeedReader reader = new BinaryFeedReader(new ByteArrayInputStream(out.toByteArray()), new DocumentTypeManager());
+        assertEquals(FeedOperation.Type.INVALID, reader.read().getType());
+    }
+
+}
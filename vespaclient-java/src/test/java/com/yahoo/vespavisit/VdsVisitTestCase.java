@@ -1,19 +1,28 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespavisit;
 
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.select.OrderingSpecification;
 import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.serialization.BinaryFeedReader;
 import com.yahoo.documentapi.*;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.messagebus.AdaptiveThrottlePolicy;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.messagebus.Trace;
 import com.yahoo.vespaclient.ClusterDef;
 import com.yahoo.vespaclient.ClusterList;
+import com.yahoo.vespavisit.VdsVisit.VisitorSessionAccessorFactory;
+import com.yahoo.vespaxmlparser.FeedOperation;
 import org.apache.commons.cli.Options;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -200,6 +209,61 @@ public class VdsVisitTestCase {
         assertEquals(DocumentProtocol.Priority.LOW_1, params.getPriority());
     }
 
+    @Test
+    public void testAdaptiveThrottlingIsLimitedByMaxPendingSuperBuckets() throws Exception {
+        String[] args = new String[] {
+                "--adaptive",
+                "--maxpendingsuperbuckets", "64"
+        };
+        VisitorParameters params = createMockArgumentParser().parse(args).getVisitorParameters();
+        assertTrue(params.getThrottlePolicy() instanceof AdaptiveThrottlePolicy);
+        assertEquals(64, ((AdaptiveThrottlePolicy)params.getThrottlePolicy()).getMaxPendingCount());
+    }
+
+    @Test
+    public void testSliceOptions() throws Exception {
+        String[] args = new String[] {
+                "--slices", "8",
+                "--sliceid", "5"
+        };
+        VisitorParameters params = createMockArgumentParser().parse(args).getVisitorParameters();
+        assertEquals(8, params.getSlices());
+        assertEquals(5, params.getSliceId());
+
+        try {
+            createMockArgumentParser().parse(new String[] { "--slices", "6", "--sliceid", "0" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("power of two"));
+        }
+        try {
+            createMockArgumentParser().parse(new String[] { "--slices", "8" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("--sliceid"));
+        }
+    }
+
+    @Test
+    public void testBinaryOutputOptions() throws Exception {
+        VdsVisit.VdsVisitParameters params = createMockArgumentParser().parse(new String[] { "--binaryoutput", "--compress" });
+        assertTrue(params.isBinaryOutput());
+        assertTrue(params.isCompressOutput());
+
+        try {
+            createMockArgumentParser().parse(new String[] { "--binaryoutput", "--jsonoutput" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Cannot combine binary output with other output formats", e.getMessage());
+        }
+        try {
+            createMockArgumentParser().parse(new String[] { "--compress" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Compression is only supported for binary output", e.getMessage());
+        }
+    }
+
     @Test
     public void testBadPriorityValue() throws Exception {
         String[] args = new String[] {
@@ -449,4 +513,53 @@ public class VdsVisitTestCase {
         assertNotNull(accessorFactory.getLastCreatedAccessor());
         assertTrue(accessorFactory.getLastCreatedAccessor().isShutdown());
     }
+
+    @Test
+    public void testTraceIsNotWrittenToBinaryOutput() throws Exception {
+        DocumentTypeManager manager = new DocumentTypeManager();
+        DocumentType type = new DocumentType("music");
+        manager.registerDocumentType(type);
+        Document document = new Document(type, "id:ns:music::1");
+
+        VisitorSessionAccessorFactory accessorFactory = () -> new MockVisitorSessionAccessor() {
+            @Override
+            public VisitorSession createVisitorSession(VisitorParameters params) {
+                return new MockVisitorSession(params) {
+                    @Override
+                    public boolean waitUntilDone(long timeoutMs) throws InterruptedException {
+                        ((DumpVisitorDataHandler) params.getLocalDataHandler()).onDocument(document, 0);
+                        params.getLocalDataHandler().onDone();
+                        return super.waitUntilDone(timeoutMs);
+                    }
+
+                    @Override
+                    public Trace getTrace() {
+                        Trace trace = new Trace(1);
+                        trace.trace(1, "visited");
+                        return trace;
+                    }
+                };
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VdsVisit vdsVisit = new VdsVisit(accessorFactory, new MockShutdownHookRegistrar(), Channels.newChannel(out));
+        VdsVisit.VdsVisitParameters params = createMockArgumentParser().parse(new String[] { "--binaryoutput", "--compress",
+                                                                                           "--tracelevel", "1" });
+        vdsVisit.setVdsVisitParameters(params);
+
+        PrintStream stdErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setErr(new PrintStream(err, true));
+            assertEquals(0, vdsVisit.doRun());
+        }
+        finally {
+            System.setErr(stdErr);
+        }
+
+        assertTrue(err.toString().contains("visited"));
+        BinaryFeedReader reader = new BinaryFeedReader(new ByteArrayInputStream(out.toByteArray()), manager);
+        assertEquals(document, reader.read().getDocument());
+        assertEquals(FeedOperation.Type.INVALID, reader.read().getType());
+    }
 }